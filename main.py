@@ -7,13 +7,64 @@ import logging
 import torch
 import hashlib
 import pickle
+import time
+import re
+from contextlib import contextmanager
 from pathlib import Path
 
 # Konfiguracja logowania
 logging.basicConfig(level=logging.INFO, stream=sys.stderr, format='%(message)s')
 
 
+@contextmanager
+def timed(timings, stage):
+    """Mierzy czas etapu w sekundach i zapisuje go w słowniku timings (o ile został podany)"""
+    start = time.perf_counter()
+    try:
+        yield
+    finally:
+        if timings is not None:
+            timings[stage] = round(time.perf_counter() - start, 4)
     
+# Linia segmentu wypisywana przez whisper.transcribe(verbose=True): "[00:01.000 --> 00:04.500]  tekst"
+SEGMENT_LINE = re.compile(r"^\[((?:\d+:)?\d+:\d+\.\d+) --> ((?:\d+:)?\d+:\d+\.\d+)\] ?(.*)$")
+
+
+def parse_timestamp(value):
+    """Zamienia znacznik czasu Whispera (MM:SS.mmm lub HH:MM:SS.mmm) na sekundy"""
+    seconds = 0.0
+    for part in value.split(":"):
+        seconds = seconds * 60 + float(part)
+    return seconds
+
+
+class SegmentWriter:
+    """
+    Zastępuje sys.stdout na czas transkrypcji. Whisper nie ma callbacku dla segmentów,
+    ale w trybie verbose wypisuje każdy zaraz po zdekodowaniu - te linie trafiają do on_segment,
+    pozostałe do fallback.
+    """
+
+    def __init__(self, on_segment, fallback):
+        self.on_segment = on_segment
+        self.fallback = fallback
+        self.buffer = ""
+
+    def write(self, text):
+        self.buffer += text
+        while "\n" in self.buffer:
+            line, self.buffer = self.buffer.split("\n", 1)
+            match = SEGMENT_LINE.match(line)
+            if match:
+                self.on_segment(parse_timestamp(match.group(1)), parse_timestamp(match.group(2)), match.group(3))
+            else:
+                self.fallback.write(line + "\n")
+        return len(text)
+
+    def flush(self):
+        self.fallback.flush()
+
+
 def get_file_hash(file_path):
     """Generuje hash pliku do identyfikacji w cache"""
     hasher = hashlib.md5()
@@ -24,10 +75,11 @@ def get_file_hash(file_path):
             buf = f.read(65536)
     return hasher.hexdigest()
 
-def check_cache(file_path, cache_dir=".cache"):
+def check_cache(file_path, cache_dir=".cache", file_hash=None):
     """Sprawdza czy wyniki dla pliku są w cache"""
     os.makedirs(cache_dir, exist_ok=True)
-    file_hash = get_file_hash(file_path)
+    # Hash policzony już przez aplikację Java przy zapisie pliku
+    file_hash = file_hash or get_file_hash(file_path)
     cache_path = os.path.join(cache_dir, f"{file_hash}.pkl")
 
     if os.path.exists(cache_path):
@@ -41,23 +93,201 @@ def check_cache(file_path, cache_dir=".cache"):
 
     return None
 
-def save_to_cache(result, file_path, cache_dir=".cache"):
+def save_to_cache(result, file_path, cache_dir=".cache", file_hash=None):
     """Zapisuje wyniki do cache"""
     os.makedirs(cache_dir, exist_ok=True)
-    file_hash = get_file_hash(file_path)
+    file_hash = file_hash or get_file_hash(file_path)
     cache_path = os.path.join(cache_dir, f"{file_hash}.pkl")
 
+    # Zapis do pliku tymczasowego i zamiana - przerwany worker nie zostawi uciętego wpisu,
+    # a aplikacja Java usuwa pliki .tmp zabitego procesu po jego PID
+    temp_path = f"{cache_path}.{os.getpid()}.tmp"
     try:
-        with open(cache_path, 'wb') as f:
+        with open(temp_path, 'wb') as f:
             pickle.dump(result, f)
+        os.replace(temp_path, cache_path)
         logging.info(f"Saved results to cache for {file_path}")
     except Exception as e:
         logging.warning(f"Failed to save cache: {e}")
 
+def load_models():
+    """Ładuje modele Whisper i BART na wybrane urządzenie"""
+    # Wybór urządzenia
+    device = "cuda" if torch.cuda.is_available() else "cpu"
+    logging.info(f"Using device: {device}")
+
+    # Ustalanie parametrów urządzenia dla lepszej wydajności
+    if device == "cuda":
+        torch.backends.cudnn.benchmark = True
+        torch.set_float32_matmul_precision('high')
+
+    # Ładowanie modeli
+    logging.info("Loading Whisper model...")
+    model = whisper.load_model("base", device=device)
+
+    logging.info("Loading summarization model...")
+    summarizer = pipeline("summarization", model="facebook/bart-large-cnn",
+                         device=0 if device == "cuda" else -1)
+
+    return device, model, summarizer
+
+def summarize_text(text, summarizer):
+    """Podsumowuje tekst modelem BART; zbyt długie wejście jest przycinane przez tokenizer"""
+    return summarize_texts([text], summarizer)[0]
+
+def summarize_texts(texts, summarizer):
+    """
+    Podsumowuje kilka tekstów w jednym przebiegu modelu (jedna partia),
+    co kosztuje niewiele więcej niż podsumowanie najdłuższego z nich.
+    """
+    instruction = "Please summarize the following speech: "
+    shortest = min(len(text.split()) for text in texts)
+    # min_length nie może przekraczać długości najkrótszego fragmentu w partii
+    min_length = min(30, max(5, shortest // 2))
+    with torch.inference_mode():
+        summaries = summarizer([instruction + text for text in texts], max_length=100, min_length=min_length,
+                               do_sample=False, truncation=True, batch_size=len(texts))
+    return [summary["summary_text"] for summary in summaries]
+
+def process_file(file_path, device, model, summarizer, file_hash=None, summarize=True, timings=None,
+                 on_segment=None):
+    """
+    Transkrybuje plik audio i generuje podsumowanie.
+    Z summarize=False zwraca samą transkrypcję, podsumowanie robi wtedy aplikacja Java.
+    Czasy poszczególnych etapów trafiają do słownika timings.
+    on_segment(start, end, text) dostaje kolejne segmenty w trakcie transkrypcji (nie dla wyników z cache).
+    """
+    logging.info(f"Processing file: {file_path}")
+
+    # Sprawdź cache
+    if file_hash is None:
+        with timed(timings, "hash"):
+            file_hash = get_file_hash(file_path)
+    with timed(timings, "cache_lookup"):
+        cached_result = check_cache(file_path, file_hash=file_hash)
+    if cached_result and (not summarize or "summary" in cached_result):
+        return cached_result
+
+    if cached_result:
+        transcription = cached_result["transcription"]
+    else:
+        # Transkrypcja audio z FP16 dla szybszych obliczeń na GPU
+        logging.info("Transcribing audio...")
+        with timed(timings, "transcribe"), torch.inference_mode():
+            if on_segment is None:
+                result = model.transcribe(file_path, fp16=(device == "cuda"))
+            else:
+                stdout = sys.stdout
+                sys.stdout = SegmentWriter(on_segment, stdout)
+                try:
+                    result = model.transcribe(file_path, fp16=(device == "cuda"), verbose=True)
+                finally:
+                    sys.stdout.flush()
+                    sys.stdout = stdout
+        transcription = result["text"]
+        logging.info("Transcription completed successfully")
+
+    if not summarize:
+        output = {"transcription": transcription}
+        save_to_cache(output, file_path, file_hash=file_hash)
+        return output
+
+    # Przygotowanie tekstu
+    words = transcription.split()
+    if len(words) > 600:
+        beginning = " ".join(words[:100])
+        middle = " ".join(words[len(words)//2-50:len(words)//2+50])
+        end = " ".join(words[-100:])
+        truncated_text = beginning + " ... " + middle + " ... " + end
+    else:
+        truncated_text = " ".join(words[:min(200, len(words))])
+
+    # Podsumowanie tekstu
+    logging.info("Summarizing text...")
+    with timed(timings, "summarize"):
+        summary = summarize_text(truncated_text, summarizer)
+
+    # Przygotowanie wyniku
+    output = {
+        "transcription": transcription,
+        "summary": summary,
+    }
+
+    # Zapis do cache
+    save_to_cache(output, file_path, file_hash=file_hash)
+    return output
+
+def run_worker():
+    """
+    Tryb workera: modele ładowane są raz, a zadania przychodzą przez stdin.
+    Każda wiadomość (w obie strony) to jeden obiekt JSON w osobnej linii.
+    """
+    protocol_out = sys.stdout
+    # Biblioteki nie mogą pisać na stdout, bo to kanał protokołu
+    sys.stdout = sys.stderr
+
+    def emit(message):
+        protocol_out.write(json.dumps(message) + "\n")
+        protocol_out.flush()
+
+    startup_timings = {}
+    with timed(startup_timings, "load_models"):
+        device, model, summarizer = load_models()
+    emit({"event": "ready", "pid": os.getpid(), "timings": startup_timings})
+
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+
+        job_id = None
+        try:
+            job = json.loads(line)
+            job_id = job.get("id")
+            job_type = job.get("type")
+
+            if job_type == "ping":
+                emit({"id": job_id, "event": "pong"})
+            elif job_type == "transcribe":
+                file_path = job.get("path")
+                if not file_path or not os.path.exists(file_path):
+                    emit({"id": job_id, "event": "error", "error": f"File not found: {file_path}"})
+                    continue
+                timings = {}
+                on_segment = None
+                if job.get("segments"):
+                    def on_segment(start, end, text, job_id=job_id):
+                        emit({"id": job_id, "event": "segment", "start": start, "end": end, "text": text})
+                output = process_file(file_path, device, model, summarizer, job.get("hash"),
+                                      job.get("summarize", True), timings, on_segment)
+                emit({"id": job_id, "event": "result", **output, "timings": timings})
+            elif job_type == "summarize":
+                timings = {}
+                if "texts" in job:
+                    # Partia tekstów zebrana przez aplikację Java z kilku żądań
+                    with timed(timings, "summarize"):
+                        summaries = summarize_texts(job["texts"], summarizer) if job["texts"] else []
+                    emit({"id": job_id, "event": "result", "summaries": summaries, "timings": timings})
+                    continue
+                with timed(timings, "summarize"):
+                    summary = summarize_text(job.get("text", ""), summarizer)
+                emit({"id": job_id, "event": "result", "summary": summary, "timings": timings})
+            else:
+                emit({"id": job_id, "event": "error", "error": f"Unknown job type: {job_type}"})
+
+        except Exception as e:
+            import traceback
+            logging.error(f"Error: {str(e)}\n{traceback.format_exc()}")
+            emit({"id": job_id, "event": "error", "error": str(e)})
+
 def main():
     error_log_path = os.path.join(os.path.dirname(__file__), "error_log.txt")
     sys.stderr = open(error_log_path, "a")
 
+    if len(sys.argv) == 2 and sys.argv[1] == "--worker":
+        run_worker()
+        return
+
     try:
         if len(sys.argv) != 2:
             print(json.dumps({"error": "Expected file path as argument"}))
@@ -68,61 +298,14 @@ def main():
             print(json.dumps({"error": f"File not found: {file_path}"}))
             sys.exit(1)
 
-        logging.info(f"Processing file: {file_path}")
-
         # Sprawdź cache
         cached_result = check_cache(file_path)
         if cached_result:
             print(json.dumps(cached_result))
             return
 
-        # Wybór urządzenia
-        device = "cuda" if torch.cuda.is_available() else "cpu"
-        logging.info(f"Using device: {device}")
-
-        # Ustalanie parametrów urządzenia dla lepszej wydajności
-        if device == "cuda":
-            torch.backends.cudnn.benchmark = True
-            torch.set_float32_matmul_precision('high')
-
-        # Ładowanie modeli
-        logging.info("Loading Whisper model...")
-        model = whisper.load_model("base", device=device)
-
-        # Transkrypcja audio z FP16 dla szybszych obliczeń na GPU
-        logging.info("Transcribing audio...")
-        with torch.inference_mode():
-            result = model.transcribe(file_path, fp16=(device == "cuda"))
-        transcription = result["text"]
-        logging.info("Transcription completed successfully")
-
-        # Przygotowanie tekstu
-        words = transcription.split()
-        if len(words) > 600:
-            beginning = " ".join(words[:100])
-            middle = " ".join(words[len(words)//2-50:len(words)//2+50])
-            end = " ".join(words[-100:])
-            truncated_text = beginning + " ... " + middle + " ... " + end
-        else:
-            truncated_text = " ".join(words[:min(200, len(words))])
-
-        # Podsumowanie tekstu
-        logging.info("Summarizing text...")
-        summarizer = pipeline("summarization", model="facebook/bart-large-cnn",
-                             device=0 if device == "cuda" else -1)
-
-        instruction = "Please summarize the following speech: "
-        truncated_text_with_instruction = instruction + truncated_text
-        summary = summarizer(truncated_text_with_instruction, max_length=100, min_length=30, do_sample=False)
-
-        # Przygotowanie wyniku
-        output = {
-            "transcription": transcription,
-            "summary": summary[0]["summary_text"],
-        }
-
-        # Zapis do cache
-        save_to_cache(output, file_path)
+        device, model, summarizer = load_models()
+        output = process_file(file_path, device, model, summarizer)
 
         # Wydruk wyniku jako JSON
         print(json.dumps(output))
@@ -0,0 +1,59 @@
+package com.project.demo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.properties.GeminiProperties;
+import com.project.demo.service.GeminiClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a Gemini request body and reading the answer out of a response, without the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GeminiPayloadBenchmark {
+
+	@Param({"1000", "10000", "50000"})
+	int transcriptWords;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private GeminiClient client;
+	private String transcript;
+	private String response;
+
+	@Setup
+	public void setUp() {
+		client = new GeminiClient(new GeminiProperties(), objectMapper, "benchmark-key", "gemini-2.0-flash");
+		transcript = Transcripts.words(transcriptWords, 1);
+		response = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"%s\"}],\"role\":\"model\"},"
+				.formatted(Transcripts.words(150, 2)) + "\"finishReason\":\"STOP\"}]}";
+	}
+
+	@Benchmark
+	public byte[] buildRequestBody() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(client.buildRequestBody(transcript));
+	}
+
+	@Benchmark
+	public String extractText() throws JsonProcessingException {
+		JsonNode parsed = objectMapper.readTree(response);
+		return GeminiClient.extractText(parsed);
+	}
+}
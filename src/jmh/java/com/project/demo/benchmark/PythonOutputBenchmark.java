@@ -0,0 +1,51 @@
+package com.project.demo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing one result line written by the Python worker, as {@code PythonWorker} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PythonOutputBenchmark {
+
+	@Param({"1000", "10000", "50000"})
+	int transcriptWords;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private String line;
+
+	@Setup
+	public void setUp() throws JsonProcessingException {
+		ObjectNode result = objectMapper.createObjectNode();
+		result.put("id", "42");
+		result.put("event", "result");
+		result.put("transcription", Transcripts.words(transcriptWords, 1));
+		result.put("summary", Transcripts.words(120, 2));
+		line = objectMapper.writeValueAsString(result);
+	}
+
+	@Benchmark
+	public String readTree() throws JsonProcessingException {
+		return objectMapper.readTree(line).get("transcription").asText();
+	}
+}
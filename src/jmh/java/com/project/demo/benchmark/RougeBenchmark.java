@@ -0,0 +1,54 @@
+package com.project.demo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.project.demo.model.RougeScores;
+import com.project.demo.service.RougeScorer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Summary metrics against transcripts of growing length (the former {@code calculateMetrics}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RougeBenchmark {
+
+	@Param({"1000", "10000", "50000"})
+	int transcriptWords;
+
+	private final RougeScorer scorer = new RougeScorer();
+	private String transcript;
+	private String summary;
+	private RougeScorer.Reference reference;
+
+	@Setup
+	public void setUp() {
+		transcript = Transcripts.words(transcriptWords, 1);
+		summary = Transcripts.words(120, 2);
+		reference = scorer.prepare(transcript);
+	}
+
+	@Benchmark
+	public RougeScores score() {
+		return scorer.score(transcript, summary);
+	}
+
+	@Benchmark
+	public RougeScores scorePreparedReference() {
+		return reference.score(summary);
+	}
+}
@@ -0,0 +1,137 @@
+package com.project.demo.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.model.FilePage;
+import com.project.demo.model.StoredFile;
+import com.project.demo.properties.AudioProperties;
+import com.project.demo.properties.StorageProperties;
+import com.project.demo.service.FileCatalog;
+import com.project.demo.service.FileSystemStorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Storing an upload, listing stored files and the startup recovery scan when the storage already holds
+ * many files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StorageBenchmark {
+
+	@Param({"100", "10000"})
+	int storedFiles;
+
+	@Param({"1048576"})
+	int uploadBytes;
+
+	private Path directory;
+	private FileCatalog catalog;
+	private FileSystemStorageService storageService;
+	private byte[] content;
+	private MockMultipartFile upload;
+	private long uploads;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, NoSuchAlgorithmException {
+		directory = Files.createTempDirectory("storage-benchmark");
+		Path objects = directory.resolve("uploads").resolve("objects");
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		for (int i = 0; i < storedFiles; i++) {
+			// Hash of the index rather than the content, the recovery scan only reads names and sizes
+			String hash = HexFormat.of().formatHex(digest.digest(Integer.toString(i).getBytes(StandardCharsets.UTF_8)));
+			Path shard = Files.createDirectories(objects.resolve(hash.substring(0, 2)));
+			Files.write(shard.resolve(hash), new byte[64]);
+		}
+		StorageProperties properties = new StorageProperties();
+		properties.setLocation(directory.resolve("uploads").toString());
+		properties.setCatalogFile(directory.resolve("file-catalog.json").toString());
+		ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+		catalog = new FileCatalog(properties, objectMapper);
+		catalog.load();
+		storageService = new FileSystemStorageService(properties, new AudioProperties(), catalog, objectMapper);
+		storageService.recover();
+		content = new byte[uploadBytes];
+		new Random(1).nextBytes(content);
+		upload = new MockMultipartFile("file", "upload.mp3", "audio/mpeg", content);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		catalog.shutdown();
+		FileSystemUtils.deleteRecursively(directory);
+	}
+
+	/**
+	 * The upload one call of {@link #store} added, removed again after the call so the storage keeps holding
+	 * {@code storedFiles} objects.
+	 */
+	@State(Scope.Thread)
+	public static class Stored {
+		StoredFile file;
+
+		@TearDown(Level.Invocation)
+		public void remove(StorageBenchmark benchmark) {
+			if (file != null) {
+				benchmark.storageService.evict(file.hash(), Instant.MAX);
+				file = null;
+			}
+		}
+	}
+
+	@Benchmark
+	public StoredFile store(Stored stored) {
+		// New content on every call, otherwise all but the first store only find the existing object
+		long counter = ++uploads;
+		for (int i = 0; i < Long.BYTES; i++) {
+			content[i] = (byte) (counter >>> (i * 8));
+		}
+		stored.file = storageService.store(upload);
+		return stored.file;
+	}
+
+	@Benchmark
+	public void recover() {
+		storageService.recover();
+	}
+
+	@Benchmark
+	public long loadAll() {
+		try (Stream<Path> files = storageService.loadAll()) {
+			return files.count();
+		}
+	}
+
+	@Benchmark
+	public FilePage listFirstPage() {
+		return storageService.list(0, 20, "uploadedAt", true);
+	}
+}
@@ -0,0 +1,26 @@
+package com.project.demo.benchmark;
+
+import java.util.Random;
+
+/**
+ * Deterministic English-like text, so runs on different machines score the same input.
+ */
+final class Transcripts {
+
+	private static final String[] WORDS = {"the", "speaker", "said", "that", "audio", "model", "whisper", "summary",
+			"meeting", "project", "budget", "deadline", "we", "will", "need", "to", "review", "results", "next", "week",
+			"and", "a", "of", "in", "is", "it", "for", "on", "with", "team"};
+
+	private Transcripts() {
+	}
+
+	static String words(int count, long seed) {
+		Random random = new Random(seed);
+		StringBuilder text = new StringBuilder(count * 7);
+		for (int i = 0; i < count; i++) {
+			text.append(WORDS[random.nextInt(WORDS.length)]);
+			text.append(random.nextInt(12) == 0 ? ". " : " ");
+		}
+		return text.toString().strip();
+	}
+}
@@ -0,0 +1,181 @@
+package com.project.demo.load;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Speaks the worker protocol of {@code main.py --worker} without Whisper or BART, so the pipeline can be loaded
+ * on any machine. A transcription takes {@code delay} plus the recording's length divided by {@code speed} and is
+ * the same text every time for the same file. Summaries are the first words of the text after
+ * {@code summarize-delay}, a batch of texts takes that delay once.
+ * <p>
+ * Arguments are {@code key=value}: {@code delay} and {@code summarize-delay} as ISO-8601 durations, {@code speed}
+ * in seconds of audio per second.
+ */
+public final class FakeTranscriber {
+
+	private static final String[] WORDS = {"the", "speaker", "said", "that", "audio", "model", "whisper", "summary",
+			"meeting", "project", "budget", "deadline", "we", "will", "need", "to", "review", "results", "next", "week",
+			"and", "a", "of", "in", "is", "it", "for", "on", "with", "team"};
+	// The load test uploads 128 kbit/s recordings
+	private static final double BYTES_PER_SECOND = 128_000 / 8.0;
+	private static final double WORDS_PER_SECOND = 2.5;
+	private static final int SEGMENT_WORDS = 12;
+	private static final int SUMMARY_WORDS = 30;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final PrintStream out;
+	private final Duration delay;
+	private final double speed;
+	private final Duration summarizeDelay;
+
+	private FakeTranscriber(PrintStream out, Duration delay, double speed, Duration summarizeDelay) {
+		this.out = out;
+		this.delay = delay;
+		this.speed = speed;
+		this.summarizeDelay = summarizeDelay;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Duration delay = Duration.ofMillis(500);
+		double speed = 60;
+		Duration summarizeDelay = Duration.ofMillis(100);
+		for (String arg : args) {
+			String[] option = arg.split("=", 2);
+			switch (option[0]) {
+				case "delay" -> delay = Duration.parse(option[1]);
+				case "speed" -> speed = Double.parseDouble(option[1]);
+				case "summarize-delay" -> summarizeDelay = Duration.parse(option[1]);
+				default -> throw new IllegalArgumentException("Unknown option " + arg);
+			}
+		}
+		// Like main.py, nothing but protocol messages may reach stdout
+		PrintStream protocol = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+		System.setOut(System.err);
+		new FakeTranscriber(protocol, delay, speed, summarizeDelay).run();
+	}
+
+	private void run() throws IOException {
+		ObjectNode ready = objectMapper.createObjectNode().put("event", "ready").put("pid", ProcessHandle.current().pid());
+		ready.putObject("timings").put("load_models", 0.0);
+		emit(ready);
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.isBlank()) {
+				continue;
+			}
+			JsonNode job = objectMapper.readTree(line);
+			JsonNode id = job.path("id");
+			try {
+				switch (job.path("type").asText()) {
+					case "ping" -> emit(message(id, "pong"));
+					case "transcribe" -> transcribe(job, id);
+					case "summarize" -> summarize(job, id);
+					default -> emit(message(id, "error").put("error", "Unknown job type: " + job.path("type").asText()));
+				}
+			} catch (IOException | RuntimeException e) {
+				emit(message(id, "error").put("error", String.valueOf(e.getMessage())));
+			}
+		}
+	}
+
+	private void transcribe(JsonNode job, JsonNode id) throws IOException {
+		Path path = Path.of(job.path("path").asText());
+		if (!Files.exists(path)) {
+			emit(message(id, "error").put("error", "File not found: " + path));
+			return;
+		}
+		double audioSeconds = Files.size(path) / BYTES_PER_SECOND;
+		double transcribeSeconds = sleep(delay.toNanos() / 1e9 + audioSeconds / speed);
+		String seed = job.hasNonNull("hash") ? job.get("hash").asText() : path.getFileName().toString();
+		List<String> words = words(Math.max(SEGMENT_WORDS, (int) (audioSeconds * WORDS_PER_SECOND)), seed.hashCode());
+
+		if (job.path("segments").asBoolean(false)) {
+			double secondsPerWord = audioSeconds / words.size();
+			for (int start = 0; start < words.size(); start += SEGMENT_WORDS) {
+				int end = Math.min(words.size(), start + SEGMENT_WORDS);
+				emit(message(id, "segment")
+						.put("start", start * secondsPerWord)
+						.put("end", end * secondsPerWord)
+						.put("text", " " + String.join(" ", words.subList(start, end))));
+			}
+		}
+
+		String transcription = String.join(" ", words);
+		ObjectNode result = message(id, "result").put("transcription", transcription);
+		ObjectNode timings = objectMapper.createObjectNode().put("transcribe", transcribeSeconds);
+		if (job.path("summarize").asBoolean(true)) {
+			result.put("summary", summary(transcription));
+			timings.put("summarize", sleep(summarizeDelay.toNanos() / 1e9));
+		}
+		result.set("timings", timings);
+		emit(result);
+	}
+
+	private void summarize(JsonNode job, JsonNode id) {
+		ObjectNode result = message(id, "result");
+		double seconds = sleep(summarizeDelay.toNanos() / 1e9);
+		if (job.has("texts")) {
+			ArrayNode summaries = result.putArray("summaries");
+			job.get("texts").forEach(text -> summaries.add(summary(text.asText())));
+		} else {
+			result.put("summary", summary(job.path("text").asText()));
+		}
+		result.putObject("timings").put("summarize", seconds);
+		emit(result);
+	}
+
+	private ObjectNode message(JsonNode id, String event) {
+		ObjectNode message = objectMapper.createObjectNode();
+		message.set("id", id);
+		return message.put("event", event);
+	}
+
+	private void emit(ObjectNode message) {
+		out.println(message);
+		out.flush();
+	}
+
+	private static String summary(String text) {
+		String[] words = text.strip().split("\\s+");
+		return String.join(" ", List.of(words).subList(0, Math.min(words.length, SUMMARY_WORDS)));
+	}
+
+	private static List<String> words(int count, long seed) {
+		Random random = new Random(seed);
+		List<String> words = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			words.add(WORDS[random.nextInt(WORDS.length)] + (random.nextInt(12) == 0 ? "." : ""));
+		}
+		return words;
+	}
+
+	/**
+	 * @return the seconds slept
+	 */
+	private static double sleep(double seconds) {
+		long start = System.nanoTime();
+		try {
+			Thread.sleep(Duration.ofNanos((long) (seconds * 1e9)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return (System.nanoTime() - start) / 1e9;
+	}
+}
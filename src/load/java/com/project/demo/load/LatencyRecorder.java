@@ -0,0 +1,71 @@
+package com.project.demo.load;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and failures of one scenario. Percentiles are exact, every latency is kept until the run ends.
+ */
+final class LatencyRecorder {
+
+	private final String scenario;
+	private long[] latencies = new long[1024];
+	private int count;
+	private final Map<String, Integer> failures = new TreeMap<>();
+	private int failureCount;
+	private long lastEnd;
+
+	LatencyRecorder(String scenario) {
+		this.scenario = scenario;
+	}
+
+	synchronized void success(long startNanos, long endNanos) {
+		if (count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, count * 2);
+		}
+		latencies[count++] = endNanos - startNanos;
+		lastEnd = Math.max(lastEnd, endNanos);
+	}
+
+	synchronized void failure(long endNanos, String reason) {
+		failures.merge(reason, 1, Integer::sum);
+		failureCount++;
+		lastEnd = Math.max(lastEnd, endNanos);
+	}
+
+	/**
+	 * @param measureStart when the measured part of the run began, throughput counts from there to the end of
+	 *                     the last request
+	 */
+	synchronized Result result(long measureStart) {
+		long[] sorted = Arrays.copyOf(latencies, count);
+		Arrays.sort(sorted);
+		double seconds = Math.max(1, lastEnd - measureStart) / 1e9;
+		return new Result(scenario, count + failureCount, failureCount, count / seconds,
+				percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+				count == 0 ? 0 : sorted[count - 1] / 1e6, new TreeMap<>(failures));
+	}
+
+	/**
+	 * Nearest rank, in milliseconds.
+	 */
+	private static double percentile(long[] sorted, double quantile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(quantile * sorted.length);
+		return sorted[Math.max(0, rank - 1)] / 1e6;
+	}
+
+	/**
+	 * Latencies are of successful requests in milliseconds, throughput is successful requests per second.
+	 */
+	record Result(String scenario, long requests, long errors, double throughput, double p50, double p95,
+				  double p99, double max, Map<String, Integer> failures) {
+
+		double errorRate() {
+			return requests == 0 ? 0 : (double) errors / requests;
+		}
+	}
+}
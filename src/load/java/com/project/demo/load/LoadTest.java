@@ -0,0 +1,402 @@
+package com.project.demo.load;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.project.demo.DemoApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application against {@link StubGeminiServer} and {@link FakeTranscriber} workers and loads it
+ * with three scenarios at once: {@code upload} sends a recording to {@code /api/jobs} and waits for the job's
+ * result, {@code process} asks {@code /api/process} for a Gemini answer and {@code models} lists the models
+ * from {@code /api/models}, the catalogue behind the {@code /models} page. Prints p50, p95, p99 latency and
+ * throughput per scenario and exits with 1 when a threshold of {@link LoadTestOptions} is crossed, which fails
+ * the build.
+ */
+public final class LoadTest {
+
+	static final String UPLOAD = "upload";
+	static final String PROCESS = "process";
+	static final String MODELS = "models";
+	private static final List<String> SCENARIOS = List.of(UPLOAD, PROCESS, MODELS);
+
+	private static final String[] WORDS = {"the", "speaker", "said", "that", "audio", "model", "whisper", "summary",
+			"meeting", "project", "budget", "deadline", "we", "will", "need", "to", "review", "results", "next", "week",
+			"and", "a", "of", "in", "is", "it", "for", "on", "with", "team"};
+	// MPEG 1 layer III, 128 kbit/s, 44.1 kHz, no padding: 417 bytes and 1152 samples a frame
+	private static final byte[] FRAME_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+	private static final int FRAME_LENGTH = 417;
+	private static final double FRAMES_PER_SECOND = 44100 / 1152.0;
+	private static final Duration POLL_INTERVAL = Duration.ofMillis(25);
+	private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+	private static final int MAX_REASON_LENGTH = 100;
+
+	private final LoadTestOptions options;
+	private final URI application;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AtomicLong recordings = new AtomicLong();
+
+	private LoadTest(LoadTestOptions options, URI application) {
+		this.options = options;
+		this.application = application;
+	}
+
+	public static void main(String[] args) throws Exception {
+		LoadTestOptions options = LoadTestOptions.parse(args);
+		Path workDir = Files.createTempDirectory("load-test");
+		List<String> violations;
+		try (StubGeminiServer gemini = StubGeminiServer.start(options.geminiLatency(), options.geminiJitter(),
+				options.geminiErrorRate());
+			 ConfigurableApplicationContext context = startApplication(options, gemini, workDir)) {
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			LoadTest test = new LoadTest(options, URI.create("http://127.0.0.1:" + port));
+			System.out.printf("Warming up for %s, then measuring for %s%n", options.warmup(), options.duration());
+
+			List<LatencyRecorder.Result> results = test.run();
+
+			test.print(results, gemini);
+			if (options.report() != null) {
+				test.write(results, options.report());
+			}
+			violations = test.check(results);
+		} finally {
+			deleteRecursively(workDir);
+		}
+		violations.forEach(violation -> System.err.println("Load test failed: " + violation));
+		// Worker processes and pools of the stopped application must not keep the build waiting
+		System.exit(violations.isEmpty() ? 0 : 1);
+	}
+
+	/**
+	 * The application with everything it writes in {@code workDir}, Gemini pointed at the stub and the Python
+	 * worker replaced by the fake transcriber, started in this JVM on a free port.
+	 */
+	private static ConfigurableApplicationContext startApplication(LoadTestOptions options, StubGeminiServer gemini,
+																   Path workDir) {
+		// The restart class loader of devtools is of no use here and only slows the start
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		String java = ProcessHandle.current().info().command().orElse("java");
+		List<String> worker = List.of(java, "-XX:TieredStopAtLevel=1", "-cp", System.getProperty("java.class.path"),
+				FakeTranscriber.class.getName(),
+				"delay=" + options.transcribeDelay(),
+				"speed=" + options.transcribeSpeed(),
+				"summarize-delay=" + options.summarizeDelay());
+		int parallelJobs = options.parallelJobs();
+
+		List<String> args = new ArrayList<>(List.of(
+				"--server.port=0",
+				"--spring.main.banner-mode=off",
+				"--logging.level.root=WARN",
+				"--spring.ai.openai.api-key=load-test",
+				"--gemini.base-url=" + gemini.baseUrl(),
+				"--gemini.http2=false",
+				"--storage.location=" + workDir.resolve("upload-dir"),
+				"--storage.catalog-file=" + workDir.resolve("file-catalog.json"),
+				"--result-cache.location=" + workDir.resolve("result-cache"),
+				"--history.location=" + workDir.resolve("history"),
+				"--search.location=" + workDir.resolve("search-index"),
+				"--retention.python-cache-location=" + workDir.resolve(".cache"),
+				"--worker.pool-size=" + parallelJobs,
+				"--jobs.max-parallel=" + parallelJobs,
+				"--jobs.queue-capacity=" + Math.max(32, 2 * options.users(UPLOAD))));
+		// Indexed, so a classpath with commas stays one argument
+		for (int i = 0; i < worker.size(); i++) {
+			args.add("--worker.command[" + i + "]=" + worker.get(i));
+		}
+		return SpringApplication.run(DemoApplication.class, args.toArray(String[]::new));
+	}
+
+	private List<LatencyRecorder.Result> run() {
+		long measureStart = System.nanoTime() + options.warmup().toNanos();
+		long end = measureStart + options.duration().toNanos();
+		Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+		try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (String scenario : SCENARIOS) {
+				LatencyRecorder recorder = new LatencyRecorder(scenario);
+				recorders.put(scenario, recorder);
+				for (int user = 0; user < options.users(scenario); user++) {
+					int userIndex = user;
+					users.execute(() -> user(scenario, userIndex, recorder, measureStart, end));
+				}
+			}
+		}
+		return recorders.values().stream().map(recorder -> recorder.result(measureStart)).toList();
+	}
+
+	@FunctionalInterface
+	private interface Request {
+		void send() throws Exception;
+	}
+
+	/**
+	 * One user sending requests back to back until {@code end}. Requests started before {@code measureStart}
+	 * are not recorded, a request running at the end is waited for.
+	 */
+	private void user(String scenario, int user, LatencyRecorder recorder, long measureStart, long end) {
+		// Every user has its own session, the upload users' preference decides how their jobs are summarized
+		try (HttpClient client = HttpClient.newBuilder()
+				.cookieHandler(new CookieManager())
+				.version(HttpClient.Version.HTTP_1_1)
+				.build()) {
+			Request request = switch (scenario) {
+				case UPLOAD -> {
+					boolean gemini = user < Math.round(options.users(UPLOAD) * options.geminiShare());
+					preferGemini(client, gemini);
+					yield () -> upload(client);
+				}
+				case PROCESS -> () -> process(client);
+				default -> () -> models(client);
+			};
+			while (System.nanoTime() < end) {
+				long start = System.nanoTime();
+				try {
+					request.send();
+					if (start >= measureStart) {
+						recorder.success(start, System.nanoTime());
+					}
+				} catch (Exception e) {
+					if (start >= measureStart) {
+						recorder.failure(System.nanoTime(), reason(e));
+					}
+				}
+			}
+		} catch (Exception e) {
+			recorder.failure(System.nanoTime(), "user could not start: " + reason(e));
+		}
+	}
+
+	private void preferGemini(HttpClient client, boolean gemini) throws Exception {
+		ObjectNode preference = objectMapper.createObjectNode()
+				.put("method", gemini ? "gemini" : "python")
+				.put("modelId", gemini ? "gemini-2.0-flash" : "");
+		expect(200, client.send(post("/api/preferences", preference), HttpResponse.BodyHandlers.ofString()));
+	}
+
+	/**
+	 * Uploads a recording no one uploaded before, so neither the result cache nor the history answers it,
+	 * and waits until its job is done.
+	 */
+	private void upload(HttpClient client) throws Exception {
+		long id = recordings.incrementAndGet();
+		String boundary = "load-test-" + id;
+		byte[] head = ("--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"file\"; filename=\"load-" + id + ".mp3\"\r\n"
+				+ "Content-Type: audio/mpeg\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+		byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+		HttpRequest submit = HttpRequest.newBuilder(application.resolve("/api/jobs"))
+				.timeout(REQUEST_TIMEOUT)
+				.header("Content-Type", "multipart/form-data; boundary=" + boundary)
+				.POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, recording(id), tail)))
+				.build();
+		HttpResponse<String> submitted = client.send(submit, HttpResponse.BodyHandlers.ofString());
+		expect(202, submitted);
+		String jobId = objectMapper.readTree(submitted.body()).path("jobId").asText();
+
+		long deadline = System.nanoTime() + options.jobTimeout().toNanos();
+		while (System.nanoTime() < deadline) {
+			Thread.sleep(POLL_INTERVAL);
+			HttpResponse<String> response = client.send(get("/api/jobs/" + jobId), HttpResponse.BodyHandlers.ofString());
+			expect(200, response);
+			JsonNode job = objectMapper.readTree(response.body());
+			String status = job.path("status").asText();
+			switch (status) {
+				case "DONE" -> {
+					return;
+				}
+				case "FAILED", "CANCELLED" -> throw new IllegalStateException(
+						"job " + status.toLowerCase(Locale.ROOT) + ": " + job.path("error").asText());
+				default -> {
+					// still queued or running
+				}
+			}
+		}
+		throw new IllegalStateException("job not done within " + options.jobTimeout());
+	}
+
+	private void process(HttpClient client) throws Exception {
+		long prompt = ThreadLocalRandom.current().nextInt(options.prompts());
+		ObjectNode request = objectMapper.createObjectNode()
+				.put("prompt", "Summarize this transcript: " + words(200, prompt))
+				.put("method", "gemini");
+		HttpResponse<String> response = client.send(post("/api/process", request), HttpResponse.BodyHandlers.ofString());
+		expect(200, response);
+		JsonNode answer = objectMapper.readTree(response.body());
+		if (answer.hasNonNull("error")) {
+			throw new IllegalStateException(answer.get("error").asText());
+		}
+	}
+
+	private void models(HttpClient client) throws Exception {
+		expect(200, client.send(get("/api/models"), HttpResponse.BodyHandlers.discarding()));
+	}
+
+	private HttpRequest get(String path) {
+		return HttpRequest.newBuilder(application.resolve(path)).timeout(REQUEST_TIMEOUT).GET().build();
+	}
+
+	private HttpRequest post(String path, JsonNode body) throws IOException {
+		return HttpRequest.newBuilder(application.resolve(path))
+				.timeout(REQUEST_TIMEOUT)
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+				.build();
+	}
+
+	private static void expect(int status, HttpResponse<?> response) {
+		if (response.statusCode() != status) {
+			throw new IllegalStateException("HTTP " + response.statusCode());
+		}
+	}
+
+	private static String reason(Exception e) {
+		if (e instanceof HttpTimeoutException) {
+			return "timed out";
+		}
+		if (e instanceof IOException) {
+			return "I/O error: " + e.getClass().getSimpleName();
+		}
+		String reason = String.valueOf(e.getMessage());
+		return reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) + "..." : reason;
+	}
+
+	/**
+	 * Silent MP3 frames as long as {@code recording-length}, the id is written into the first frame's payload
+	 * so every recording has its own hash.
+	 */
+	private byte[] recording(long id) {
+		int frames = (int) Math.ceil(options.recordingLength().toMillis() / 1000.0 * FRAMES_PER_SECOND);
+		byte[] recording = new byte[frames * FRAME_LENGTH];
+		for (int i = 0; i < frames; i++) {
+			System.arraycopy(FRAME_HEADER, 0, recording, i * FRAME_LENGTH, FRAME_HEADER.length);
+		}
+		byte[] tag = Long.toString(id).getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(tag, 0, recording, FRAME_HEADER.length, tag.length);
+		return recording;
+	}
+
+	private static String words(int count, long seed) {
+		Random random = new Random(seed);
+		StringBuilder text = new StringBuilder(count * 7);
+		for (int i = 0; i < count; i++) {
+			text.append(WORDS[random.nextInt(WORDS.length)]);
+			text.append(random.nextInt(12) == 0 ? ". " : " ");
+		}
+		return text.toString().strip();
+	}
+
+	private void print(List<LatencyRecorder.Result> results, StubGeminiServer gemini) {
+		System.out.printf("%n%-10s %6s %9s %7s %13s %9s %9s %9s %9s%n",
+				"Scenario", "Users", "Requests", "Errors", "Throughput/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+		for (LatencyRecorder.Result result : results) {
+			System.out.printf(Locale.ROOT, "%-10s %6d %9d %7d %13.2f %9.1f %9.1f %9.1f %9.1f%n",
+					result.scenario(), options.users(result.scenario()), result.requests(), result.errors(),
+					result.throughput(), result.p50(), result.p95(), result.p99(), result.max());
+			result.failures().forEach((reason, count) -> System.out.printf("    %5d x %s%n", count, reason));
+		}
+		System.out.printf("%nStub Gemini answered %d requests, %d of them with an injected 503%n",
+				gemini.getRequests(), gemini.getFailures());
+	}
+
+	private void write(List<LatencyRecorder.Result> results, Path report) throws IOException {
+		ObjectNode root = objectMapper.createObjectNode();
+		root.put("duration", options.duration().toString());
+		ObjectNode scenarios = root.putObject("scenarios");
+		for (LatencyRecorder.Result result : results) {
+			ObjectNode scenario = scenarios.putObject(result.scenario());
+			scenario.put("users", options.users(result.scenario()));
+			scenario.put("requests", result.requests());
+			scenario.put("errors", result.errors());
+			scenario.put("errorRate", result.errorRate());
+			scenario.put("throughput", result.throughput());
+			scenario.put("p50", result.p50());
+			scenario.put("p95", result.p95());
+			scenario.put("p99", result.p99());
+			scenario.put("max", result.max());
+			scenario.set("failures", objectMapper.valueToTree(result.failures()));
+		}
+		Path parent = report.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		objectMapper.writerWithDefaultPrettyPrinter().writeValue(report.toFile(), root);
+		System.out.println("Results written to " + report);
+	}
+
+	/**
+	 * @return the thresholds that were crossed, empty when the run passed
+	 */
+	private List<String> check(List<LatencyRecorder.Result> results) throws IOException {
+		List<String> violations = new ArrayList<>();
+		JsonNode baseline = options.baseline() == null ? null
+				: objectMapper.readTree(options.baseline().toFile()).path("scenarios");
+		double tolerance = options.tolerance();
+		for (LatencyRecorder.Result result : results) {
+			String scenario = result.scenario();
+			if (result.requests() == 0) {
+				violations.add(scenario + ": no request was measured");
+				continue;
+			}
+			if (result.errorRate() > options.maxErrorRate()) {
+				violations.add(String.format(Locale.ROOT, "%s: %.1f%% of requests failed, at most %.1f%% may",
+						scenario, 100 * result.errorRate(), 100 * options.maxErrorRate()));
+			}
+			Duration maxP95 = options.maxP95(scenario);
+			if (maxP95 != null && result.p95() > maxP95.toNanos() / 1e6) {
+				violations.add(String.format(Locale.ROOT, "%s: p95 of %.1f ms is above the limit of %s",
+						scenario, result.p95(), maxP95));
+			}
+			Double minThroughput = options.minThroughput(scenario);
+			if (minThroughput != null && result.throughput() < minThroughput) {
+				violations.add(String.format(Locale.ROOT, "%s: %.2f requests/s is below the limit of %.2f",
+						scenario, result.throughput(), minThroughput));
+			}
+			JsonNode before = baseline == null ? null : baseline.get(scenario);
+			if (before != null) {
+				double p95 = before.path("p95").asDouble();
+				if (result.p95() > p95 * (1 + tolerance)) {
+					violations.add(String.format(Locale.ROOT, "%s: p95 of %.1f ms is more than %.0f%% above the "
+							+ "baseline's %.1f ms", scenario, result.p95(), 100 * tolerance, p95));
+				}
+				double throughput = before.path("throughput").asDouble();
+				if (result.throughput() < throughput * (1 - tolerance)) {
+					violations.add(String.format(Locale.ROOT, "%s: %.2f requests/s is more than %.0f%% below the "
+							+ "baseline's %.2f", scenario, result.throughput(), 100 * tolerance, throughput));
+				}
+			}
+		}
+		return violations;
+	}
+
+	private static void deleteRecursively(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+}
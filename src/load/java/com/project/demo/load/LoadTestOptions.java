@@ -0,0 +1,160 @@
+package com.project.demo.load;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, given as {@code key=value} arguments. Thresholds are optional,
+ * {@code max-p95.<scenario>=PT0.5S} and {@code min-throughput.<scenario>=20} apply to one scenario.
+ */
+final class LoadTestOptions {
+
+	private final Map<String, String> values = new HashMap<>();
+
+	static LoadTestOptions parse(String... args) {
+		LoadTestOptions options = new LoadTestOptions();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 1) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			options.values.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		return options;
+	}
+
+	private String get(String key, String defaultValue) {
+		String value = values.get(key);
+		return value == null || value.isBlank() ? defaultValue : value.strip();
+	}
+
+	/**
+	 * Measured part of the run, after the warmup.
+	 */
+	Duration duration() {
+		return Duration.parse(get("duration", "PT30S"));
+	}
+
+	/**
+	 * Load before the measured part, lets the JIT, the worker pool and the connection pools settle.
+	 */
+	Duration warmup() {
+		return Duration.parse(get("warmup", "PT10S"));
+	}
+
+	/**
+	 * Concurrent users of a scenario, each sends its next request once the previous one is answered.
+	 */
+	int users(String scenario) {
+		return Integer.parseInt(get(scenario + "-users", switch (scenario) {
+			case LoadTest.UPLOAD -> "4";
+			case LoadTest.PROCESS -> "8";
+			default -> "2";
+		}));
+	}
+
+	/**
+	 * Length of every uploaded recording.
+	 */
+	Duration recordingLength() {
+		return Duration.parse(get("recording-length", "PT30S"));
+	}
+
+	/**
+	 * Share of upload users that have Gemini summarize their recordings instead of BART.
+	 */
+	double geminiShare() {
+		return Double.parseDouble(get("gemini-share", "0.5"));
+	}
+
+	/**
+	 * Different prompts {@code /api/process} is asked, a smaller pool means more Gemini cache hits.
+	 */
+	int prompts() {
+		return Integer.parseInt(get("prompts", "1000"));
+	}
+
+	Duration geminiLatency() {
+		return Duration.parse(get("gemini-latency", "PT0.2S"));
+	}
+
+	Duration geminiJitter() {
+		return Duration.parse(get("gemini-jitter", "PT0.05S"));
+	}
+
+	/**
+	 * Share of Gemini requests the stub answers with 503.
+	 */
+	double geminiErrorRate() {
+		return Double.parseDouble(get("gemini-error-rate", "0.02"));
+	}
+
+	/**
+	 * Time the fake transcriber takes for every transcription, on top of the recording length divided by
+	 * {@link #transcribeSpeed()}.
+	 */
+	Duration transcribeDelay() {
+		return Duration.parse(get("transcribe-delay", "PT0.5S"));
+	}
+
+	/**
+	 * Seconds of audio the fake transcriber transcribes in a second.
+	 */
+	double transcribeSpeed() {
+		return Double.parseDouble(get("transcribe-speed", "60"));
+	}
+
+	Duration summarizeDelay() {
+		return Duration.parse(get("summarize-delay", "PT0.1S"));
+	}
+
+	/**
+	 * Jobs run at once, also the number of fake transcriber processes.
+	 */
+	int parallelJobs() {
+		return Integer.parseInt(get("parallel-jobs", "4"));
+	}
+
+	/**
+	 * Longest a job may take from upload to result before it counts as failed.
+	 */
+	Duration jobTimeout() {
+		return Duration.parse(get("job-timeout", "PT2M"));
+	}
+
+	/**
+	 * Where the results are written as JSON, nothing is written when empty.
+	 */
+	Path report() {
+		String report = get("report", "");
+		return report.isEmpty() ? null : Path.of(report);
+	}
+
+	/**
+	 * A report of an earlier run to compare with, p95 and throughput may be worse by {@link #tolerance()}.
+	 */
+	Path baseline() {
+		String baseline = get("baseline", "");
+		return baseline.isEmpty() ? null : Path.of(baseline);
+	}
+
+	double tolerance() {
+		return Double.parseDouble(get("tolerance", "0.2"));
+	}
+
+	double maxErrorRate() {
+		return Double.parseDouble(get("max-error-rate", "0.01"));
+	}
+
+	Duration maxP95(String scenario) {
+		String value = get("max-p95." + scenario, "");
+		return value.isEmpty() ? null : Duration.parse(value);
+	}
+
+	Double minThroughput(String scenario) {
+		String value = get("min-throughput." + scenario, "");
+		return value.isEmpty() ? null : Double.valueOf(value);
+	}
+}
@@ -0,0 +1,146 @@
+package com.project.demo.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the generativelanguage endpoints the application calls: {@code :generateContent},
+ * {@code :streamGenerateContent} and the model list. Every request waits the configured latency, plus or minus
+ * the jitter, and fails with 503 at the configured rate. Answers are the first words of the prompt.
+ */
+final class StubGeminiServer implements AutoCloseable {
+
+	private static final int SUMMARY_WORDS = 40;
+	private static final String MODELS = """
+			{"object":"list","data":[
+			{"id":"models/gemini-2.0-flash","object":"model","owned_by":"google"},
+			{"id":"models/gemini-1.5-pro","object":"model","owned_by":"google"}]}""";
+
+	private final HttpServer server;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final Duration latency;
+	private final Duration jitter;
+	private final double errorRate;
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	private StubGeminiServer(Duration latency, Duration jitter, double errorRate) throws IOException {
+		this.latency = latency;
+		this.jitter = jitter;
+		this.errorRate = errorRate;
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext("/", this::handle);
+	}
+
+	static StubGeminiServer start(Duration latency, Duration jitter, double errorRate) throws IOException {
+		StubGeminiServer stub = new StubGeminiServer(latency, jitter, errorRate);
+		stub.server.start();
+		return stub;
+	}
+
+	String baseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Requests answered with an injected 503.
+	 */
+	long getFailures() {
+		return failures.get();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		try (exchange) {
+			byte[] request = exchange.getRequestBody().readAllBytes();
+			delay();
+			String path = exchange.getRequestURI().getPath();
+			if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+				failures.incrementAndGet();
+				respond(exchange, 503, "application/json",
+						"{\"error\":{\"code\":503,\"message\":\"Injected failure\",\"status\":\"UNAVAILABLE\"}}");
+			} else if (path.endsWith(":generateContent")) {
+				respond(exchange, 200, "application/json", answer(summary(request)).toString());
+			} else if (path.endsWith(":streamGenerateContent")) {
+				StringBuilder events = new StringBuilder();
+				for (String chunk : chunks(summary(request))) {
+					events.append("data: ").append(answer(chunk)).append("\r\n\r\n");
+				}
+				respond(exchange, 200, "text/event-stream", events.toString());
+			} else if (path.equals("/v1beta/openai/models")) {
+				respond(exchange, 200, "application/json", MODELS);
+			} else {
+				respond(exchange, 404, "application/json", "{\"error\":{\"code\":404,\"status\":\"NOT_FOUND\"}}");
+			}
+		} catch (IOException ignored) {
+			// the application gave up on the request, its deadline is part of what is measured
+		}
+	}
+
+	private void delay() {
+		long base = latency.toNanos();
+		long spread = jitter.toNanos();
+		long nanos = spread == 0 ? base : base + ThreadLocalRandom.current().nextLong(-spread, spread + 1);
+		try {
+			Thread.sleep(Duration.ofNanos(Math.max(0, nanos)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private String summary(byte[] request) throws IOException {
+		JsonNode prompt = objectMapper.readTree(request).path("contents").path(0).path("parts").path(0).path("text");
+		String[] words = prompt.asText().strip().split("\\s+");
+		return String.join(" ", Arrays.copyOf(words, Math.min(words.length, SUMMARY_WORDS)));
+	}
+
+	private static String[] chunks(String text) {
+		int third = Math.max(1, text.length() / 3);
+		return new String[] {text.substring(0, Math.min(third, text.length())),
+				text.substring(Math.min(third, text.length()), Math.min(2 * third, text.length())),
+				text.substring(Math.min(2 * third, text.length()))};
+	}
+
+	private ObjectNode answer(String text) {
+		ObjectNode response = objectMapper.createObjectNode();
+		ObjectNode candidate = response.putArray("candidates").addObject();
+		ObjectNode content = candidate.putObject("content");
+		content.putArray("parts").addObject().put("text", text);
+		content.put("role", "model");
+		candidate.put("finishReason", "STOP");
+		return response;
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, String body)
+			throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+}
@@ -0,0 +1,114 @@
+package com.project.demo.controller;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.project.demo.model.TranscriptionBatch;
+import com.project.demo.model.UserPreference;
+import com.project.demo.properties.JobProperties;
+import com.project.demo.service.BatchArchive;
+import com.project.demo.service.BatchService;
+import com.project.demo.service.PreferenceStore;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+@Controller
+public class BatchController {
+    private final BatchService batchService;
+    private final BatchArchive batchArchive;
+    private final PreferenceStore preferenceStore;
+    private final JobProperties jobProperties;
+
+    @Autowired
+    public BatchController(BatchService batchService, BatchArchive batchArchive, PreferenceStore preferenceStore,
+                           JobProperties jobProperties) {
+        this.batchService = batchService;
+        this.batchArchive = batchArchive;
+        this.preferenceStore = preferenceStore;
+        this.jobProperties = jobProperties;
+    }
+
+    @PostMapping("/api/batches")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> submitBatch(@RequestParam("files") List<MultipartFile> files,
+                                                           HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+
+        if (files.isEmpty() || files.size() > jobProperties.getBatchMaxFiles()) {
+            response.put("error", "Please select between 1 and " + jobProperties.getBatchMaxFiles() + " .mp3 files");
+            return ResponseEntity.badRequest().body(response);
+        }
+        for (MultipartFile file : files) {
+            String originalFileName = file.getOriginalFilename();
+            if (file.isEmpty() || originalFileName == null || !originalFileName.toLowerCase().endsWith(".mp3")) {
+                response.put("error", "Not a .mp3 file: " + originalFileName);
+                return ResponseEntity.badRequest().body(response);
+            }
+        }
+
+        UserPreference preference = preferenceStore.get(session.getId()).orElse(null);
+        TranscriptionBatch batch = preference != null && "gemini".equals(preference.processingMethod())
+                ? batchService.submit(files, session.getId(), "gemini", preference.modelId())
+                : batchService.submit(files, session.getId(), "python", null);
+
+        response.put("batchId", batch.getId());
+        response.put("total", batch.getTotal());
+        response.put("statusUrl", "/api/batches/" + batch.getId());
+        response.put("archiveUrl", "/api/batches/" + batch.getId() + "/archive");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/api/batches/{batchId}")
+    @ResponseBody
+    public ResponseEntity<TranscriptionBatch> getBatch(@PathVariable String batchId) {
+        return ResponseEntity.of(batchService.getBatch(batchId));
+    }
+
+    @PostMapping("/api/batches/{batchId}/cancel")
+    @ResponseBody
+    public ResponseEntity<TranscriptionBatch> cancelBatch(@PathVariable String batchId) {
+        return batchService.getBatch(batchId)
+                .map(batch -> {
+                    batchService.cancel(batch);
+                    return ResponseEntity.accepted().body(batch);
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Results finished so far, the batch does not have to be complete.
+     *
+     * @param format {@code zip} or {@code jsonl}
+     */
+    @GetMapping("/api/batches/{batchId}/archive")
+    public void downloadArchive(@PathVariable String batchId, @RequestParam(defaultValue = "zip") String format,
+                                HttpServletResponse response) throws IOException {
+        TranscriptionBatch batch = batchService.getBatch(batchId).orElse(null);
+        if (batch == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        BatchArchive.Format archiveFormat;
+        try {
+            archiveFormat = BatchArchive.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        response.setContentType(archiveFormat.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("batch-" + batch.getId() + "." + archiveFormat.getExtension())
+                .build().toString());
+        batchArchive.write(batch, archiveFormat, response.getOutputStream());
+    }
+}
@@ -1,76 +1,101 @@
 package com.project.demo.controller;
 
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
-import java.util.stream.Collectors;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.exceptions.InvalidAudioException;
+import com.project.demo.exceptions.QueueFullException;
 import com.project.demo.exceptions.StorageFileNotFoundException;
+import com.project.demo.model.FileEntry;
+import com.project.demo.model.StoredFile;
+import com.project.demo.model.TranscriptionJob;
+import com.project.demo.model.UserPreference;
+import com.project.demo.service.FileTransferService;
+import com.project.demo.service.PreferenceStore;
 import com.project.demo.service.StorageService;
-import io.micrometer.core.instrument.Metrics;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBuilder;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
-import com.project.demo.controller.GeminiModelController.UserPreference;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
 
 @Controller
 public class FileUploadController {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final StorageService storageService;
-    private final GeminiModelController geminiModelController;
+    private final TranscriptionJobController transcriptionJobController;
+    private final FileTransferService fileTransferService;
+    private final PreferenceStore preferenceStore;
 
     @Autowired
-    public FileUploadController(StorageService storageService, GeminiModelController geminiModelController) {
+    public FileUploadController(StorageService storageService, TranscriptionJobController transcriptionJobController,
+                                FileTransferService fileTransferService, PreferenceStore preferenceStore) {
         this.storageService = storageService;
-        this.geminiModelController = geminiModelController;
+        this.transcriptionJobController = transcriptionJobController;
+        this.fileTransferService = fileTransferService;
+        this.preferenceStore = preferenceStore;
     }
 
     @GetMapping("/")
-    public String listUploadedFiles(Model model) throws IOException {
+    public String listUploadedFiles(Model model, @RequestParam(defaultValue = "0") int page) {
 
-        model.addAttribute("files", storageService.loadAll().map(
-                        path -> MvcUriComponentsBuilder.fromMethodName(FileUploadController.class,
-                                "serveFile", path.getFileName().toString()).build().toUri().toString())
-                .collect(Collectors.toList()));
+        // Newest uploads first, one page of the in-memory catalogue
+        model.addAttribute("files", storageService.list(Math.max(page, 0), DEFAULT_PAGE_SIZE, "uploadedAt", true));
 
         return "uploadForm";
     }
 
-    @GetMapping("/files/{filename:.+}")
+    @GetMapping("/api/files")
     @ResponseBody
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename) {
-
-        Resource file = storageService.loadAsResource(filename);
-
-        if (file == null)
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<?> listFiles(@RequestParam(defaultValue = "0") int page,
+                                       @RequestParam(defaultValue = "20") int size,
+                                       @RequestParam(defaultValue = "uploadedAt") String sort,
+                                       @RequestParam(defaultValue = "desc") String direction) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE));
+        }
+        try {
+            return ResponseEntity.ok(storageService.list(page, size, sort, "desc".equalsIgnoreCase(direction)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-        return ResponseEntity.ok().header(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=\"" + file.getFilename() + "\"").body(file);
+    /**
+     * Supports Range and conditional requests, so players can seek and reviewers revalidate for free.
+     */
+    @GetMapping("/files/{hash}")
+    public void serveFile(@PathVariable String hash, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        FileEntry entry = storageService.describe(hash);
+        storageService.touch(hash);
+        try {
+            // Content never changes under a hash, so the hash is the ETag as well
+            fileTransferService.send(storageService.load(hash), hash, entry.filename(), request, response);
+        } catch (NoSuchFileException e) {
+            throw new StorageFileNotFoundException("Could not read file: " + entry.filename(), e);
+        }
     }
     
     @GetMapping("/api/preferences")
     @ResponseBody
     public Map<String, String> getUserPreferences(HttpSession session) {
         Map<String, String> preferences = new HashMap<>();
-        UserPreference userPref = GeminiModelController.getUserPreference(session.getId());
+        Optional<UserPreference> userPref = preferenceStore.get(session.getId());
         
-        if (userPref != null) {
-            preferences.put("method", userPref.getProcessingMethod());
-            preferences.put("modelId", userPref.getModelId());
+        if (userPref.isPresent()) {
+            preferences.put("method", userPref.get().processingMethod());
+            preferences.put("modelId", userPref.get().modelId());
         } else {
             preferences.put("method", "python");
             preferences.put("modelId", "");
@@ -86,10 +111,7 @@ public class FileUploadController {
         String modelId = request.get("modelId");
         
         // Save preference
-        GeminiModelController.getUserPreferences().put(
-            session.getId(), 
-            new UserPreference(method, modelId)
-        );
+        preferenceStore.put(session.getId(), new UserPreference(method, modelId));
         
         Map<String, Boolean> response = new HashMap<>();
         response.put("success", true);
@@ -112,70 +134,23 @@ public class FileUploadController {
                 return "redirect:/";
             }
 
-            storageService.store(file);
-
-            String filePath = storageService.getStorageLocation().resolve(originalFileName).toAbsolutePath().toString();
-
-            UserPreference preference = GeminiModelController.getUserPreference(session.getId());
-            
-            String transcription;
-            String summary;
-            Map<String, Double> metrics;
-            boolean useGemini = false;
-            String modelId = null;
-            
-            if (preference != null && "gemini".equals(preference.getProcessingMethod())) {
-                useGemini = true;
-                modelId = preference.getModelId();
+            transcriptionJobController.checkCapacity();
+            StoredFile storedFile = transcriptionJobController.store(file);
 
-                String jsonOutput = processPythonScript(filePath);
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode resultJson = mapper.readTree(jsonOutput);
-                
-                if (resultJson.has("error")) {
-                    throw new RuntimeException("Python script error: " + resultJson.get("error").asText());
-                }
-                
-                transcription = resultJson.get("transcription").asText();
+            // Processing continues in the background, the page follows it over /api/jobs/{id}/events
+            TranscriptionJob job = transcriptionJobController.submit(storedFile, session);
 
-                String geminiSummary = "";
-                try {
-                    geminiSummary = this.geminiModelController.processWithGemini(
-                        "Summarize the following transcription into a concise paragraph: " + transcription, 
-                        modelId
-                    );
-                } catch (Exception e) {
-                    geminiSummary = "Error using Gemini API. Falling back to Python summary: " + e.getMessage();
-                    geminiSummary += "\n\n" + resultJson.get("summary").asText();
-                }
-                
-                summary = geminiSummary;
-                
-                metrics = calculateMetrics(transcription, geminiSummary);
-                
-            } else {
-                String jsonOutput = processPythonScript(filePath);
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode resultJson = mapper.readTree(jsonOutput);
-                
-                if (resultJson.has("error")) {
-                    throw new RuntimeException("Python script error: " + resultJson.get("error").asText());
-                }
-                
-                transcription = resultJson.get("transcription").asText();
-                summary = resultJson.get("summary").asText();
-                metrics = calculateMetrics(transcription, summary);
-            }
-
-            redirectAttributes.addFlashAttribute("transcription", transcription);
-            redirectAttributes.addFlashAttribute("summary", summary);
-            redirectAttributes.addFlashAttribute("metrics", metrics);
-            redirectAttributes.addFlashAttribute("processResult", true);
-            redirectAttributes.addFlashAttribute("useGemini", useGemini);
-            redirectAttributes.addFlashAttribute("modelId", modelId);
+            redirectAttributes.addFlashAttribute("jobId", job.getId());
             redirectAttributes.addFlashAttribute("message", 
-                "You successfully uploaded " + originalFileName + " and processed it!");
+                "You successfully uploaded " + originalFileName + ", processing has started.");
 
+            return "redirect:/";
+        } catch (QueueFullException e) {
+            redirectAttributes.addFlashAttribute("message",
+                "The server is busy, please try again in " + e.getRetryAfter().toSeconds() + " seconds.");
+            return "redirect:/";
+        } catch (InvalidAudioException e) {
+            redirectAttributes.addFlashAttribute("message", e.getMessage());
             return "redirect:/";
         } catch (Exception e) {
             e.printStackTrace();
@@ -184,82 +159,6 @@ public class FileUploadController {
         }
     }
 
-
-    private Map<String, Double> calculateMetrics(String originalText, String summaryText) {
-        Map<String, Double> metrics = new HashMap<>();
-
-        String[] originalWords = originalText.toLowerCase()
-                .replaceAll("[^a-zA-Z0-9\\s]", "")
-                .split("\\s+");
-
-        String[] summaryWords = summaryText.toLowerCase()
-                .replaceAll("[^a-zA-Z0-9\\s]", "")
-                .split("\\s+");
-
-        // Calculate ROUGE-1 (unigrams)
-        Set<String> originalUnigrams = new HashSet<>(Arrays.asList(originalWords));
-        Set<String> summaryUnigrams = new HashSet<>(Arrays.asList(summaryWords));
-
-        // Calculate intersections
-        int matchingUnigrams = 0;
-        for (String unigram : summaryUnigrams) {
-            if (originalUnigrams.contains(unigram)) {
-                matchingUnigrams++;
-            }
-        }
-
-        double rouge1Precision = summaryUnigrams.isEmpty() ? 0.0 :
-                (matchingUnigrams / (double) summaryUnigrams.size()) * 100;
-        double rouge1Recall = originalUnigrams.isEmpty() ? 0.0 :
-                (matchingUnigrams / (double) originalUnigrams.size()) * 100;
-        double rouge1F1 = (rouge1Precision + rouge1Recall > 0) ?
-                2 * (rouge1Precision * rouge1Recall) / (rouge1Precision + rouge1Recall) : 0.0;
-
-        // Round to 2 decimal places
-        metrics.put("precision", Math.round(rouge1Precision * 100.0) / 100.0);
-        metrics.put("recall", Math.round(rouge1Recall * 100.0) / 100.0);
-        metrics.put("fScore", Math.round(rouge1F1 * 100.0) / 100.0);
-
-        return metrics;
-    }
-    private String processPythonScript(String filePath) throws IOException, InterruptedException {
-        Process process = getProcess(filePath);
-
-        BufferedReader stdoutReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        StringBuilder stdoutOutput = new StringBuilder();
-        String line;
-        while ((line = stdoutReader.readLine()) != null) {
-            stdoutOutput.append(line);
-        }
-
-
-        String jsonOutput = stdoutOutput.toString().trim();
-        if (jsonOutput.isEmpty()) {
-            throw new RuntimeException("No output received from Python script");
-        }
-        return jsonOutput;
-    }
-
-    private static Process getProcess(String filePath) throws IOException {
-        File file = new File(filePath);
-        if (!file.exists()) {
-            throw new IOException("File does not exist: " + filePath);
-        }
-
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                "python",  // lub pełna ścieżka do Python
-                "main.py",
-                filePath
-        );
-
-        processBuilder.redirectErrorStream(false);
-
-        Process process = processBuilder.start();
-        return process;
-    }
-
-
-
     @ExceptionHandler(StorageFileNotFoundException.class)
     public ResponseEntity<?> handleStorageFileNotFound(StorageFileNotFoundException exc)
     {
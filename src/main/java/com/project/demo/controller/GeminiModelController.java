@@ -1,73 +1,83 @@
 package com.project.demo.controller;
 
+import com.project.demo.exceptions.GeminiUnavailableException;
 import com.project.demo.model.GeminiModel;
-import com.project.demo.model.ModelListResponse;
-import org.hibernate.validator.internal.constraintvalidators.bv.notempty.NotEmptyValidatorForArraysOfBoolean;
+import com.project.demo.model.UserPreference;
+import com.project.demo.service.CancellationToken;
+import com.project.demo.service.GeminiClient;
+import com.project.demo.service.GeminiModelCatalog;
+import com.project.demo.service.PreferenceStore;
+import com.project.demo.service.TranscriptionPipeline;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestClient;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import jakarta.servlet.http.HttpSession;
 
 @Controller // Allow usage of html templates
 public class GeminiModelController {
-    @Value("${spring.ai.openai.api-key}")
-    private String GEMINI_API_KEY;
-    
-    @Value("${spring.ai.openai.chat.options.model}")
-    private String DEFAULT_MODEL;
-    
-    private final RestClient restClient;
-    private final ObjectMapper objectMapper;
-    
-    private static final Map<String, UserPreference> userPreferences = new HashMap<>();
+    private final GeminiClient geminiClient;
+    private final TranscriptionPipeline pipeline;
+    private final GeminiModelCatalog modelCatalog;
+    private final PreferenceStore preferenceStore;
+    private final ExecutorService streamExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Duration STREAM_TIMEOUT = Duration.ofMinutes(5);
+    private static final int MAX_TEXTS = 100;
     
     @Autowired
-    public GeminiModelController(RestClient.Builder builder, ObjectMapper objectMapper) {
-        this.restClient = builder
-                .baseUrl("https://generativelanguage.googleapis.com")
-                .build();
-        this.objectMapper = objectMapper;
+    public GeminiModelController(GeminiClient geminiClient, TranscriptionPipeline pipeline,
+                                 GeminiModelCatalog modelCatalog, PreferenceStore preferenceStore) {
+        this.geminiClient = geminiClient;
+        this.pipeline = pipeline;
+        this.modelCatalog = modelCatalog;
+        this.preferenceStore = preferenceStore;
     }
 
     @GetMapping("/api/models")
     @ResponseBody
     public List<GeminiModel> apiModels() {
-        ResponseEntity<ModelListResponse> response = restClient.get()
-                .uri("/v1beta/openai/models")
-                .header("Authorization", "Bearer " + GEMINI_API_KEY)  // Zachowanie poprzedniego formatu
-                .retrieve()
-                .toEntity(ModelListResponse.class);
-        return Objects.requireNonNull(response.getBody()).data();
+        return modelCatalog.getModels();
     }
     
     @GetMapping("/models")
     public String modelsPage(Model model) {
-        ResponseEntity<ModelListResponse> response = restClient.get()
-                .uri("/v1beta/openai/models")
-                .header("Authorization", "Bearer " + GEMINI_API_KEY)  // Zachowanie poprzedniego formatu
-                .retrieve()
-                .toEntity(ModelListResponse.class);
-        
-        model.addAttribute("models", Objects.requireNonNull(response.getBody()).data());
+        model.addAttribute("models", modelCatalog.getModels());
         return "models";
     }
+
+    /**
+     * The model list could not be loaded at all, asks the client to come back once the failure backoff is over.
+     */
+    @ExceptionHandler(GeminiUnavailableException.class)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> handleUnavailable(GeminiUnavailableException e) {
+        long seconds = modelCatalog.getRetryAfter().toSeconds();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+                .body(Map.of("error", e.getMessage(), "retryAfterSeconds", seconds));
+    }
     
+    /**
+     * Answers a Gemini prompt or summarizes a text with BART. With {@code texts} instead of {@code prompt}
+     * every text is processed the same way and {@code results} holds one answer per text, in order. BART
+     * summarizes concurrent texts in shared batches.
+     */
     @PostMapping("/api/process")
     @ResponseBody
     public Map<String, Object> processText(@RequestBody Map<String, Object> request, HttpSession session) {
@@ -81,14 +91,20 @@ public class GeminiModelController {
             Boolean savePreference = (Boolean) request.getOrDefault("savePreference", false);
             
             if (savePreference) {
-                userPreferences.put(sessionId, new UserPreference(method, modelId));
+                preferenceStore.put(sessionId, new UserPreference(method, modelId));
                 result.put("preferenceSaved", true);
             }
             
-            if ("python".equals(method)) {
-                result.putAll(processPythonText(prompt));
+            if (request.get("texts") instanceof List<?> texts) {
+                if (texts.size() > MAX_TEXTS) {
+                    result.put("error", "At most " + MAX_TEXTS + " texts can be processed at once");
+                } else {
+                    result.put("results", processTexts(texts, method, modelId));
+                }
+            } else if ("python".equals(method)) {
+                result.putAll(processPythonText(prompt, new CancellationToken()));
             } else {
-                result.put("response", processWithGemini(prompt, modelId));
+                result.put("response", geminiClient.generateContent(prompt, modelId));
             }
             
         } catch (Exception e) {
@@ -100,136 +116,100 @@ public class GeminiModelController {
     
 
     
-    private Map<String, Object> processPythonText(String text) throws IOException {
-        Map<String, Object> result = new HashMap<>();
-        
-        // Create a temporary file to hold the text
-        Path tempFile = Files.createTempFile("text_to_process", ".txt");
-        Files.writeString(tempFile, text);
-        
-        try {
-            // Call Python script with the temp file path
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    "python",
-                    "main.py",
-                    tempFile.toString()
-            );
-            
-            processBuilder.redirectErrorStream(false);
-            Process process = processBuilder.start();
-            
-            BufferedReader stdoutReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = stdoutReader.readLine()) != null) {
-                output.append(line);
-            }
-            
-            ObjectMapper mapper = new ObjectMapper();
-            Map<String, Object> pythonResult = mapper.readValue(output.toString(), Map.class);
-            
-            result.put("transcription", pythonResult.getOrDefault("transcription", "No transcription available"));
-            result.put("summary", pythonResult.getOrDefault("summary", "No summary available"));
-            
-        } catch (Exception e) {
-            result.put("error", "Error processing text with Python script: " + e.getMessage());
-        } finally {
-            try {
-                Files.deleteIfExists(tempFile);
-            } catch (IOException e) {
-                System.err.println("Failed to delete temporary file: " + e.getMessage());
-            }
+    /**
+     * Same input as {@code /api/process}, but Gemini answers are pushed as {@code token} events while
+     * they are generated and finished with a {@code done} event. Closing the stream aborts the upstream call.
+     */
+    @PostMapping(path = "/api/process/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter processTextStream(@RequestBody Map<String, Object> request, HttpSession session) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT.toMillis());
+        CancellationToken cancellation = new CancellationToken();
+        emitter.onCompletion(() -> cancellation.cancel("Stream closed"));
+        emitter.onTimeout(() -> cancellation.cancel("Stream timed out"));
+        emitter.onError(e -> cancellation.cancel("Client disconnected"));
+
+        String prompt = (String) request.get("prompt");
+        String method = (String) request.get("method");
+        String modelId = (String) request.get("modelId");
+        if (Boolean.TRUE.equals(request.get("savePreference"))) {
+            preferenceStore.put(session.getId(), new UserPreference(method, modelId));
         }
-        
-        return result;
-    }
-    
-    public String processWithGemini(String text, String modelId) {
-        try {
-            System.out.println("Calling Gemini API with text: " + text.substring(0, Math.min(50, text.length())) + "...");
-            System.out.println("Using model: " + (modelId != null ? modelId : DEFAULT_MODEL));
-            
-            ObjectNode requestBody = objectMapper.createObjectNode();
-            
-            ObjectNode contentNode = objectMapper.createObjectNode();
-            
-            ObjectNode textPart = objectMapper.createObjectNode();
-            textPart.put("text", text);
-            
-            contentNode.set("parts", objectMapper.createArrayNode().add(textPart));
-            
-            contentNode.put("role", "user");
-            
-            requestBody.set("contents", objectMapper.createArrayNode().add(contentNode));
-            
-            ObjectNode generationConfig = requestBody.putObject("generationConfig");
-            generationConfig.put("temperature", 0.7);
-            generationConfig.put("maxOutputTokens", 800);
-            
-            String model = modelId != null && !modelId.isEmpty() ? modelId : DEFAULT_MODEL;
-            
-            System.out.println("Request body: " + requestBody.toPrettyString());
-            
-            ResponseEntity<Map> response = restClient.post()
-                    .uri("/v1/models/" + model + ":generateContent")
-                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                    .header("x-goog-api-key", GEMINI_API_KEY)
-                    .body(requestBody)
-                    .retrieve()
-                    .toEntity(Map.class);
-            
-            System.out.println("API response status: " + response.getStatusCode());
-            if (response.getBody() != null) {
-                System.out.println("Response contains keys: " + response.getBody().keySet());
-            }
-            
-            if (response.getBody() != null && response.getBody().containsKey("candidates")) {
-                List<Map<String, Object>> candidates = (List<Map<String, Object>>) response.getBody().get("candidates");
-                if (!candidates.isEmpty()) {
-                    Map<String, Object> firstCandidate = candidates.get(0);
-                    if (firstCandidate.containsKey("content")) {
-                        Map<String, Object> responseContent = (Map<String, Object>) firstCandidate.get("content");
-                        if (responseContent.containsKey("parts")) {
-                            List<Map<String, Object>> parts = (List<Map<String, Object>>) responseContent.get("parts");
-                            if (!parts.isEmpty() && parts.get(0).containsKey("text")) {
-                                return (String) parts.get(0).get("text");
-                            }
+
+        streamExecutor.execute(() -> {
+            try {
+                if ("python".equals(method)) {
+                    emitter.send(SseEmitter.event().name("done").data(processPythonText(prompt, cancellation)));
+                } else {
+                    String response = geminiClient.streamGenerateContent(prompt, modelId, token -> {
+                        try {
+                            emitter.send(SseEmitter.event().name("token").data(Map.of("text", token)));
+                        } catch (IOException e) {
+                            // Nobody is listening anymore, stop paying for the generation
+                            cancellation.cancel("Client disconnected");
                         }
-                    }
+                    }, cancellation);
+                    emitter.send(SseEmitter.event().name("done").data(Map.of("response", response)));
+                }
+                emitter.complete();
+            } catch (CancellationException e) {
+                emitter.complete();
+            } catch (Exception e) {
+                try {
+                    emitter.send(SseEmitter.event().name("error").data(Map.of("error", String.valueOf(e.getMessage()))));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException ignored) {
+                    emitter.completeWithError(e);
                 }
             }
-            
-            return "No valid response from Gemini API. Response: " + response.getBody();
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "Error calling Gemini API: " + e.getMessage();
-        }
+        });
+        return emitter;
     }
-    
-    public static UserPreference getUserPreference(String sessionId) {
-        return userPreferences.get(sessionId);
+
+    @PreDestroy
+    public void shutdown() {
+        streamExecutor.shutdownNow();
     }
-    
-    public static class UserPreference {
-        private final String processingMethod;
-        private final String modelId;
-        
-        public UserPreference(String processingMethod, String modelId) {
-            this.processingMethod = processingMethod;
-            this.modelId = modelId;
-        }
-        
-        public String getProcessingMethod() {
-            return processingMethod;
+
+    private List<Map<String, Object>> processTexts(List<?> texts, String method, String modelId)
+            throws InterruptedException {
+        List<Future<Map<String, Object>>> futures = new ArrayList<>(texts.size());
+        for (Object text : texts) {
+            futures.add(streamExecutor.submit(() -> {
+                if ("python".equals(method)) {
+                    return processPythonText(String.valueOf(text), new CancellationToken());
+                }
+                try {
+                    String response = geminiClient.generateContent(String.valueOf(text), modelId);
+                    return Map.<String, Object>of("response", response);
+                } catch (Exception e) {
+                    return Map.<String, Object>of("error", String.valueOf(e.getMessage()));
+                }
+            }));
         }
-        
-        public String getModelId() {
-            return modelId;
+        List<Map<String, Object>> results = new ArrayList<>(futures.size());
+        for (Future<Map<String, Object>> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                results.add(Map.of("error", String.valueOf(e.getCause().getMessage())));
+            }
         }
+        return results;
     }
 
-    public static Map<String, UserPreference> getUserPreferences() {
-        return userPreferences;
+    /**
+     * BART summary of the text itself, sent to the worker as is. Cancelling the token stops the summary.
+     */
+    private Map<String, Object> processPythonText(String text, CancellationToken cancellation) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.put("summary", pipeline.pythonSummary(text, cancellation));
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            result.put("error", "Error processing text with Python script: " + e.getMessage());
+        }
+        return result;
     }
 }
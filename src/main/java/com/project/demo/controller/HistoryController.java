@@ -0,0 +1,43 @@
+package com.project.demo.controller;
+
+import java.util.Map;
+
+import com.project.demo.model.HistoryEntry;
+import com.project.demo.service.HistoryStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+@Controller
+public class HistoryController {
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final HistoryStore historyStore;
+
+    @Autowired
+    public HistoryController(HistoryStore historyStore) {
+        this.historyStore = historyStore;
+    }
+
+    /**
+     * Past results newest first, of a single upload with {@code fileHash}. Entries come without their
+     * transcription, {@code /api/history/{id}} has the whole result.
+     */
+    @GetMapping("/api/history")
+    @ResponseBody
+    public ResponseEntity<?> listHistory(@RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(defaultValue = "20") int size,
+                                         @RequestParam(required = false) String fileHash) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE));
+        }
+        return ResponseEntity.ok(historyStore.list(fileHash, page, size));
+    }
+
+    @GetMapping("/api/history/{id}")
+    @ResponseBody
+    public ResponseEntity<HistoryEntry> getHistoryEntry(@PathVariable long id) {
+        return ResponseEntity.of(historyStore.get(id));
+    }
+}
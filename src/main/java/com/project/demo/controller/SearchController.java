@@ -0,0 +1,33 @@
+package com.project.demo.controller;
+
+import java.util.Map;
+
+import com.project.demo.service.SearchIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+@Controller
+public class SearchController {
+    private static final int MAX_LIMIT = 50;
+
+    private final SearchIndex searchIndex;
+
+    @Autowired
+    public SearchController(SearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Transcriptions that mention the words of {@code q}, best match first, with the segments they are said in.
+     */
+    @GetMapping("/api/search")
+    @ResponseBody
+    public ResponseEntity<?> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        if (q.isBlank() || limit < 1 || limit > MAX_LIMIT) {
+            return ResponseEntity.badRequest().body(Map.of("error", "q must not be empty and limit between 1 and " + MAX_LIMIT));
+        }
+        return ResponseEntity.ok(searchIndex.search(q, limit));
+    }
+}
@@ -0,0 +1,133 @@
+package com.project.demo.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.project.demo.exceptions.InvalidAudioException;
+import com.project.demo.exceptions.QueueFullException;
+import com.project.demo.model.StoredFile;
+import com.project.demo.model.TranscriptionJob;
+import com.project.demo.model.UserPreference;
+import com.project.demo.service.PipelineMetrics;
+import com.project.demo.service.PreferenceStore;
+import com.project.demo.service.StorageService;
+import com.project.demo.service.TranscriptionJobService;
+import com.project.demo.service.TranscriptionScheduler;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Controller
+public class TranscriptionJobController {
+    private final StorageService storageService;
+    private final TranscriptionJobService jobService;
+    private final PipelineMetrics pipelineMetrics;
+    private final PreferenceStore preferenceStore;
+    private final TranscriptionScheduler scheduler;
+
+    @Autowired
+    public TranscriptionJobController(StorageService storageService, TranscriptionJobService jobService,
+                                      PipelineMetrics pipelineMetrics, PreferenceStore preferenceStore,
+                                      TranscriptionScheduler scheduler) {
+        this.storageService = storageService;
+        this.jobService = jobService;
+        this.pipelineMetrics = pipelineMetrics;
+        this.preferenceStore = preferenceStore;
+        this.scheduler = scheduler;
+    }
+
+    @PostMapping("/api/jobs")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> submitJob(@RequestParam("file") MultipartFile file, HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+
+        String originalFileName = file.getOriginalFilename();
+        if (file.isEmpty() || originalFileName == null || !originalFileName.toLowerCase().endsWith(".mp3")) {
+            response.put("error", "Please select a .mp3 file");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        // Rejected before the upload is written, submit() checks again under the scheduler lock
+        checkCapacity();
+        StoredFile storedFile = store(file);
+        TranscriptionJob job = submit(storedFile, session);
+
+        response.put("jobId", job.getId());
+        response.put("status", job.getStatus());
+        response.put("statusUrl", "/api/jobs/" + job.getId());
+        response.put("eventsUrl", "/api/jobs/" + job.getId() + "/events");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/api/jobs/{jobId}")
+    @ResponseBody
+    public ResponseEntity<TranscriptionJob> getJob(@PathVariable String jobId) {
+        return ResponseEntity.of(jobService.getJob(jobId));
+    }
+
+    /**
+     * Stops a queued or running job, answers 409 when it had already finished.
+     */
+    @PostMapping("/api/jobs/{jobId}/cancel")
+    @ResponseBody
+    public ResponseEntity<TranscriptionJob> cancelJob(@PathVariable String jobId) {
+        return jobService.getJob(jobId)
+                .map(job -> jobService.cancel(job)
+                        ? ResponseEntity.accepted().body(job)
+                        : ResponseEntity.status(HttpStatus.CONFLICT).body(job))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(path = "/api/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> jobEvents(@PathVariable String jobId) {
+        return jobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(jobService.subscribe(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    StoredFile store(MultipartFile file) {
+        return pipelineMetrics.time(PipelineMetrics.Stage.STORE, () -> storageService.storeAudio(file));
+    }
+
+    /**
+     * Queues an already stored upload with the processing method the session picked.
+     */
+    TranscriptionJob submit(StoredFile storedFile, HttpSession session) {
+        UserPreference preference = preferenceStore.get(session.getId()).orElse(null);
+
+        if (preference != null && "gemini".equals(preference.processingMethod())) {
+            return jobService.submit(storedFile, session.getId(), "gemini", preference.modelId());
+        }
+        return jobService.submit(storedFile, session.getId(), "python", null);
+    }
+
+    /**
+     * Fails fast when no job could be queued right now.
+     */
+    void checkCapacity() {
+        scheduler.checkCapacity();
+    }
+
+    @ExceptionHandler(InvalidAudioException.class)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> handleInvalidAudio(InvalidAudioException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(QueueFullException.class)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> handleQueueFull(QueueFullException e) {
+        long seconds = e.getRetryAfter().toSeconds();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+                .body(Map.of("error", e.getMessage(), "retryAfterSeconds", seconds));
+    }
+}
@@ -0,0 +1,24 @@
+package com.project.demo.exceptions;
+
+public class GeminiException extends RuntimeException {
+    private final int statusCode;
+
+    public GeminiException(String message) {
+        this(message, 0);
+    }
+    public GeminiException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+    public GeminiException(String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = 0;
+    }
+
+    /**
+     * HTTP status returned by the API, 0 when no response was received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,14 @@
+package com.project.demo.exceptions;
+
+/**
+ * Thrown without contacting the API because the circuit is open or too many calls are already in flight,
+ * or when the model list has never been loaded and the API failed to list it.
+ */
+public class GeminiUnavailableException extends GeminiException {
+    public GeminiUnavailableException(String message) {
+        super(message);
+    }
+    public GeminiUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
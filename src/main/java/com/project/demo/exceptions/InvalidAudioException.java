@@ -0,0 +1,10 @@
+package com.project.demo.exceptions;
+
+/**
+ * An upload is not an MP3 stream this service can transcribe, or it is too long.
+ */
+public class InvalidAudioException extends StorageException {
+    public InvalidAudioException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,19 @@
+package com.project.demo.exceptions;
+
+import java.time.Duration;
+
+/**
+ * The transcription queue is at capacity, the client should try again after {@link #getRetryAfter()}.
+ */
+public class QueueFullException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public QueueFullException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
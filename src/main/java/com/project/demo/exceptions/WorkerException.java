@@ -0,0 +1,10 @@
+package com.project.demo.exceptions;
+
+public class WorkerException extends RuntimeException {
+    public WorkerException(String message) {
+        super(message);
+    }
+    public WorkerException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package com.project.demo.model;
+
+import java.time.Duration;
+
+/**
+ * What the MPEG frame headers of an upload say about it.
+ *
+ * @param bitrate average over all frames, in kbit/s
+ */
+public record AudioInfo(Duration duration, long frames, int bitrate, int sampleRate) {
+}
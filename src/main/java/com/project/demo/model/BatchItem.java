@@ -0,0 +1,64 @@
+package com.project.demo.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * One file of a batch. The job is set once the batch hands the file to the scheduler,
+ * an upload that could not be stored or was cancelled before it was queued only carries an error.
+ */
+public class BatchItem {
+    private final String fileName;
+    private final String fileHash;
+    private volatile TranscriptionJob job;
+    private volatile String error;
+    private volatile boolean cancelled;
+
+    public BatchItem(String fileName, String fileHash) {
+        this.fileName = fileName;
+        this.fileHash = fileHash;
+    }
+
+    public void assign(TranscriptionJob job) {
+        this.job = job;
+    }
+
+    public void fail(String error) {
+        this.error = error;
+    }
+
+    public void cancel(String reason) {
+        this.error = reason;
+        this.cancelled = true;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    @JsonIgnore
+    public TranscriptionJob getJob() {
+        return job;
+    }
+
+    public String getJobId() {
+        return job == null ? null : job.getId();
+    }
+
+    public JobStatus getStatus() {
+        if (job != null) {
+            return job.getStatus();
+        }
+        if (cancelled) {
+            return JobStatus.CANCELLED;
+        }
+        return error != null ? JobStatus.FAILED : JobStatus.QUEUED;
+    }
+
+    public String getError() {
+        return job != null ? job.getError() : error;
+    }
+}
@@ -0,0 +1,24 @@
+package com.project.demo.model;
+
+import java.time.Instant;
+
+/**
+ * Catalogue entry of one stored upload. Uploads are stored by content, so the hash identifies the entry
+ * and the original filename is only kept for display and downloads.
+ *
+ * @param hash SHA-256 hex of the content, also the name of the stored object
+ * @param uploadedAt time the content was first stored
+ * @param lastAccessedAt last upload, download or job for this content, drives least recently used eviction
+ * @param status state of the latest processing job, null when the file was never processed
+ */
+public record FileEntry(String filename, long size, String hash, Instant uploadedAt, Instant lastAccessedAt,
+                        JobStatus status) {
+
+    public FileEntry withStatus(JobStatus status) {
+        return new FileEntry(filename, size, hash, uploadedAt, lastAccessedAt, status);
+    }
+
+    public FileEntry withLastAccessedAt(Instant lastAccessedAt) {
+        return new FileEntry(filename, size, hash, uploadedAt, lastAccessedAt, status);
+    }
+}
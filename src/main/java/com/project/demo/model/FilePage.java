@@ -0,0 +1,21 @@
+package com.project.demo.model;
+
+import java.util.List;
+
+/**
+ * One page of the file catalogue, {@code page} counts from 0.
+ */
+public record FilePage(List<FileEntry> items, int page, int size, long total, String sort, String direction) {
+
+    public int getTotalPages() {
+        return (int) ((total + size - 1) / size);
+    }
+
+    public boolean hasPrevious() {
+        return page > 0;
+    }
+
+    public boolean hasNext() {
+        return (long) (page + 1) * size < total;
+    }
+}
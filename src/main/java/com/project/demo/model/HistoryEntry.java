@@ -0,0 +1,38 @@
+package com.project.demo.model;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One processing result as kept in the history, {@code id} is its position in the log and never changes.
+ *
+ * @param segments the transcription in timed pieces, in order
+ * @param fallback whether Gemini failed and the summary is the Python one, such results are not reused
+ * @param timings seconds spent queued and in each pipeline stage
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record HistoryEntry(long id, String fileHash, String fileName, String processingMethod, String modelId,
+                           String transcription, List<TranscriptSegment> segments, String summary,
+                           Map<String, Double> metrics, boolean useGemini, boolean fallback, Double audioSeconds,
+                           Map<String, Double> timings, Instant createdAt) {
+
+    public HistoryEntry withId(long id) {
+        return new HistoryEntry(id, fileHash, fileName, processingMethod, modelId, transcription, segments, summary,
+                metrics, useGemini, fallback, audioSeconds, timings, createdAt);
+    }
+
+    /**
+     * The entry as listed in a page, transcriptions of long recordings are only sent one at a time.
+     */
+    public HistoryEntry withoutTranscription() {
+        return new HistoryEntry(id, fileHash, fileName, processingMethod, modelId, null, null, summary,
+                metrics, useGemini, fallback, audioSeconds, timings, createdAt);
+    }
+
+    public TranscriptionResult toResult() {
+        return new TranscriptionResult(transcription, summary, metrics, useGemini, modelId);
+    }
+}
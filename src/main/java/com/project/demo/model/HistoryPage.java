@@ -0,0 +1,17 @@
+package com.project.demo.model;
+
+import java.util.List;
+
+/**
+ * One page of the result history, newest first, {@code page} counts from 0.
+ */
+public record HistoryPage(List<HistoryEntry> items, int page, int size, long total) {
+
+    public int getTotalPages() {
+        return (int) ((total + size - 1) / size);
+    }
+
+    public boolean hasNext() {
+        return (long) (page + 1) * size < total;
+    }
+}
@@ -0,0 +1,41 @@
+package com.project.demo.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ROUGE-1, ROUGE-2 and ROUGE-L of one summary against its source text, all in percent.
+ */
+public record RougeScores(Score rouge1, Score rouge2, Score rougeL) {
+
+    public record Score(double precision, double recall, double fScore) {
+
+        public static Score of(long matches, long candidateTotal, long referenceTotal) {
+            double precision = candidateTotal == 0 ? 0.0 : matches * 100.0 / candidateTotal;
+            double recall = referenceTotal == 0 ? 0.0 : matches * 100.0 / referenceTotal;
+            double fScore = precision + recall > 0 ? 2 * precision * recall / (precision + recall) : 0.0;
+            return new Score(precision, recall, fScore);
+        }
+    }
+
+    /**
+     * Flat map rounded to 2 decimal places, ROUGE-1 keeps the unprefixed keys the page already reads.
+     */
+    public Map<String, Double> toMetrics() {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        put(metrics, "", rouge1);
+        put(metrics, "rouge2", rouge2);
+        put(metrics, "rougeL", rougeL);
+        return metrics;
+    }
+
+    private static void put(Map<String, Double> metrics, String prefix, Score score) {
+        metrics.put(prefix.isEmpty() ? "precision" : prefix + "Precision", round(score.precision()));
+        metrics.put(prefix.isEmpty() ? "recall" : prefix + "Recall", round(score.recall()));
+        metrics.put(prefix.isEmpty() ? "fScore" : prefix + "FScore", round(score.fScore()));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
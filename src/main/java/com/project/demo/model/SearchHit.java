@@ -0,0 +1,18 @@
+package com.project.demo.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A transcription that matched a search, {@code historyId} leads to the whole result.
+ */
+public record SearchHit(long historyId, String fileHash, String fileName, double score, List<Snippet> snippets) {
+
+    /**
+     * Part of the transcription with query words, times are missing for results kept without segments.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Snippet(Double start, Double end, String text) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.project.demo.model;
+
+import java.util.List;
+
+/**
+ * Best matches of a search first, {@code matches} counts every transcription with a query word.
+ */
+public record SearchResults(String query, int matches, List<SearchHit> hits) {
+}
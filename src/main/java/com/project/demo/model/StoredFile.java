@@ -0,0 +1,15 @@
+package com.project.demo.model;
+
+import java.nio.file.Path;
+
+/**
+ * An upload as written to disk, with the SHA-256 of its content computed while it was copied.
+ *
+ * @param audio what the frame headers say, null when the upload was not stored as audio
+ */
+public record StoredFile(String filename, Path path, String hash, long size, AudioInfo audio) {
+
+    public StoredFile(String filename, Path path, String hash, long size) {
+        this(filename, path, hash, size, null);
+    }
+}
@@ -0,0 +1,7 @@
+package com.project.demo.model;
+
+/**
+ * A piece of a transcription as Whisper timed it, {@code start} and {@code end} in seconds of the recording.
+ */
+public record TranscriptSegment(double start, double end, String text) {
+}
@@ -0,0 +1,87 @@
+package com.project.demo.model;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A group of uploads submitted together. Progress is derived from the items' jobs on every read.
+ */
+public class TranscriptionBatch {
+    private final String id;
+    private final Instant createdAt = Instant.now();
+    private final List<BatchItem> items;
+    private volatile boolean cancelled;
+
+    public TranscriptionBatch(String id, List<BatchItem> items) {
+        this.id = id;
+        this.items = List.copyOf(items);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public List<BatchItem> getItems() {
+        return items;
+    }
+
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getTotal() {
+        return items.size();
+    }
+
+    public Map<JobStatus, Integer> getCounts() {
+        Map<JobStatus, Integer> counts = new EnumMap<>(JobStatus.class);
+        for (JobStatus status : JobStatus.values()) {
+            counts.put(status, 0);
+        }
+        for (BatchItem item : items) {
+            counts.merge(item.getStatus(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Share of finished files, between 0 and 1.
+     */
+    public double getProgress() {
+        if (items.isEmpty()) {
+            return 1;
+        }
+        return (double) items.stream().filter(item -> item.getStatus().isFinished()).count() / items.size();
+    }
+
+    public boolean isFinished() {
+        return items.stream().allMatch(item -> item.getStatus().isFinished());
+    }
+
+    /**
+     * When the last file finished, null while any is still pending.
+     */
+    public Instant getFinishedAt() {
+        Instant last = createdAt;
+        for (BatchItem item : items) {
+            if (!item.getStatus().isFinished()) {
+                return null;
+            }
+            TranscriptionJob job = item.getJob();
+            if (job != null && job.getFinishedAt() != null && job.getFinishedAt().isAfter(last)) {
+                last = job.getFinishedAt();
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,142 @@
+package com.project.demo.model;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.project.demo.service.CancellationToken;
+
+/**
+ * State of one uploaded file going through transcription and summarization.
+ * Written by the worker thread, read by status requests, hence the volatile fields.
+ */
+public class TranscriptionJob {
+    private final String id;
+    private final String fileName;
+    private final String filePath;
+    private final String fileHash;
+    private final String processingMethod;
+    private final String modelId;
+    private final Duration duration;
+    private final Instant createdAt = Instant.now();
+    private final CancellationToken cancellation = new CancellationToken();
+    private final CompletableFuture<TranscriptionJob> completion = new CompletableFuture<>();
+    private volatile JobStatus status = JobStatus.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile TranscriptionResult result;
+    private volatile String error;
+
+    public TranscriptionJob(String id, String fileName, String filePath, String fileHash,
+                            String processingMethod, String modelId) {
+        this(id, fileName, filePath, fileHash, processingMethod, modelId, null);
+    }
+
+    /**
+     * @param duration playing time of the upload, null when it was not read from its frame headers
+     */
+    public TranscriptionJob(String id, String fileName, String filePath, String fileHash,
+                            String processingMethod, String modelId, Duration duration) {
+        this.id = id;
+        this.fileName = fileName;
+        this.filePath = filePath;
+        this.fileHash = fileHash;
+        this.processingMethod = processingMethod;
+        this.modelId = modelId;
+        this.duration = duration;
+    }
+
+    public void markRunning() {
+        this.startedAt = Instant.now();
+        this.status = JobStatus.RUNNING;
+    }
+
+    public void markDone(TranscriptionResult result) {
+        this.result = result;
+        this.finishedAt = Instant.now();
+        this.status = JobStatus.DONE;
+        completion.complete(this);
+    }
+
+    public void markFailed(String error) {
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.status = JobStatus.FAILED;
+        completion.complete(this);
+    }
+
+    public void markCancelled(String reason) {
+        this.error = reason;
+        this.finishedAt = Instant.now();
+        this.status = JobStatus.CANCELLED;
+        completion.complete(this);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    @JsonIgnore
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public String getProcessingMethod() {
+        return processingMethod;
+    }
+
+    public String getModelId() {
+        return modelId;
+    }
+
+    @JsonIgnore
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @JsonIgnore
+    public CancellationToken getCancellation() {
+        return cancellation;
+    }
+
+    /**
+     * Completes with the job once it is done, failed or cancelled.
+     */
+    @JsonIgnore
+    public CompletableFuture<TranscriptionJob> getCompletion() {
+        return completion;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public TranscriptionResult getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,7 @@
+package com.project.demo.model;
+
+import java.util.Map;
+
+public record TranscriptionResult(String transcription, String summary, Map<String, Double> metrics,
+                                  boolean useGemini, String modelId) {
+}
@@ -0,0 +1,10 @@
+package com.project.demo.model;
+
+/**
+ * Processing method a session picked for its uploads and prompts.
+ *
+ * @param processingMethod {@code python} or {@code gemini}
+ * @param modelId Gemini model, null for the default or the Python pipeline
+ */
+public record UserPreference(String processingMethod, String modelId) {
+}
@@ -0,0 +1,39 @@
+package com.project.demo.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties("audio")
+public class AudioProperties {
+
+    /**
+     * Longest recording accepted, longer uploads are rejected while they arrive
+     */
+    private Duration maxDuration = Duration.ofHours(4);
+
+    /**
+     * Recordings longer than twice this are cut into chunks of about this length that idle workers
+     * transcribe in parallel, zero transcribes every recording in one piece
+     */
+    private Duration chunkDuration = Duration.ofMinutes(10);
+
+    public Duration getMaxDuration() {
+        return maxDuration;
+    }
+
+    public void setMaxDuration(Duration maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+
+    public Duration getChunkDuration() {
+        return chunkDuration;
+    }
+
+    public void setChunkDuration(Duration chunkDuration) {
+        this.chunkDuration = chunkDuration;
+    }
+
+}
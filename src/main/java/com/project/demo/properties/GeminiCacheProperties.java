@@ -0,0 +1,51 @@
+package com.project.demo.properties;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties("gemini-cache")
+public class GeminiCacheProperties {
+
+    /**
+     * Memory for cached Gemini answers, 0 turns the cache off
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(16);
+
+    /**
+     * Folder answers evicted from memory are kept in, empty keeps nothing on disk
+     */
+    private String spillLocation = "";
+
+    /**
+     * Total size of spilled answers on disk, least recently used ones are deleted above it
+     */
+    private DataSize spillMaxSize = DataSize.ofMegabytes(256);
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public String getSpillLocation() {
+        return spillLocation;
+    }
+
+    public void setSpillLocation(String spillLocation) {
+        this.spillLocation = spillLocation;
+    }
+
+    public DataSize getSpillMaxSize() {
+        return spillMaxSize;
+    }
+
+    public void setSpillMaxSize(DataSize spillMaxSize) {
+        this.spillMaxSize = spillMaxSize;
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.project.demo.properties;
+
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties("gemini")
+public class GeminiProperties {
+
+    /**
+     * Base URL of the Generative Language API
+     */
+    private String baseUrl = "https://generativelanguage.googleapis.com";
+
+    /**
+     * Prefer HTTP/2, the client falls back to HTTP/1.1 when the server does not offer it
+     */
+    private boolean http2 = true;
+
+    /**
+     * Time allowed for opening a connection
+     */
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Time allowed for a single attempt until response headers arrive
+     */
+    private Duration requestTimeout = Duration.ofSeconds(60);
+
+    /**
+     * Overall budget of one call, retries and backoff included
+     */
+    private Duration deadline = Duration.ofSeconds(90);
+
+    /**
+     * Attempts per call for 429, 5xx and I/O failures
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * First retry delay, doubled for every further attempt unless the server sends Retry-After
+     */
+    private Duration initialBackoff = Duration.ofMillis(500);
+
+    /**
+     * Upper bound of a single retry delay
+     */
+    private Duration maxBackoff = Duration.ofSeconds(10);
+
+    /**
+     * Maximum number of calls in flight, further callers wait up to bulkhead-wait
+     */
+    private int maxConcurrentCalls = 8;
+
+    /**
+     * How long a call waits for a free slot before failing fast
+     */
+    private Duration bulkheadWait = Duration.ofSeconds(2);
+
+    /**
+     * Consecutive failed calls that open the circuit
+     */
+    private int circuitFailureThreshold = 5;
+
+    /**
+     * How long an open circuit rejects calls before letting a probe through
+     */
+    private Duration circuitOpenDuration = Duration.ofSeconds(30);
+
+    /**
+     * How long the model list is served without asking the API again
+     */
+    private Duration modelsTtl = Duration.ofMinutes(10);
+
+    /**
+     * How long past its TTL a model list is still served while a refresh runs in the background
+     */
+    private Duration modelsStaleWhileRevalidate = Duration.ofHours(1);
+
+    /**
+     * Minimum pause between refresh attempts after the API failed to list models
+     */
+    private Duration modelsFailureBackoff = Duration.ofSeconds(30);
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Duration deadline) {
+        this.deadline = deadline;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public void setInitialBackoff(Duration initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    public Duration getBulkheadWait() {
+        return bulkheadWait;
+    }
+
+    public void setBulkheadWait(Duration bulkheadWait) {
+        this.bulkheadWait = bulkheadWait;
+    }
+
+    public int getCircuitFailureThreshold() {
+        return circuitFailureThreshold;
+    }
+
+    public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+        this.circuitFailureThreshold = circuitFailureThreshold;
+    }
+
+    public Duration getCircuitOpenDuration() {
+        return circuitOpenDuration;
+    }
+
+    public void setCircuitOpenDuration(Duration circuitOpenDuration) {
+        this.circuitOpenDuration = circuitOpenDuration;
+    }
+
+    public Duration getModelsTtl() {
+        return modelsTtl;
+    }
+
+    public void setModelsTtl(Duration modelsTtl) {
+        this.modelsTtl = modelsTtl;
+    }
+
+    public Duration getModelsStaleWhileRevalidate() {
+        return modelsStaleWhileRevalidate;
+    }
+
+    public void setModelsStaleWhileRevalidate(Duration modelsStaleWhileRevalidate) {
+        this.modelsStaleWhileRevalidate = modelsStaleWhileRevalidate;
+    }
+
+    public Duration getModelsFailureBackoff() {
+        return modelsFailureBackoff;
+    }
+
+    public void setModelsFailureBackoff(Duration modelsFailureBackoff) {
+        this.modelsFailureBackoff = modelsFailureBackoff;
+    }
+
+}
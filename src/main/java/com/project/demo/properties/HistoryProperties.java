@@ -0,0 +1,37 @@
+package com.project.demo.properties;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties("history")
+public class HistoryProperties {
+
+    /**
+     * Folder location for the result history log and its offset index
+     */
+    private String location = "history";
+
+    /**
+     * Whether every appended result is forced to the disk before the job is reported done
+     */
+    private boolean sync = true;
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.project.demo.properties;
+
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties("jobs")
+public class JobProperties {
+
+    /**
+     * How long finished jobs stay queryable
+     */
+    private Duration retention = Duration.ofHours(1);
+
+    /**
+     * How long a browser may stay subscribed to the progress stream of one job
+     */
+    private Duration sseTimeout = Duration.ofMinutes(30);
+
+    /**
+     * Longest a job may take from submission, it is cancelled beyond that. 0 disables the deadline
+     */
+    private Duration deadline = Duration.ofMinutes(30);
+
+    /**
+     * Jobs processed at the same time, 0 derives it from the cores, the memory and the worker pool size
+     */
+    private int maxParallel = 0;
+
+    /**
+     * Memory one Whisper and BART run needs, used when max-parallel is derived
+     */
+    private DataSize memoryPerJob = DataSize.ofGigabytes(2);
+
+    /**
+     * Jobs that may wait for a free slot, further uploads are answered with 429
+     */
+    private int queueCapacity = 32;
+
+    /**
+     * Files accepted in one batch upload
+     */
+    private int batchMaxFiles = 100;
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+
+    public Duration getSseTimeout() {
+        return sseTimeout;
+    }
+
+    public void setSseTimeout(Duration sseTimeout) {
+        this.sseTimeout = sseTimeout;
+    }
+
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Duration deadline) {
+        this.deadline = deadline;
+    }
+
+    public int getMaxParallel() {
+        return maxParallel;
+    }
+
+    public void setMaxParallel(int maxParallel) {
+        this.maxParallel = maxParallel;
+    }
+
+    public DataSize getMemoryPerJob() {
+        return memoryPerJob;
+    }
+
+    public void setMemoryPerJob(DataSize memoryPerJob) {
+        this.memoryPerJob = memoryPerJob;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getBatchMaxFiles() {
+        return batchMaxFiles;
+    }
+
+    public void setBatchMaxFiles(int batchMaxFiles) {
+        this.batchMaxFiles = batchMaxFiles;
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.project.demo.properties;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties("preferences")
+public class PreferenceProperties {
+
+    /**
+     * Sessions whose preferences are kept, the least recently used are dropped above it
+     */
+    private int maxSessions = 10000;
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+}
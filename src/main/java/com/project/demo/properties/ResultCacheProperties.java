@@ -0,0 +1,38 @@
+package com.project.demo.properties;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties("result-cache")
+public class ResultCacheProperties {
+
+    /**
+     * Folder location for cached processing results
+     */
+    private String location = "result-cache";
+
+    /**
+     * Total size of cached results on disk, least recently used entries are evicted above it
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+}
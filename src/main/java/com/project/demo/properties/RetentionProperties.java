@@ -0,0 +1,117 @@
+package com.project.demo.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties("retention")
+public class RetentionProperties {
+
+    /**
+     * Whether stored uploads and the Python cache are cleaned up in the background
+     */
+    private boolean enabled = true;
+
+    /**
+     * Files looked at per run and area, larger stores are covered over several runs
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Files used more recently than this are never removed, covers an upload until its job is queued
+     */
+    private Duration minIdle = Duration.ofMinutes(10);
+
+    /**
+     * Total size of stored uploads, least recently used ones are removed above it
+     */
+    private DataSize uploadsMaxSize = DataSize.ofGigabytes(10);
+
+    /**
+     * Uploads stored longer ago than this are removed, zero keeps them regardless of age
+     */
+    private Duration uploadsMaxAge = Duration.ofDays(30);
+
+    /**
+     * Folder the Python worker caches transcriptions in, relative to its working directory
+     */
+    private String pythonCacheLocation = ".cache";
+
+    /**
+     * Total size of the Python cache, least recently used entries are removed above it
+     */
+    private DataSize pythonCacheMaxSize = DataSize.ofGigabytes(1);
+
+    /**
+     * Python cache entries written longer ago than this are removed, zero keeps them regardless of age
+     */
+    private Duration pythonCacheMaxAge = Duration.ofDays(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(Duration minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public DataSize getUploadsMaxSize() {
+        return uploadsMaxSize;
+    }
+
+    public void setUploadsMaxSize(DataSize uploadsMaxSize) {
+        this.uploadsMaxSize = uploadsMaxSize;
+    }
+
+    public Duration getUploadsMaxAge() {
+        return uploadsMaxAge;
+    }
+
+    public void setUploadsMaxAge(Duration uploadsMaxAge) {
+        this.uploadsMaxAge = uploadsMaxAge;
+    }
+
+    public String getPythonCacheLocation() {
+        return pythonCacheLocation;
+    }
+
+    public void setPythonCacheLocation(String pythonCacheLocation) {
+        this.pythonCacheLocation = pythonCacheLocation;
+    }
+
+    public DataSize getPythonCacheMaxSize() {
+        return pythonCacheMaxSize;
+    }
+
+    public void setPythonCacheMaxSize(DataSize pythonCacheMaxSize) {
+        this.pythonCacheMaxSize = pythonCacheMaxSize;
+    }
+
+    public Duration getPythonCacheMaxAge() {
+        return pythonCacheMaxAge;
+    }
+
+    public void setPythonCacheMaxAge(Duration pythonCacheMaxAge) {
+        this.pythonCacheMaxAge = pythonCacheMaxAge;
+    }
+
+}
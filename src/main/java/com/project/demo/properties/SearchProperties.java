@@ -0,0 +1,39 @@
+package com.project.demo.properties;
+
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties("search")
+public class SearchProperties {
+
+    /**
+     * Folder location for the transcript search index
+     */
+    private String location = "search-index";
+
+    /**
+     * How often transcriptions indexed in memory are written to the index file
+     */
+    private Duration flushInterval = Duration.ofMinutes(1);
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+}
@@ -13,6 +13,11 @@ public class StorageProperties {
      */
     private String location = "upload-dir";
 
+    /**
+     * File the catalogue of stored uploads is saved to, so it is not rebuilt by hashing every upload again
+     */
+    private String catalogFile = "file-catalog.json";
+
     public String getLocation() {
         return location;
     }
@@ -21,4 +26,12 @@ public class StorageProperties {
         this.location = location;
     }
 
+    public String getCatalogFile() {
+        return catalogFile;
+    }
+
+    public void setCatalogFile(String catalogFile) {
+        this.catalogFile = catalogFile;
+    }
+
 }
@@ -0,0 +1,77 @@
+package com.project.demo.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties("summarizer")
+public class SummarizerProperties {
+
+    /**
+     * Estimated tokens per chunk sent to Gemini, longer transcriptions are summarized part by part
+     */
+    private int geminiChunkTokens = 4000;
+
+    /**
+     * Estimated tokens per chunk sent to BART, whose input window is 1024 tokens including the instruction
+     */
+    private int pythonChunkTokens = 700;
+
+    /**
+     * How many chunks of one transcription are summarized at the same time
+     */
+    private int maxParallelChunks = 4;
+
+    /**
+     * Most texts BART summarizes in one pass, concurrent requests are collected into batches up to this size
+     */
+    private int batchMaxSize = 8;
+
+    /**
+     * How long a summary request waits for others to join its batch
+     */
+    private Duration batchMaxDelay = Duration.ofMillis(20);
+
+    public int getGeminiChunkTokens() {
+        return geminiChunkTokens;
+    }
+
+    public void setGeminiChunkTokens(int geminiChunkTokens) {
+        this.geminiChunkTokens = geminiChunkTokens;
+    }
+
+    public int getPythonChunkTokens() {
+        return pythonChunkTokens;
+    }
+
+    public void setPythonChunkTokens(int pythonChunkTokens) {
+        this.pythonChunkTokens = pythonChunkTokens;
+    }
+
+    public int getMaxParallelChunks() {
+        return maxParallelChunks;
+    }
+
+    public void setMaxParallelChunks(int maxParallelChunks) {
+        this.maxParallelChunks = maxParallelChunks;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    public Duration getBatchMaxDelay() {
+        return batchMaxDelay;
+    }
+
+    public void setBatchMaxDelay(Duration batchMaxDelay) {
+        this.batchMaxDelay = batchMaxDelay;
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.project.demo.properties;
+
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties("worker")
+public class WorkerProperties {
+
+    /**
+     * Command used to start a worker; the script is expected to speak the JSON line protocol
+     */
+    private List<String> command = List.of("python", "main.py", "--worker");
+
+    /**
+     * Maximum number of worker processes alive at the same time
+     */
+    private int poolSize = 2;
+
+    /**
+     * Number of warm workers kept ready even when there is no traffic
+     */
+    private int minIdle = 0;
+
+    /**
+     * Number of jobs after which a worker is retired and replaced
+     */
+    private int maxJobsPerWorker = 50;
+
+    /**
+     * How long a worker may take to load its models before it is considered broken
+     */
+    private Duration startupTimeout = Duration.ofMinutes(3);
+
+    /**
+     * How long a request waits for a free worker
+     */
+    private Duration borrowTimeout = Duration.ofMinutes(5);
+
+    /**
+     * How long one job may take on a worker, a worker that does not answer in time is stopped
+     */
+    private Duration callTimeout = Duration.ofMinutes(30);
+
+    /**
+     * How often idle workers are pinged
+     */
+    private Duration healthCheckInterval = Duration.ofSeconds(30);
+
+    public List<String> getCommand() {
+        return command;
+    }
+
+    public void setCommand(List<String> command) {
+        this.command = command;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public int getMaxJobsPerWorker() {
+        return maxJobsPerWorker;
+    }
+
+    public void setMaxJobsPerWorker(int maxJobsPerWorker) {
+        this.maxJobsPerWorker = maxJobsPerWorker;
+    }
+
+    public Duration getStartupTimeout() {
+        return startupTimeout;
+    }
+
+    public void setStartupTimeout(Duration startupTimeout) {
+        this.startupTimeout = startupTimeout;
+    }
+
+    public Duration getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public void setBorrowTimeout(Duration borrowTimeout) {
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    public Duration getCallTimeout() {
+        return callTimeout;
+    }
+
+    public void setCallTimeout(Duration callTimeout) {
+        this.callTimeout = callTimeout;
+    }
+
+    public Duration getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    public void setHealthCheckInterval(Duration healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.model.BatchItem;
+import com.project.demo.model.JobStatus;
+import com.project.demo.model.TranscriptionBatch;
+import com.project.demo.model.TranscriptionJob;
+import com.project.demo.model.TranscriptionResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes the results of a batch as JSON lines or as a ZIP archive. Both are streamed item by item,
+ * only one transcript is held in memory at a time. Files still pending are listed with their status.
+ */
+@Component
+public class BatchArchive {
+
+    public enum Format {
+        ZIP("zip", "application/zip"),
+        JSONL("jsonl", "application/x-ndjson");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Format parse(String value) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown archive format " + value);
+        }
+    }
+
+    /**
+     * One line of the JSON lines archive and of the manifest in the ZIP.
+     */
+    record Line(String fileName, String fileHash, String jobId, JobStatus status, String error,
+                String processingMethod, String modelId, String transcription, String summary,
+                Map<String, Double> metrics) {
+    }
+
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public BatchArchive(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public void write(TranscriptionBatch batch, Format format, OutputStream out) throws IOException {
+        switch (format) {
+            case ZIP -> writeZip(batch, out);
+            case JSONL -> writeJsonLines(batch, out);
+        }
+    }
+
+    public void writeJsonLines(TranscriptionBatch batch, OutputStream out) throws IOException {
+        for (BatchItem item : batch.getItems()) {
+            writeLine(line(item), out);
+        }
+        out.flush();
+    }
+
+    /**
+     * A folder per file with {@code transcript.txt}, {@code summary.txt} and {@code metrics.json},
+     * or {@code error.txt} when it failed or was cancelled, plus {@code manifest.jsonl} without the texts.
+     */
+    public void writeZip(TranscriptionBatch batch, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        List<BatchItem> items = batch.getItems();
+        int width = Integer.toString(items.size()).length();
+        for (int i = 0; i < items.size(); i++) {
+            BatchItem item = items.get(i);
+            // Names may repeat within a batch, the position keeps the folders apart
+            String folder = String.format("%0" + width + "d-%s/", i + 1, folderName(item.getFileName()));
+            TranscriptionJob job = item.getJob();
+            TranscriptionResult result = job == null ? null : job.getResult();
+            if (item.getStatus() == JobStatus.DONE && result != null) {
+                writeEntry(zip, folder + "transcript.txt", text(result.transcription()));
+                writeEntry(zip, folder + "summary.txt", text(result.summary()));
+                writeEntry(zip, folder + "metrics.json", objectMapper.writeValueAsBytes(
+                        result.metrics() == null ? Map.of() : result.metrics()));
+            } else if (item.getStatus() == JobStatus.FAILED || item.getStatus() == JobStatus.CANCELLED) {
+                writeEntry(zip, folder + "error.txt", text(item.getError()));
+            }
+        }
+        zip.putNextEntry(new ZipEntry("manifest.jsonl"));
+        for (BatchItem item : items) {
+            Line line = line(item);
+            writeLine(new Line(line.fileName(), line.fileHash(), line.jobId(), line.status(), line.error(),
+                    line.processingMethod(), line.modelId(), null, null, line.metrics()), zip);
+        }
+        zip.closeEntry();
+        // Ends the archive but leaves the response stream to the caller
+        zip.finish();
+        out.flush();
+    }
+
+    private Line line(BatchItem item) {
+        TranscriptionJob job = item.getJob();
+        TranscriptionResult result = job == null ? null : job.getResult();
+        return new Line(item.getFileName(), item.getFileHash(), item.getJobId(), item.getStatus(), item.getError(),
+                job == null ? null : job.getProcessingMethod(), job == null ? null : job.getModelId(),
+                result == null ? null : result.transcription(), result == null ? null : result.summary(),
+                result == null ? null : result.metrics());
+    }
+
+    private void writeLine(Line line, OutputStream out) throws IOException {
+        // writeValue(OutputStream) would close the stream
+        out.write(objectMapper.writeValueAsBytes(line));
+        out.write('\n');
+    }
+
+    private static void writeEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static byte[] text(String value) {
+        return (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String folderName(String fileName) {
+        String name = fileName == null ? "file" : fileName;
+        if (name.toLowerCase().endsWith(".mp3")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.isEmpty() ? "file" : name;
+    }
+}
@@ -0,0 +1,178 @@
+package com.project.demo.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import com.project.demo.exceptions.QueueFullException;
+import com.project.demo.exceptions.StorageException;
+import com.project.demo.model.BatchItem;
+import com.project.demo.model.StoredFile;
+import com.project.demo.model.TranscriptionBatch;
+import com.project.demo.model.TranscriptionJob;
+import com.project.demo.properties.JobProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Stores the files of a batch upload and feeds them to the {@link TranscriptionScheduler}.
+ * <p>
+ * A batch keeps at most one job per scheduler slot queued or running, so it uses every idle worker
+ * without filling the shared queue and turning away single uploads. Files that wait for their turn
+ * are pinned against retention until their job pins them itself.
+ */
+@Service
+public class BatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchService.class);
+
+    private final StorageService storageService;
+    private final TranscriptionJobService jobService;
+    private final TranscriptionScheduler scheduler;
+    private final FileCatalog fileCatalog;
+    private final PipelineMetrics pipelineMetrics;
+    private final JobProperties properties;
+    private final Map<String, TranscriptionBatch> batches = new ConcurrentHashMap<>();
+    // One feeder per batch, it spends its time waiting for jobs to finish
+    private final ExecutorService feeders = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Autowired
+    public BatchService(StorageService storageService, TranscriptionJobService jobService,
+                        TranscriptionScheduler scheduler, FileCatalog fileCatalog,
+                        PipelineMetrics pipelineMetrics, JobProperties properties) {
+        this.storageService = storageService;
+        this.jobService = jobService;
+        this.scheduler = scheduler;
+        this.fileCatalog = fileCatalog;
+        this.pipelineMetrics = pipelineMetrics;
+        this.properties = properties;
+    }
+
+    /**
+     * Stores every file and starts queueing them in the background. A file that cannot be stored
+     * fails on its own, the rest of the batch goes ahead.
+     *
+     * @param sessionId submitter, the batch competes fairly with the session's other uploads
+     */
+    public TranscriptionBatch submit(List<MultipartFile> files, String sessionId, String processingMethod,
+                                     String modelId) {
+        List<BatchItem> items = new ArrayList<>(files.size());
+        List<StoredFile> stored = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            try {
+                // Parts are already spooled to disk by the servlet container, storeAudio() checks and copies
+                // them with a fixed buffer, a file that is not MP3 only fails its own item
+                StoredFile storedFile = pipelineMetrics.time(PipelineMetrics.Stage.STORE,
+                        () -> storageService.storeAudio(file));
+                fileCatalog.pin(storedFile.hash());
+                items.add(new BatchItem(storedFile.filename(), storedFile.hash()));
+                stored.add(storedFile);
+            } catch (StorageException e) {
+                BatchItem item = new BatchItem(file.getOriginalFilename(), null);
+                item.fail(e.getMessage());
+                items.add(item);
+                stored.add(null);
+            }
+        }
+        TranscriptionBatch batch = new TranscriptionBatch(UUID.randomUUID().toString(), items);
+        batches.put(batch.getId(), batch);
+        feeders.execute(() -> feed(batch, stored, sessionId, processingMethod, modelId));
+        return batch;
+    }
+
+    public Optional<TranscriptionBatch> getBatch(String batchId) {
+        return Optional.ofNullable(batches.get(batchId));
+    }
+
+    /**
+     * Cancels every job of the batch that has not finished and queues no further files.
+     */
+    public void cancel(TranscriptionBatch batch) {
+        batch.cancel();
+        for (BatchItem item : batch.getItems()) {
+            TranscriptionJob job = item.getJob();
+            if (job != null) {
+                jobService.cancel(job);
+            }
+        }
+    }
+
+    private void feed(TranscriptionBatch batch, List<StoredFile> files, String sessionId, String processingMethod,
+                      String modelId) {
+        Semaphore window = new Semaphore(scheduler.getParallelism());
+        List<BatchItem> items = batch.getItems();
+        int next = 0;
+        try {
+            for (; next < items.size(); next++) {
+                StoredFile file = files.get(next);
+                if (file == null) {
+                    continue;
+                }
+                window.acquire();
+                if (batch.isCancelled()) {
+                    break;
+                }
+                TranscriptionJob job = submitWhenQueued(file, sessionId, processingMethod, modelId);
+                items.get(next).assign(job);
+                fileCatalog.unpin(file.hash());
+                job.getCompletion().whenComplete((finished, e) -> window.release());
+                if (batch.isCancelled()) {
+                    // Cancelled while this job was being queued
+                    jobService.cancel(job);
+                }
+            }
+            for (; next < items.size(); next++) {
+                StoredFile file = files.get(next);
+                if (file != null) {
+                    items.get(next).cancel("Cancelled by the user");
+                    fileCatalog.unpin(file.hash());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Batch {} stopped with {} of {} files not queued", batch.getId(), items.size() - next, items.size());
+            for (; next < items.size(); next++) {
+                StoredFile file = files.get(next);
+                if (file != null) {
+                    items.get(next).fail("The server stopped before the file was queued");
+                    fileCatalog.unpin(file.hash());
+                }
+            }
+        }
+    }
+
+    private TranscriptionJob submitWhenQueued(StoredFile file, String sessionId, String processingMethod,
+                                              String modelId) throws InterruptedException {
+        while (true) {
+            try {
+                return jobService.submit(file, sessionId, processingMethod, modelId);
+            } catch (QueueFullException e) {
+                // Single uploads filled the queue, the batch waits instead of failing
+                Thread.sleep(e.getRetryAfter());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "PT1M")
+    public void evictFinishedBatches() {
+        Instant cutoff = Instant.now().minus(properties.getRetention());
+        batches.values().removeIf(batch -> batch.getFinishedAt() != null && batch.getFinishedAt().isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        feeders.shutdownNow();
+    }
+}
@@ -0,0 +1,72 @@
+package com.project.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation shared between the code that requests a cancel (a client disconnect,
+ * a cancel request) and the code doing the work, which registers callbacks to abort blocking I/O.
+ */
+public class CancellationToken {
+
+    /**
+     * Handle of a registered callback, closing it deregisters the callback.
+     */
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private volatile String reason;
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Runs the callback once the token is cancelled, right away if it already is.
+     */
+    public Registration onCancel(Runnable callback) {
+        synchronized (callbacks) {
+            if (reason == null) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (callbacks) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        callback.run();
+        return () -> { };
+    }
+
+    /**
+     * @return false when the token was already cancelled
+     */
+    public boolean cancel(String reason) {
+        List<Runnable> toRun;
+        synchronized (callbacks) {
+            if (this.reason != null) {
+                return false;
+            }
+            this.reason = reason;
+            toRun = List.copyOf(callbacks);
+            callbacks.clear();
+        }
+        toRun.forEach(Runnable::run);
+        return true;
+    }
+
+    public void throwIfCancelled() {
+        if (reason != null) {
+            throw new CancellationException(reason);
+        }
+    }
+}
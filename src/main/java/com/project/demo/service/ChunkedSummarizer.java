@@ -0,0 +1,168 @@
+package com.project.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+import com.project.demo.properties.SummarizerProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Map-reduce summarizer. Text over the token budget is split on sentence boundaries, the chunks are
+ * summarized in parallel and the partial summaries are combined into the final one.
+ */
+@Service
+public class ChunkedSummarizer {
+
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?])\\s+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * The model behind the summaries. Each step is one blocking call.
+     */
+    public interface Backend {
+        /** Summary of a text that fits in one call */
+        String summarize(String text);
+
+        /** Summary of one part of a longer text */
+        String summarizePart(String part);
+
+        /** One summary out of the summaries of consecutive parts */
+        String combine(String partSummaries);
+    }
+
+    private final SummarizerProperties properties;
+
+    @Autowired
+    public ChunkedSummarizer(SummarizerProperties properties) {
+        this.properties = properties;
+    }
+
+    public String summarize(String text, int tokenBudget, Backend backend, CancellationToken cancellation) {
+        List<String> chunks = split(text, tokenBudget);
+        if (chunks.size() <= 1) {
+            return backend.summarize(text);
+        }
+
+        String partials = String.join("\n\n", map(chunks, backend::summarizePart, cancellation));
+        // Very long recordings can leave more partial text than one call takes, fold it again
+        while (estimateTokens(partials) > tokenBudget) {
+            List<String> groups = split(partials, tokenBudget);
+            if (groups.size() <= 1) {
+                break;
+            }
+            String folded = String.join("\n\n", map(groups, backend::summarizePart, cancellation));
+            if (folded.length() >= partials.length()) {
+                break;
+            }
+            partials = folded;
+        }
+        cancellation.throwIfCancelled();
+        return backend.combine(partials);
+    }
+
+    /**
+     * Splits text into chunks of at most the token budget, on sentence ends where possible and on
+     * word boundaries for sentences that are longer than the budget by themselves.
+     */
+    public static List<String> split(String text, int tokenBudget) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder();
+        int chunkTokens = 0;
+        for (String sentence : SENTENCE_END.split(text.strip())) {
+            int sentenceTokens = estimateTokens(sentence);
+            if (sentenceTokens > tokenBudget) {
+                for (String word : WHITESPACE.split(sentence)) {
+                    int wordTokens = estimateTokens(word);
+                    if (chunkTokens + wordTokens > tokenBudget && chunkTokens > 0) {
+                        chunks.add(chunk.toString());
+                        chunk.setLength(0);
+                        chunkTokens = 0;
+                    }
+                    append(chunk, word);
+                    chunkTokens += wordTokens;
+                }
+                continue;
+            }
+            if (chunkTokens + sentenceTokens > tokenBudget && chunkTokens > 0) {
+                chunks.add(chunk.toString());
+                chunk.setLength(0);
+                chunkTokens = 0;
+            }
+            append(chunk, sentence);
+            chunkTokens += sentenceTokens;
+        }
+        if (chunkTokens > 0) {
+            chunks.add(chunk.toString());
+        }
+        return chunks;
+    }
+
+    /**
+     * Rough subword count, English averages about four tokens per three words.
+     */
+    public static int estimateTokens(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean space = Character.isWhitespace(text.charAt(i));
+            if (!space && !inWord) {
+                words++;
+            }
+            inWord = !space;
+        }
+        return (words * 4 + 2) / 3;
+    }
+
+    private static void append(StringBuilder chunk, String piece) {
+        if (!chunk.isEmpty()) {
+            chunk.append(' ');
+        }
+        chunk.append(piece);
+    }
+
+    private List<String> map(List<String> parts, UnaryOperator<String> step, CancellationToken cancellation) {
+        Semaphore permits = new Semaphore(Math.max(1, properties.getMaxParallelChunks()));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> futures = new ArrayList<>(parts.size());
+            for (String part : parts) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        cancellation.throwIfCancelled();
+                        return step.apply(part);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<String> results = new ArrayList<>(parts.size());
+            try {
+                for (Future<String> future : futures) {
+                    results.add(future.get());
+                }
+            } catch (ExecutionException | InterruptedException e) {
+                // One missing part spoils the summary, stop the calls that are still running
+                futures.forEach(future -> future.cancel(true));
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while summarizing");
+                }
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.project.demo.exceptions.WorkerException;
+import com.project.demo.properties.AudioProperties;
+import com.project.demo.properties.WorkerProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Whisper transcription of a whole recording. Recordings longer than twice {@code audio.chunk-duration}
+ * are cut on MPEG frame boundaries, the job's own worker goes through the chunks in order while idle
+ * workers take chunks from the same queue, and the texts and timestamps are stitched back together.
+ * <p>
+ * Helpers take a slot from the {@link TranscriptionScheduler} for each chunk, only while no job is waiting, and
+ * then only a worker that is free at that moment, so chunking never makes another job wait.
+ */
+@Service
+public class ChunkedTranscriber {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedTranscriber.class);
+
+    private final PythonWorkerPool pythonWorkerPool;
+    private final AudioProperties audioProperties;
+    private final WorkerProperties workerProperties;
+    private final TranscriptionScheduler scheduler;
+
+    /**
+     * @param start playing time of the recording where the chunk begins, in seconds
+     * @param hash cache key for the worker, the chunk's byte range within the recording's content
+     */
+    private record Chunk(int index, Path path, double start, String hash) {
+    }
+
+    @Autowired
+    public ChunkedTranscriber(PythonWorkerPool pythonWorkerPool, AudioProperties audioProperties,
+                              WorkerProperties workerProperties, TranscriptionScheduler scheduler) {
+        this.pythonWorkerPool = pythonWorkerPool;
+        this.audioProperties = audioProperties;
+        this.workerProperties = workerProperties;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param duration playing time from the upload's frame headers, null when unknown
+     * @param segments receives each segment as a map of {@code start}, {@code end} in seconds of the whole
+     *                 recording and {@code text}. Chunks run in parallel, so segments can arrive out of order.
+     */
+    public String transcribe(String filePath, String fileHash, Duration duration,
+                             Consumer<Map<String, Object>> segments, CancellationToken cancellation)
+            throws IOException {
+        Duration chunkDuration = audioProperties.getChunkDuration();
+        if (duration == null || chunkDuration == null || chunkDuration.isZero()
+                || duration.compareTo(chunkDuration.multipliedBy(2)) <= 0 || maxWorkers() < 2) {
+            return text(pythonWorkerPool.transcribe(filePath, fileHash, false, forward(segments, 0), cancellation));
+        }
+
+        Path file = Path.of(filePath);
+        Mp3FrameScanner scanner = Mp3FrameScanner.scan(file, chunkDuration);
+        scanner.finish();
+        Path directory = Files.createTempDirectory("chunks-");
+        try {
+            List<Chunk> chunks = split(file, fileHash, scanner.getCuts(), directory);
+            log.info("Transcribing {} in {} chunks", filePath, chunks.size());
+            return transcribeChunks(chunks, segments, cancellation);
+        } finally {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Copies the byte ranges between cuts into files of their own. The first chunk keeps any tag in front
+     * of the audio, every other one starts with a frame header.
+     */
+    private static List<Chunk> split(Path file, String fileHash, List<Mp3FrameScanner.Cut> cuts, Path directory)
+            throws IOException {
+        List<Chunk> chunks = new ArrayList<>(cuts.size() + 1);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = source.size();
+            for (int i = 0; i <= cuts.size(); i++) {
+                long from = i == 0 ? 0 : cuts.get(i - 1).offset();
+                long to = i == cuts.size() ? size : cuts.get(i).offset();
+                double start = i == 0 ? 0 : cuts.get(i - 1).start().toNanos() / 1e9;
+                Path chunk = directory.resolve("chunk-%03d.mp3".formatted(i));
+                try (FileChannel target = FileChannel.open(chunk, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE)) {
+                    for (long position = from; position < to; ) {
+                        position += source.transferTo(position, to - position, target);
+                    }
+                }
+                chunks.add(new Chunk(i, chunk, start, "%s-%d-%d".formatted(fileHash, from, to)));
+            }
+        }
+        return chunks;
+    }
+
+    private String transcribeChunks(List<Chunk> chunks, Consumer<Map<String, Object>> segments,
+                                    CancellationToken cancellation) {
+        String[] texts = new String[chunks.size()];
+        Deque<Chunk> pending = new ConcurrentLinkedDeque<>(chunks);
+        // One missing chunk spoils the transcription, the first failure stops the other chunks
+        CancellationToken chunkCancellation = new CancellationToken();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        int helpers = Math.min(chunks.size(), maxWorkers()) - 1;
+
+        try (CancellationToken.Registration ignored = cancellation.onCancel(
+                () -> chunkCancellation.cancel(cancellation.getReason()));
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(helpers);
+            for (int i = 0; i < helpers; i++) {
+                futures.add(executor.submit(() -> work(pending, texts, segments, false, chunkCancellation, failure)));
+            }
+            work(pending, texts, segments, true, chunkCancellation, failure);
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Failures were recorded by the helper itself
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    chunkCancellation.cancel("Interrupted while transcribing");
+                    throw new CancellationException("Interrupted while transcribing");
+                }
+            }
+            // A helper that found no free slot or worker put its chunk back after this thread had emptied the queue
+            work(pending, texts, segments, true, chunkCancellation, failure);
+        }
+
+        cancellation.throwIfCancelled();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        StringBuilder transcription = new StringBuilder();
+        for (String text : texts) {
+            if (!text.isBlank()) {
+                if (!transcription.isEmpty()) {
+                    transcription.append(' ');
+                }
+                transcription.append(text.strip());
+            }
+        }
+        return transcription.toString();
+    }
+
+    /**
+     * Transcribes chunks off the queue until it is empty. A helper stops at the first chunk it finds no
+     * free slot or worker for and puts it back.
+     *
+     * @param wait whether to wait for a worker, true for the job's own thread
+     */
+    private void work(Deque<Chunk> pending, String[] texts, Consumer<Map<String, Object>> segments, boolean wait,
+                      CancellationToken cancellation, AtomicReference<RuntimeException> failure) {
+        Chunk chunk;
+        while (failure.get() == null && (chunk = pending.pollFirst()) != null) {
+            if (!wait && !scheduler.tryAcquireHelper()) {
+                pending.offerFirst(chunk);
+                return;
+            }
+            try {
+                String path = chunk.path().toString();
+                Consumer<JsonNode> forward = forward(segments, chunk.start());
+                Optional<JsonNode> result;
+                try {
+                    result = wait
+                            ? Optional.of(pythonWorkerPool.transcribe(path, chunk.hash(), false, forward, cancellation))
+                            : pythonWorkerPool.tryTranscribe(path, chunk.hash(), forward, cancellation);
+                } finally {
+                    if (!wait) {
+                        scheduler.releaseHelper();
+                    }
+                }
+                if (result.isEmpty()) {
+                    pending.offerFirst(chunk);
+                    return;
+                }
+                texts[chunk.index()] = text(result.get());
+            } catch (IOException | RuntimeException e) {
+                RuntimeException cause = e instanceof RuntimeException runtime ? runtime
+                        : new WorkerException("Could not transcribe chunk " + chunk.index(), e);
+                if (failure.compareAndSet(null, cause)) {
+                    cancellation.cancel("Chunk " + chunk.index() + " failed");
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Workers the chunks of one recording can use at most, the job's own and a helper per other free slot.
+     */
+    private int maxWorkers() {
+        return Math.min(workerProperties.getPoolSize(), scheduler.getParallelism());
+    }
+
+    private static String text(JsonNode result) {
+        if (result.has("error")) {
+            throw new WorkerException("Python script error: " + result.get("error").asText());
+        }
+        return result.get("transcription").asText();
+    }
+
+    /**
+     * Moves a chunk's segments to the timeline of the whole recording.
+     */
+    private static Consumer<JsonNode> forward(Consumer<Map<String, Object>> segments, double offset) {
+        if (segments == null) {
+            return null;
+        }
+        return segment -> segments.accept(Map.of(
+                "start", offset + segment.path("start").asDouble(),
+                "end", offset + segment.path("end").asDouble(),
+                "text", segment.path("text").asText()));
+    }
+}
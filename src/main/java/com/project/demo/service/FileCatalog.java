@@ -0,0 +1,293 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.model.FileEntry;
+import com.project.demo.model.FilePage;
+import com.project.demo.model.JobStatus;
+import com.project.demo.properties.StorageProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory catalogue of stored uploads, keyed by content hash. Kept current by the storage service
+ * and saved to disk, so a restart can serve listings at once while the storage recovery scan only has
+ * to fill in what changed.
+ * <p>
+ * Listings are served from hash arrays sorted once per change, so a page costs O(page size).
+ */
+@Service
+public class FileCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(FileCatalog.class);
+
+    public enum SortField {
+        NAME("name", Comparator.comparing(FileEntry::filename)),
+        SIZE("size", Comparator.comparingLong(FileEntry::size).thenComparing(FileEntry::filename)),
+        UPLOADED_AT("uploadedAt", Comparator.comparing(FileEntry::uploadedAt).thenComparing(FileEntry::filename));
+
+        private final String apiName;
+        private final Comparator<FileEntry> order;
+
+        SortField(String apiName, Comparator<FileEntry> order) {
+            this.apiName = apiName;
+            // Names are not unique, the hash keeps the order stable between pages
+            this.order = order.thenComparing(FileEntry::hash);
+        }
+
+        public String getApiName() {
+            return apiName;
+        }
+
+        public static SortField parse(String value) {
+            for (SortField field : values()) {
+                if (field.apiName.equals(value)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Cannot sort files by " + value);
+        }
+    }
+
+    private final Path catalogFile;
+    private final ObjectMapper objectMapper;
+    private final Map<String, FileEntry> entries = new ConcurrentHashMap<>();
+    // Hash -> number of jobs using the file, pinned files are never evicted
+    private final Map<String, Integer> pins = new HashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    // Bumped on every add or remove, sorted views older than this are rebuilt on demand
+    private final AtomicLong version = new AtomicLong();
+    private final Map<SortField, SortedHashes> sortedViews = new EnumMap<>(SortField.class);
+    private volatile boolean dirty;
+
+    private record SortedHashes(long version, String[] hashes) {
+    }
+
+    @Autowired
+    public FileCatalog(StorageProperties properties, ObjectMapper objectMapper) {
+        this.catalogFile = Paths.get(properties.getCatalogFile());
+        this.objectMapper = objectMapper;
+    }
+
+    public Optional<FileEntry> get(String hash) {
+        return Optional.ofNullable(entries.get(hash));
+    }
+
+    public void put(FileEntry entry) {
+        FileEntry previous = entries.put(entry.hash(), entry);
+        totalBytes.addAndGet(entry.size() - (previous == null ? 0 : previous.size()));
+        // A status change leaves the order alone
+        if (previous == null || previous.size() != entry.size() || !previous.uploadedAt().equals(entry.uploadedAt())
+                || !previous.filename().equals(entry.filename())) {
+            version.incrementAndGet();
+        }
+        dirty = true;
+    }
+
+    public void remove(String hash) {
+        FileEntry removed = entries.remove(hash);
+        if (removed != null) {
+            totalBytes.addAndGet(-removed.size());
+            version.incrementAndGet();
+            dirty = true;
+        }
+    }
+
+    /**
+     * Removes an entry unless a job has it pinned or it was accessed at or after the cutoff.
+     *
+     * @return the removed entry
+     */
+    public Optional<FileEntry> removeIfIdle(String hash, Instant accessedBefore) {
+        synchronized (pins) {
+            if (pins.containsKey(hash)) {
+                return Optional.empty();
+            }
+            FileEntry[] removed = new FileEntry[1];
+            entries.computeIfPresent(hash, (key, entry) -> {
+                if (entry.lastAccessedAt().isBefore(accessedBefore)) {
+                    removed[0] = entry;
+                    return null;
+                }
+                return entry;
+            });
+            if (removed[0] == null) {
+                return Optional.empty();
+            }
+            totalBytes.addAndGet(-removed[0].size());
+            version.incrementAndGet();
+            dirty = true;
+            return Optional.of(removed[0]);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        totalBytes.set(0);
+        version.incrementAndGet();
+        dirty = true;
+    }
+
+    public void updateStatus(String hash, JobStatus status) {
+        // Not a sort key, the sorted views stay valid
+        if (entries.computeIfPresent(hash, (key, entry) -> entry.withStatus(status)) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Marks the file as used now.
+     *
+     * @return false when the file is not catalogued
+     */
+    public boolean touch(String hash) {
+        // Not a sort key either
+        if (entries.computeIfPresent(hash, (key, entry) -> entry.withLastAccessedAt(Instant.now())) == null) {
+            return false;
+        }
+        dirty = true;
+        return true;
+    }
+
+    public void pin(String hash) {
+        synchronized (pins) {
+            pins.merge(hash, 1, Integer::sum);
+        }
+    }
+
+    public void unpin(String hash) {
+        synchronized (pins) {
+            pins.computeIfPresent(hash, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    public boolean isPinned(String hash) {
+        synchronized (pins) {
+            return pins.containsKey(hash);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long totalBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * Live view of the entries, iterating it copies nothing and may or may not see concurrent changes.
+     */
+    public Collection<FileEntry> values() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Snapshot of the hashes currently catalogued.
+     */
+    public Set<String> hashes() {
+        return Set.copyOf(entries.keySet());
+    }
+
+    public FilePage list(int page, int size, SortField sort, boolean descending) {
+        String[] hashes = sortedHashes(sort);
+        int from = (int) Math.min((long) page * size, hashes.length);
+        int to = Math.min(from + size, hashes.length);
+        List<FileEntry> items = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            FileEntry entry = entries.get(hashes[descending ? hashes.length - 1 - i : i]);
+            if (entry != null) {
+                items.add(entry);
+            }
+        }
+        return new FilePage(items, page, size, hashes.length, sort.getApiName(), descending ? "desc" : "asc");
+    }
+
+    private String[] sortedHashes(SortField sort) {
+        long current = version.get();
+        synchronized (sortedViews) {
+            SortedHashes view = sortedViews.get(sort);
+            if (view == null || view.version() != current) {
+                FileEntry[] snapshot = entries.values().toArray(FileEntry[]::new);
+                Arrays.sort(snapshot, sort.order);
+                view = new SortedHashes(current, Arrays.stream(snapshot).map(FileEntry::hash).toArray(String[]::new));
+                sortedViews.put(sort, view);
+            }
+            return view.hashes();
+        }
+    }
+
+    /**
+     * Reads the saved catalogue. Entries are checked against the disk by the storage recovery scan.
+     */
+    @PostConstruct
+    public void load() {
+        if (!Files.exists(catalogFile)) {
+            return;
+        }
+        try {
+            List<FileEntry> saved = objectMapper.readValue(catalogFile.toFile(), new TypeReference<List<FileEntry>>() { });
+            for (FileEntry entry : saved) {
+                if (entry.hash() == null) {
+                    // Written before uploads were stored by content, the scan catalogues the file again
+                    continue;
+                }
+                // Jobs do not survive a restart, so neither does their in-progress state
+                JobStatus status = entry.status() != null && entry.status().isFinished() ? entry.status() : null;
+                Instant lastAccessedAt = entry.lastAccessedAt() != null ? entry.lastAccessedAt() : entry.uploadedAt();
+                FileEntry previous = entries.put(entry.hash(), entry.withStatus(status).withLastAccessedAt(lastAccessedAt));
+                totalBytes.addAndGet(entry.size() - (previous == null ? 0 : previous.size()));
+            }
+            version.incrementAndGet();
+            log.info("Loaded {} catalogue entries from {}", entries.size(), catalogFile);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable file catalogue {}: {}", catalogFile, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${storage.catalog-save-interval:PT10S}")
+    public void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            Path temp = catalogFile.resolveSibling(catalogFile.getFileName() + ".tmp");
+            objectMapper.writeValue(temp.toFile(), List.copyOf(entries.values()));
+            Files.move(temp, catalogFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("Could not save file catalogue: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        save();
+    }
+}
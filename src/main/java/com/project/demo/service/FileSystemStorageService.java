@@ -1,19 +1,54 @@
 package com.project.demo.service;
 
 import java.io.IOException;
+import java.io.FilterOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.Objects;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.demo.exceptions.StorageException;
 import com.project.demo.exceptions.StorageFileNotFoundException;
+import com.project.demo.model.AudioInfo;
+import com.project.demo.model.FileEntry;
+import com.project.demo.model.FilePage;
+import com.project.demo.model.StoredFile;
+import com.project.demo.properties.AudioProperties;
 import com.project.demo.properties.StorageProperties;
 import com.project.demo.service.StorageService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
@@ -22,95 +57,353 @@ import org.springframework.util.FileSystemUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+/**
+ * Stores uploads by content under {@code objects/<first two hex digits>/<sha256>}, with the original
+ * filename in a {@code <sha256>.json} file next to the object. Both are written to a temporary file,
+ * forced to disk and renamed into place, so a crash leaves either the whole file or nothing.
+ * <p>
+ * Nothing is wiped on boot: {@link #init()} starts a recovery scan in the background that drops
+ * leftover temporary files and brings the {@link FileCatalog} in line with the objects on disk. After that
+ * a {@link WatchService} keeps it in line with objects copied in or deleted by hand.
+ */
 @Service
 public class FileSystemStorageService implements StorageService {
 
+    private static final Logger log = LoggerFactory.getLogger(FileSystemStorageService.class);
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final String METADATA_SUFFIX = ".json";
+
     private final Path rootLocation;
+    private final Path objectsLocation;
+    private final Path tempLocation;
+    private final FileCatalog catalog;
+    private final ObjectMapper objectMapper;
+    private final AudioProperties audioProperties;
+    // Temporary files older than this belong to a previous run. File times lag the clock by up to a timer tick
+    // (whole seconds on some file systems), an upload started right after construction must not look older.
+    private final Instant startedAt = Instant.now().minusSeconds(2);
+    // Striped by hash, keeps a store and an eviction of the same content apart
+    private final Object[] locks = new Object[64];
+    // Set by init(), the objects directory and every shard in it are registered
+    private volatile WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+    private record Metadata(String filename, Instant uploadedAt) {
+    }
 
     @Autowired
-    public FileSystemStorageService(StorageProperties properties) {
+    public FileSystemStorageService(StorageProperties properties, AudioProperties audioProperties, FileCatalog catalog,
+                                    ObjectMapper objectMapper) {
 
         if(properties.getLocation().trim().isEmpty()){
             throw new StorageException("File upload location can not be Empty.");
         }
 
         this.rootLocation = Paths.get(properties.getLocation());
+        this.objectsLocation = rootLocation.resolve("objects");
+        this.tempLocation = rootLocation.resolve("tmp");
+        this.catalog = catalog;
+        this.objectMapper = objectMapper;
+        this.audioProperties = audioProperties;
+        Arrays.setAll(locks, i -> new Object());
+    }
+
+    @Override
+    public StoredFile store(MultipartFile file) {
+        return store(file, null);
     }
 
     @Override
-    public void store(MultipartFile file) {
+    public StoredFile storeAudio(MultipartFile file) {
+        return store(file, new Mp3FrameScanner(audioProperties.getMaxDuration(), null));
+    }
+
+    /**
+     * @param scanner reads the content as it is copied, null to store it unchecked
+     */
+    private StoredFile store(MultipartFile file, Mp3FrameScanner scanner) {
+        if (file.isEmpty()) {
+            throw new StorageException("Failed to store empty file.");
+        }
+        String filename = StringUtils.getFilename(StringUtils.cleanPath(String.valueOf(file.getOriginalFilename())));
+        Path part = null;
         try {
-            if (file.isEmpty()) {
-                throw new StorageException("Failed to store empty file.");
-            }
-            Path destinationFile = this.rootLocation.resolve(
-                            Paths.get(Objects.requireNonNull(file.getOriginalFilename())))
-                    .normalize().toAbsolutePath();
-            if (!destinationFile.getParent().equals(this.rootLocation.toAbsolutePath())) {
-                // This is a security check
-                throw new StorageException(
-                        "Cannot store file outside current directory.");
+            Files.createDirectories(tempLocation);
+            part = Files.createTempFile(tempLocation, "upload-", ".part");
+            // Hash while copying so the content is read only once
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size;
+            try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest);
+                 FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                if (scanner != null) {
+                    out = scanning(out, scanner);
+                }
+                size = inputStream.transferTo(out);
+                channel.force(true);
             }
-            try (InputStream inputStream = file.getInputStream()) {
-                Files.copy(inputStream, destinationFile,
-                        StandardCopyOption.REPLACE_EXISTING);
+            // A bad stream is mostly caught while copying, the share of junk is only known at the end
+            AudioInfo audio = scanner != null ? scanner.finish() : null;
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path object = objectPath(hash);
+
+            // Eviction of the same hash takes this lock too, a file found here is not deleted before the touch
+            synchronized (lockFor(hash)) {
+                if (catalog.touch(hash) && Files.exists(object)) {
+                    // Same content uploaded again, the stored object and its first name are kept
+                    return new StoredFile(filename, object, hash, size, audio);
+                }
+                Files.createDirectories(object.getParent());
+                Instant uploadedAt = Instant.now();
+                // Metadata first: an object is never visible without its name, an orphaned name is cleaned up
+                writeAtomically(metadataPath(hash), objectMapper.writeValueAsBytes(new Metadata(filename, uploadedAt)));
+                moveAtomically(part, object);
+                part = null;
+                syncDirectory(object.getParent());
+                catalog.put(new FileEntry(filename, size, hash, uploadedAt, uploadedAt, null));
             }
+            return new StoredFile(filename, object, hash, size, audio);
         }
         catch (IOException e) {
             throw new StorageException("Failed to store file.", e);
         }
+        catch (NoSuchAlgorithmException e) {
+            throw new StorageException("SHA-256 is not available.", e);
+        }
+        finally {
+            deleteQuietly(part);
+        }
     }
 
     @Override
     public Stream<Path> loadAll() {
-        try {
-            return Files.walk(this.rootLocation, 1)
-                    .filter(path -> !path.equals(this.rootLocation))
-                    .map(this.rootLocation::relativize);
-        }
-        catch (IOException e) {
-            throw new StorageException("Failed to read stored files", e);
-        }
+        return catalog.list(0, Integer.MAX_VALUE, FileCatalog.SortField.NAME, false).items().stream()
+                .map(entry -> objectPath(entry.hash()));
+    }
+
+    @Override
+    public FilePage list(int page, int size, String sort, boolean descending) {
+        return catalog.list(page, size, FileCatalog.SortField.parse(sort), descending);
+    }
 
+    @Override
+    public FileEntry describe(String hash) {
+        return catalog.get(hash)
+                .orElseThrow(() -> new StorageFileNotFoundException("Could not find file: " + hash));
     }
 
     @Override
-    public Path load(String filename) {
-        return rootLocation.resolve(filename);
+    public boolean touch(String hash) {
+        return catalog.touch(hash);
     }
 
     @Override
-    public Resource loadAsResource(String filename) {
+    public boolean evict(String hash, Instant accessedBefore) {
+        synchronized (lockFor(hash)) {
+            if (catalog.removeIfIdle(hash, accessedBefore).isEmpty()) {
+                return false;
+            }
+            try {
+                // Object first, recovery removes a name left without one
+                Files.deleteIfExists(objectPath(hash));
+                Files.deleteIfExists(metadataPath(hash));
+            }
+            catch (IOException e) {
+                log.warn("Could not delete stored file {}: {}", hash, e.getMessage());
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public Path load(String hash) {
+        if (!HASH.matcher(hash).matches()) {
+            // Also keeps anything that is not a plain hash from reaching the file system
+            throw new StorageFileNotFoundException("Could not find file: " + hash);
+        }
+        return objectPath(hash);
+    }
+
+    @Override
+    public Resource loadAsResource(String hash) {
         try {
-            Path file = load(filename);
+            Path file = load(hash);
             Resource resource = new UrlResource(file.toUri());
             if (resource.exists() || resource.isReadable()) {
                 return resource;
             }
             else {
                 throw new StorageFileNotFoundException(
-                        "Could not read file: " + filename);
+                        "Could not read file: " + hash);
 
             }
         }
         catch (MalformedURLException e) {
-            throw new StorageFileNotFoundException("Could not read file: " + filename, e);
+            throw new StorageFileNotFoundException("Could not read file: " + hash, e);
         }
     }
 
     @Override
     public void deleteAll() {
+        catalog.clear();
         FileSystemUtils.deleteRecursively(rootLocation.toFile());
     }
 
     @Override
     public void init() {
         try {
-            Files.createDirectories(rootLocation);
+            Files.createDirectories(objectsLocation);
+            Files.createDirectories(tempLocation);
+            // Registered before the scan, so nothing changed while it runs is missed
+            watchService = objectsLocation.getFileSystem().newWatchService();
+            watchDirectory(objectsLocation);
         }
         catch (IOException e) {
             throw new StorageException("Could not initialize storage", e);
         }
+        Thread.ofPlatform().daemon().name("storage-watch").start(this::watch);
+        // Uploads are accepted while the scan runs, listings meanwhile come from the saved catalogue
+        Thread.ofVirtual().name("storage-recovery").start(() -> {
+            try {
+                recover();
+            } catch (RuntimeException e) {
+                log.error("Storage recovery scan failed", e);
+            }
+        });
+    }
+
+    /**
+     * Drops temporary files and orphaned metadata left by a previous run, catalogues objects the saved
+     * catalogue does not know and forgets entries whose object is gone.
+     */
+    public void recover() {
+        long started = System.nanoTime();
+        int removed = 0;
+        Set<String> present = new HashSet<>();
+        try {
+            removed += removeStale(tempLocation, file -> true);
+            if (Files.isDirectory(objectsLocation)) {
+                try (DirectoryStream<Path> shards = Files.newDirectoryStream(objectsLocation, Files::isDirectory)) {
+                    for (Path shard : shards) {
+                        watchDirectory(shard);
+                        removed += removeStale(shard, file -> {
+                            String name = file.getFileName().toString();
+                            return name.endsWith(METADATA_SUFFIX)
+                                    && !Files.exists(shard.resolve(name.substring(0, name.length() - METADATA_SUFFIX.length())));
+                        });
+                        try (DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+                            for (Path file : files) {
+                                String name = file.getFileName().toString();
+                                if (HASH.matcher(name).matches() && refresh(name, false)) {
+                                    present.add(name);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new StorageException("Could not scan the upload directory", e);
+        }
+        for (String hash : catalog.hashes()) {
+            // Checked again, the upload may have been stored after its shard was scanned
+            if (!present.contains(hash) && !Files.exists(objectPath(hash))) {
+                catalog.remove(hash);
+            }
+        }
+        log.info("Storage recovery found {} files and removed {} leftovers in {} ms", present.size(), removed,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Catalogues objects copied in and forgets objects deleted while the app runs. New shard directories
+     * are watched as they appear, an overflow of events falls back to a full scan.
+     */
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            }
+            catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = watchedDirectories.get(key);
+            try {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        recover();
+                    }
+                    else if (directory != null) {
+                        onChange(directory, event.kind(), event.context().toString());
+                    }
+                }
+            }
+            catch (IOException | RuntimeException e) {
+                log.warn("Could not catalogue a change in {}: {}", directory, e.getMessage());
+            }
+            // Invalid once the directory is deleted
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+
+    private void onChange(Path directory, WatchEvent.Kind<?> kind, String name) throws IOException {
+        if (directory.equals(objectsLocation)) {
+            Path shard = directory.resolve(name);
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(shard)) {
+                watchDirectory(shard);
+                // Files moved in with the directory or before it was registered raise no event of their own
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+                    for (Path file : files) {
+                        onChange(shard, kind, file.getFileName().toString());
+                    }
+                }
+            }
+            return;
+        }
+        boolean metadata = name.endsWith(METADATA_SUFFIX);
+        String hash = metadata ? name.substring(0, name.length() - METADATA_SUFFIX.length()) : name;
+        if (!HASH.matcher(hash).matches()) {
+            return;
+        }
+        // Ordered with store() and evict(), which change the object and its entry together
+        synchronized (lockFor(hash)) {
+            if (Files.exists(objectPath(hash))) {
+                // A new metadata file can carry a new name for an object already catalogued
+                refresh(hash, metadata);
+            }
+            else if (!metadata && kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                catalog.remove(hash);
+            }
+        }
+    }
+
+    /**
+     * Registers a directory with the watcher, nothing is watched before {@link #init()}.
+     */
+    private void watchDirectory(Path directory) throws IOException {
+        WatchService service = watchService;
+        if (service != null) {
+            WatchKey key = directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(key, directory);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        WatchService service = watchService;
+        if (service != null) {
+            try {
+                service.close();
+            }
+            catch (IOException e) {
+                // closing only stops the watcher thread
+            }
+        }
     }
 
     @Override
@@ -118,5 +411,149 @@ public class FileSystemStorageService implements StorageService {
         return this.rootLocation;
     }
 
+    /**
+     * Catalogues one object, keeping the known entry and its status when the size is unchanged.
+     *
+     * @param reread true to read the metadata again even when the size is unchanged
+     * @return false when the object is not a regular file
+     */
+    private boolean refresh(String hash, boolean reread) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(objectPath(hash), BasicFileAttributes.class);
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!attributes.isRegularFile()) {
+            return false;
+        }
+        Optional<FileEntry> known = catalog.get(hash);
+        if (!reread && known.isPresent() && known.get().size() == attributes.size()) {
+            return true;
+        }
+        Metadata metadata = readMetadata(hash);
+        Instant uploadedAt = metadata != null ? metadata.uploadedAt() : attributes.lastModifiedTime().toInstant();
+        catalog.put(new FileEntry(
+                metadata != null ? metadata.filename() : hash,
+                attributes.size(),
+                hash,
+                uploadedAt,
+                known.map(FileEntry::lastAccessedAt).orElse(uploadedAt),
+                known.map(FileEntry::status).orElse(null)));
+        return true;
+    }
+
+    private Metadata readMetadata(String hash) {
+        Path metadata = metadataPath(hash);
+        if (!Files.exists(metadata)) {
+            // Copied in by hand, the hash stands in for the name
+            return null;
+        }
+        try {
+            return objectMapper.readValue(metadata.toFile(), Metadata.class);
+        }
+        catch (IOException e) {
+            log.warn("No readable name for stored file {}: {}", hash, e.getMessage());
+            return null;
+        }
+    }
 
-}
\ No newline at end of file
+    /**
+     * Deletes the files in a directory that match and were last written before this service started.
+     */
+    private int removeStale(Path directory, Predicate<Path> matches) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+            for (Path file : files) {
+                if (matches.test(file) && Files.getLastModifiedTime(file).toInstant().isBefore(startedAt)
+                        && Files.deleteIfExists(file)) {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Feeds every write to the scanner before passing it on, so a bad stream stops the copy early.
+     */
+    private static OutputStream scanning(OutputStream out, Mp3FrameScanner scanner) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                scanner.update(b, off, len);
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    private Object lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), locks.length)];
+    }
+
+    private Path objectPath(String hash) {
+        return objectsLocation.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path metadataPath(String hash) {
+        return objectsLocation.resolve(hash.substring(0, 2)).resolve(hash + METADATA_SUFFIX);
+    }
+
+    private void writeAtomically(Path target, byte[] content) throws IOException {
+        Path part = Files.createTempFile(tempLocation, "meta-", ".part");
+        try {
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE);
+                 OutputStream out = Channels.newOutputStream(channel)) {
+                out.write(content);
+                channel.force(true);
+            }
+            moveAtomically(part, target);
+            part = null;
+        }
+        finally {
+            deleteQuietly(part);
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            throw new StorageException("The upload directory must be on a single file system: " + target, e);
+        }
+    }
+
+    /**
+     * Makes a rename durable. Not every platform can open a directory for this, the rename is atomic either way.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        catch (IOException e) {
+            log.debug("Could not sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            log.warn("Could not delete temporary file {}: {}", file, e.getMessage());
+        }
+    }
+}
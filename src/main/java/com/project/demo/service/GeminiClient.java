@@ -0,0 +1,450 @@
+package com.project.demo.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.project.demo.exceptions.GeminiException;
+import com.project.demo.exceptions.GeminiUnavailableException;
+import com.project.demo.model.GeminiModel;
+import com.project.demo.model.ModelListResponse;
+import com.project.demo.properties.GeminiProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+/**
+ * Client for the Generative Language API. Every call runs under a deadline, is retried with
+ * exponential backoff (or the server's Retry-After) on 429, 5xx and I/O errors, is limited by a
+ * bulkhead and fails fast while the circuit breaker considers the API degraded.
+ * Answers are cached, a prompt asked again for the same model is answered without a call.
+ */
+@Service
+public class GeminiClient {
+
+    private static final Logger log = LoggerFactory.getLogger(GeminiClient.class);
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(429, 500, 502, 503, 504);
+
+    private final GeminiProperties properties;
+    private final ObjectMapper objectMapper;
+    private final String apiKey;
+    private final String defaultModel;
+    private final HttpClient httpClient;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final GeminiResponseCache responseCache;
+
+    public GeminiClient(GeminiProperties properties, ObjectMapper objectMapper, String apiKey, String defaultModel) {
+        this(properties, objectMapper, apiKey, defaultModel, GeminiResponseCache.disabled());
+    }
+
+    @Autowired
+    public GeminiClient(GeminiProperties properties, ObjectMapper objectMapper,
+                        @Value("${spring.ai.openai.api-key}") String apiKey,
+                        @Value("${spring.ai.openai.chat.options.model}") String defaultModel,
+                        GeminiResponseCache responseCache) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.apiKey = apiKey;
+        this.defaultModel = defaultModel;
+        // One client for the whole application, it keeps connections alive and multiplexes over HTTP/2
+        this.httpClient = HttpClient.newBuilder()
+                .version(properties.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.bulkhead = new Semaphore(properties.getMaxConcurrentCalls(), true);
+        this.circuitBreaker = new CircuitBreaker(properties.getCircuitFailureThreshold(),
+                properties.getCircuitOpenDuration());
+        this.responseCache = responseCache;
+    }
+
+    public String generateContent(String text, String modelId) {
+        return generateContent(text, modelId, new CancellationToken());
+    }
+
+    /**
+     * Cancelling the token aborts the request, also while it waits for the answer.
+     */
+    public String generateContent(String text, String modelId, CancellationToken cancellation) {
+        cancellation.throwIfCancelled();
+        String model = resolveModel(modelId);
+        log.debug("Calling Gemini model {} with text: {}...", model, text.substring(0, Math.min(50, text.length())));
+
+        ObjectNode requestBody = buildRequestBody(text);
+        byte[] body = toBytes(requestBody);
+        String key = GeminiResponseCache.key(model, requestBody.get("generationConfig"), text);
+        return responseCache.get(key, cancellation, () -> {
+            JsonNode response = execute(
+                    () -> HttpRequest.newBuilder(uri("/v1/models/" + model + ":generateContent"))
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .header("x-goog-api-key", apiKey)
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(body)),
+                    HttpResponse.BodyHandlers.ofByteArray(),
+                    httpResponse -> readJson(httpResponse.body()),
+                    cancellation);
+
+            String answer = extractText(response);
+            if (answer == null) {
+                throw new GeminiException("No valid response from Gemini API. Response: " + response);
+            }
+            return answer;
+        });
+    }
+
+    /**
+     * Streams the answer through {@code :streamGenerateContent}, handing every text chunk to the
+     * consumer as soon as it is parsed. Cancelling the token closes the response stream, which
+     * aborts the upstream request.
+     *
+     * @return the whole answer once the stream has ended
+     */
+    public String streamGenerateContent(String text, String modelId, Consumer<String> onToken,
+                                        CancellationToken cancellation) {
+        cancellation.throwIfCancelled();
+        String model = resolveModel(modelId);
+        log.debug("Streaming Gemini model {} with text: {}...", model, text.substring(0, Math.min(50, text.length())));
+
+        ObjectNode requestBody = buildRequestBody(text);
+        byte[] body = toBytes(requestBody);
+        String key = GeminiResponseCache.key(model, requestBody.get("generationConfig"), text);
+        AtomicBoolean streamed = new AtomicBoolean();
+        String answer = responseCache.get(key, cancellation, () -> {
+            streamed.set(true);
+            return execute(
+                    () -> HttpRequest.newBuilder(uri("/v1/models/" + model + ":streamGenerateContent?alt=sse"))
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE)
+                            .header("x-goog-api-key", apiKey)
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(body)),
+                    HttpResponse.BodyHandlers.ofInputStream(),
+                    httpResponse -> readStream(httpResponse.body(), onToken, cancellation),
+                    cancellation);
+        });
+        if (!streamed.get()) {
+            // A cached or shared answer arrives whole, as one token
+            onToken.accept(answer);
+        }
+        return answer;
+    }
+
+    private String readStream(InputStream body, Consumer<String> onToken, CancellationToken cancellation) {
+        StringBuilder answer = new StringBuilder();
+        try (InputStream in = body;
+             CancellationToken.Registration ignored = cancellation.onCancel(() -> closeQuietly(in));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Every SSE event carries one GenerateContentResponse holding the next chunk of text
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                String token = extractText(objectMapper.readTree(line.substring("data:".length()).trim()));
+                if (token != null && !token.isEmpty()) {
+                    answer.append(token);
+                    onToken.accept(token);
+                }
+            }
+        } catch (IOException e) {
+            cancellation.throwIfCancelled();
+            throw new GeminiException("Gemini stream broke off: " + e.getMessage(), e);
+        }
+        cancellation.throwIfCancelled();
+        if (answer.isEmpty()) {
+            throw new GeminiException("No valid response from Gemini API stream");
+        }
+        return answer.toString();
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // the reader sees the stream as closed either way
+        }
+    }
+
+    public List<GeminiModel> listModels() {
+        JsonNode response = execute(
+                () -> HttpRequest.newBuilder(uri("/v1beta/openai/models"))
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                        .GET(),
+                HttpResponse.BodyHandlers.ofByteArray(),
+                httpResponse -> readJson(httpResponse.body()));
+        try {
+            return objectMapper.treeToValue(response, ModelListResponse.class).data();
+        } catch (IOException e) {
+            throw new GeminiException("Unreadable model list from Gemini API", e);
+        }
+    }
+
+    public ObjectNode buildRequestBody(String text) {
+        ObjectNode requestBody = objectMapper.createObjectNode();
+
+        ObjectNode contentNode = objectMapper.createObjectNode();
+
+        ObjectNode textPart = objectMapper.createObjectNode();
+        textPart.put("text", text);
+
+        contentNode.set("parts", objectMapper.createArrayNode().add(textPart));
+
+        contentNode.put("role", "user");
+
+        requestBody.set("contents", objectMapper.createArrayNode().add(contentNode));
+
+        ObjectNode generationConfig = requestBody.putObject("generationConfig");
+        generationConfig.put("temperature", 0.7);
+        generationConfig.put("maxOutputTokens", 800);
+
+        return requestBody;
+    }
+
+    /**
+     * @return text of the first part of the first candidate, null when the response has none
+     */
+    public static String extractText(JsonNode response) {
+        JsonNode text = response.path("candidates").path(0).path("content").path("parts").path(0).path("text");
+        return text.isTextual() ? text.asText() : null;
+    }
+
+    public String resolveModel(String modelId) {
+        return modelId != null && !modelId.isEmpty() ? modelId : defaultModel;
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int getCallsInFlight() {
+        return properties.getMaxConcurrentCalls() - bulkhead.availablePermits();
+    }
+
+    /**
+     * Runs one logical call through the circuit breaker and the bulkhead. The reader consumes a
+     * successful response while the bulkhead slot is still held.
+     */
+    <T, R> R execute(Supplier<HttpRequest.Builder> request, HttpResponse.BodyHandler<T> handler,
+                     Function<HttpResponse<T>, R> reader) {
+        return execute(request, handler, reader, new CancellationToken());
+    }
+
+    /**
+     * @param cancellation aborts the request in flight and stops further retries
+     */
+    <T, R> R execute(Supplier<HttpRequest.Builder> request, HttpResponse.BodyHandler<T> handler,
+                     Function<HttpResponse<T>, R> reader, CancellationToken cancellation) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new GeminiUnavailableException("Gemini API circuit is open, failing fast");
+        }
+
+        boolean permitted;
+        try {
+            permitted = bulkhead.tryAcquire(properties.getBulkheadWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            circuitBreaker.onIgnored();
+            Thread.currentThread().interrupt();
+            throw new GeminiException("Interrupted while waiting for a Gemini call slot", e);
+        }
+        if (!permitted) {
+            circuitBreaker.onIgnored();
+            throw new GeminiUnavailableException("Too many concurrent Gemini calls, failing fast");
+        }
+
+        try {
+            R result = reader.apply(sendWithRetries(request, handler, cancellation));
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (GeminiException e) {
+            if (e.getStatusCode() == 0 || RETRYABLE_STATUS.contains(e.getStatusCode())) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onIgnored();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            circuitBreaker.onIgnored();
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private <T> HttpResponse<T> sendWithRetries(Supplier<HttpRequest.Builder> request,
+                                                HttpResponse.BodyHandler<T> handler,
+                                                CancellationToken cancellation) {
+        long deadline = System.nanoTime() + properties.getDeadline().toNanos();
+        GeminiException lastFailure = null;
+
+        for (int attempt = 1; attempt <= properties.getMaxAttempts(); attempt++) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Duration timeout = Duration.ofNanos(Math.min(properties.getRequestTimeout().toNanos(), remaining));
+
+            Duration delay;
+            try {
+                HttpResponse<T> response = send(request.get().timeout(timeout).build(), handler, cancellation);
+                int status = response.statusCode();
+                if (status >= 200 && status < 300) {
+                    return response;
+                }
+
+                lastFailure = new GeminiException("Gemini API returned HTTP " + status + ": " + errorBody(response), status);
+                if (!RETRYABLE_STATUS.contains(status)) {
+                    throw lastFailure;
+                }
+                delay = retryAfter(response).orElse(backoff(properties.getInitialBackoff(), attempt));
+            } catch (HttpTimeoutException e) {
+                lastFailure = new GeminiException("Gemini API did not answer within " + timeout, e);
+                delay = backoff(properties.getInitialBackoff(), attempt);
+            } catch (IOException e) {
+                lastFailure = new GeminiException("Gemini API call failed: " + e.getMessage(), e);
+                delay = backoff(properties.getInitialBackoff(), attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GeminiException("Interrupted while calling Gemini API", e);
+            }
+
+            if (attempt == properties.getMaxAttempts()) {
+                break;
+            }
+            if (System.nanoTime() + delay.toNanos() >= deadline) {
+                log.debug("Not retrying Gemini call, a {} pause would exceed the deadline", delay);
+                break;
+            }
+            log.debug("Gemini attempt {} failed ({}), retrying in {}", attempt, lastFailure.getMessage(), delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GeminiException("Interrupted while calling Gemini API", e);
+            }
+            cancellation.throwIfCancelled();
+        }
+
+        if (lastFailure == null) {
+            lastFailure = new GeminiException("Gemini API call exceeded its deadline of " + properties.getDeadline());
+        }
+        throw lastFailure;
+    }
+
+    /**
+     * Sends asynchronously so that a cancel can abort the exchange, {@link HttpClient#send} would only
+     * return once the server answered.
+     */
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                     CancellationToken cancellation) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> pending = httpClient.sendAsync(request, handler);
+        try (CancellationToken.Registration ignored = cancellation.onCancel(() -> pending.cancel(true))) {
+            return pending.get();
+        } catch (CancellationException e) {
+            throw new CancellationException(cancellation.getReason());
+        } catch (ExecutionException e) {
+            // An aborted exchange fails with an error of its own
+            cancellation.throwIfCancelled();
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            pending.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half of the delay is fixed, the other half random.
+     */
+    private Duration backoff(Duration initial, int attempt) {
+        long exponential = initial.toMillis() << Math.min(attempt - 1, 20);
+        long capped = Math.min(exponential, properties.getMaxBackoff().toMillis());
+        long half = capped / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    static Optional<Duration> retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue(HttpHeaders.RETRY_AFTER).map(String::trim).flatMap(value -> {
+            try {
+                return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value))));
+            } catch (NumberFormatException e) {
+                try {
+                    ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                    Duration wait = Duration.between(ZonedDateTime.now(at.getZone()), at);
+                    return Optional.of(wait.isNegative() ? Duration.ZERO : wait);
+                } catch (DateTimeParseException ignored) {
+                    return Optional.empty();
+                }
+            }
+        });
+    }
+
+    private static String errorBody(HttpResponse<?> response) {
+        Object body = response.body();
+        if (body instanceof byte[] bytes) {
+            return new String(bytes, 0, Math.min(bytes.length, 512), StandardCharsets.UTF_8);
+        }
+        if (body instanceof InputStream stream) {
+            try (stream) {
+                return new String(stream.readNBytes(512), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                return "";
+            }
+        }
+        return String.valueOf(body);
+    }
+
+    private JsonNode readJson(byte[] body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new GeminiException("Unreadable response from Gemini API", e);
+        }
+    }
+
+    private byte[] toBytes(JsonNode node) {
+        try {
+            return objectMapper.writeValueAsBytes(node);
+        } catch (IOException e) {
+            throw new GeminiException("Could not serialize Gemini request", e);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create(properties.getBaseUrl() + path);
+    }
+}
@@ -0,0 +1,162 @@
+package com.project.demo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.project.demo.exceptions.GeminiUnavailableException;
+import com.project.demo.model.GeminiModel;
+import com.project.demo.properties.GeminiProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-process copy of the Gemini model list. Fresh lists are served from memory, stale ones are served
+ * while a single background request refreshes them, and the last good list survives upstream failures.
+ */
+@Service
+public class GeminiModelCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(GeminiModelCatalog.class);
+
+    private final GeminiClient geminiClient;
+    private final GeminiProperties properties;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    // The one upstream request currently running, shared by every caller that needs it
+    private final AtomicReference<CompletableFuture<List<GeminiModel>>> inFlight = new AtomicReference<>();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gemini-model-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long lastFailureAt;
+
+    private record Snapshot(List<GeminiModel> models, long fetchedAt) {
+        Duration age() {
+            return Duration.ofMillis(System.currentTimeMillis() - fetchedAt);
+        }
+    }
+
+    @Autowired
+    public GeminiModelCatalog(GeminiClient geminiClient, GeminiProperties properties) {
+        this.geminiClient = geminiClient;
+        this.properties = properties;
+    }
+
+    public List<GeminiModel> getModels() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            return loadFirst();
+        }
+
+        Duration age = current.age();
+        if (age.compareTo(properties.getModelsTtl()) <= 0) {
+            return current.models();
+        }
+
+        boolean backingOff = isBackingOff();
+        if (age.compareTo(properties.getModelsTtl().plus(properties.getModelsStaleWhileRevalidate())) <= 0) {
+            if (!backingOff) {
+                refresh();
+            }
+            return current.models();
+        }
+
+        // Too old to serve without trying, but still better than an error page
+        if (backingOff) {
+            return current.models();
+        }
+        try {
+            return await(refresh());
+        } catch (RuntimeException e) {
+            log.warn("Serving model list from {} ago, refresh failed: {}", age, e.getMessage());
+            return current.models();
+        }
+    }
+
+    /**
+     * Without a list to fall back on callers fail fast while the API is backing off, rather than each one
+     * waiting for another failed request.
+     *
+     * @throws GeminiUnavailableException when no list could be loaded
+     */
+    private List<GeminiModel> loadFirst() {
+        if (isBackingOff()) {
+            throw new GeminiUnavailableException("Gemini model list is unavailable, the last attempt failed");
+        }
+        try {
+            return await(refresh());
+        } catch (GeminiUnavailableException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new GeminiUnavailableException("Could not load the Gemini model list: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean isBackingOff() {
+        return System.currentTimeMillis() - lastFailureAt < properties.getModelsFailureBackoff().toMillis();
+    }
+
+    /**
+     * @return how long until the next refresh may be attempted, at least a second
+     */
+    public Duration getRetryAfter() {
+        long remaining = properties.getModelsFailureBackoff().toMillis() - (System.currentTimeMillis() - lastFailureAt);
+        return Duration.ofMillis(Math.max(remaining, 1000));
+    }
+
+    /**
+     * Starts a refresh unless one is already running, in which case the running one is returned.
+     */
+    public CompletableFuture<List<GeminiModel>> refresh() {
+        while (true) {
+            CompletableFuture<List<GeminiModel>> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<List<GeminiModel>> created = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, created)) {
+                refresher.execute(() -> load(created));
+                return created;
+            }
+        }
+    }
+
+    private void load(CompletableFuture<List<GeminiModel>> future) {
+        try {
+            List<GeminiModel> models = List.copyOf(geminiClient.listModels());
+            snapshot.set(new Snapshot(models, System.currentTimeMillis()));
+            // Clear before completing so woken callers never pick up a finished request
+            inFlight.compareAndSet(future, null);
+            future.complete(models);
+        } catch (RuntimeException e) {
+            lastFailureAt = System.currentTimeMillis();
+            log.warn("Could not refresh Gemini model list: {}", e.getMessage());
+            inFlight.compareAndSet(future, null);
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static List<GeminiModel> await(CompletableFuture<List<GeminiModel>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
@@ -0,0 +1,328 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.project.demo.exceptions.StorageException;
+import com.project.demo.properties.GeminiCacheProperties;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Gemini answers by model, generation config and prompt, so asking the same again costs neither time nor quota.
+ * Concurrent identical requests share one call. Only answers are cached, a call that fails leaves nothing behind
+ * and the next request tries again.
+ * <p>
+ * Memory is bounded by {@code gemini-cache.max-size} with W-TinyLFU eviction. With a
+ * {@code gemini-cache.spill-location} evicted answers go to disk and come back to memory when asked for again.
+ */
+@Service
+public class GeminiResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(GeminiResponseCache.class);
+    private static final String SUFFIX = ".txt";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Sizes the frequency sketch, a summary with its key weighs about this much
+    private static final long TYPICAL_WEIGHT = 4 * 1024;
+
+    private final TinyLfuCache<String> memory;
+    private final Path spillLocation;
+    private final long spillMaxBytes;
+    // key -> size on disk, iteration order is least recently used first
+    private final LinkedHashMap<String, Long> spilled = new LinkedHashMap<>(64, 0.75f, true);
+    private long spilledBytes;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    @Autowired
+    public GeminiResponseCache(GeminiCacheProperties properties) {
+        long maxBytes = properties.getMaxSize().toBytes();
+        this.memory = maxBytes <= 0 ? null : new TinyLfuCache<>(maxBytes,
+                (int) Math.min(Integer.MAX_VALUE, maxBytes / TYPICAL_WEIGHT),
+                (key, value) -> 2L * (key.length() + value.length()) + 64);
+        String location = properties.getSpillLocation();
+        this.spillLocation = memory == null || location == null || location.isBlank() ? null : Paths.get(location);
+        this.spillMaxBytes = properties.getSpillMaxSize().toBytes();
+    }
+
+    /**
+     * A cache that keeps nothing, every request is its own call.
+     */
+    public static GeminiResponseCache disabled() {
+        GeminiCacheProperties properties = new GeminiCacheProperties();
+        properties.setMaxSize(DataSize.ofBytes(0));
+        return new GeminiResponseCache(properties);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (spillLocation == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(spillLocation);
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(spillLocation)) {
+                files = stream.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                        .sorted(Comparator.comparingLong(GeminiResponseCache::lastModified))
+                        .toList();
+            }
+            synchronized (spilled) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    long size = Files.size(file);
+                    spilled.put(name.substring(0, name.length() - SUFFIX.length()), size);
+                    spilledBytes += size;
+                }
+            }
+            log.info("Gemini answer cache has {} answers on disk, {} bytes", spilled.size(), spilledBytes);
+        }
+        catch (IOException e) {
+            throw new StorageException("Could not initialize the Gemini answer cache", e);
+        }
+    }
+
+    /**
+     * Same model, generation config and prompt give the same key. Prompts are compared in Unicode NFC with
+     * surrounding whitespace dropped and any run of whitespace taken as one space.
+     */
+    public static String key(String model, JsonNode generationConfig, String prompt) {
+        String normalized = WHITESPACE.matcher(Normalizer.normalize(prompt, Normalizer.Form.NFC).strip())
+                .replaceAll(" ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(generationConfig).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * The cached answer, or the one {@code loader} gives. While a call for the key is running others wait for
+     * it instead of calling too. A waiter whose call was cancelled by its own caller makes the call itself.
+     *
+     * @throws CancellationException when {@code cancellation} was cancelled while waiting
+     */
+    public String get(String key, CancellationToken cancellation, Supplier<String> loader) {
+        if (memory == null) {
+            return loader.get();
+        }
+        while (true) {
+            Optional<String> cached = lookup(key);
+            if (cached.isPresent()) {
+                hits.incrementAndGet();
+                return cached.get();
+            }
+            CompletableFuture<String> call = new CompletableFuture<>();
+            CompletableFuture<String> running = inFlight.putIfAbsent(key, call);
+            if (running == null) {
+                return load(key, call, loader);
+            }
+            coalesced.incrementAndGet();
+            Optional<String> shared = await(running, cancellation);
+            if (shared.isPresent()) {
+                return shared.get();
+            }
+        }
+    }
+
+    private String load(String key, CompletableFuture<String> call, Supplier<String> loader) {
+        try {
+            // The call before may have finished between the lookup and taking its place
+            String answer = lookup(key).orElse(null);
+            if (answer == null) {
+                misses.incrementAndGet();
+                answer = loader.get();
+                put(key, answer);
+            }
+            call.complete(answer);
+            return answer;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * @return empty when the call was cancelled by its own caller
+     */
+    private static Optional<String> await(CompletableFuture<String> running, CancellationToken cancellation) {
+        CompletableFuture<String> waiting = running.thenApply(Function.identity());
+        try (CancellationToken.Registration ignored = cancellation.onCancel(() -> waiting.cancel(false))) {
+            return Optional.of(waiting.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                cancellation.throwIfCancelled();
+                return Optional.empty();
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (CancellationException e) {
+            cancellation.throwIfCancelled();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for Gemini");
+        }
+    }
+
+    private Optional<String> lookup(String key) {
+        String answer = memory.get(key);
+        if (answer != null || spillLocation == null) {
+            return Optional.ofNullable(answer);
+        }
+        synchronized (spilled) {
+            if (spilled.get(key) == null) {
+                return Optional.empty();
+            }
+        }
+        try {
+            answer = Files.readString(resolve(key), StandardCharsets.UTF_8);
+        }
+        catch (IOException e) {
+            log.warn("Dropping unreadable Gemini answer {}", key, e);
+            removeSpilled(key);
+            return Optional.empty();
+        }
+        // Back in memory, it leaves the disk
+        removeSpilled(key);
+        put(key, answer);
+        return Optional.of(answer);
+    }
+
+    private void put(String key, String answer) {
+        for (Map.Entry<String, String> evicted : memory.put(key, answer)) {
+            spill(evicted.getKey(), evicted.getValue());
+        }
+    }
+
+    private void spill(String key, String answer) {
+        if (spillLocation == null) {
+            return;
+        }
+        try {
+            byte[] bytes = answer.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > spillMaxBytes) {
+                return;
+            }
+            Path temp = Files.createTempFile(spillLocation, key, ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (spilled) {
+                Long previous = spilled.put(key, (long) bytes.length);
+                spilledBytes += bytes.length - (previous == null ? 0 : previous);
+                Iterator<Map.Entry<String, Long>> iterator = spilled.entrySet().iterator();
+                while (spilledBytes > spillMaxBytes && iterator.hasNext()) {
+                    Map.Entry<String, Long> eldest = iterator.next();
+                    iterator.remove();
+                    spilledBytes -= eldest.getValue();
+                    deleteQuietly(eldest.getKey());
+                }
+            }
+        }
+        catch (IOException e) {
+            log.warn("Could not spill Gemini answer {}", key, e);
+        }
+    }
+
+    private void removeSpilled(String key) {
+        synchronized (spilled) {
+            Long size = spilled.remove(key);
+            if (size != null) {
+                spilledBytes -= size;
+                deleteQuietly(key);
+            }
+        }
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        }
+        catch (IOException e) {
+            log.warn("Could not delete spilled Gemini answer {}", key, e);
+        }
+    }
+
+    private Path resolve(String key) {
+        return spillLocation.resolve(key + SUFFIX);
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        }
+        catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Requests that waited for an identical call in flight instead of making their own.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getEvictions() {
+        return memory == null ? 0 : memory.evictions();
+    }
+
+    public long getMemoryBytes() {
+        return memory == null ? 0 : memory.weightedSize();
+    }
+
+    public long getSpilledBytes() {
+        synchronized (spilled) {
+            return spilledBytes;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.exceptions.StorageException;
+import com.project.demo.model.HistoryEntry;
+import com.project.demo.model.HistoryPage;
+import com.project.demo.properties.HistoryProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Every processing result ever made, kept after uploads and cache entries are gone. Results are appended to
+ * {@code results.log} as length and CRC prefixed JSON records and never rewritten. {@code results.idx} holds a
+ * fixed size slot per record, its offset in the log and the upload hash, so a start only reads the index.
+ * <p>
+ * A crash can leave a torn record at the end of the log or index slots missing for the last records. Both are
+ * repaired on start: the log is read on from the last indexed record and cut at the first record that does not
+ * check out.
+ */
+@Service
+public class HistoryStore {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryStore.class);
+    private static final int RECORD_HEADER = 8;
+    private static final int HASH_BYTES = 32;
+    private static final int SLOT = 8 + HASH_BYTES;
+
+    private final Path logFile;
+    private final Path indexFile;
+    private final boolean sync;
+    private final ObjectMapper objectMapper;
+
+    private FileChannel logChannel;
+    private FileChannel indexChannel;
+    private long logSize;
+    // Log offset of every record, by id
+    private long[] offsets = new long[64];
+    private int count;
+    private final Map<String, List<Integer>> idsByHash = new HashMap<>();
+    private final List<Consumer<HistoryEntry>> listeners = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public HistoryStore(HistoryProperties properties, ObjectMapper objectMapper) {
+        if (properties.getLocation().trim().isEmpty()) {
+            throw new StorageException("History location can not be Empty.");
+        }
+        Path rootLocation = Paths.get(properties.getLocation());
+        this.logFile = rootLocation.resolve("results.log");
+        this.indexFile = rootLocation.resolve("results.idx");
+        this.sync = properties.isSync();
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public synchronized void init() {
+        try {
+            Files.createDirectories(logFile.getParent());
+            logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            logSize = logChannel.size();
+            readIndex();
+            recoverTail();
+            log.info("History holds {} results, {} bytes", count, logSize);
+        }
+        catch (IOException e) {
+            throw new StorageException("Could not open the result history", e);
+        }
+    }
+
+    /**
+     * Loads the index slots whose records lie within the log, dropping the rest.
+     */
+    private void readIndex() throws IOException {
+        long slots = indexChannel.size() / SLOT;
+        ByteBuffer slot = ByteBuffer.allocate(SLOT);
+        byte[] hash = new byte[HASH_BYTES];
+        for (long i = 0; i < slots; i++) {
+            slot.clear();
+            readFully(indexChannel, slot, i * SLOT);
+            slot.flip();
+            long offset = slot.getLong();
+            slot.get(hash);
+            if (offset < (count == 0 ? 0 : offsets[count - 1] + RECORD_HEADER) || offset + RECORD_HEADER > logSize) {
+                break;
+            }
+            add(offset, lookupKey(hash));
+        }
+        indexChannel.truncate((long) count * SLOT);
+    }
+
+    /**
+     * Indexes the records written after the last index slot and cuts the log after the last intact record.
+     */
+    private void recoverTail() throws IOException {
+        long position = 0;
+        if (count > 0) {
+            long last = offsets[count - 1];
+            if (readRecord(last).isPresent()) {
+                position = last + RECORD_HEADER + readHeader(last).getInt();
+            } else {
+                // The last indexed record is torn itself
+                List<Integer> ids = idsByHash.get(slotHash(count - 1));
+                if (ids != null) {
+                    ids.remove(ids.size() - 1);
+                }
+                count--;
+                indexChannel.truncate((long) count * SLOT);
+                position = last;
+            }
+        }
+        while (position + RECORD_HEADER <= logSize) {
+            Optional<HistoryEntry> entry = readRecord(position);
+            if (entry.isEmpty()) {
+                break;
+            }
+            writeSlot(position, entry.get().fileHash());
+            add(position, lookupKey(entry.get().fileHash()));
+            position += RECORD_HEADER + readHeader(position).getInt();
+        }
+        if (position < logSize) {
+            log.warn("Cutting {} bytes of a torn record off the result history", logSize - position);
+            logChannel.truncate(position);
+            logSize = position;
+        }
+    }
+
+    private String slotHash(int id) throws IOException {
+        ByteBuffer hash = ByteBuffer.allocate(HASH_BYTES);
+        readFully(indexChannel, hash, (long) id * SLOT + 8);
+        return lookupKey(hash.array());
+    }
+
+    /**
+     * Appends a result, the id of {@code entry} is replaced by the one it gets.
+     */
+    public synchronized HistoryEntry append(HistoryEntry entry) {
+        try {
+            HistoryEntry stored = entry.withId(count);
+            byte[] json = objectMapper.writeValueAsBytes(stored);
+            CRC32 crc = new CRC32();
+            crc.update(json);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + json.length)
+                    .putInt(json.length)
+                    .putInt((int) crc.getValue())
+                    .put(json)
+                    .flip();
+            long offset = logSize;
+            writeFully(logChannel, record, offset);
+            if (sync) {
+                logChannel.force(false);
+            }
+            // Not forced, a lost slot is found again from the log on start
+            writeSlot(offset, stored.fileHash());
+            logSize = offset + record.capacity();
+            add(offset, lookupKey(stored.fileHash()));
+            publish(stored);
+            return stored;
+        }
+        catch (IOException e) {
+            throw new StorageException("Could not append to the result history", e);
+        }
+    }
+
+    /**
+     * Calls {@code listener} with every entry appended from now on, in id order and before {@link #append}
+     * returns. Listeners run under the store's lock and must not call back into it.
+     */
+    public void onAppend(Consumer<HistoryEntry> listener) {
+        listeners.add(listener);
+    }
+
+    private void publish(HistoryEntry entry) {
+        for (Consumer<HistoryEntry> listener : listeners) {
+            try {
+                listener.accept(entry);
+            } catch (RuntimeException e) {
+                log.warn("History listener failed on entry {}", entry.id(), e);
+            }
+        }
+    }
+
+    public Optional<HistoryEntry> get(long id) {
+        long offset;
+        synchronized (this) {
+            if (id < 0 || id >= count) {
+                return Optional.empty();
+            }
+            offset = offsets[(int) id];
+        }
+        return Optional.of(read(offset));
+    }
+
+    /**
+     * Results newest first, of one upload when {@code fileHash} is given. Transcriptions are left out.
+     */
+    public HistoryPage list(String fileHash, int page, int size) {
+        long[] pageOffsets;
+        long total;
+        synchronized (this) {
+            List<Integer> ids = fileHash == null ? null : idsByHash.getOrDefault(lookupKey(fileHash), List.of());
+            total = ids == null ? count : ids.size();
+            long from = total - 1 - (long) page * size;
+            int length = (int) Math.max(0, Math.min(size, from + 1));
+            pageOffsets = new long[length];
+            for (int i = 0; i < length; i++) {
+                int index = (int) (from - i);
+                pageOffsets[i] = offsets[ids == null ? index : ids.get(index)];
+            }
+        }
+        List<HistoryEntry> items = new ArrayList<>(pageOffsets.length);
+        for (long offset : pageOffsets) {
+            items.add(read(offset).withoutTranscription());
+        }
+        return new HistoryPage(items, page, size, total);
+    }
+
+    /**
+     * The newest result for an upload and summarizer that can stand in for processing it again.
+     */
+    public Optional<HistoryEntry> findReusable(String fileHash, String processingMethod, String modelId) {
+        String key = ResultCache.key(fileHash, processingMethod, modelId);
+        List<Long> candidates = new ArrayList<>();
+        synchronized (this) {
+            List<Integer> ids = idsByHash.getOrDefault(lookupKey(fileHash), List.of());
+            for (int i = ids.size() - 1; i >= 0; i--) {
+                candidates.add(offsets[ids.get(i)]);
+            }
+        }
+        for (long offset : candidates) {
+            HistoryEntry entry = read(offset);
+            if (!entry.fallback() && entry.transcription() != null
+                    && key.equals(ResultCache.key(fileHash, entry.processingMethod(), entry.modelId()))) {
+                return Optional.of(entry);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    private HistoryEntry read(long offset) {
+        try {
+            return readRecord(offset).orElseThrow(
+                    () -> new StorageException("Result history record at " + offset + " is damaged"));
+        }
+        catch (IOException e) {
+            throw new StorageException("Could not read the result history", e);
+        }
+    }
+
+    /**
+     * @return empty when the record is cut short or its checksum does not match
+     */
+    private Optional<HistoryEntry> readRecord(long offset) throws IOException {
+        ByteBuffer header = readHeader(offset);
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (length < 0 || offset + RECORD_HEADER + length > logChannel.size()) {
+            return Optional.empty();
+        }
+        ByteBuffer json = ByteBuffer.allocate(length);
+        readFully(logChannel, json, offset + RECORD_HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(json.array());
+        if ((int) crc.getValue() != checksum) {
+            return Optional.empty();
+        }
+        return Optional.of(objectMapper.readValue(json.array(), HistoryEntry.class));
+    }
+
+    private ByteBuffer readHeader(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        readFully(logChannel, header, offset);
+        return header.flip();
+    }
+
+    private void writeSlot(long offset, String fileHash) throws IOException {
+        ByteBuffer slot = ByteBuffer.allocate(SLOT).putLong(offset).put(hashBytes(fileHash)).flip();
+        writeFully(indexChannel, slot, (long) count * SLOT);
+    }
+
+    private void add(long offset, String key) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        offsets[count] = offset;
+        if (key != null) {
+            idsByHash.computeIfAbsent(key, ignored -> new ArrayList<>()).add(count);
+        }
+        count++;
+    }
+
+    // Upload hashes are SHA-256 in hex, anything else is kept in the log but can not be looked up
+    private static byte[] hashBytes(String fileHash) {
+        try {
+            byte[] bytes = HexFormat.of().parseHex(fileHash);
+            if (bytes.length == HASH_BYTES) {
+                return bytes;
+            }
+        }
+        catch (IllegalArgumentException | NullPointerException e) {
+            // Falls through to the empty hash
+        }
+        return new byte[HASH_BYTES];
+    }
+
+    /**
+     * @return the hash as lower case hex, null for the empty hash
+     */
+    private static String lookupKey(byte[] hash) {
+        for (byte b : hash) {
+            if (b != 0) {
+                return HexFormat.of().formatHex(hash);
+            }
+        }
+        return null;
+    }
+
+    private static String lookupKey(String fileHash) {
+        return lookupKey(hashBytes(fileHash));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + channel);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        try {
+            if (logChannel != null) {
+                logChannel.close();
+                indexChannel.close();
+            }
+        }
+        catch (IOException e) {
+            log.warn("Could not close the result history", e);
+        }
+    }
+}
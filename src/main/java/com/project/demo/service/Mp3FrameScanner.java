@@ -0,0 +1,317 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.project.demo.exceptions.InvalidAudioException;
+import com.project.demo.model.AudioInfo;
+
+/**
+ * Reads MPEG audio frame headers from a byte stream fed in pieces, without decoding any audio.
+ * <p>
+ * An ID3v2 tag at the start is skipped, after that every frame header gives the length of its frame,
+ * so the scanner jumps from header to header. A stream counts as found after three frames in a row
+ * with the same version, layer and sample rate. Bytes where no header is expected, an ID3v1 or APE
+ * tag at the end or damage in the middle, are skipped one at a time until the next frame of that
+ * stream. MPEG 1, 2 and 2.5 layer I to III are recognised, free-format streams are not.
+ * <p>
+ * Not thread-safe, one scanner reads one stream.
+ */
+public class Mp3FrameScanner {
+
+    // Sync word, version, layer and sample rate, the parts of a header every frame of a stream shares
+    private static final int STREAM_MASK = 0xFFFE0C00;
+    private static final int SYNC = 0xFFE00000;
+    private static final int CONFIRM_FRAMES = 3;
+    // An upload without a single stream in this many bytes is not MP3
+    private static final int MAX_LEADING_JUNK = 64 * 1024;
+    // Beyond this share of bytes outside frames the frames found are more likely noise than audio
+    private static final double MAX_JUNK_RATIO = 0.1;
+    private static final int ID3_HEADER_LENGTH = 10;
+
+    // kbit/s by bitrate index: MPEG 1 layer I, II, III, then MPEG 2 and 2.5 layer I, layer II and III
+    private static final int[][] BITRATES = {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+    };
+    // Hz by version bits (2.5, reserved, 2, 1) and sample rate index
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},
+            null,
+            {22050, 24000, 16000},
+            {44100, 48000, 32000},
+    };
+
+    /**
+     * A frame boundary where a chunk of the recording can start.
+     *
+     * @param offset byte offset of the frame header
+     * @param start playing time before the frame
+     */
+    public record Cut(long offset, Duration start) {
+    }
+
+    private final Duration maxDuration;
+    private final Duration cutEvery;
+    private final List<Cut> cuts = new ArrayList<>();
+
+    // The bytes of a header split between two pieces
+    private final byte[] carry = new byte[ID3_HEADER_LENGTH];
+    private int carryLength;
+    private long position;
+    private long skip;
+    private boolean tagChecked;
+    private boolean expectHeader;
+
+    private int stream;
+    private int sampleRate;
+    private int samplesPerFrame;
+    private boolean confirmed;
+    private int runFrames;
+    private long runBytes;
+
+    private long frames;
+    private long samples;
+    private long audioBytes;
+    private long junkBytes;
+    private long nextCut;
+
+    /**
+     * @param maxDuration longest stream accepted, null for any length
+     * @param cutEvery distance between the cuts to record, null for none
+     */
+    public Mp3FrameScanner(Duration maxDuration, Duration cutEvery) {
+        this.maxDuration = maxDuration;
+        this.cutEvery = cutEvery == null || cutEvery.isZero() ? null : cutEvery;
+    }
+
+    /**
+     * Scans a whole file.
+     *
+     * @return the scanner, {@link #finish()} checks the stream
+     */
+    public static Mp3FrameScanner scan(Path file, Duration cutEvery) throws IOException {
+        Mp3FrameScanner scanner = new Mp3FrameScanner(null, cutEvery);
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                scanner.update(buffer, 0, read);
+            }
+        }
+        return scanner;
+    }
+
+    /**
+     * Feeds the next piece of the stream.
+     *
+     * @throws InvalidAudioException as soon as the stream cannot be MP3 or is longer than allowed
+     */
+    public void update(byte[] buffer, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        if (carryLength > 0) {
+            // Headers starting in the carried bytes are read with just enough of the new piece appended
+            int taken = Math.min(length, carry.length - carryLength);
+            System.arraycopy(buffer, offset, carry, carryLength, taken);
+            int joined = carryLength + taken;
+            int stopped = scan(carry, 0, joined, carryLength, position - carryLength);
+            if (stopped < carryLength) {
+                // The whole piece went into the carry and it is still too short
+                System.arraycopy(carry, stopped, carry, 0, joined - stopped);
+                carryLength = joined - stopped;
+                position += length;
+                return;
+            }
+            start = offset + stopped - carryLength;
+            carryLength = 0;
+        }
+        int stopped = scan(buffer, start, end, end, position - offset);
+        carryLength = end - stopped;
+        System.arraycopy(buffer, stopped, carry, 0, carryLength);
+        position += length;
+    }
+
+    /**
+     * Checks the stream once all of it was fed.
+     *
+     * @throws InvalidAudioException when no MP3 stream was found or most of the bytes are not part of it
+     */
+    public AudioInfo finish() {
+        if (!confirmed) {
+            if (runFrames == 0) {
+                throw new InvalidAudioException("No MP3 audio found in the upload");
+            }
+            // Shorter than the frames it takes to be sure, but nothing else in it either
+            confirm();
+        }
+        if (junkBytes > position * MAX_JUNK_RATIO) {
+            throw new InvalidAudioException("Not an MP3 stream, %d%% of the upload is not audio"
+                    .formatted(junkBytes * 100 / position));
+        }
+        Duration duration = duration(samples);
+        double seconds = samples / (double) sampleRate;
+        return new AudioInfo(duration, frames, (int) Math.round(audioBytes * 8 / seconds / 1000), sampleRate);
+    }
+
+    /**
+     * Frame boundaries closest after every multiple of the cut distance, in stream order.
+     */
+    public List<Cut> getCuts() {
+        return List.copyOf(cuts);
+    }
+
+    /**
+     * @param limit the first index a header may not start at
+     * @param base stream offset of {@code data[0]}
+     * @return the index to continue at, below {@code end} when a header needs bytes of the next piece
+     */
+    private int scan(byte[] data, int i, int end, int limit, long base) {
+        while (i < limit) {
+            if (skip > 0) {
+                int skipped = (int) Math.min(skip, end - i);
+                i += skipped;
+                skip -= skipped;
+                continue;
+            }
+            if (!tagChecked) {
+                if (end - i < ID3_HEADER_LENGTH) {
+                    return i;
+                }
+                tagChecked = true;
+                if (data[i] == 'I' && data[i + 1] == 'D' && data[i + 2] == '3') {
+                    // Synchsafe size without the header, plus a footer when flagged
+                    skip = ID3_HEADER_LENGTH + ((data[i + 6] & 0x7F) << 21 | (data[i + 7] & 0x7F) << 14
+                            | (data[i + 8] & 0x7F) << 7 | data[i + 9] & 0x7F)
+                            + ((data[i + 5] & 0x10) != 0 ? ID3_HEADER_LENGTH : 0);
+                    continue;
+                }
+            }
+            if (end - i < 4) {
+                return i;
+            }
+            int header = (data[i] & 0xFF) << 24 | (data[i + 1] & 0xFF) << 16 | (data[i + 2] & 0xFF) << 8
+                    | data[i + 3] & 0xFF;
+            if (!frame(header, base + i)) {
+                junkBytes++;
+                i++;
+                if (!confirmed && junkBytes > MAX_LEADING_JUNK) {
+                    throw new InvalidAudioException("No MP3 audio found in the first %d KB of the upload"
+                            .formatted(MAX_LEADING_JUNK / 1024));
+                }
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Takes the header at a stream offset, or counts a lost sync.
+     *
+     * @return false when there is no frame of the current stream at this offset
+     */
+    private boolean frame(int header, long offset) {
+        int length = frameLength(header);
+        boolean matches = length != 0 && (stream == 0 || (header & STREAM_MASK) == stream);
+        if (!matches && expectHeader && !confirmed) {
+            // A header that is not followed by another one was a chance match in other data,
+            // the one here may still start the real stream
+            junkBytes += runBytes;
+            runFrames = 0;
+            runBytes = 0;
+            stream = 0;
+            matches = length != 0;
+        }
+        if (!matches) {
+            expectHeader = false;
+            return false;
+        }
+        if (stream == 0) {
+            stream = header & STREAM_MASK;
+            sampleRate = SAMPLE_RATES[header >>> 19 & 3][header >>> 10 & 3];
+            samplesPerFrame = samplesPerFrame(header);
+        }
+        if (confirmed) {
+            if (cutEvery != null && samples >= nextCut) {
+                cuts.add(new Cut(offset, duration(samples)));
+                nextCut += cutSamples();
+            }
+            frames++;
+            samples += samplesPerFrame;
+            audioBytes += length;
+            if (maxDuration != null && duration(samples).compareTo(maxDuration) > 0) {
+                throw new InvalidAudioException("The recording is longer than the %d minute limit"
+                        .formatted(maxDuration.toMinutes()));
+            }
+        } else {
+            runFrames++;
+            runBytes += length;
+            if (runFrames == CONFIRM_FRAMES) {
+                confirm();
+            }
+        }
+        skip = length;
+        expectHeader = true;
+        return true;
+    }
+
+    private void confirm() {
+        confirmed = true;
+        frames = runFrames;
+        samples = (long) runFrames * samplesPerFrame;
+        audioBytes = runBytes;
+        if (cutEvery != null) {
+            // No cut at the very start, the first chunk begins there anyway
+            nextCut = cutSamples();
+        }
+    }
+
+    private long cutSamples() {
+        return cutEvery.toMillis() * sampleRate / 1000;
+    }
+
+    private Duration duration(long sampleCount) {
+        return Duration.ofNanos(sampleCount * 1_000_000_000L / sampleRate);
+    }
+
+    /**
+     * @return the length of the frame in bytes including the header, zero when this is not a header
+     */
+    static int frameLength(int header) {
+        if ((header & SYNC) != SYNC) {
+            return 0;
+        }
+        int version = header >>> 19 & 3;
+        int layer = header >>> 17 & 3;
+        int bitrateIndex = header >>> 12 & 0xF;
+        int sampleRateIndex = header >>> 10 & 3;
+        if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return 0;
+        }
+        boolean mpeg1 = version == 3;
+        int table = mpeg1 ? 3 - layer : layer == 3 ? 3 : 4;
+        int bitrate = BITRATES[table][bitrateIndex] * 1000;
+        int sampleRate = SAMPLE_RATES[version][sampleRateIndex];
+        int padding = header >>> 9 & 1;
+        return switch (layer) {
+            case 3 -> (12 * bitrate / sampleRate + padding) * 4;
+            case 2 -> 144 * bitrate / sampleRate + padding;
+            default -> (mpeg1 ? 144 : 72) * bitrate / sampleRate + padding;
+        };
+    }
+
+    private static int samplesPerFrame(int header) {
+        return switch (header >>> 17 & 3) {
+            case 3 -> 384;
+            case 2 -> 1152;
+            default -> (header >>> 19 & 3) == 3 ? 1152 : 576;
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package com.project.demo.service;
+
+import java.util.Locale;
+
+import com.project.demo.model.JobStatus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gauges and cache counters read from the services on every scrape.
+ */
+@Component
+public class PipelineGauges implements MeterBinder {
+
+    private final TranscriptionJobService jobService;
+    private final PythonWorkerPool pythonWorkerPool;
+    private final ResultCache resultCache;
+    private final GeminiClient geminiClient;
+    private final GeminiResponseCache geminiCache;
+    private final FileCatalog fileCatalog;
+    private final RetentionService retentionService;
+    private final TranscriptionScheduler scheduler;
+
+    @Autowired
+    public PipelineGauges(TranscriptionJobService jobService, PythonWorkerPool pythonWorkerPool,
+                          ResultCache resultCache, GeminiClient geminiClient, GeminiResponseCache geminiCache,
+                          FileCatalog fileCatalog, RetentionService retentionService,
+                          TranscriptionScheduler scheduler) {
+        this.jobService = jobService;
+        this.pythonWorkerPool = pythonWorkerPool;
+        this.resultCache = resultCache;
+        this.geminiClient = geminiClient;
+        this.geminiCache = geminiCache;
+        this.fileCatalog = fileCatalog;
+        this.retentionService = retentionService;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (JobStatus status : new JobStatus[] {JobStatus.QUEUED, JobStatus.RUNNING}) {
+            Gauge.builder("transcription.jobs.in_flight", jobService, service -> service.countJobs(status))
+                    .description("Jobs that are waiting or being processed")
+                    .tag("status", status.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+
+        Gauge.builder("transcription.sse.subscribed_jobs", jobService, TranscriptionJobService::countSubscribedJobs)
+                .description("Jobs with open progress streams")
+                .register(registry);
+
+        Gauge.builder("transcription.queue.depth", scheduler, TranscriptionScheduler::getQueued)
+                .description("Jobs waiting for a free processing slot")
+                .register(registry);
+        Gauge.builder("transcription.slots", scheduler, TranscriptionScheduler::getRunning)
+                .tag("state", "busy").register(registry);
+        Gauge.builder("transcription.slots", scheduler, TranscriptionScheduler::getParallelism)
+                .tag("state", "total").register(registry);
+
+        Gauge.builder("python.workers", pythonWorkerPool, PythonWorkerPool::getIdleCount)
+                .tag("state", "idle").register(registry);
+        Gauge.builder("python.workers", pythonWorkerPool, PythonWorkerPool::getBusyCount)
+                .tag("state", "busy").register(registry);
+        Gauge.builder("python.workers", pythonWorkerPool, PythonWorkerPool::getLiveCount)
+                .tag("state", "live").register(registry);
+
+        FunctionCounter.builder("result_cache.requests", resultCache, ResultCache::getHits)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("result_cache.requests", resultCache, ResultCache::getMisses)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("result_cache.evictions", resultCache, ResultCache::getEvictions)
+                .register(registry);
+        Gauge.builder("result_cache.size", resultCache, ResultCache::getTotalBytes)
+                .baseUnit("bytes").register(registry);
+
+        FunctionCounter.builder("gemini_cache.requests", geminiCache, GeminiResponseCache::getHits)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("gemini_cache.requests", geminiCache, GeminiResponseCache::getMisses)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("gemini_cache.requests", geminiCache, GeminiResponseCache::getCoalesced)
+                .tag("result", "coalesced").register(registry);
+        FunctionCounter.builder("gemini_cache.evictions", geminiCache, GeminiResponseCache::getEvictions)
+                .register(registry);
+        Gauge.builder("gemini_cache.size", geminiCache, GeminiResponseCache::getMemoryBytes)
+                .baseUnit("bytes").tag("area", "memory").register(registry);
+        Gauge.builder("gemini_cache.size", geminiCache, GeminiResponseCache::getSpilledBytes)
+                .baseUnit("bytes").tag("area", "disk").register(registry);
+
+        Gauge.builder("storage.used", fileCatalog, FileCatalog::totalBytes)
+                .baseUnit("bytes").tag("area", "uploads").register(registry);
+        Gauge.builder("storage.used", retentionService, RetentionService::getPythonCacheBytes)
+                .baseUnit("bytes").tag("area", "python_cache").register(registry);
+        for (RetentionService.Area area : RetentionService.Area.values()) {
+            String areaTag = area.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("storage.quota", retentionService, service -> service.getQuota(area))
+                    .baseUnit("bytes").tag("area", areaTag).register(registry);
+            FunctionCounter.builder("retention.evicted", retentionService, service -> service.getEvictedBytes(area))
+                    .baseUnit("bytes").tag("area", areaTag).register(registry);
+            for (RetentionService.Reason reason : RetentionService.Reason.values()) {
+                FunctionCounter.builder("retention.evictions", retentionService,
+                                service -> service.getEvictions(area, reason))
+                        .description("Files removed by the retention rules")
+                        .tag("area", areaTag)
+                        .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                        .register(registry);
+            }
+        }
+
+        Gauge.builder("gemini.calls.in_flight", geminiClient, GeminiClient::getCallsInFlight)
+                .register(registry);
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("gemini.circuit.state", geminiClient, client -> client.getCircuitState() == state ? 1 : 0)
+                    .description("1 for the state the Gemini circuit breaker is in")
+                    .tag("state", state.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.project.demo.service;
+
+import java.time.Duration;
+import java.util.Locale;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.project.demo.model.JobStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Timers for every stage an upload goes through, plus error counters, so latency can be attributed
+ * to upload I/O, worker startup, Whisper, the summary backend or the ROUGE computation.
+ */
+@Component
+public class PipelineMetrics {
+
+    public enum Stage {
+        STORE,
+        WORKER_SPAWN,
+        TRANSCRIPTION,
+        SUMMARIZATION,
+        GEMINI_CALL,
+        METRICS;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Work that is timed, may throw the checked exception of the wrapped call.
+     */
+    @FunctionalInterface
+    public interface TimedCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private final MeterRegistry registry;
+
+    @Autowired
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T, E extends Exception> T time(Stage stage, TimedCall<T, E> call) throws E {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.call();
+            outcome = "success";
+            return result;
+        } catch (Exception e) {
+            countError(stage, e);
+            throw e;
+        } finally {
+            stageTimer(stage.tag(), outcome).record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Records the stage timings a Python worker reports, in seconds, under {@code python.stage}.
+     */
+    public void recordPythonTimings(JsonNode timings) {
+        if (timings == null || !timings.isObject()) {
+            return;
+        }
+        timings.properties().forEach(entry -> {
+            if (entry.getValue().isNumber()) {
+                Timer.builder("python.stage")
+                        .description("Time spent inside the Python worker, as reported by the worker")
+                        .tag("stage", entry.getKey())
+                        .publishPercentileHistogram()
+                        .register(registry)
+                        .record(Duration.ofNanos((long) (entry.getValue().asDouble() * 1_000_000_000L)));
+            }
+        });
+    }
+
+    public void countError(Stage stage, Throwable error) {
+        Counter.builder("transcription.errors")
+                .tag("stage", stage.tag())
+                .tag("exception", error.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+
+    public void countJobFinished(JobStatus status) {
+        registry.counter("transcription.jobs.finished", "status", status.name().toLowerCase(Locale.ROOT)).increment();
+    }
+
+    /**
+     * A job was cancelled before it finished.
+     *
+     * @param cause {@code user} or {@code deadline}
+     * @param stage where the job was, {@code QUEUED} or {@code RUNNING}
+     * @param saved processing time the job would probably still have needed
+     */
+    public void countCancellation(String cause, JobStatus stage, Duration saved) {
+        registry.counter("transcription.cancellations",
+                "cause", cause, "stage", stage.name().toLowerCase(Locale.ROOT)).increment();
+        Timer.builder("transcription.cancellation.saved")
+                .description("Estimated processing time that cancelled jobs did not use")
+                .tag("cause", cause)
+                .register(registry)
+                .record(saved);
+    }
+
+    /**
+     * A Gemini summary failed and the BART summary was used instead.
+     */
+    public void countGeminiFallback() {
+        registry.counter("gemini.fallbacks").increment();
+    }
+
+    /**
+     * Time a job spent in the scheduler queue before it got a slot.
+     */
+    public void recordQueueWait(Duration wait) {
+        Timer.builder("transcription.queue.wait")
+                .description("Time jobs wait for a free processing slot")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(wait);
+    }
+
+    public void countQueueRejection() {
+        registry.counter("transcription.queue.rejections").increment();
+    }
+
+    /**
+     * Texts BART summarized in one worker call.
+     */
+    public void recordSummaryBatch(int size) {
+        DistributionSummary.builder("summarizer.batch.size")
+                .description("Texts summarized together in one model pass")
+                .register(registry)
+                .record(size);
+    }
+
+    private Timer stageTimer(String stage, String outcome) {
+        return Timer.builder("transcription.stage")
+                .description("Time spent in one stage of processing an upload")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,102 @@
+package com.project.demo.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.project.demo.model.UserPreference;
+import com.project.demo.properties.PreferenceProperties;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionIdListener;
+import jakarta.servlet.http.HttpSessionListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Processing preferences per HTTP session. Entries go away with their session, and the store is capped
+ * at {@code preferences.max-sessions}: sessions are spread over lock stripes, each one a small LRU map,
+ * so request threads only contend when they hash to the same stripe.
+ * <p>
+ * Registered as a session listener by Spring Boot because it implements the servlet listener interfaces.
+ */
+@Component
+public class PreferenceStore implements HttpSessionListener, HttpSessionIdListener {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private static final class Stripe extends LinkedHashMap<String, UserPreference> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, UserPreference> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    @Autowired
+    public PreferenceStore(PreferenceProperties properties) {
+        int perStripe = Math.max(1, Math.ceilDiv(properties.getMaxSessions(), STRIPES));
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    public Optional<UserPreference> get(String sessionId) {
+        Stripe stripe = stripeFor(sessionId);
+        synchronized (stripe) {
+            return Optional.ofNullable(stripe.get(sessionId));
+        }
+    }
+
+    public void put(String sessionId, UserPreference preference) {
+        Stripe stripe = stripeFor(sessionId);
+        synchronized (stripe) {
+            stripe.put(sessionId, preference);
+        }
+    }
+
+    public void remove(String sessionId) {
+        Stripe stripe = stripeFor(sessionId);
+        synchronized (stripe) {
+            stripe.remove(sessionId);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent event) {
+        remove(event.getSession().getId());
+    }
+
+    /**
+     * Keeps the preference when the container changes the session id, e.g. against session fixation.
+     */
+    @Override
+    public void sessionIdChanged(HttpSessionEvent event, String oldSessionId) {
+        Optional<UserPreference> preference = get(oldSessionId);
+        remove(oldSessionId);
+        preference.ifPresent(value -> put(event.getSession().getId(), value));
+    }
+
+    private Stripe stripeFor(String sessionId) {
+        // Spread the bits, container session ids can share long prefixes
+        int hash = sessionId.hashCode();
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), STRIPES)];
+    }
+}
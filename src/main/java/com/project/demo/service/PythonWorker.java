@@ -0,0 +1,253 @@
+package com.project.demo.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.project.demo.exceptions.WorkerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long-lived Python process that keeps Whisper and BART loaded between jobs.
+ * Jobs and answers are exchanged as one JSON object per line over stdin/stdout.
+ * A worker is used by one thread at a time; {@link PythonWorkerPool} guarantees that.
+ * <p>
+ * Two reader threads per process drain stdout and stderr as the output arrives, so neither pipe can fill
+ * up and stall the process. Stdout is parsed with a streaming parser into a queue of messages, which
+ * lets a job report progress, such as transcript segments, before its answer.
+ */
+public class PythonWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(PythonWorker.class);
+    private static final AtomicLong requestIds = new AtomicLong();
+    // Queued after the last message once stdout is closed
+    private static final JsonNode END_OF_OUTPUT = MissingNode.getInstance();
+    private static final int STDERR_TAIL_LINES = 20;
+    // Pings only go to idle workers, one that takes longer is stuck
+    private static final Duration PING_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Process process;
+    private final BufferedWriter stdin;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<JsonNode> messages = new LinkedBlockingQueue<>();
+    // Last lines the process wrote to stderr, for the error when it dies
+    private final Deque<String> stderrTail = new ArrayDeque<>(STDERR_TAIL_LINES);
+    private final Thread stderrReader;
+    private final long startedAt = System.currentTimeMillis();
+    private volatile boolean ready;
+    private JsonNode startupTimings;
+    private int jobsHandled;
+
+    private PythonWorker(Process process, ObjectMapper objectMapper) {
+        this.process = process;
+        this.objectMapper = objectMapper;
+        this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        Thread.ofPlatform().daemon().name("python-worker-" + process.pid() + "-stdout").start(this::readStdout);
+        this.stderrReader = Thread.ofPlatform().daemon().name("python-worker-" + process.pid() + "-stderr")
+                .start(this::readStderr);
+    }
+
+    /**
+     * Starts the process and blocks until it reports that its models are loaded.
+     */
+    public static PythonWorker start(List<String> command, Duration startupTimeout, ObjectMapper objectMapper)
+            throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+
+        PythonWorker worker = new PythonWorker(processBuilder.start(), objectMapper);
+
+        // Kill the process if model loading hangs, the closed stdout then ends the wait
+        CompletableFuture.runAsync(() -> {
+            if (!worker.ready) {
+                worker.destroy();
+            }
+        }, CompletableFuture.delayedExecutor(startupTimeout.toMillis(), TimeUnit.MILLISECONDS));
+
+        JsonNode hello = worker.readMessage(Long.MAX_VALUE);
+        if (!"ready".equals(hello.path("event").asText())) {
+            worker.destroy();
+            throw new WorkerException("Python worker did not report ready: " + hello);
+        }
+        worker.startupTimings = hello.path("timings");
+        worker.ready = true;
+        return worker;
+    }
+
+    /**
+     * Sends one job and waits for the answer that carries the same id.
+     */
+    public JsonNode call(ObjectNode request) throws IOException {
+        return call(request, null, null);
+    }
+
+    /**
+     * Sends one job and waits for its answer, handing the job's {@code segment} messages to the listener
+     * as they arrive.
+     *
+     * @param segments receives progress messages of this job, may be null
+     * @param timeout longest the whole call may take, null to wait as long as the process lives. A worker that
+     *                does not answer in time is destroyed, it may still be busy with the job.
+     */
+    public JsonNode call(ObjectNode request, Consumer<JsonNode> segments, Duration timeout) throws IOException {
+        long deadline = timeout == null ? Long.MAX_VALUE : System.nanoTime() + timeout.toNanos();
+        String id = Long.toString(requestIds.incrementAndGet());
+        request.put("id", id);
+
+        stdin.write(objectMapper.writeValueAsString(request));
+        stdin.newLine();
+        stdin.flush();
+
+        while (true) {
+            JsonNode message = readMessage(deadline);
+            if (message == null) {
+                destroy();
+                throw new WorkerException("Python worker " + process.pid() + " did not answer within " + timeout);
+            }
+            if (id.equals(message.path("id").asText())) {
+                if ("segment".equals(message.path("event").asText())) {
+                    if (segments != null) {
+                        segments.accept(message);
+                    }
+                    continue;
+                }
+                if (!"pong".equals(message.path("event").asText())) {
+                    jobsHandled++;
+                }
+                return message;
+            }
+        }
+    }
+
+    public boolean ping() {
+        try {
+            ObjectNode request = objectMapper.createObjectNode();
+            request.put("type", "ping");
+            return "pong".equals(call(request, null, PING_TIMEOUT).path("event").asText());
+        } catch (IOException | WorkerException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param deadline {@link System#nanoTime()} to give up at, {@link Long#MAX_VALUE} to wait without limit
+     * @return null when the deadline passed first
+     */
+    private JsonNode readMessage(long deadline) throws IOException {
+        JsonNode message;
+        try {
+            message = deadline == Long.MAX_VALUE ? messages.take()
+                    : messages.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (message == null) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Python worker " + process.pid());
+        }
+        if (message == END_OF_OUTPUT) {
+            // Every later call fails the same way
+            messages.add(END_OF_OUTPUT);
+            String exitCode;
+            try {
+                exitCode = process.waitFor(1, TimeUnit.SECONDS) ? Integer.toString(process.exitValue()) : "unknown";
+                // The last stderr lines usually say why
+                stderrReader.join(Duration.ofSeconds(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exitCode = "unknown";
+            }
+            String lastError = lastStderrLine();
+            throw new WorkerException("Python worker " + process.pid() + " exited with code " + exitCode
+                    + (lastError != null ? ": " + lastError : ""));
+        }
+        return message;
+    }
+
+    private void readStdout() {
+        // One JSON object per line, the parser reads them as a sequence of root values
+        try (JsonParser parser = objectMapper.getFactory().createParser(process.getInputStream())) {
+            while (parser.nextToken() != null) {
+                messages.add(objectMapper.readTree(parser));
+            }
+        } catch (IOException e) {
+            if (process.isAlive()) {
+                log.warn("Unreadable output from Python worker {}, stopping it: {}", process.pid(), e.getMessage());
+                destroy();
+            }
+        } finally {
+            messages.add(END_OF_OUTPUT);
+        }
+    }
+
+    private void readStderr() {
+        try (BufferedReader stderr = new BufferedReader(
+                new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = stderr.readLine()) != null) {
+                log.debug("Python worker {}: {}", process.pid(), line);
+                synchronized (stderrTail) {
+                    if (stderrTail.size() == STDERR_TAIL_LINES) {
+                        stderrTail.removeFirst();
+                    }
+                    stderrTail.addLast(line);
+                }
+            }
+        } catch (IOException e) {
+            // The pipe closes when the process is destroyed
+        }
+    }
+
+    private String lastStderrLine() {
+        synchronized (stderrTail) {
+            return stderrTail.stream().filter(line -> !line.isBlank()).reduce((first, second) -> second).orElse(null);
+        }
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Stage timings the process reported while starting, such as model loading, in seconds.
+     */
+    public JsonNode getStartupTimings() {
+        return startupTimings;
+    }
+
+    public int getJobsHandled() {
+        return jobsHandled;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long pid() {
+        return process.pid();
+    }
+
+    public void destroy() {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+}
@@ -0,0 +1,387 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.project.demo.exceptions.WorkerException;
+import com.project.demo.properties.RetentionProperties;
+import com.project.demo.properties.WorkerProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Pool of warm {@link PythonWorker}s. Workers are started lazily, replaced when they crash
+ * and recycled after a configured number of jobs so leaks in the ML stack do not pile up.
+ */
+@Service
+public class PythonWorkerPool {
+
+    private static final Logger log = LoggerFactory.getLogger(PythonWorkerPool.class);
+
+    private final WorkerProperties properties;
+    private final ObjectMapper objectMapper;
+    private final PipelineMetrics pipelineMetrics;
+    private final Path pythonCacheLocation;
+    private final BlockingDeque<PythonWorker> idleWorkers = new LinkedBlockingDeque<>();
+    // One permit per worker slot, held for as long as a worker is borrowed
+    private final Semaphore slots;
+    private final AtomicInteger liveWorkers = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    @Autowired
+    public PythonWorkerPool(WorkerProperties properties, ObjectMapper objectMapper, PipelineMetrics pipelineMetrics,
+                            RetentionProperties retentionProperties) {
+        if (properties.getPoolSize() < 1) {
+            throw new WorkerException("Worker pool size must be at least 1.");
+        }
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.pipelineMetrics = pipelineMetrics;
+        // Where main.py keeps its cache, retention manages the same directory
+        this.pythonCacheLocation = Path.of(retentionProperties.getPythonCacheLocation());
+        this.slots = new Semaphore(properties.getPoolSize(), true);
+    }
+
+    public JsonNode transcribe(String filePath) throws IOException {
+        return transcribe(filePath, null);
+    }
+
+    /**
+     * @param fileHash content hash already known to the caller, spares the worker from hashing the file again
+     */
+    public JsonNode transcribe(String filePath, String fileHash) throws IOException {
+        return transcribe(filePath, fileHash, true);
+    }
+
+    /**
+     * @param summarize false to skip the BART summary, the reply then only carries the transcription
+     */
+    public JsonNode transcribe(String filePath, String fileHash, boolean summarize) throws IOException {
+        return transcribe(filePath, fileHash, summarize, null, new CancellationToken());
+    }
+
+    /**
+     * @param segments receives each transcript segment ({@code start}, {@code end} in seconds and {@code text})
+     *                 as Whisper decodes it, null to only get the final result. Cached results come without segments.
+     * @param cancellation cancelling it kills the worker doing the job
+     */
+    public JsonNode transcribe(String filePath, String fileHash, boolean summarize, Consumer<JsonNode> segments,
+                               CancellationToken cancellation) throws IOException {
+        return execute(transcribeRequest(filePath, fileHash, summarize, segments), segments, cancellation);
+    }
+
+    /**
+     * Transcribes without a summary, but only on a worker slot that is free right now. Used for work a caller
+     * can also do itself, so it never waits behind other jobs.
+     *
+     * @return empty when every slot is taken
+     */
+    public Optional<JsonNode> tryTranscribe(String filePath, String fileHash, Consumer<JsonNode> segments,
+                                            CancellationToken cancellation) throws IOException {
+        ObjectNode request = transcribeRequest(filePath, fileHash, false, segments);
+        cancellation.throwIfCancelled();
+        PythonWorker worker = tryBorrow();
+        return worker == null ? Optional.empty() : Optional.of(call(worker, request, segments, cancellation));
+    }
+
+    private ObjectNode transcribeRequest(String filePath, String fileHash, boolean summarize,
+                                         Consumer<JsonNode> segments) throws IOException {
+        if (!Files.exists(Path.of(filePath))) {
+            throw new IOException("File does not exist: " + filePath);
+        }
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("type", "transcribe");
+        request.put("path", filePath);
+        if (fileHash != null) {
+            request.put("hash", fileHash);
+        }
+        if (!summarize) {
+            request.put("summarize", false);
+        }
+        if (segments != null) {
+            request.put("segments", true);
+        }
+        return request;
+    }
+
+    /**
+     * Summarizes text with BART. Input beyond the model's window is cut off, so callers pass chunks.
+     */
+    public String summarize(String text) {
+        return summarize(text, new CancellationToken());
+    }
+
+    public String summarize(String text, CancellationToken cancellation) {
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("type", "summarize");
+        request.put("text", text);
+        JsonNode response = execute(request, null, cancellation);
+        if (response.has("error")) {
+            throw new WorkerException("Python script error: " + response.get("error").asText());
+        }
+        return response.get("summary").asText();
+    }
+
+    /**
+     * Summarizes several texts in one pass of the model, which costs little more than the longest of them alone.
+     *
+     * @return the summaries in the order of the texts
+     */
+    public List<String> summarize(List<String> texts, CancellationToken cancellation) {
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("type", "summarize");
+        texts.forEach(request.putArray("texts")::add);
+        JsonNode response = execute(request, null, cancellation);
+        if (response.has("error")) {
+            throw new WorkerException("Python script error: " + response.get("error").asText());
+        }
+        JsonNode summaries = response.path("summaries");
+        if (summaries.size() != texts.size()) {
+            throw new WorkerException("Python worker returned " + summaries.size() + " summaries for "
+                    + texts.size() + " texts");
+        }
+        List<String> result = new ArrayList<>(texts.size());
+        summaries.forEach(summary -> result.add(summary.asText()));
+        return result;
+    }
+
+    public JsonNode execute(ObjectNode request) {
+        return execute(request, null, new CancellationToken());
+    }
+
+    /**
+     * A worker is busy until its answer is complete, so cancelling the job kills the worker and its children.
+     * The pool starts a fresh one in its place.
+     *
+     * @throws java.util.concurrent.CancellationException when the token was cancelled
+     */
+    public JsonNode execute(ObjectNode request, Consumer<JsonNode> segments, CancellationToken cancellation) {
+        cancellation.throwIfCancelled();
+        return call(borrow(), request, segments, cancellation);
+    }
+
+    private JsonNode call(PythonWorker worker, ObjectNode request, Consumer<JsonNode> segments,
+                          CancellationToken cancellation) {
+        boolean healthy = false;
+        try (CancellationToken.Registration ignored = cancellation.onCancel(worker::destroy)) {
+            cancellation.throwIfCancelled();
+            JsonNode response = worker.call(request, segments, properties.getCallTimeout());
+            healthy = true;
+            pipelineMetrics.recordPythonTimings(response.get("timings"));
+            return response;
+        } catch (IOException | WorkerException e) {
+            if (cancellation.isCancelled()) {
+                log.info("Stopped Python worker {}: {}", worker.pid(), cancellation.getReason());
+                removePartialCacheFiles(worker);
+                cancellation.throwIfCancelled();
+            }
+            if (e instanceof WorkerException workerException) {
+                throw workerException;
+            }
+            throw new WorkerException("Python worker " + worker.pid() + " failed", e);
+        } finally {
+            release(worker, healthy);
+        }
+    }
+
+    /**
+     * main.py writes cache entries to {@code <hash>.pkl.<pid>.tmp} and renames them when complete,
+     * a killed worker can leave one behind.
+     */
+    private void removePartialCacheFiles(PythonWorker worker) {
+        String pattern = "*.pkl." + worker.pid() + ".tmp";
+        try (DirectoryStream<Path> partial = Files.newDirectoryStream(pythonCacheLocation, pattern)) {
+            for (Path file : partial) {
+                Files.deleteIfExists(file);
+            }
+        } catch (NoSuchFileException e) {
+            // no cache written yet
+        } catch (IOException e) {
+            log.warn("Could not remove partial cache files of Python worker {}: {}", worker.pid(), e.getMessage());
+        }
+    }
+
+    public PythonWorker borrow() {
+        if (shutdown) {
+            throw new WorkerException("Worker pool is shut down.");
+        }
+        try {
+            if (!slots.tryAcquire(properties.getBorrowTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new WorkerException("No Python worker became available within " + properties.getBorrowTimeout());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkerException("Interrupted while waiting for a Python worker", e);
+        }
+        return takeWorker();
+    }
+
+    /**
+     * @return a worker, or null when no slot is free right now
+     */
+    private PythonWorker tryBorrow() {
+        if (shutdown) {
+            throw new WorkerException("Worker pool is shut down.");
+        }
+        try {
+            // Unlike tryAcquire() this keeps to the fair order, a borrower already waiting goes first
+            if (!slots.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkerException("Interrupted while waiting for a Python worker", e);
+        }
+        return takeWorker();
+    }
+
+    /**
+     * Hands out an idle worker or starts one, for a caller holding a slot. The slot is given back on failure.
+     */
+    private PythonWorker takeWorker() {
+        try {
+            long deadline = System.nanoTime() + properties.getBorrowTimeout().toNanos();
+            while (true) {
+                PythonWorker worker = idleWorkers.pollFirst();
+                if (worker != null) {
+                    if (worker.isAlive()) {
+                        return worker;
+                    }
+                    log.warn("Discarding dead Python worker {}", worker.pid());
+                    retire(worker);
+                    continue;
+                }
+                if (reserveWorker()) {
+                    return spawnReserved();
+                }
+                // Every live worker is idle but taken out by the health check, it comes back shortly
+                worker = idleWorkers.pollFirst(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (worker == null) {
+                    throw new WorkerException("No Python worker became available within " + properties.getBorrowTimeout());
+                }
+                idleWorkers.offerFirst(worker);
+            }
+        } catch (InterruptedException e) {
+            slots.release();
+            Thread.currentThread().interrupt();
+            throw new WorkerException("Interrupted while waiting for a Python worker", e);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a worker to the pool. Workers that failed, died or served their quota are destroyed,
+     * the next {@link #borrow()} starts a fresh one in their slot.
+     */
+    public void release(PythonWorker worker, boolean healthy) {
+        try {
+            if (shutdown || !healthy || !worker.isAlive()
+                    || worker.getJobsHandled() >= properties.getMaxJobsPerWorker()) {
+                retire(worker);
+            } else {
+                idleWorkers.offerFirst(worker);
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${worker.health-check-interval:PT30S}")
+    public void checkHealth() {
+        if (shutdown) {
+            return;
+        }
+        List<PythonWorker> checked = new ArrayList<>();
+        PythonWorker worker;
+        while ((worker = idleWorkers.pollLast()) != null) {
+            if (worker.ping()) {
+                checked.add(worker);
+            } else {
+                log.warn("Python worker {} failed health check, restarting", worker.pid());
+                retire(worker);
+            }
+        }
+        checked.forEach(idleWorkers::offerLast);
+
+        // Keep the warm minimum, this also restarts workers that crashed while idle
+        while (idleWorkers.size() < properties.getMinIdle() && reserveWorker()) {
+            try {
+                idleWorkers.offerLast(spawnReserved());
+            } catch (WorkerException e) {
+                log.error("Could not start Python worker", e);
+                break;
+            }
+        }
+    }
+
+    private boolean reserveWorker() {
+        int live;
+        do {
+            live = liveWorkers.get();
+            if (live >= properties.getPoolSize()) {
+                return false;
+            }
+        } while (!liveWorkers.compareAndSet(live, live + 1));
+        return true;
+    }
+
+    private PythonWorker spawnReserved() {
+        try {
+            PythonWorker worker = pipelineMetrics.time(PipelineMetrics.Stage.WORKER_SPAWN,
+                    () -> PythonWorker.start(properties.getCommand(), properties.getStartupTimeout(), objectMapper));
+            pipelineMetrics.recordPythonTimings(worker.getStartupTimings());
+            log.info("Started Python worker {}", worker.pid());
+            return worker;
+        } catch (IOException | RuntimeException e) {
+            liveWorkers.decrementAndGet();
+            throw new WorkerException("Could not start Python worker", e);
+        }
+    }
+
+    private void retire(PythonWorker worker) {
+        worker.destroy();
+        liveWorkers.decrementAndGet();
+    }
+
+    public int getIdleCount() {
+        return idleWorkers.size();
+    }
+
+    public int getBusyCount() {
+        return properties.getPoolSize() - slots.availablePermits();
+    }
+
+    public int getLiveCount() {
+        return liveWorkers.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shutdown = true;
+        PythonWorker worker;
+        while ((worker = idleWorkers.pollFirst()) != null) {
+            retire(worker);
+        }
+    }
+}
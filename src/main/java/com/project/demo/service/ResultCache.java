@@ -0,0 +1,212 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.exceptions.StorageException;
+import com.project.demo.model.TranscriptionResult;
+import com.project.demo.properties.ResultCacheProperties;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Content-addressed cache of processing results, keyed by the upload hash and the summarizer used.
+ * Results live on disk as JSON, only their sizes are kept in memory in LRU order.
+ */
+@Service
+public class ResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultCache.class);
+    private static final String SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Base64.Encoder MODEL_ID_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final Path rootLocation;
+    private final long maxBytes;
+    private final ObjectMapper objectMapper;
+    // key -> size on disk, iteration order is least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    public ResultCache(ResultCacheProperties properties, ObjectMapper objectMapper) {
+        if (properties.getLocation().trim().isEmpty()) {
+            throw new StorageException("Result cache location can not be Empty.");
+        }
+        this.rootLocation = Paths.get(properties.getLocation());
+        this.maxBytes = properties.getMaxSize().toBytes();
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(rootLocation);
+            // Left by writes that failed before their move, they were never part of the cache
+            try (Stream<Path> stream = Files.list(rootLocation)) {
+                for (Path temp : stream.filter(path -> path.getFileName().toString().endsWith(TEMP_SUFFIX)).toList()) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(rootLocation)) {
+                files = stream.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                        .sorted(Comparator.comparingLong(this::lastModified))
+                        .toList();
+            }
+            synchronized (this) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    long size = Files.size(file);
+                    entries.put(name.substring(0, name.length() - SUFFIX.length()), size);
+                    totalBytes += size;
+                }
+                evictOverflow();
+            }
+            log.info("Result cache holds {} entries, {} bytes", entries.size(), totalBytes);
+        }
+        catch (IOException e) {
+            throw new StorageException("Could not initialize result cache", e);
+        }
+    }
+
+    /**
+     * Model ids are Base64 encoded, file name safe and distinct for distinct ids.
+     */
+    public static String key(String fileHash, String processingMethod, String modelId) {
+        String variant = "gemini".equals(processingMethod)
+                ? "gemini-" + (modelId == null ? "default"
+                        : MODEL_ID_ENCODER.encodeToString(modelId.getBytes(StandardCharsets.UTF_8)))
+                : "python";
+        return fileHash + "." + variant;
+    }
+
+    public Optional<TranscriptionResult> get(String key) {
+        boolean present;
+        synchronized (this) {
+            present = entries.get(key) != null;
+        }
+        if (present) {
+            try {
+                TranscriptionResult result = objectMapper.readValue(resolve(key).toFile(), TranscriptionResult.class);
+                hits.incrementAndGet();
+                return Optional.of(result);
+            }
+            catch (IOException e) {
+                log.warn("Dropping unreadable cache entry {}", key, e);
+                remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(String key, TranscriptionResult result) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(result);
+            if (json.length > maxBytes) {
+                return;
+            }
+            Path target = resolve(key);
+            Path temp = Files.createTempFile(rootLocation, key, TEMP_SUFFIX);
+            try {
+                Files.write(temp, json);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                // Only still there when the move did not happen
+                Files.deleteIfExists(temp);
+            }
+
+            synchronized (this) {
+                Long previous = entries.put(key, (long) json.length);
+                totalBytes += json.length - (previous == null ? 0 : previous);
+                evictOverflow();
+            }
+        }
+        catch (IOException e) {
+            log.warn("Could not cache result {}", key, e);
+        }
+    }
+
+    public synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+            deleteQuietly(key);
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            evictions.incrementAndGet();
+            deleteQuietly(eldest.getKey());
+        }
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        }
+        catch (IOException e) {
+            log.warn("Could not delete cache entry {}", key, e);
+        }
+    }
+
+    private Path resolve(String key) {
+        return rootLocation.resolve(key + SUFFIX);
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        }
+        catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
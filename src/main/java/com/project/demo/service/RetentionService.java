@@ -0,0 +1,326 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.project.demo.model.FileEntry;
+import com.project.demo.properties.RetentionProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps stored uploads and the Python worker's transcription cache within a size quota and a maximum age.
+ * <p>
+ * Every run looks at one batch of files per area: uploads are taken from the catalogue, the Python cache
+ * is indexed by a directory scan that picks up where the previous run stopped. Above the quota the least
+ * recently used files go first, down to 90% of the quota so that the next few uploads do not start
+ * another round. Files pinned by a job or used within {@code retention.min-idle} are kept. A run removes at
+ * most one batch of files per area for the quota, picked without sorting everything that is stored.
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+    private static final double LOW_WATERMARK = 0.9;
+    private static final String PYTHON_CACHE_SUFFIX = ".pkl";
+
+    public enum Area {
+        UPLOADS, PYTHON_CACHE
+    }
+
+    public enum Reason {
+        AGE, QUOTA
+    }
+
+    private final RetentionProperties properties;
+    private final StorageService storageService;
+    private final FileCatalog catalog;
+    private final Path pythonCacheLocation;
+    private final AtomicLong[][] evictions = new AtomicLong[Area.values().length][Reason.values().length];
+    private final AtomicLong[] evictedBytes = new AtomicLong[Area.values().length];
+
+    // Hashes of the current pass over the catalogue and how far it got
+    private String[] uploadPass = new String[0];
+    private int uploadPosition;
+
+    private record CachedFile(long size, Instant modified) {
+    }
+
+    private record Candidate(String hash, Instant lastAccess) {
+    }
+
+    // Python cache as of the last scan, the directory is listed a batch at a time
+    private final Map<String, CachedFile> pythonCache = new HashMap<>();
+    private volatile long pythonCacheBytes;
+    private DirectoryStream<Path> pythonScan;
+    private Iterator<Path> pythonScanFiles;
+    private final Set<String> pythonScanSeen = new HashSet<>();
+
+    @Autowired
+    public RetentionService(RetentionProperties properties, StorageService storageService, FileCatalog catalog) {
+        this.properties = properties;
+        this.storageService = storageService;
+        this.catalog = catalog;
+        this.pythonCacheLocation = Paths.get(properties.getPythonCacheLocation());
+        for (AtomicLong[] counters : evictions) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = new AtomicLong();
+            }
+        }
+        for (int i = 0; i < evictedBytes.length; i++) {
+            evictedBytes[i] = new AtomicLong();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${retention.interval:PT1M}", initialDelayString = "${retention.interval:PT1M}")
+    public synchronized void sweep() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant idleCutoff = now.minus(properties.getMinIdle());
+        sweepUploads(now, idleCutoff);
+        try {
+            sweepPythonCache(now, idleCutoff);
+        } catch (IOException e) {
+            closePythonScan();
+            log.warn("Could not scan the Python cache {}: {}", pythonCacheLocation, e.getMessage());
+        }
+    }
+
+    private void sweepUploads(Instant now, Instant idleCutoff) {
+        if (uploadPosition >= uploadPass.length) {
+            uploadPass = catalog.hashes().toArray(String[]::new);
+            uploadPosition = 0;
+        }
+        Instant ageCutoff = ageCutoff(now, properties.getUploadsMaxAge());
+        int end = Math.min(uploadPosition + properties.getBatchSize(), uploadPass.length);
+        for (; uploadPosition < end; uploadPosition++) {
+            FileEntry entry = catalog.get(uploadPass[uploadPosition]).orElse(null);
+            if (entry != null && ageCutoff != null && entry.uploadedAt().isBefore(ageCutoff)) {
+                evictUpload(entry, idleCutoff, Reason.AGE);
+            }
+        }
+
+        long quota = properties.getUploadsMaxSize().toBytes();
+        if (catalog.totalBytes() <= quota) {
+            return;
+        }
+        long target = (long) (quota * LOW_WATERMARK);
+        OldestCandidates candidates = new OldestCandidates(properties.getBatchSize());
+        for (FileEntry entry : catalog.values()) {
+            if (entry.lastAccessedAt().isBefore(idleCutoff) && !catalog.isPinned(entry.hash())) {
+                candidates.offer(entry.hash(), entry.lastAccessedAt());
+            }
+        }
+        for (Candidate candidate : candidates.oldestFirst()) {
+            if (catalog.totalBytes() <= target) {
+                break;
+            }
+            catalog.get(candidate.hash()).ifPresent(entry -> evictUpload(entry, idleCutoff, Reason.QUOTA));
+        }
+        if (catalog.totalBytes() > quota && !candidates.isFull()) {
+            log.warn("Uploads use {} bytes, above the {} byte quota, but everything left is in use",
+                    catalog.totalBytes(), quota);
+        }
+    }
+
+    private void evictUpload(FileEntry entry, Instant idleCutoff, Reason reason) {
+        if (storageService.evict(entry.hash(), idleCutoff)) {
+            count(Area.UPLOADS, reason, entry.size());
+            log.debug("Removed upload {} ({}), {}", entry.hash(), entry.filename(), reason);
+        }
+    }
+
+    private void sweepPythonCache(Instant now, Instant idleCutoff) throws IOException {
+        if (pythonScan == null) {
+            if (!Files.isDirectory(pythonCacheLocation)) {
+                return;
+            }
+            pythonScan = Files.newDirectoryStream(pythonCacheLocation, "*" + PYTHON_CACHE_SUFFIX);
+            pythonScanFiles = pythonScan.iterator();
+            pythonScanSeen.clear();
+        }
+        Instant ageCutoff = ageCutoff(now, properties.getPythonCacheMaxAge());
+        for (int scanned = 0; scanned < properties.getBatchSize() && pythonScanFiles.hasNext(); scanned++) {
+            Path file = pythonScanFiles.next();
+            String name = file.getFileName().toString();
+            String hash = name.substring(0, name.length() - PYTHON_CACHE_SUFFIX.length());
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            pythonScanSeen.add(hash);
+            CachedFile cached = new CachedFile(attributes.size(), attributes.lastModifiedTime().toInstant());
+            indexPythonCache(hash, cached);
+            if (ageCutoff != null && cached.modified().isBefore(ageCutoff)) {
+                evictPythonCache(hash, idleCutoff, Reason.AGE);
+            }
+        }
+        if (!pythonScanFiles.hasNext()) {
+            // End of a pass, whatever it did not see was deleted in the meantime
+            closePythonScan();
+            for (String hash : List.copyOf(pythonCache.keySet())) {
+                if (!pythonScanSeen.contains(hash)) {
+                    indexPythonCache(hash, null);
+                }
+            }
+        }
+
+        long quota = properties.getPythonCacheMaxSize().toBytes();
+        if (pythonCacheBytes <= quota) {
+            return;
+        }
+        long target = (long) (quota * LOW_WATERMARK);
+        OldestCandidates candidates = new OldestCandidates(properties.getBatchSize());
+        for (Map.Entry<String, CachedFile> entry : pythonCache.entrySet()) {
+            Instant lastAccess = lastAccess(entry.getKey(), entry.getValue());
+            if (lastAccess.isBefore(idleCutoff) && !catalog.isPinned(entry.getKey())) {
+                candidates.offer(entry.getKey(), lastAccess);
+            }
+        }
+        for (Candidate candidate : candidates.oldestFirst()) {
+            if (pythonCacheBytes <= target) {
+                break;
+            }
+            evictPythonCache(candidate.hash(), idleCutoff, Reason.QUOTA);
+        }
+    }
+
+    private void evictPythonCache(String hash, Instant idleCutoff, Reason reason) {
+        CachedFile cached = pythonCache.get(hash);
+        if (cached == null || catalog.isPinned(hash) || !lastAccess(hash, cached).isBefore(idleCutoff)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(pythonCacheLocation.resolve(hash + PYTHON_CACHE_SUFFIX));
+            indexPythonCache(hash, null);
+            count(Area.PYTHON_CACHE, reason, cached.size());
+        } catch (IOException e) {
+            log.warn("Could not delete Python cache entry {}: {}", hash, e.getMessage());
+        }
+    }
+
+    /**
+     * The worker does not record reads, the upload with the same hash stands in for them.
+     */
+    private Instant lastAccess(String hash, CachedFile cached) {
+        return catalog.get(hash)
+                .map(FileEntry::lastAccessedAt)
+                .filter(accessed -> accessed.isAfter(cached.modified()))
+                .orElse(cached.modified());
+    }
+
+    private void indexPythonCache(String hash, CachedFile cached) {
+        CachedFile previous = cached == null ? pythonCache.remove(hash) : pythonCache.put(hash, cached);
+        pythonCacheBytes += (cached == null ? 0 : cached.size()) - (previous == null ? 0 : previous.size());
+    }
+
+    private void closePythonScan() {
+        if (pythonScan == null) {
+            return;
+        }
+        try {
+            pythonScan.close();
+        } catch (IOException ignored) {
+            // only releases the directory handle
+        }
+        pythonScan = null;
+        pythonScanFiles = null;
+    }
+
+    private void count(Area area, Reason reason, long bytes) {
+        evictions[area.ordinal()][reason.ordinal()].incrementAndGet();
+        evictedBytes[area.ordinal()].addAndGet(bytes);
+    }
+
+    private static Instant ageCutoff(Instant now, Duration maxAge) {
+        return maxAge == null || maxAge.isZero() ? null : now.minus(maxAge);
+    }
+
+    /**
+     * Keeps the least recently used of the files offered to it, up to a limit. The heap has the most recently
+     * used one on top, the one to drop when an older file turns up, so a pass costs O(n log limit).
+     */
+    private static final class OldestCandidates {
+        private final int limit;
+        private final PriorityQueue<Candidate> heap;
+
+        OldestCandidates(int limit) {
+            this.limit = Math.max(limit, 1);
+            this.heap = new PriorityQueue<>(Comparator.comparing(Candidate::lastAccess).reversed());
+        }
+
+        void offer(String hash, Instant lastAccess) {
+            if (heap.size() < limit) {
+                heap.add(new Candidate(hash, lastAccess));
+            } else if (lastAccess.isBefore(heap.peek().lastAccess())) {
+                heap.poll();
+                heap.add(new Candidate(hash, lastAccess));
+            }
+        }
+
+        /**
+         * @return true when files may have been left out, another run may find more to remove
+         */
+        boolean isFull() {
+            return heap.size() >= limit;
+        }
+
+        List<Candidate> oldestFirst() {
+            List<Candidate> oldest = new ArrayList<>(heap);
+            oldest.sort(Comparator.comparing(Candidate::lastAccess));
+            return oldest;
+        }
+    }
+
+    public long getEvictions(Area area, Reason reason) {
+        return evictions[area.ordinal()][reason.ordinal()].get();
+    }
+
+    public long getEvictedBytes(Area area) {
+        return evictedBytes[area.ordinal()].get();
+    }
+
+    /**
+     * As of the last scan, so it can trail the directory by up to one pass.
+     */
+    public long getPythonCacheBytes() {
+        return pythonCacheBytes;
+    }
+
+    public long getQuota(Area area) {
+        return switch (area) {
+            case UPLOADS -> properties.getUploadsMaxSize().toBytes();
+            case PYTHON_CACHE -> properties.getPythonCacheMaxSize().toBytes();
+        };
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        closePythonScan();
+    }
+}
@@ -0,0 +1,214 @@
+package com.project.demo.service;
+
+import java.util.Arrays;
+
+import com.project.demo.model.RougeScores;
+import org.springframework.stereotype.Service;
+
+/**
+ * Count-based ROUGE-1, ROUGE-2 and ROUGE-L. Words are hashed to 64-bit ids while the text is scanned,
+ * so no word Strings are created, and n-grams are counted in open-addressing tables of primitives.
+ * <p>
+ * A word is a run of letters and digits compared case-insensitively. Whitespace separates words,
+ * other characters are dropped, which makes "don't" the word "dont".
+ */
+@Service
+public class RougeScorer {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public RougeScores score(String reference, String candidate) {
+        return prepare(reference).score(candidate);
+    }
+
+    /**
+     * Tokenizes and counts the reference once, for scoring several candidate summaries against it.
+     */
+    public Reference prepare(String reference) {
+        return new Reference(Tokens.of(reference));
+    }
+
+    /**
+     * Counted reference text. Immutable, so it may be shared between threads.
+     */
+    public static final class Reference {
+        private final Tokens tokens;
+        private final NgramCounter unigrams;
+        private final NgramCounter bigrams;
+
+        private Reference(Tokens tokens) {
+            this.tokens = tokens;
+            this.unigrams = new NgramCounter(tokens.length);
+            this.bigrams = new NgramCounter(tokens.length);
+            for (int i = 0; i < tokens.length; i++) {
+                unigrams.add(tokens.ids[i]);
+                if (i > 0) {
+                    bigrams.add(bigram(tokens.ids[i - 1], tokens.ids[i]));
+                }
+            }
+        }
+
+        public RougeScores score(String candidate) {
+            Tokens summary = Tokens.of(candidate);
+
+            // Each reference n-gram can be matched as many times as it occurs, no more
+            NgramCounter unigramsLeft = unigrams.copy();
+            NgramCounter bigramsLeft = bigrams.copy();
+            long unigramMatches = 0;
+            long bigramMatches = 0;
+            for (int i = 0; i < summary.length; i++) {
+                if (unigramsLeft.take(summary.ids[i])) {
+                    unigramMatches++;
+                }
+                if (i > 0 && bigramsLeft.take(bigram(summary.ids[i - 1], summary.ids[i]))) {
+                    bigramMatches++;
+                }
+            }
+
+            return new RougeScores(
+                    RougeScores.Score.of(unigramMatches, summary.length, tokens.length),
+                    RougeScores.Score.of(bigramMatches, Math.max(0, summary.length - 1), Math.max(0, tokens.length - 1)),
+                    RougeScores.Score.of(lcs(tokens, summary), summary.length, tokens.length));
+        }
+    }
+
+    /**
+     * Length of the longest common subsequence, keeping one DP row over the shorter sequence.
+     */
+    static int lcs(Tokens first, Tokens second) {
+        Tokens outer = first.length >= second.length ? first : second;
+        Tokens inner = outer == first ? second : first;
+        int[] row = new int[inner.length + 1];
+        for (int i = 0; i < outer.length; i++) {
+            long id = outer.ids[i];
+            int diagonal = 0;
+            for (int j = 1; j <= inner.length; j++) {
+                int above = row[j];
+                row[j] = id == inner.ids[j - 1] ? diagonal + 1 : Math.max(above, row[j - 1]);
+                diagonal = above;
+            }
+        }
+        return row[inner.length];
+    }
+
+    private static long bigram(long first, long second) {
+        return nonZero(mix(first ^ Long.rotateLeft(second, 29) ^ 0x9e3779b97f4a7c15L));
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static long nonZero(long id) {
+        return id == 0 ? 1 : id;
+    }
+
+    /**
+     * Word ids of a text in order, the array may be longer than {@code length}.
+     */
+    static final class Tokens {
+        final long[] ids;
+        final int length;
+
+        private Tokens(long[] ids, int length) {
+            this.ids = ids;
+            this.length = length;
+        }
+
+        static Tokens of(String text) {
+            long[] ids = new long[Math.max(16, text.length() / 5)];
+            int length = 0;
+            long hash = FNV_OFFSET;
+            boolean inWord = false;
+            for (int i = 0; i < text.length(); ) {
+                int codePoint = text.codePointAt(i);
+                i += Character.charCount(codePoint);
+                if (Character.isLetterOrDigit(codePoint)) {
+                    hash = (hash ^ Character.toLowerCase(codePoint)) * FNV_PRIME;
+                    inWord = true;
+                } else if (Character.isWhitespace(codePoint) && inWord) {
+                    if (length == ids.length) {
+                        ids = Arrays.copyOf(ids, length * 2);
+                    }
+                    ids[length++] = nonZero(mix(hash));
+                    hash = FNV_OFFSET;
+                    inWord = false;
+                }
+            }
+            if (inWord) {
+                if (length == ids.length) {
+                    ids = Arrays.copyOf(ids, length + 1);
+                }
+                ids[length++] = nonZero(mix(hash));
+            }
+            return new Tokens(ids, length);
+        }
+    }
+
+    /**
+     * Multiset of n-gram ids with linear probing, id 0 marks a free slot.
+     */
+    static final class NgramCounter {
+        private final long[] keys;
+        private final int[] counts;
+        private final int mask;
+
+        NgramCounter(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(8, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            counts = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private NgramCounter(NgramCounter source) {
+            keys = source.keys;
+            counts = source.counts.clone();
+            mask = source.mask;
+        }
+
+        /**
+         * Copy whose counts can be taken without touching this one. Keys never change after
+         * counting, so only the counts are duplicated.
+         */
+        NgramCounter copy() {
+            return new NgramCounter(this);
+        }
+
+        void add(long id) {
+            int slot = slot(id);
+            while (keys[slot] != 0 && keys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = id;
+            counts[slot]++;
+        }
+
+        /**
+         * @return true when the id was present and one of its occurrences has been taken
+         */
+        boolean take(long id) {
+            int slot = slot(id);
+            while (keys[slot] != 0) {
+                if (keys[slot] == id) {
+                    if (counts[slot] == 0) {
+                        return false;
+                    }
+                    counts[slot]--;
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        private int slot(long id) {
+            return (int) (id ^ (id >>> 32)) & mask;
+        }
+    }
+}
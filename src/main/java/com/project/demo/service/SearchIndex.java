@@ -0,0 +1,346 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.project.demo.exceptions.StorageException;
+import com.project.demo.model.HistoryEntry;
+import com.project.demo.model.SearchHit;
+import com.project.demo.model.SearchResults;
+import com.project.demo.model.TranscriptSegment;
+import com.project.demo.properties.SearchProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Inverted index over the transcriptions in the history, one document per upload, ranked with BM25.
+ * <p>
+ * The index file is memory-mapped at start. Transcriptions added to the history since it was written are indexed
+ * in memory as they come and written out together with it every {@code search.flush-interval}. Anything the file
+ * missed because of a crash is indexed again from the history on start.
+ */
+@Service
+public class SearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndex.class);
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_SNIPPETS = 3;
+    private static final int SNIPPET_WORDS = 30;
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path file;
+    private final HistoryStore historyStore;
+
+    private SearchIndexFile base = SearchIndexFile.empty();
+    // Transcriptions indexed since the file was written, their document numbers follow the file's
+    private final Map<String, Postings> recent = new HashMap<>();
+    private final List<Document> recentDocuments = new ArrayList<>();
+    private long recentLength;
+    private long watermark;
+    private final Set<String> indexedHashes = new HashSet<>();
+
+    private record Document(long historyId, int length, String fileHash) {
+    }
+
+    private record Scored(int document, double score) {
+    }
+
+    private static final class Postings {
+        private int[] documents = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void add(int document, int frequency) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            documents[size] = document;
+            frequencies[size++] = frequency;
+        }
+
+        void forEach(SearchIndexFile.PostingConsumer consumer) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(documents[i], frequencies[i]);
+            }
+        }
+    }
+
+    @Autowired
+    public SearchIndex(SearchProperties properties, HistoryStore historyStore) {
+        if (properties.getLocation().trim().isEmpty()) {
+            throw new StorageException("Search index location can not be Empty.");
+        }
+        this.file = Paths.get(properties.getLocation()).resolve("transcripts.idx");
+        this.historyStore = historyStore;
+    }
+
+    @PostConstruct
+    public void init() {
+        long started = System.nanoTime();
+        try {
+            Files.createDirectories(file.getParent());
+        }
+        catch (IOException e) {
+            throw new StorageException("Could not initialize search index", e);
+        }
+        synchronized (this) {
+            if (Files.exists(file)) {
+                try {
+                    base = SearchIndexFile.open(file);
+                }
+                catch (IOException e) {
+                    log.warn("Indexing the whole history again, the search index can not be read", e);
+                }
+            }
+            watermark = base.watermark();
+            for (int document = 0; document < base.docCount(); document++) {
+                indexedHashes.add(base.fileHash(document));
+            }
+        }
+        log.info("Search index of {} transcriptions opened in {} ms", base.docCount(),
+                (System.nanoTime() - started) / 1_000_000);
+
+        historyStore.onAppend(this::add);
+        long from = base.watermark();
+        long to = historyStore.size();
+        for (long id = from; id < to; id++) {
+            historyStore.get(id).ifPresent(this::add);
+        }
+        if (to > from) {
+            log.info("Indexed {} history entries the search index file did not have", to - from);
+        }
+    }
+
+    /**
+     * Indexes the transcription of a history entry, unless one of the same upload already is.
+     */
+    public synchronized void add(HistoryEntry entry) {
+        watermark = Math.max(watermark, entry.id() + 1);
+        String fileHash = entry.fileHash();
+        if (entry.transcription() == null || fileHash == null || !HASH.matcher(fileHash).matches()
+                || !indexedHashes.add(fileHash)) {
+            return;
+        }
+        Map<String, Integer> frequencies = new HashMap<>();
+        List<String> tokens = tokens(entry.transcription());
+        tokens.forEach(token -> frequencies.merge(token, 1, Integer::sum));
+
+        int document = base.docCount() + recentDocuments.size();
+        recentDocuments.add(new Document(entry.id(), tokens.size(), fileHash));
+        recentLength += tokens.size();
+        frequencies.forEach((term, frequency) -> recent.computeIfAbsent(term, ignored -> new Postings())
+                .add(document, frequency));
+    }
+
+    /**
+     * @param limit most hits returned, best first
+     */
+    public SearchResults search(String query, int limit) {
+        List<String> terms = tokens(query).stream().distinct().toList();
+        List<Scored> best;
+        List<Long> historyIds = new ArrayList<>();
+        int matches;
+        synchronized (this) {
+            int documents = base.docCount() + recentDocuments.size();
+            if (terms.isEmpty() || documents == 0) {
+                return new SearchResults(query, 0, List.of());
+            }
+            double averageLength = (double) (base.totalLength() + recentLength) / documents;
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                int baseTerm = base.find(term.getBytes(StandardCharsets.UTF_8));
+                Postings recentPostings = recent.get(term);
+                int frequency = (baseTerm < 0 ? 0 : base.documentFrequency(baseTerm))
+                        + (recentPostings == null ? 0 : recentPostings.size);
+                if (frequency == 0) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+                SearchIndexFile.PostingConsumer score = (document, termFrequency) -> scores.merge(document,
+                        idf * termFrequency * (K1 + 1)
+                                / (termFrequency + K1 * (1 - B + B * length(document) / averageLength)),
+                        Double::sum);
+                if (baseTerm >= 0) {
+                    base.postings(baseTerm, score);
+                }
+                if (recentPostings != null) {
+                    recentPostings.forEach(score);
+                }
+            }
+            matches = scores.size();
+            best = best(scores, limit);
+            best.forEach(scored -> historyIds.add(historyId(scored.document())));
+        }
+
+        // Snippets need the transcriptions, they are read from the history outside of the lock
+        List<SearchHit> hits = new ArrayList<>(best.size());
+        for (int i = 0; i < best.size(); i++) {
+            double score = best.get(i).score();
+            historyStore.get(historyIds.get(i)).ifPresent(entry -> hits.add(new SearchHit(entry.id(),
+                    entry.fileHash(), entry.fileName(), score, snippets(entry, terms))));
+        }
+        return new SearchResults(query, matches, hits);
+    }
+
+    /**
+     * Highest scores first with a heap of {@code limit} entries, ties go to the older transcription.
+     */
+    private static List<Scored> best(Map<Integer, Double> scores, int limit) {
+        Comparator<Scored> order = Comparator.comparingDouble(Scored::score)
+                .thenComparing(Comparator.comparingInt(Scored::document).reversed());
+        PriorityQueue<Scored> heap = new PriorityQueue<>(limit + 1, order);
+        scores.forEach((document, score) -> {
+            heap.add(new Scored(document, score));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        });
+        List<Scored> best = new ArrayList<>(heap);
+        best.sort(order.reversed());
+        return best;
+    }
+
+    private int length(int document) {
+        return document < base.docCount() ? base.docLength(document)
+                : recentDocuments.get(document - base.docCount()).length();
+    }
+
+    private long historyId(int document) {
+        return document < base.docCount() ? base.historyId(document)
+                : recentDocuments.get(document - base.docCount()).historyId();
+    }
+
+    /**
+     * Segments with the most query words, in the order they were said. Results kept without segments get the
+     * words around the first match instead.
+     */
+    static List<SearchHit.Snippet> snippets(HistoryEntry entry, Collection<String> terms) {
+        Set<String> wanted = Set.copyOf(terms);
+        if (entry.segments() != null && !entry.segments().isEmpty()) {
+            return entry.segments().stream()
+                    .filter(segment -> segment.text() != null)
+                    .map(segment -> Map.entry(segment, (int) tokens(segment.text()).stream()
+                            .filter(wanted::contains).distinct().count()))
+                    .filter(match -> match.getValue() > 0)
+                    .sorted(Map.Entry.<TranscriptSegment, Integer>comparingByValue().reversed())
+                    .limit(MAX_SNIPPETS)
+                    .map(Map.Entry::getKey)
+                    .sorted(Comparator.comparingDouble(TranscriptSegment::start))
+                    .map(segment -> new SearchHit.Snippet(segment.start(), segment.end(), segment.text().strip()))
+                    .toList();
+        }
+        String[] words = entry.transcription().strip().split("\\s+");
+        for (int i = 0; i < words.length; i++) {
+            if (tokens(words[i]).stream().anyMatch(wanted::contains)) {
+                int from = Math.max(0, i - SNIPPET_WORDS / 2);
+                int to = Math.min(words.length, from + SNIPPET_WORDS);
+                return List.of(new SearchHit.Snippet(null, null,
+                        String.join(" ", Arrays.asList(words).subList(from, to))));
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Lower case runs of letters and digits, the same for transcriptions and queries.
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isLetterOrDigit(codePoint)) {
+                word.appendCodePoint(Character.toLowerCase(codePoint));
+            } else if (!word.isEmpty()) {
+                tokens.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (!word.isEmpty()) {
+            tokens.add(word.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Writes the file again with the transcriptions indexed since, postings of a term are the file's followed by
+     * the recent ones. Searches and history appends wait meanwhile.
+     */
+    @Scheduled(fixedDelayString = "${search.flush-interval:PT1M}", initialDelayString = "${search.flush-interval:PT1M}")
+    public synchronized void flush() {
+        if (recentDocuments.isEmpty() && watermark == base.watermark()) {
+            return;
+        }
+        try {
+            SearchIndexFile.Writer writer = new SearchIndexFile.Writer(watermark);
+            for (int document = 0; document < base.docCount(); document++) {
+                writer.doc(base.historyId(document), base.docLength(document), base.fileHash(document));
+            }
+            for (Document document : recentDocuments) {
+                writer.doc(document.historyId(), document.length(), document.fileHash());
+            }
+
+            List<Map.Entry<byte[], Postings>> recentTerms = recent.entrySet().stream()
+                    .map(entry -> Map.entry(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue()))
+                    .sorted(Map.Entry.comparingByKey(Arrays::compareUnsigned))
+                    .toList();
+            int next = 0;
+            for (int term = 0; term < base.termCount(); term++) {
+                byte[] bytes = base.term(term);
+                while (next < recentTerms.size() && Arrays.compareUnsigned(recentTerms.get(next).getKey(), bytes) < 0) {
+                    writer.term(recentTerms.get(next).getKey());
+                    recentTerms.get(next++).getValue().forEach(writer::posting);
+                }
+                writer.term(bytes);
+                base.postings(term, writer::posting);
+                if (next < recentTerms.size() && Arrays.equals(recentTerms.get(next).getKey(), bytes)) {
+                    recentTerms.get(next++).getValue().forEach(writer::posting);
+                }
+            }
+            for (; next < recentTerms.size(); next++) {
+                writer.term(recentTerms.get(next).getKey());
+                recentTerms.get(next).getValue().forEach(writer::posting);
+            }
+            writer.write(file);
+
+            base = SearchIndexFile.open(file);
+            recent.clear();
+            recentDocuments.clear();
+            recentLength = 0;
+        }
+        catch (IOException e) {
+            log.warn("Could not write the search index, recent transcriptions stay in memory", e);
+        }
+    }
+
+    public synchronized int size() {
+        return base.docCount() + recentDocuments.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
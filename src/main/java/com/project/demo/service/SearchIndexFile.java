@@ -0,0 +1,300 @@
+package com.project.demo.service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Immutable snapshot of the search index, read through a memory mapping so opening it costs only the header.
+ * <p>
+ * Layout, big endian: a header, a slot per transcription (history id, token count, upload hash), a slot per term
+ * in unsigned UTF-8 order (offset and length of its bytes and postings, document frequency), the term bytes and
+ * the postings. A term's postings are document ids as gaps to the previous one and term frequencies, each a
+ * variable length integer of 7 bits a byte.
+ */
+final class SearchIndexFile {
+
+    private static final int MAGIC = 0x53494458;
+    private static final int VERSION = 1;
+    private static final int HEADER = 40;
+    private static final int HASH_BYTES = 32;
+    private static final int DOC_SLOT = 8 + 4 + HASH_BYTES;
+    private static final int TERM_SLOT = 4 + 4 + 8 + 4 + 4;
+
+    private static final SearchIndexFile EMPTY = new SearchIndexFile(ByteBuffer.allocate(HEADER)
+            .putInt(0, MAGIC).putInt(4, VERSION));
+
+    /**
+     * Receives the postings of a term in document order.
+     */
+    @FunctionalInterface
+    interface PostingConsumer {
+        void accept(int doc, int frequency);
+    }
+
+    private final ByteBuffer buffer;
+    private final long watermark;
+    private final int docCount;
+    private final int termCount;
+    private final long totalLength;
+    private final long termsStart;
+    private final long postingsStart;
+
+    private SearchIndexFile(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.watermark = buffer.getLong(8);
+        this.docCount = buffer.getInt(16);
+        this.termCount = buffer.getInt(20);
+        this.totalLength = buffer.getLong(24);
+        long termBytes = buffer.getLong(32);
+        this.termsStart = HEADER + (long) docCount * DOC_SLOT + (long) termCount * TERM_SLOT;
+        this.postingsStart = termsStart + termBytes;
+    }
+
+    static SearchIndexFile empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @throws IOException when the file can not be read or is not a search index of this version
+     */
+    static SearchIndexFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER || size > Integer.MAX_VALUE) {
+                throw new IOException("Search index " + file + " has an unexpected size of " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Search index " + file + " is not of version " + VERSION);
+            }
+            SearchIndexFile index = new SearchIndexFile(buffer);
+            if (index.docCount < 0 || index.termCount < 0 || index.postingsStart < index.termsStart
+                    || index.postingsStart > size) {
+                throw new IOException("Search index " + file + " is cut short");
+            }
+            return index;
+        }
+    }
+
+    /**
+     * History entries below this id have all been looked at.
+     */
+    long watermark() {
+        return watermark;
+    }
+
+    int docCount() {
+        return docCount;
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    /**
+     * Tokens in all documents together.
+     */
+    long totalLength() {
+        return totalLength;
+    }
+
+    long historyId(int doc) {
+        return buffer.getLong(HEADER + doc * DOC_SLOT);
+    }
+
+    int docLength(int doc) {
+        return buffer.getInt(HEADER + doc * DOC_SLOT + 8);
+    }
+
+    String fileHash(int doc) {
+        byte[] hash = new byte[HASH_BYTES];
+        buffer.get(HEADER + doc * DOC_SLOT + 12, hash);
+        return HexFormat.of().formatHex(hash);
+    }
+
+    byte[] term(int term) {
+        int slot = termSlot(term);
+        byte[] bytes = new byte[buffer.getInt(slot + 4)];
+        buffer.get((int) termsStart + buffer.getInt(slot), bytes);
+        return bytes;
+    }
+
+    int documentFrequency(int term) {
+        return buffer.getInt(termSlot(term) + 20);
+    }
+
+    /**
+     * @return the term's number, or -1 when no document has it
+     */
+    int find(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(middle, term);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int compare(int term, byte[] other) {
+        int slot = termSlot(term);
+        int start = (int) termsStart + buffer.getInt(slot);
+        int length = buffer.getInt(slot + 4);
+        for (int i = 0; i < Math.min(length, other.length); i++) {
+            int comparison = Integer.compare(buffer.get(start + i) & 0xFF, other[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, other.length);
+    }
+
+    void postings(int term, PostingConsumer consumer) {
+        int slot = termSlot(term);
+        int position = (int) (postingsStart + buffer.getLong(slot + 8));
+        int doc = 0;
+        for (int i = buffer.getInt(slot + 20); i > 0; i--) {
+            int gap = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get(position++);
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            int frequency = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get(position++);
+                frequency |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            doc += gap;
+            consumer.accept(doc, frequency);
+        }
+    }
+
+    private int termSlot(int term) {
+        return HEADER + docCount * DOC_SLOT + term * TERM_SLOT;
+    }
+
+    /**
+     * Builds a new snapshot in memory, documents first, then terms in unsigned UTF-8 order each followed by its
+     * postings in document order.
+     */
+    static final class Writer {
+        private final long watermark;
+        private final ByteArrayOutputStream docs = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream terms = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream postings = new ByteArrayOutputStream();
+        private int docCount;
+        private int termCount;
+        private long totalLength;
+        private int documentFrequency = -1;
+        private int lastDoc;
+        private long termPostings;
+        private byte[] lastTerm;
+
+        Writer(long watermark) {
+            this.watermark = watermark;
+        }
+
+        void doc(long historyId, int length, String fileHash) {
+            docs.writeBytes(ByteBuffer.allocate(DOC_SLOT)
+                    .putLong(historyId)
+                    .putInt(length)
+                    .put(HexFormat.of().parseHex(fileHash))
+                    .array());
+            docCount++;
+            totalLength += length;
+        }
+
+        void term(byte[] term) {
+            if (lastTerm != null && Arrays.compareUnsigned(lastTerm, term) >= 0) {
+                throw new IllegalStateException("Terms must be added in order");
+            }
+            finishTerm();
+            termPostings = postings.size();
+            dictionary.writeBytes(ByteBuffer.allocate(16)
+                    .putInt(terms.size())
+                    .putInt(term.length)
+                    .putLong(termPostings)
+                    .array());
+            terms.writeBytes(term);
+            lastTerm = term;
+            documentFrequency = 0;
+            lastDoc = 0;
+        }
+
+        void posting(int doc, int frequency) {
+            writeVarInt(doc - lastDoc);
+            writeVarInt(frequency);
+            lastDoc = doc;
+            documentFrequency++;
+        }
+
+        private void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                postings.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            postings.write(value);
+        }
+
+        private void finishTerm() {
+            if (documentFrequency >= 0) {
+                dictionary.writeBytes(ByteBuffer.allocate(8)
+                        .putInt((int) (postings.size() - termPostings))
+                        .putInt(documentFrequency)
+                        .array());
+                termCount++;
+                documentFrequency = -1;
+            }
+        }
+
+        /**
+         * Writes the snapshot next to {@code target} and moves it in place.
+         */
+        void write(Path target) throws IOException {
+            finishTerm();
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(watermark);
+                out.writeInt(docCount);
+                out.writeInt(termCount);
+                out.writeLong(totalLength);
+                out.writeLong(terms.size());
+                docs.writeTo(out);
+                dictionary.writeTo(out);
+                terms.writeTo(out);
+                postings.writeTo(out);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -1,16 +1,55 @@
 package com.project.demo.service;
+import com.project.demo.model.FileEntry;
+import com.project.demo.model.FilePage;
+import com.project.demo.model.StoredFile;
 import org.springframework.web.multipart.MultipartFile;
 
 import org.springframework.core.io.Resource;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.stream.Stream;
 
+/**
+ * Stored uploads are addressed by the SHA-256 of their content, the original filename is metadata.
+ */
 public interface StorageService {
+    /**
+     * Prepares the storage without discarding earlier uploads.
+     */
     void init();
-    void store(MultipartFile file);
+    StoredFile store(MultipartFile file);
+    /**
+     * Stores an MP3 upload, checking its frame headers while it is copied. Nothing is stored when the
+     * check fails.
+     *
+     * @throws com.project.demo.exceptions.InvalidAudioException when the upload is not MP3 or too long
+     */
+    StoredFile storeAudio(MultipartFile file);
     Stream<Path> loadAll();
-    Path load(String filename);
-    Resource loadAsResource(String filename);
+    /**
+     * One page of stored files from the in-memory catalogue.
+     *
+     * @param sort {@code name}, {@code size} or {@code uploadedAt}
+     */
+    FilePage list(int page, int size, String sort, boolean descending);
+    /**
+     * @throws com.project.demo.exceptions.StorageFileNotFoundException when no upload has this hash
+     */
+    FileEntry describe(String hash);
+    /**
+     * Records an access for least recently used eviction.
+     *
+     * @return false when no upload has this hash
+     */
+    boolean touch(String hash);
+    /**
+     * Deletes an upload unless a job has it pinned or it was accessed at or after the cutoff.
+     *
+     * @return true when the upload was deleted
+     */
+    boolean evict(String hash, Instant accessedBefore);
+    Path load(String hash);
+    Resource loadAsResource(String hash);
     void deleteAll();
     Path getStorageLocation();
 }
@@ -0,0 +1,178 @@
+package com.project.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.project.demo.properties.SummarizerProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Collects BART summary requests of concurrent callers, text requests and the chunks of long transcriptions
+ * alike, into one worker call per batch. A request waits at most {@code summarizer.batch-max-delay} for
+ * others to join, a full batch of {@code summarizer.batch-max-size} goes out at once.
+ * <p>
+ * A cancelled request leaves its batch. The worker running a batch is only killed once every request in it
+ * was cancelled, the others still get their summaries.
+ */
+@Service
+public class SummaryBatcher {
+
+    private final PythonWorkerPool pythonWorkerPool;
+    private final SummarizerProperties properties;
+    private final PipelineMetrics pipelineMetrics;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("summary-batcher").daemon().factory());
+    // Batches spend their time blocked on a worker
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final List<Request> pending = new ArrayList<>();
+    private ScheduledFuture<?> flush;
+
+    private static final class Request {
+        final String text;
+        final CompletableFuture<String> summary = new CompletableFuture<>();
+        Batch batch;
+
+        Request(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Batch {
+        final CancellationToken cancellation = new CancellationToken();
+        // Requests still waiting for this batch
+        int waiting;
+
+        Batch(int waiting) {
+            this.waiting = waiting;
+        }
+    }
+
+    @Autowired
+    public SummaryBatcher(PythonWorkerPool pythonWorkerPool, SummarizerProperties properties,
+                          PipelineMetrics pipelineMetrics) {
+        this.pythonWorkerPool = pythonWorkerPool;
+        this.properties = properties;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    /**
+     * Summarizes one text that fits the model's window, blocking until its batch is done.
+     *
+     * @throws CancellationException when the token was cancelled
+     */
+    public String summarize(String text, CancellationToken cancellation) {
+        cancellation.throwIfCancelled();
+        if (properties.getBatchMaxSize() <= 1) {
+            return pythonWorkerPool.summarize(text, cancellation);
+        }
+        Request request = new Request(text);
+        enqueue(request);
+        try (CancellationToken.Registration ignored = cancellation.onCancel(
+                () -> abandon(request, cancellation.getReason()))) {
+            return request.summary.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(request, "Interrupted while summarizing");
+            throw new CancellationException("Interrupted while summarizing");
+        }
+    }
+
+    private synchronized void enqueue(Request request) {
+        pending.add(request);
+        if (pending.size() >= properties.getBatchMaxSize()) {
+            dispatch();
+        } else if (flush == null) {
+            flush = timer.schedule(this::flush, properties.getBatchMaxDelay().toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void flush() {
+        flush = null;
+        if (!pending.isEmpty()) {
+            dispatch();
+        }
+    }
+
+    private void dispatch() {
+        if (flush != null) {
+            flush.cancel(false);
+            flush = null;
+        }
+        List<Request> requests = List.copyOf(pending);
+        pending.clear();
+        Batch batch = new Batch(requests.size());
+        requests.forEach(request -> request.batch = batch);
+        executor.execute(() -> run(batch, requests));
+    }
+
+    private void run(Batch batch, List<Request> requests) {
+        pipelineMetrics.recordSummaryBatch(requests.size());
+        try {
+            List<String> summaries = pythonWorkerPool.summarize(
+                    requests.stream().map(request -> request.text).toList(), batch.cancellation);
+            for (int i = 0; i < requests.size(); i++) {
+                requests.get(i).summary.complete(summaries.get(i));
+            }
+        } catch (RuntimeException e) {
+            requests.forEach(request -> request.summary.completeExceptionally(e));
+        }
+    }
+
+    private void abandon(Request request, String reason) {
+        Batch abandoned = null;
+        synchronized (this) {
+            if (!pending.remove(request) && request.batch != null && !request.summary.isDone()
+                    && --request.batch.waiting == 0) {
+                abandoned = request.batch;
+            }
+        }
+        request.summary.completeExceptionally(new CancellationException(reason));
+        if (abandoned != null) {
+            abandoned.cancellation.cancel("Every summary in the batch was cancelled");
+        }
+    }
+
+    /**
+     * BART behind the chunked summarizer, every step goes through the batches.
+     */
+    public ChunkedSummarizer.Backend backend(CancellationToken cancellation) {
+        return new ChunkedSummarizer.Backend() {
+            @Override
+            public String summarize(String text) {
+                return SummaryBatcher.this.summarize(text, cancellation);
+            }
+
+            @Override
+            public String summarizePart(String part) {
+                return SummaryBatcher.this.summarize(part, cancellation);
+            }
+
+            @Override
+            public String combine(String partSummaries) {
+                return SummaryBatcher.this.summarize(partSummaries, cancellation);
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,253 @@
+package com.project.demo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Cache bounded by the weight of its entries with W-TinyLFU eviction. New entries land in a small LRU window,
+ * entries leaving the window only enter the main space when the frequency sketch has seen them more often than
+ * the entry they would push out. The main space is a segmented LRU, entries hit while on probation move to the
+ * protected segment.
+ * <p>
+ * One lock guards everything, the callers keep expensive work such as I/O outside of it.
+ */
+final class TinyLfuCache<V> {
+
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private enum Queue { WINDOW, PROBATION, PROTECTED }
+
+    private static final class Node<V> {
+        final String key;
+        V value;
+        long weight;
+        Queue queue;
+
+        Node(String key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ToLongBiFunction<String, V> weigher;
+    private final FrequencySketch sketch;
+
+    private final Map<String, Node<V>> nodes = new HashMap<>();
+    // Insertion ordered, the first entry is the least recently used
+    private final LinkedHashMap<String, Node<V>> window = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Node<V>> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Node<V>> protectedQueue = new LinkedHashMap<>();
+    private long windowWeight;
+    private long mainWeight;
+    private long protectedWeight;
+    private long evictions;
+
+    /**
+     * @param expectedEntries sizes the frequency sketch, about how many entries fit in {@code maximumWeight}
+     */
+    TinyLfuCache(long maximumWeight, int expectedEntries, ToLongBiFunction<String, V> weigher) {
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_SHARE));
+        this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_SHARE);
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    synchronized V get(String key) {
+        sketch.increment(key);
+        Node<V> node = nodes.get(key);
+        if (node == null) {
+            return null;
+        }
+        touch(node);
+        return node.value;
+    }
+
+    /**
+     * @return entries evicted to make room, including the new one when it lost against the main space
+     */
+    synchronized List<Map.Entry<String, V>> put(String key, V value) {
+        long weight = weigher.applyAsLong(key, value);
+        List<Map.Entry<String, V>> evicted = new ArrayList<>();
+        Node<V> existing = nodes.get(key);
+        if (existing != null) {
+            remove(existing);
+        }
+        if (weight > maximumWeight) {
+            evicted.add(Map.entry(key, value));
+            return evicted;
+        }
+        sketch.increment(key);
+        Node<V> node = new Node<>(key, value, weight);
+        nodes.put(key, node);
+        node.queue = Queue.WINDOW;
+        window.put(key, node);
+        windowWeight += weight;
+
+        while (windowWeight > windowMaximum) {
+            Node<V> candidate = window.pollFirstEntry().getValue();
+            windowWeight -= candidate.weight;
+            admit(candidate, evicted);
+        }
+        evictions += evicted.size();
+        return evicted;
+    }
+
+    synchronized V remove(String key) {
+        Node<V> node = nodes.get(key);
+        if (node == null) {
+            return null;
+        }
+        remove(node);
+        return node.value;
+    }
+
+    /**
+     * Moves a window entry to probation, evicting whichever of it and the main space's victims is used less.
+     */
+    private void admit(Node<V> candidate, List<Map.Entry<String, V>> evicted) {
+        long mainMaximum = maximumWeight - windowMaximum;
+        while (mainWeight + candidate.weight > mainMaximum) {
+            Map.Entry<String, Node<V>> eldest = probation.isEmpty() ? protectedQueue.firstEntry()
+                    : probation.firstEntry();
+            if (eldest == null || sketch.frequency(candidate.key) <= sketch.frequency(eldest.getKey())) {
+                nodes.remove(candidate.key);
+                evicted.add(Map.entry(candidate.key, candidate.value));
+                return;
+            }
+            Node<V> victim = eldest.getValue();
+            remove(victim);
+            evicted.add(Map.entry(victim.key, victim.value));
+        }
+        candidate.queue = Queue.PROBATION;
+        probation.put(candidate.key, candidate);
+        mainWeight += candidate.weight;
+    }
+
+    private void touch(Node<V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.putLast(node.key, node);
+            case PROTECTED -> protectedQueue.putLast(node.key, node);
+            case PROBATION -> {
+                probation.remove(node.key);
+                node.queue = Queue.PROTECTED;
+                protectedQueue.put(node.key, node);
+                protectedWeight += node.weight;
+                Iterator<Node<V>> eldest = protectedQueue.values().iterator();
+                while (protectedWeight > protectedMaximum && eldest.hasNext()) {
+                    Node<V> demoted = eldest.next();
+                    eldest.remove();
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = Queue.PROBATION;
+                    probation.put(demoted.key, demoted);
+                }
+            }
+        }
+    }
+
+    private void remove(Node<V> node) {
+        nodes.remove(node.key);
+        switch (node.queue) {
+            case WINDOW -> {
+                window.remove(node.key);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> {
+                probation.remove(node.key);
+                mainWeight -= node.weight;
+            }
+            case PROTECTED -> {
+                protectedQueue.remove(node.key);
+                protectedWeight -= node.weight;
+                mainWeight -= node.weight;
+            }
+        }
+    }
+
+    synchronized long weightedSize() {
+        return windowWeight + mainWeight;
+    }
+
+    synchronized int size() {
+        return nodes.size();
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Count-min sketch of 4 bit counters, four to a key. All counters are halved once as many keys were counted
+     * as the table has counters, so the frequencies follow what is popular now.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int length = Integer.highestOneBit(Math.clamp(expectedEntries, 16, 1 << 24) - 1) << 1;
+            table = new long[length];
+            tableMask = length - 1;
+            sampleSize = 10 * length;
+        }
+
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int offset = (start + i) << 2;
+                frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offset) & 0xF));
+            }
+            return frequency;
+        }
+
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = (start + i) << 2;
+                if (((table[index] >>> offset) & 0xF) < 15) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & tableMask;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
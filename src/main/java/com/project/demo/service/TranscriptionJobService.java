@@ -0,0 +1,237 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.project.demo.exceptions.QueueFullException;
+import com.project.demo.model.FileEntry;
+import com.project.demo.model.JobStatus;
+import com.project.demo.model.StoredFile;
+import com.project.demo.model.TranscriptionJob;
+import com.project.demo.model.TranscriptionResult;
+import com.project.demo.properties.JobProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Runs transcription jobs off the servlet threads, through the {@link TranscriptionScheduler}, and keeps
+ * their state for polling and SSE subscribers. Jobs can be cancelled and are cancelled when they run
+ * past {@code jobs.deadline}.
+ */
+@Service
+public class TranscriptionJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptionJobService.class);
+
+    private final TranscriptionPipeline pipeline;
+    private final JobProperties properties;
+    private final PipelineMetrics pipelineMetrics;
+    private final FileCatalog fileCatalog;
+    private final TranscriptionScheduler scheduler;
+    private final Map<String, TranscriptionJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("job-deadlines").daemon().factory());
+
+    @Autowired
+    public TranscriptionJobService(TranscriptionPipeline pipeline, JobProperties properties,
+                                   PipelineMetrics pipelineMetrics, FileCatalog fileCatalog,
+                                   TranscriptionScheduler scheduler) {
+        this.pipeline = pipeline;
+        this.properties = properties;
+        this.pipelineMetrics = pipelineMetrics;
+        this.fileCatalog = fileCatalog;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param sessionId submitter, jobs of different sessions are scheduled fairly
+     * @throws com.project.demo.exceptions.QueueFullException when too many jobs are waiting already
+     */
+    public TranscriptionJob submit(StoredFile file, String sessionId, String processingMethod, String modelId) {
+        Duration duration = file.audio() != null ? file.audio().duration() : null;
+        TranscriptionJob job = new TranscriptionJob(UUID.randomUUID().toString(), file.filename(),
+                file.path().toAbsolutePath().toString(), file.hash(), processingMethod, modelId, duration);
+        JobStatus previousStatus = fileCatalog.get(job.getFileHash()).map(FileEntry::status).orElse(null);
+        jobs.put(job.getId(), job);
+        // Kept from retention until the job is finished
+        fileCatalog.pin(job.getFileHash());
+        fileCatalog.updateStatus(job.getFileHash(), job.getStatus());
+        Runnable task = () -> run(job);
+        try {
+            // Short recordings first, an upload stored without its length counts at 128 kbit/s, 16 bytes a millisecond
+            scheduler.submit(sessionId, duration != null ? duration.toMillis() : file.size() / 16, task);
+        } catch (QueueFullException e) {
+            jobs.remove(job.getId());
+            fileCatalog.unpin(job.getFileHash());
+            fileCatalog.updateStatus(job.getFileHash(), previousStatus);
+            throw e;
+        }
+
+        // A job cancelled while it waits leaves the queue at once, a running one is stopped by the pipeline
+        job.getCancellation().onCancel(() -> {
+            if (scheduler.cancel(task)) {
+                job.markCancelled(job.getCancellation().getReason());
+                finish(job);
+            }
+        });
+        Duration deadline = properties.getDeadline();
+        if (deadline != null && !deadline.isZero()) {
+            ScheduledFuture<?> timer = deadlines.schedule(
+                    () -> cancel(job, "deadline", "Not finished within the deadline of " + deadline),
+                    deadline.toMillis(), TimeUnit.MILLISECONDS);
+            job.getCompletion().whenComplete((finished, e) -> timer.cancel(false));
+        }
+        return job;
+    }
+
+    /**
+     * Stops a queued or running job: it leaves the queue, or its Python worker is killed and its Gemini
+     * call aborted.
+     *
+     * @return false when the job had already finished
+     */
+    public boolean cancel(TranscriptionJob job) {
+        return cancel(job, "user", "Cancelled by the user");
+    }
+
+    private boolean cancel(TranscriptionJob job, String cause, String reason) {
+        JobStatus stage = job.getStatus();
+        if (stage.isFinished() || !job.getCancellation().cancel(reason)) {
+            return false;
+        }
+        // What the job would probably still have needed, judged by the average job
+        Duration saved = scheduler.getAverageRunTime();
+        if (stage == JobStatus.RUNNING && job.getStartedAt() != null) {
+            saved = saved.minus(Duration.between(job.getStartedAt(), Instant.now()));
+        }
+        pipelineMetrics.countCancellation(cause, stage, saved.isNegative() ? Duration.ZERO : saved);
+        log.info("Cancelled transcription job {} for {}: {}", job.getId(), job.getFileName(), reason);
+        return true;
+    }
+
+    public Optional<TranscriptionJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    public long countJobs(JobStatus status) {
+        return jobs.values().stream().filter(job -> job.getStatus() == status).count();
+    }
+
+    /**
+     * @return jobs with open progress streams
+     */
+    public int countSubscribedJobs() {
+        return subscribers.size();
+    }
+
+    /**
+     * Opens a progress stream for one job. The current state is sent right away,
+     * the stream completes once the job is done or failed.
+     */
+    public SseEmitter subscribe(TranscriptionJob job) {
+        SseEmitter emitter = new SseEmitter(properties.getSseTimeout().toMillis());
+        // A finished job is not registered, finish() has removed its entry or is about to and nothing would remove
+        // a new one. finish() marks the job before it removes the entry, so checking under the entry's lock is enough.
+        List<SseEmitter> emitters = subscribers.compute(job.getId(), (id, current) -> {
+            if (job.getStatus().isFinished()) {
+                return current;
+            }
+            List<SseEmitter> registered = current != null ? current : new CopyOnWriteArrayList<>();
+            registered.add(emitter);
+            return registered;
+        });
+        if (emitters != null && emitters.contains(emitter)) {
+            emitter.onCompletion(() -> emitters.remove(emitter));
+            emitter.onTimeout(() -> emitters.remove(emitter));
+            emitter.onError(e -> emitters.remove(emitter));
+        }
+
+        try {
+            emitter.send(SseEmitter.event().name("status").data(job));
+            if (job.getStatus().isFinished()) {
+                emitter.complete();
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    public void publish(TranscriptionJob job, String eventName, Object data) {
+        List<SseEmitter> emitters = subscribers.get(job.getId());
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(eventName).data(data));
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+            }
+        }
+    }
+
+    private void run(TranscriptionJob job) {
+        if (job.getCancellation().isCancelled()) {
+            // Cancelled just as it got its slot
+            job.markCancelled(job.getCancellation().getReason());
+            finish(job);
+            return;
+        }
+        job.markRunning();
+        fileCatalog.updateStatus(job.getFileHash(), job.getStatus());
+        publish(job, "status", job);
+        try {
+            TranscriptionResult result = pipeline.process(job, (name, data) -> publish(job, name, data));
+            job.markDone(result);
+        } catch (Exception e) {
+            if (job.getCancellation().isCancelled()) {
+                job.markCancelled(job.getCancellation().getReason());
+            } else {
+                log.error("Transcription job {} for {} failed", job.getId(), job.getFileName(), e);
+                job.markFailed(e.getMessage());
+            }
+        }
+        finish(job);
+    }
+
+    private void finish(TranscriptionJob job) {
+        pipelineMetrics.countJobFinished(job.getStatus());
+        fileCatalog.updateStatus(job.getFileHash(), job.getStatus());
+        fileCatalog.unpin(job.getFileHash());
+        publish(job, "status", job);
+
+        List<SseEmitter> emitters = subscribers.remove(job.getId());
+        if (emitters != null) {
+            emitters.forEach(SseEmitter::complete);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "PT1M")
+    public void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(properties.getRetention());
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlines.shutdownNow();
+    }
+}
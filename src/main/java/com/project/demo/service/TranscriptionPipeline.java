@@ -0,0 +1,227 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import com.project.demo.exceptions.StorageException;
+import com.project.demo.model.HistoryEntry;
+import com.project.demo.model.TranscriptionJob;
+import com.project.demo.model.TranscriptSegment;
+import com.project.demo.model.TranscriptionResult;
+import com.project.demo.properties.SummarizerProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Whisper transcription followed by a BART or Gemini summary and the ROUGE metrics of that summary.
+ * Every result made is appended to the history, which also stands in for the cache once an entry was evicted.
+ */
+@Service
+public class TranscriptionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptionPipeline.class);
+
+    private final SummaryBatcher summaryBatcher;
+    private final GeminiClient geminiClient;
+    private final ResultCache resultCache;
+    private final HistoryStore historyStore;
+    private final ChunkedSummarizer chunkedSummarizer;
+    private final ChunkedTranscriber chunkedTranscriber;
+    private final SummarizerProperties summarizerProperties;
+    private final RougeScorer rougeScorer;
+    private final PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    public TranscriptionPipeline(SummaryBatcher summaryBatcher, GeminiClient geminiClient,
+                                 ResultCache resultCache, HistoryStore historyStore,
+                                 ChunkedSummarizer chunkedSummarizer,
+                                 ChunkedTranscriber chunkedTranscriber,
+                                 SummarizerProperties summarizerProperties, RougeScorer rougeScorer,
+                                 PipelineMetrics pipelineMetrics) {
+        this.summaryBatcher = summaryBatcher;
+        this.geminiClient = geminiClient;
+        this.resultCache = resultCache;
+        this.historyStore = historyStore;
+        this.chunkedSummarizer = chunkedSummarizer;
+        this.chunkedTranscriber = chunkedTranscriber;
+        this.summarizerProperties = summarizerProperties;
+        this.rougeScorer = rougeScorer;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    /**
+     * @param events receives progress events for the job, such as summary tokens streamed from Gemini
+     */
+    public TranscriptionResult process(TranscriptionJob job, BiConsumer<String, Object> events) throws IOException {
+        String filePath = job.getFilePath();
+        String fileHash = job.getFileHash();
+        String processingMethod = job.getProcessingMethod();
+        String modelId = job.getModelId();
+
+        String cacheKey = ResultCache.key(fileHash, processingMethod, modelId);
+        Optional<TranscriptionResult> cached = resultCache.get(cacheKey);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Optional<HistoryEntry> previous = historyStore.findReusable(fileHash, processingMethod, modelId);
+        if (previous.isPresent()) {
+            TranscriptionResult result = previous.get().toResult();
+            resultCache.put(cacheKey, result);
+            return result;
+        }
+
+        Map<String, Double> timings = new LinkedHashMap<>();
+        if (job.getStartedAt() != null) {
+            timings.put("queue", seconds(job.getCreatedAt(), job.getStartedAt()));
+        }
+
+        // Chunks of long recordings transcribe in parallel, segments are put in order for the history
+        List<TranscriptSegment> segments = Collections.synchronizedList(new ArrayList<>());
+        // The summary is made here, chunk by chunk, so the worker only transcribes
+        String transcription = time(PipelineMetrics.Stage.TRANSCRIPTION, timings,
+                () -> chunkedTranscriber.transcribe(filePath, fileHash, job.getDuration(),
+                        segment -> {
+                            segments.add(new TranscriptSegment(((Number) segment.get("start")).doubleValue(),
+                                    ((Number) segment.get("end")).doubleValue(), (String) segment.get("text")));
+                            events.accept("segment", segment);
+                        }, job.getCancellation()));
+
+        if ("gemini".equals(processingMethod)) {
+            String geminiSummary;
+            boolean cacheable = true;
+            try {
+                // Fails fast while the circuit is open, the Python summary is used then
+                geminiSummary = time(PipelineMetrics.Stage.SUMMARIZATION, timings,
+                        () -> chunkedSummarizer.summarize(transcription,
+                                summarizerProperties.getGeminiChunkTokens(),
+                                geminiBackend(modelId, token -> events.accept("token", Map.of("text", token)),
+                                        job.getCancellation()),
+                                job.getCancellation()));
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                pipelineMetrics.countGeminiFallback();
+                geminiSummary = "Error using Gemini API. Falling back to Python summary: " + e.getMessage();
+                geminiSummary += "\n\n" + pythonSummary(transcription, job.getCancellation(), timings);
+                cacheable = false;
+            }
+
+            TranscriptionResult result = new TranscriptionResult(transcription, geminiSummary,
+                    score(transcription, geminiSummary, timings), true, modelId);
+            if (cacheable) {
+                resultCache.put(cacheKey, result);
+            }
+            record(job, result, segments, !cacheable, timings);
+            return result;
+        }
+
+        String summary = pythonSummary(transcription, job.getCancellation(), timings);
+        TranscriptionResult result = new TranscriptionResult(transcription, summary,
+                score(transcription, summary, timings), false, null);
+        resultCache.put(cacheKey, result);
+        record(job, result, segments, false, timings);
+        return result;
+    }
+
+    private Map<String, Double> score(String transcription, String summary, Map<String, Double> timings) {
+        return time(PipelineMetrics.Stage.METRICS, timings,
+                () -> rougeScorer.score(transcription, summary).toMetrics());
+    }
+
+    /**
+     * Times a stage for the metrics and adds its seconds to the job's own timings.
+     */
+    private <T, E extends Exception> T time(PipelineMetrics.Stage stage, Map<String, Double> timings,
+                                            PipelineMetrics.TimedCall<T, E> call) throws E {
+        Instant start = Instant.now();
+        try {
+            return pipelineMetrics.time(stage, call);
+        } finally {
+            timings.merge(stage.tag(), seconds(start, Instant.now()), Double::sum);
+        }
+    }
+
+    private static double seconds(Instant from, Instant to) {
+        return Duration.between(from, to).toNanos() / 1e9;
+    }
+
+    /**
+     * A result the history can not take is only lost from the history, the job still gets it.
+     */
+    private void record(TranscriptionJob job, TranscriptionResult result, List<TranscriptSegment> segments,
+                        boolean fallback, Map<String, Double> timings) {
+        List<TranscriptSegment> ordered;
+        synchronized (segments) {
+            ordered = segments.stream().sorted(Comparator.comparingDouble(TranscriptSegment::start)).toList();
+        }
+        Double audioSeconds = job.getDuration() == null ? null : job.getDuration().toNanos() / 1e9;
+        try {
+            historyStore.append(new HistoryEntry(0, job.getFileHash(), job.getFileName(), job.getProcessingMethod(),
+                    result.modelId(), result.transcription(), ordered, result.summary(), result.metrics(),
+                    result.useGemini(), fallback, audioSeconds, timings, Instant.now()));
+        } catch (StorageException e) {
+            log.warn("Could not add job {} to the history", job.getId(), e);
+        }
+    }
+
+    /**
+     * BART summary of any length of text, without a transcription. Also serves plain text requests.
+     */
+    public String pythonSummary(String text, CancellationToken cancellation) {
+        return pythonSummary(text, cancellation, new HashMap<>());
+    }
+
+    private String pythonSummary(String text, CancellationToken cancellation, Map<String, Double> timings) {
+        return time(PipelineMetrics.Stage.SUMMARIZATION, timings,
+                () -> chunkedSummarizer.summarize(text, summarizerProperties.getPythonChunkTokens(),
+                        summaryBatcher.backend(cancellation), cancellation));
+    }
+
+    /**
+     * Parts are summarized with plain calls, only the call that writes the final summary is streamed.
+     */
+    private ChunkedSummarizer.Backend geminiBackend(String modelId, Consumer<String> tokens,
+                                                    CancellationToken cancellation) {
+        return new ChunkedSummarizer.Backend() {
+            @Override
+            public String summarize(String text) {
+                return pipelineMetrics.time(PipelineMetrics.Stage.GEMINI_CALL,
+                        () -> geminiClient.streamGenerateContent(
+                                "Summarize the following transcription into a concise paragraph: " + text,
+                                modelId, tokens, cancellation));
+            }
+
+            @Override
+            public String summarizePart(String part) {
+                return pipelineMetrics.time(PipelineMetrics.Stage.GEMINI_CALL,
+                        () -> geminiClient.generateContent(
+                                "The following is one part of a longer transcription. "
+                                        + "Summarize it, keeping every topic, name and figure it mentions: " + part,
+                                modelId, cancellation));
+            }
+
+            @Override
+            public String combine(String partSummaries) {
+                return pipelineMetrics.time(PipelineMetrics.Stage.GEMINI_CALL,
+                        () -> geminiClient.streamGenerateContent(
+                                "The following are summaries of consecutive parts of one transcription. "
+                                        + "Combine them into a concise paragraph: " + partSummaries,
+                                modelId, tokens, cancellation));
+            }
+        };
+    }
+}
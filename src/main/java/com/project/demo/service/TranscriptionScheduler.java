@@ -0,0 +1,244 @@
+package com.project.demo.service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.project.demo.exceptions.QueueFullException;
+import com.project.demo.properties.JobProperties;
+import com.project.demo.properties.WorkerProperties;
+import com.sun.management.OperatingSystemMXBean;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Admission control in front of the transcription pipeline: at most {@code jobs.max-parallel} jobs run,
+ * at most {@code jobs.queue-capacity} wait, anything beyond is rejected with a retry estimate.
+ * <p>
+ * Waiting jobs are ordered by self-clocked fair queueing over sessions with the audio length as cost.
+ * A session that starts waiting is anchored at {@code max(its last tag, clock)}, each of its jobs then
+ * gets a finish tag of the previous one plus its cost, and the smallest tag runs next. Within a session
+ * the shortest recording goes first. One session's batch cannot hold up everybody else, and since tags
+ * are fixed while a session waits, a long recording runs once the clock has moved past its tag.
+ */
+@Service
+public class TranscriptionScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptionScheduler.class);
+    // Costs are milliseconds of audio, a floor keeps tiny uploads from being free
+    private static final long MIN_COST = 4_000;
+    private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(5);
+
+    private final int parallelism;
+    private final int queueCapacity;
+    private final PipelineMetrics pipelineMetrics;
+    // Jobs spend nearly all their time blocked on the Python worker, a virtual thread each is enough
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, SessionQueue> sessions = new HashMap<>();
+    private int queued;
+    private int running;
+    // Slots lent to the chunks of running jobs, only while nothing waits
+    private int helpers;
+    private long sequence;
+    private long virtualClock;
+    // Moving average of how long a job runs, for Retry-After
+    private double averageRunNanos;
+
+    private record Waiting(long cost, long sequence, long enqueuedAt, Runnable task) {
+    }
+
+    private static final class SessionQueue {
+        final PriorityQueue<Waiting> jobs = new PriorityQueue<>((a, b) -> a.cost() != b.cost()
+                ? Long.compare(a.cost(), b.cost())
+                : Long.compare(a.sequence(), b.sequence()));
+        // Finish tag of the job that ran last, while jobs wait the one the next job's tag builds on
+        long lastTag;
+    }
+
+    @Autowired
+    public TranscriptionScheduler(JobProperties properties, WorkerProperties workerProperties,
+                                  PipelineMetrics pipelineMetrics) {
+        this.parallelism = parallelism(properties, workerProperties);
+        this.queueCapacity = properties.getQueueCapacity();
+        this.pipelineMetrics = pipelineMetrics;
+        log.info("Running at most {} transcription jobs at once, {} may wait", parallelism, queueCapacity);
+    }
+
+    private static int parallelism(JobProperties properties, WorkerProperties workerProperties) {
+        int poolSize = workerProperties.getPoolSize();
+        if (properties.getMaxParallel() > 0) {
+            if (properties.getMaxParallel() > poolSize) {
+                log.warn("jobs.max-parallel={} is above worker.pool-size={}, the extra jobs wait for a worker",
+                        properties.getMaxParallel(), poolSize);
+            }
+            return properties.getMaxParallel();
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        int byMemory = Integer.MAX_VALUE;
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof OperatingSystemMXBean os) {
+            byMemory = (int) Math.min(Integer.MAX_VALUE, os.getTotalMemorySize() / properties.getMemoryPerJob().toBytes());
+        }
+        // Every job needs a Python worker, more slots than workers would only move the wait into the pool
+        return Math.max(1, Math.min(Math.min(cores, byMemory), poolSize));
+    }
+
+    /**
+     * Fails fast when a job could not be queued right now, so a rejected upload does not have to be stored.
+     */
+    public synchronized void checkCapacity() {
+        if (queued >= queueCapacity) {
+            throw rejection();
+        }
+    }
+
+    /**
+     * Queues a job or starts it right away when a slot is free.
+     *
+     * @param sessionId the submitter, jobs are shared fairly between sessions
+     * @param cost estimated work, milliseconds of audio
+     * @throws QueueFullException when {@code jobs.queue-capacity} jobs are already waiting
+     */
+    public synchronized void submit(String sessionId, long cost, Runnable task) {
+        if (queued >= queueCapacity) {
+            throw rejection();
+        }
+        SessionQueue session = sessions.computeIfAbsent(sessionId, id -> new SessionQueue());
+        if (session.jobs.isEmpty()) {
+            // Anchored once, later dispatches to other sessions must not push this session's tags back
+            session.lastTag = Math.max(session.lastTag, virtualClock);
+        }
+        session.jobs.add(new Waiting(Math.max(cost, MIN_COST), sequence++, System.nanoTime(), task));
+        queued++;
+        dispatch();
+    }
+
+    /**
+     * Takes a job out of the queue before it started.
+     *
+     * @param task the task given to {@link #submit}
+     * @return false when the job already got a slot or was never queued
+     */
+    public synchronized boolean cancel(Runnable task) {
+        for (Iterator<SessionQueue> sessionQueues = sessions.values().iterator(); sessionQueues.hasNext(); ) {
+            SessionQueue session = sessionQueues.next();
+            if (session.jobs.removeIf(job -> job.task() == task)) {
+                queued--;
+                if (session.jobs.isEmpty() && session.lastTag <= virtualClock) {
+                    sessionQueues.remove();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dispatch() {
+        while (running + helpers < parallelism && queued > 0) {
+            SessionQueue next = null;
+            long nextTag = Long.MAX_VALUE;
+            for (SessionQueue session : sessions.values()) {
+                Waiting head = session.jobs.peek();
+                if (head == null) {
+                    continue;
+                }
+                long tag = session.lastTag + head.cost();
+                // On a tie the session served longest ago goes first, then the job that came first
+                if (next == null || tag < nextTag || tag == nextTag && (session.lastTag < next.lastTag
+                        || session.lastTag == next.lastTag && head.sequence() < next.jobs.peek().sequence())) {
+                    next = session;
+                    nextTag = tag;
+                }
+            }
+            Waiting job = next.jobs.poll();
+            next.lastTag = nextTag;
+            virtualClock = nextTag;
+            queued--;
+            running++;
+            // Sessions without waiting jobs are dropped once the clock has caught up with their tag
+            sessions.values().removeIf(session -> session.jobs.isEmpty() && session.lastTag <= virtualClock);
+            pipelineMetrics.recordQueueWait(Duration.ofNanos(System.nanoTime() - job.enqueuedAt()));
+            executor.execute(() -> run(job));
+        }
+    }
+
+    private void run(Waiting job) {
+        long start = System.nanoTime();
+        try {
+            job.task().run();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            synchronized (this) {
+                averageRunNanos = averageRunNanos == 0 ? elapsed : 0.8 * averageRunNanos + 0.2 * elapsed;
+                running--;
+                dispatch();
+            }
+        }
+    }
+
+    /**
+     * Lends a free slot to extra work of a running job, such as another chunk of its recording. Waiting jobs
+     * come first, so nothing is lent while any wait.
+     *
+     * @return false when a job is waiting or every slot is taken
+     */
+    public synchronized boolean tryAcquireHelper() {
+        if (queued > 0 || running + helpers >= parallelism) {
+            return false;
+        }
+        helpers++;
+        return true;
+    }
+
+    /**
+     * Gives back a slot taken with {@link #tryAcquireHelper}.
+     */
+    public synchronized void releaseHelper() {
+        helpers--;
+        dispatch();
+    }
+
+    private QueueFullException rejection() {
+        pipelineMetrics.countQueueRejection();
+        // Room opens up when the next running job finishes, on average a run time spread over the slots
+        Duration retryAfter = Duration.ofNanos((long) (averageRunNanos / parallelism));
+        if (retryAfter.compareTo(Duration.ofSeconds(1)) < 0) {
+            retryAfter = Duration.ofSeconds(1);
+        } else if (retryAfter.compareTo(MAX_RETRY_AFTER) > 0) {
+            retryAfter = MAX_RETRY_AFTER;
+        }
+        return new QueueFullException("Too many transcriptions are waiting, try again later", retryAfter);
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Moving average of how long a job holds its slot, zero until the first job finished.
+     */
+    public synchronized Duration getAverageRunTime() {
+        return Duration.ofNanos((long) averageRunNanos);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
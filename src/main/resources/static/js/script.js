@@ -119,6 +119,116 @@ document.addEventListener('DOMContentLoaded', function() {
         }
     }
 
+    // Śledzenie zadania przetwarzania przesłanego pliku
+    const jobProgress = document.getElementById('jobProgress');
+    if (jobProgress) {
+        followJob(jobProgress.dataset.jobId);
+    }
+
+    function followJob(jobId) {
+        const statusText = document.getElementById('jobStatusText');
+        const events = new EventSource('/api/jobs/' + jobId + '/events');
+        const cancelButton = document.getElementById('cancelJob');
+
+        // Przerwanie tylko na życzenie użytkownika, porzucone zadania kończy limit czasu po stronie serwera
+        cancelButton.addEventListener('click', function() {
+            cancelButton.disabled = true;
+            fetch('/api/jobs/' + jobId + '/cancel', { method: 'POST' })
+                .catch(error => console.error('Błąd przerywania zadania:', error));
+        });
+
+        events.addEventListener('status', function(event) {
+            const job = JSON.parse(event.data);
+            if (job.status === 'QUEUED') {
+                statusText.textContent = 'Plik oczekuje w kolejce...';
+            } else if (job.status === 'RUNNING') {
+                statusText.textContent = 'Trwa transkrypcja i podsumowanie pliku ' + job.fileName + '...';
+            } else if (job.status === 'DONE') {
+                events.close();
+                finishJob('Przetwarzanie zakończone.');
+                renderResult(job.result);
+            } else if (job.status === 'FAILED') {
+                events.close();
+                finishJob('Błąd przetwarzania: ' + job.error);
+            } else if (job.status === 'CANCELLED') {
+                events.close();
+                finishJob('Przetwarzanie przerwane: ' + job.error);
+            }
+        });
+
+        // Segmenty transkrypcji przychodzą na bieżąco z Whispera. Długie nagrania są dzielone na części
+        // transkrybowane równolegle, więc segmenty są układane według czasu rozpoczęcia
+        const segments = [];
+        events.addEventListener('segment', function(event) {
+            const liveTranscript = document.getElementById('liveTranscript');
+            if (liveTranscript.style.display === 'none') {
+                liveTranscript.style.display = 'block';
+            }
+            const segment = JSON.parse(event.data);
+            let position = segments.length;
+            while (position > 0 && segments[position - 1].start > segment.start) {
+                position--;
+            }
+            segments.splice(position, 0, segment);
+            liveTranscript.textContent = segments.map(s => s.text).join('');
+        });
+
+        // Podsumowanie Gemini pojawia się fragmentami, zanim zadanie się zakończy
+        events.addEventListener('token', function(event) {
+            const liveSummary = document.getElementById('liveSummary');
+            if (liveSummary.style.display === 'none') {
+                statusText.textContent = 'Gemini generuje podsumowanie...';
+                liveSummary.style.display = 'block';
+            }
+            liveSummary.textContent += JSON.parse(event.data).text;
+        });
+
+        events.onerror = function() {
+            // Strumień zamknięty przez serwer po zakończeniu zadania albo zerwane połączenie
+            if (events.readyState === EventSource.CLOSED) {
+                document.getElementById('jobSpinner').style.display = 'none';
+            }
+        };
+    }
+
+    function finishJob(message) {
+        document.getElementById('jobSpinner').style.display = 'none';
+        document.getElementById('cancelJob').style.display = 'none';
+        document.getElementById('liveTranscript').style.display = 'none';
+        document.getElementById('liveSummary').style.display = 'none';
+        document.getElementById('jobStatusText').textContent = message;
+    }
+
+    function renderResult(result) {
+        document.getElementById('methodGeminiBadge').style.display = result.useGemini ? 'inline-block' : 'none';
+        document.getElementById('methodPythonBadge').style.display = result.useGemini ? 'none' : 'inline-block';
+        const modelBadge = document.getElementById('modelBadge');
+        if (result.modelId) {
+            modelBadge.textContent = 'Model: ' + result.modelId;
+            modelBadge.style.display = 'inline-block';
+        }
+
+        document.getElementById('transcriptionText').textContent = result.transcription;
+        document.getElementById('summaryText').textContent = result.summary;
+        document.getElementById('resultContainer').style.display = 'block';
+
+        if (result.metrics) {
+            ['precision', 'recall', 'fScore'].forEach(name => {
+                const value = result.metrics[name];
+                const bar = document.getElementById(name + 'Bar');
+                bar.style.width = value + '%';
+                bar.setAttribute('aria-valuenow', value);
+                document.getElementById(name + 'Value').textContent = value + '%';
+            });
+            // ROUGE-2 (pary słów) i ROUGE-L (najdłuższy wspólny podciąg)
+            if (result.metrics.rouge2FScore !== undefined) {
+                document.getElementById('rougeDetails').textContent =
+                    'ROUGE-2 F1: ' + result.metrics.rouge2FScore + '% | ROUGE-L F1: ' + result.metrics.rougeLFScore + '%';
+            }
+            document.getElementById('metricsCard').style.display = 'block';
+        }
+    }
+
     // Dodanie funkcji "drag and drop" dla pliku
     const fileUpload = document.querySelector('.file-upload');
     const fileInput = document.getElementById('file');
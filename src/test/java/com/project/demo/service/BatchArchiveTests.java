@@ -0,0 +1,110 @@
+package com.project.demo.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.model.BatchItem;
+import com.project.demo.model.JobStatus;
+import com.project.demo.model.TranscriptionBatch;
+import com.project.demo.model.TranscriptionJob;
+import com.project.demo.model.TranscriptionResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchArchiveTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private final BatchArchive archive = new BatchArchive(objectMapper);
+	private TranscriptionBatch batch;
+
+	@BeforeEach
+	void createBatch() {
+		BatchItem done = item("talk.mp3", "hash-done");
+		done.getJob().markRunning();
+		done.getJob().markDone(new TranscriptionResult("full transcript", "short summary",
+				Map.of("rouge1", 0.5), false, null));
+
+		BatchItem failed = item("talk.mp3", "hash-failed");
+		failed.getJob().markFailed("worker crashed");
+
+		BatchItem running = item("other file.mp3", "hash-running");
+		running.getJob().markRunning();
+
+		BatchItem notStored = new BatchItem("broken.mp3", null);
+		notStored.fail("Failed to store file");
+
+		BatchItem waiting = new BatchItem("later.mp3", "hash-later");
+
+		batch = new TranscriptionBatch("batch-1", List.of(done, failed, running, notStored, waiting));
+	}
+
+	private static BatchItem item(String fileName, String hash) {
+		BatchItem item = new BatchItem(fileName, hash);
+		item.assign(new TranscriptionJob("job-" + hash, fileName, "/uploads/" + hash, hash, "python", null));
+		return item;
+	}
+
+	@Test
+	void aggregatesProgressOverTheItems() {
+		assertThat(batch.getCounts()).containsEntry(JobStatus.DONE, 1)
+				.containsEntry(JobStatus.FAILED, 2)
+				.containsEntry(JobStatus.RUNNING, 1)
+				.containsEntry(JobStatus.QUEUED, 1);
+		assertThat(batch.getProgress()).isEqualTo(0.6);
+		assertThat(batch.isFinished()).isFalse();
+		assertThat(batch.getFinishedAt()).isNull();
+	}
+
+	@Test
+	void writesOneJsonLinePerFile() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		archive.write(batch, BatchArchive.Format.JSONL, out);
+
+		List<JsonNode> lines = out.toString(StandardCharsets.UTF_8).lines()
+				.map(line -> {
+					try {
+						return objectMapper.readTree(line);
+					} catch (Exception e) {
+						throw new AssertionError(e);
+					}
+				})
+				.toList();
+		assertThat(lines).hasSize(5);
+		assertThat(lines.get(0).get("transcription").asText()).isEqualTo("full transcript");
+		assertThat(lines.get(0).get("metrics").get("rouge1").asDouble()).isEqualTo(0.5);
+		assertThat(lines.get(1).get("error").asText()).isEqualTo("worker crashed");
+		assertThat(lines.get(3).get("status").asText()).isEqualTo("FAILED");
+		assertThat(lines.get(4).get("status").asText()).isEqualTo("QUEUED");
+	}
+
+	@Test
+	void writesAFolderPerFileAndAManifest() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		archive.write(batch, BatchArchive.Format.ZIP, out);
+
+		Map<String, String> entries = new LinkedHashMap<>();
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+			for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+				entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+
+		assertThat(entries.keySet()).containsExactly("1-talk/transcript.txt", "1-talk/summary.txt",
+				"1-talk/metrics.json", "2-talk/error.txt", "4-broken/error.txt", "manifest.jsonl");
+		assertThat(entries.get("1-talk/summary.txt")).isEqualTo("short summary");
+		assertThat(entries.get("4-broken/error.txt")).isEqualTo("Failed to store file");
+		// The manifest lists every file but leaves the texts to the folders
+		assertThat(entries.get("manifest.jsonl").lines()).hasSize(5)
+				.noneMatch(line -> line.contains("full transcript"));
+	}
+}
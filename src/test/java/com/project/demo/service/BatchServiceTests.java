@@ -0,0 +1,172 @@
+package com.project.demo.service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.exceptions.QueueFullException;
+import com.project.demo.model.BatchItem;
+import com.project.demo.model.JobStatus;
+import com.project.demo.model.StoredFile;
+import com.project.demo.model.TranscriptionBatch;
+import com.project.demo.model.TranscriptionJob;
+import com.project.demo.model.TranscriptionResult;
+import com.project.demo.properties.AudioProperties;
+import com.project.demo.properties.JobProperties;
+import com.project.demo.properties.StorageProperties;
+import com.project.demo.properties.WorkerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private final PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+	private final List<String> processed = new CopyOnWriteArrayList<>();
+	private final CountDownLatch release = new CountDownLatch(1);
+	// Submissions the job service turns away as if single uploads had filled the queue
+	private final AtomicInteger rejections = new AtomicInteger();
+	private final AtomicInteger submissions = new AtomicInteger();
+	private FileCatalog catalog;
+	private TranscriptionScheduler scheduler;
+	private TranscriptionJobService jobService;
+	private BatchService batchService;
+
+	/**
+	 * Holds every job until the test releases it or the job is cancelled.
+	 */
+	private final TranscriptionPipeline pipeline = new TranscriptionPipeline(null, null, null, null, null, null, null,
+			null, metrics) {
+		@Override
+		public TranscriptionResult process(TranscriptionJob job, BiConsumer<String, Object> events) {
+			processed.add(job.getFileName());
+			try {
+				while (!release.await(10, TimeUnit.MILLISECONDS)) {
+					job.getCancellation().throwIfCancelled();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new TranscriptionResult("text", "summary", Map.of(), false, null);
+		}
+	};
+
+	private void start(int maxParallel) {
+		StorageProperties storageProperties = new StorageProperties();
+		storageProperties.setLocation(directory.resolve("uploads").toString());
+		storageProperties.setCatalogFile(directory.resolve("file-catalog.json").toString());
+		catalog = new FileCatalog(storageProperties, objectMapper);
+		FileSystemStorageService storageService = new FileSystemStorageService(storageProperties,
+				new AudioProperties(), catalog, objectMapper);
+		JobProperties properties = new JobProperties();
+		properties.setMaxParallel(maxParallel);
+		scheduler = new TranscriptionScheduler(properties, new WorkerProperties(), metrics);
+		jobService = new TranscriptionJobService(pipeline, properties, metrics, catalog, scheduler) {
+			@Override
+			public TranscriptionJob submit(StoredFile file, String sessionId, String processingMethod,
+					String modelId) {
+				submissions.incrementAndGet();
+				if (rejections.getAndDecrement() > 0) {
+					throw new QueueFullException("Too many transcriptions are waiting", Duration.ofMillis(50));
+				}
+				return super.submit(file, sessionId, processingMethod, modelId);
+			}
+		};
+		batchService = new BatchService(storageService, jobService, scheduler, catalog, metrics, properties);
+	}
+
+	@AfterEach
+	void stop() {
+		release.countDown();
+		batchService.shutdown();
+		jobService.shutdown();
+		scheduler.shutdown();
+	}
+
+	private TranscriptionBatch submit(MultipartFile... files) {
+		return batchService.submit(List.of(files), "session", "python", null);
+	}
+
+	private static MultipartFile audio(String name, int frames) {
+		return new MockMultipartFile("files", name, "audio/mpeg", Mp3FrameScannerTests.frames(frames));
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(condition.getAsBoolean()).isTrue();
+	}
+
+	private static long queuedOrRunning(TranscriptionBatch batch) {
+		return batch.getItems().stream().filter(item -> item.getJob() != null && !item.getStatus().isFinished())
+				.count();
+	}
+
+	@Test
+	void keepsOneJobPerSlotInTheScheduler() throws InterruptedException {
+		start(2);
+		TranscriptionBatch batch = submit(audio("a.mp3", 100), audio("b.mp3", 101), audio("c.mp3", 102),
+				audio("d.mp3", 103), audio("e.mp3", 104));
+
+		await(() -> processed.size() == 2);
+		// The feeder waits for a slot of its own instead of queueing the rest
+		Thread.sleep(100);
+		assertThat(queuedOrRunning(batch)).isEqualTo(2);
+		assertThat(scheduler.getQueued()).isZero();
+
+		release.countDown();
+		await(batch::isFinished);
+		assertThat(batch.getCounts()).containsEntry(JobStatus.DONE, 5);
+		assertThat(processed).containsExactlyInAnyOrder("a.mp3", "b.mp3", "c.mp3", "d.mp3", "e.mp3");
+	}
+
+	@Test
+	void cancellingStopsTheRunningJobAndQueuesNothingMore() throws InterruptedException {
+		start(1);
+		TranscriptionBatch batch = submit(audio("a.mp3", 100), audio("b.mp3", 101), audio("c.mp3", 102));
+		await(() -> processed.size() == 1);
+
+		batchService.cancel(batch);
+
+		await(batch::isFinished);
+		assertThat(batch.getItems()).extracting(BatchItem::getStatus).containsOnly(JobStatus.CANCELLED);
+		assertThat(processed).containsExactly("a.mp3");
+		// Waiting files were pinned by the batch, nothing keeps them from retention now
+		await(() -> batch.getItems().stream().noneMatch(item -> catalog.isPinned(item.getFileHash())));
+	}
+
+	@Test
+	void waitsForTheQueueToOpenAndFailsOnlyTheFileThatCanNotBeStored() throws InterruptedException {
+		start(1);
+		rejections.set(2);
+		TranscriptionBatch batch = submit(
+				new MockMultipartFile("files", "notes.mp3", "audio/mpeg", "not audio".getBytes()),
+				audio("a.mp3", 100));
+		release.countDown();
+
+		await(batch::isFinished);
+		assertThat(batch.getItems()).extracting(BatchItem::getStatus)
+				.containsExactly(JobStatus.FAILED, JobStatus.DONE);
+		// Turned away twice, queued on the third try after the Retry-After each time
+		assertThat(submissions).hasValue(3);
+	}
+}
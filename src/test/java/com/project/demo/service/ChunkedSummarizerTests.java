@@ -0,0 +1,117 @@
+package com.project.demo.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.project.demo.properties.SummarizerProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChunkedSummarizerTests {
+
+	private static final String SENTENCE = "The quick brown fox jumps over the lazy dog.";
+
+	private static String sentences(int count) {
+		return String.join(" ", Collections.nCopies(count, SENTENCE));
+	}
+
+	private static class RecordingBackend implements ChunkedSummarizer.Backend {
+		final ConcurrentLinkedQueue<String> parts = new ConcurrentLinkedQueue<>();
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		volatile String combined;
+
+		@Override
+		public String summarize(String text) {
+			return "whole";
+		}
+
+		@Override
+		public String summarizePart(String part) {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				running.decrementAndGet();
+			}
+			parts.add(part);
+			return "part";
+		}
+
+		@Override
+		public String combine(String partSummaries) {
+			combined = partSummaries;
+			return "final";
+		}
+	}
+
+	private static ChunkedSummarizer summarizer(int maxParallelChunks) {
+		SummarizerProperties properties = new SummarizerProperties();
+		properties.setMaxParallelChunks(maxParallelChunks);
+		return new ChunkedSummarizer(properties);
+	}
+
+	@Test
+	void splitsOnSentenceEndsWithinBudget() {
+		List<String> chunks = ChunkedSummarizer.split(sentences(10), 40);
+
+		assertThat(chunks).hasSizeGreaterThan(1);
+		assertThat(chunks).allSatisfy(chunk -> {
+			assertThat(ChunkedSummarizer.estimateTokens(chunk)).isLessThanOrEqualTo(40);
+			assertThat(chunk).endsWith(".");
+		});
+		assertThat(String.join(" ", chunks)).isEqualTo(sentences(10));
+	}
+
+	@Test
+	void splitsOverlongSentenceOnWords() {
+		String sentence = "word ".repeat(100).strip();
+
+		List<String> chunks = ChunkedSummarizer.split(sentence, 20);
+
+		assertThat(chunks).allSatisfy(chunk -> assertThat(ChunkedSummarizer.estimateTokens(chunk)).isLessThanOrEqualTo(20));
+		assertThat(String.join(" ", chunks)).isEqualTo(sentence);
+	}
+
+	@Test
+	void shortTextIsSummarizedInOneCall() {
+		RecordingBackend backend = new RecordingBackend();
+
+		assertThat(summarizer(4).summarize(SENTENCE, 100, backend, new CancellationToken())).isEqualTo("whole");
+		assertThat(backend.parts).isEmpty();
+	}
+
+	@Test
+	void longTextIsMappedInParallelAndReduced() {
+		RecordingBackend backend = new RecordingBackend();
+
+		String summary = summarizer(3).summarize(sentences(40), 40, backend, new CancellationToken());
+
+		assertThat(summary).isEqualTo("final");
+		// Parts finish in any order, but together they cover every sentence
+		assertThat(backend.parts).hasSizeGreaterThan(3);
+		assertThat(String.join(" ", backend.parts).split("fox")).hasSize(41);
+		assertThat(backend.maxRunning.get()).isBetween(2, 3);
+		assertThat(backend.combined).startsWith("part\n\npart");
+	}
+
+	@Test
+	void failedPartFailsTheSummary() {
+		ChunkedSummarizer.Backend backend = new RecordingBackend() {
+			@Override
+			public String summarizePart(String part) {
+				throw new IllegalStateException("upstream down");
+			}
+		};
+
+		assertThatThrownBy(() -> summarizer(2).summarize(sentences(40), 40, backend, new CancellationToken()))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("upstream down");
+	}
+}
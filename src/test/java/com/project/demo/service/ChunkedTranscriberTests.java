@@ -0,0 +1,283 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.exceptions.WorkerException;
+import com.project.demo.properties.AudioProperties;
+import com.project.demo.properties.JobProperties;
+import com.project.demo.properties.RetentionProperties;
+import com.project.demo.properties.WorkerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class ChunkedTranscriberTests {
+
+	private static final int FRAME_LENGTH = 417;
+	// 1000 frames are about 26 s, cut every 10 s on frames 383 and 766
+	private static final long FIRST_CUT = 383L * FRAME_LENGTH;
+	private static final long SECOND_CUT = 766L * FRAME_LENGTH;
+	private static final long SIZE = 1000L * FRAME_LENGTH;
+	private static final double FIRST_CUT_SECONDS = 383 * 1152 / 44100.0;
+	private static final double SECOND_CUT_SECONDS = 766 * 1152 / 44100.0;
+
+	/**
+	 * What the stub pool was asked to transcribe, the cache key and the size of the file it was given.
+	 */
+	private record Call(String hash, long size, boolean helper) {
+	}
+
+	@TempDir
+	Path directory;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+	private final List<Call> calls = new CopyOnWriteArrayList<>();
+	private final List<Map<String, Object>> segments = new CopyOnWriteArrayList<>();
+	// Runs before each chunk is answered, lets a test block, fail or cancel it
+	private volatile ChunkHook hook = call -> {
+	};
+	private TranscriptionScheduler scheduler;
+	private ChunkedTranscriber transcriber;
+
+	private interface ChunkHook {
+		void before(Call call) throws Exception;
+	}
+
+	/**
+	 * Answers every chunk with its cache key as text and one segment a second into it.
+	 */
+	private PythonWorkerPool pool(WorkerProperties properties) {
+		return new PythonWorkerPool(properties, objectMapper, metrics, new RetentionProperties()) {
+			@Override
+			public JsonNode transcribe(String filePath, String fileHash, boolean summarize,
+					Consumer<JsonNode> segments, CancellationToken cancellation) throws IOException {
+				return answer(new Call(fileHash, Files.size(Path.of(filePath)), false), segments, cancellation);
+			}
+
+			@Override
+			public Optional<JsonNode> tryTranscribe(String filePath, String fileHash, Consumer<JsonNode> segments,
+					CancellationToken cancellation) throws IOException {
+				return Optional.of(answer(new Call(fileHash, Files.size(Path.of(filePath)), true), segments,
+						cancellation));
+			}
+		};
+	}
+
+	private JsonNode answer(Call call, Consumer<JsonNode> segments, CancellationToken cancellation) {
+		calls.add(call);
+		try {
+			hook.before(call);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		cancellation.throwIfCancelled();
+		if (segments != null) {
+			segments.accept(objectMapper.createObjectNode().put("start", 1.0).put("end", 2.5).put("text", call.hash()));
+		}
+		return objectMapper.createObjectNode().put("transcription", " " + call.hash() + " ");
+	}
+
+	private void start(int maxParallel) {
+		WorkerProperties workerProperties = new WorkerProperties();
+		workerProperties.setPoolSize(3);
+		JobProperties properties = new JobProperties();
+		properties.setMaxParallel(maxParallel);
+		scheduler = new TranscriptionScheduler(properties, workerProperties, metrics);
+		AudioProperties audioProperties = new AudioProperties();
+		audioProperties.setChunkDuration(Duration.ofSeconds(10));
+		transcriber = new ChunkedTranscriber(pool(workerProperties), audioProperties, workerProperties, scheduler);
+	}
+
+	@AfterEach
+	void stop() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+		}
+	}
+
+	private String recording() throws IOException {
+		Path file = directory.resolve("talk.mp3");
+		Files.write(file, Mp3FrameScannerTests.frames(1000));
+		return file.toString();
+	}
+
+	private String transcribe(CancellationToken cancellation) throws IOException {
+		return transcriber.transcribe(recording(), "hash", Duration.ofSeconds(26), segments::add, cancellation);
+	}
+
+	/**
+	 * Runs the transcription on a scheduler slot of its own, as the pipeline does.
+	 */
+	private CompletableFuture<String> submitJob(CancellationToken cancellation) {
+		CompletableFuture<String> result = new CompletableFuture<>();
+		scheduler.submit("session", 26_000, () -> {
+			try {
+				result.complete(transcribe(cancellation));
+			} catch (IOException | RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	private String transcribeAsJob(CancellationToken cancellation) throws Exception {
+		try {
+			return submitJob(cancellation).get(10, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			throw (Exception) e.getCause();
+		}
+	}
+
+	/**
+	 * Occupies a scheduler slot until the latch opens, as another job would.
+	 */
+	private CountDownLatch occupySlot(CountDownLatch started) {
+		CountDownLatch release = new CountDownLatch(1);
+		scheduler.submit("other", 1_000, () -> {
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		return release;
+	}
+
+	@Test
+	void cutsOnFrameBoundariesAndShiftsTimestampsToTheWholeRecording() throws Exception {
+		start(3);
+
+		String transcription = transcribeAsJob(new CancellationToken());
+
+		assertThat(calls).extracting(Call::hash).containsExactlyInAnyOrder("hash-0-" + FIRST_CUT,
+				"hash-" + FIRST_CUT + "-" + SECOND_CUT, "hash-" + SECOND_CUT + "-" + SIZE);
+		assertThat(calls).allSatisfy(call -> {
+			String[] range = call.hash().split("-");
+			assertThat(call.size()).isEqualTo(Long.parseLong(range[2]) - Long.parseLong(range[1]));
+		});
+		// Joined in recording order whichever worker finished first
+		assertThat(transcription).isEqualTo("hash-0-%d hash-%d-%d hash-%d-%d".formatted(FIRST_CUT, FIRST_CUT,
+				SECOND_CUT, SECOND_CUT, SIZE));
+		assertThat(segments).hasSize(3);
+		for (Map<String, Object> segment : segments) {
+			double offset = segment.get("text").equals("hash-0-" + FIRST_CUT) ? 0
+					: segment.get("text").equals("hash-" + FIRST_CUT + "-" + SECOND_CUT) ? FIRST_CUT_SECONDS
+					: SECOND_CUT_SECONDS;
+			assertThat((double) segment.get("start")).isCloseTo(offset + 1.0, within(1e-6));
+			assertThat((double) segment.get("end")).isCloseTo(offset + 2.5, within(1e-6));
+		}
+	}
+
+	@Test
+	void transcribesShortRecordingsInOnePiece() throws Exception {
+		start(3);
+
+		String transcription = transcriber.transcribe(recording(), "hash", Duration.ofSeconds(15), segments::add,
+				new CancellationToken());
+
+		assertThat(transcription).isEqualTo(" hash ");
+		assertThat(calls).containsExactly(new Call("hash", SIZE, false));
+		assertThat((double) segments.get(0).get("start")).isEqualTo(1.0);
+	}
+
+	@Test
+	void helpersOnlyUseSlotsTheSchedulerLends() throws Exception {
+		start(2);
+		CountDownLatch otherStarted = new CountDownLatch(1);
+		CountDownLatch other = occupySlot(otherStarted);
+		assertThat(otherStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+		// The other job holds the only slot besides this job's own
+		transcribeAsJob(new CancellationToken());
+
+		assertThat(calls).hasSize(3).noneMatch(Call::helper);
+		other.countDown();
+	}
+
+	@Test
+	void aJobSubmittedWhileAHelperRunsGetsTheSlotBack() throws Exception {
+		start(2);
+		CountDownLatch helperStarted = new CountDownLatch(1);
+		CountDownLatch helperRelease = new CountDownLatch(1);
+		hook = call -> {
+			if (call.helper()) {
+				helperStarted.countDown();
+				helperRelease.await(10, TimeUnit.SECONDS);
+			} else if (!helperStarted.await(10, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("No helper started");
+			}
+		};
+		CompletableFuture<String> transcription = submitJob(new CancellationToken());
+		assertThat(helperStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+		CountDownLatch otherStarted = new CountDownLatch(1);
+		CountDownLatch other = occupySlot(otherStarted);
+		assertThat(scheduler.getQueued()).isEqualTo(1);
+		assertThat(scheduler.tryAcquireHelper()).isFalse();
+
+		helperRelease.countDown();
+		assertThat(otherStarted.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(transcription.get(10, TimeUnit.SECONDS)).startsWith("hash-0-");
+		assertThat(calls).hasSize(3).filteredOn(Call::helper).hasSize(1);
+		other.countDown();
+	}
+
+	@Test
+	void theFirstFailedChunkFailsTheTranscriptionAndStopsTheRest() throws Exception {
+		start(2);
+		CountDownLatch otherStarted = new CountDownLatch(1);
+		CountDownLatch other = occupySlot(otherStarted);
+		assertThat(otherStarted.await(10, TimeUnit.SECONDS)).isTrue();
+		hook = call -> {
+			if (call.hash().startsWith("hash-" + FIRST_CUT)) {
+				throw new WorkerException("Python worker 42 failed");
+			}
+		};
+
+		assertThatThrownBy(() -> transcribeAsJob(new CancellationToken()))
+				.isInstanceOf(WorkerException.class)
+				.hasMessage("Python worker 42 failed");
+		assertThat(calls).hasSize(2);
+		other.countDown();
+	}
+
+	@Test
+	void cancellingTheJobStopsItsChunks() throws Exception {
+		start(2);
+		CountDownLatch otherStarted = new CountDownLatch(1);
+		CountDownLatch other = occupySlot(otherStarted);
+		assertThat(otherStarted.await(10, TimeUnit.SECONDS)).isTrue();
+		CancellationToken cancellation = new CancellationToken();
+		hook = call -> cancellation.cancel("Cancelled by the user");
+
+		assertThatThrownBy(() -> transcribeAsJob(cancellation))
+				.isInstanceOf(CancellationException.class)
+				.hasMessageContaining("Cancelled by the user");
+		assertThat(calls).hasSize(1);
+		other.countDown();
+	}
+}
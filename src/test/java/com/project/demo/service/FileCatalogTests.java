@@ -0,0 +1,104 @@
+package com.project.demo.service;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.model.FileEntry;
+import com.project.demo.model.FilePage;
+import com.project.demo.model.JobStatus;
+import com.project.demo.properties.StorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class FileCatalogTests {
+
+	@TempDir
+	Path directory;
+
+	private StorageProperties properties;
+	private FileCatalog catalog;
+
+	@BeforeEach
+	void createProperties() {
+		properties = new StorageProperties();
+		properties.setLocation(directory.resolve("uploads").toString());
+		properties.setCatalogFile(directory.resolve("file-catalog.json").toString());
+	}
+
+	private FileCatalog loadCatalog() {
+		catalog = new FileCatalog(properties, new ObjectMapper().findAndRegisterModules());
+		catalog.load();
+		return catalog;
+	}
+
+	@Test
+	void pagesThroughSortedEntries() {
+		loadCatalog();
+		Instant start = Instant.parse("2025-01-01T00:00:00Z");
+		for (int i = 0; i < 25; i++) {
+			catalog.put(new FileEntry("file-%02d.mp3".formatted(i), 100 - i, "hash-" + i, start.plusSeconds(i), start, null));
+		}
+
+		FilePage newest = catalog.list(0, 10, FileCatalog.SortField.UPLOADED_AT, true);
+		assertThat(newest.total()).isEqualTo(25);
+		assertThat(newest.getTotalPages()).isEqualTo(3);
+		assertThat(newest.items()).extracting(FileEntry::filename).startsWith("file-24.mp3", "file-23.mp3");
+
+		FilePage last = catalog.list(2, 10, FileCatalog.SortField.NAME, false);
+		assertThat(last.items()).extracting(FileEntry::filename)
+				.containsExactly("file-20.mp3", "file-21.mp3", "file-22.mp3", "file-23.mp3", "file-24.mp3");
+		assertThat(last.hasNext()).isFalse();
+
+		FilePage smallest = catalog.list(0, 1, FileCatalog.SortField.SIZE, false);
+		assertThat(smallest.items()).extracting(FileEntry::filename).containsExactly("file-24.mp3");
+	}
+
+	@Test
+	void keepsUploadsThatShareAName() {
+		loadCatalog();
+		Instant now = Instant.parse("2025-01-01T00:00:00Z");
+		catalog.put(new FileEntry("same.mp3", 1, "hash-b", now, now, null));
+		catalog.put(new FileEntry("same.mp3", 2, "hash-a", now, now, null));
+
+		assertThat(catalog.list(0, 10, FileCatalog.SortField.NAME, false).items())
+				.extracting(FileEntry::hash).containsExactly("hash-a", "hash-b");
+	}
+
+	@Test
+	void seesChangesToTheCatalogueInTheNextPage() {
+		loadCatalog();
+		Instant now = Instant.parse("2025-01-01T00:00:00Z");
+		catalog.put(new FileEntry("a.mp3", 1, "hash-a", now, now, null));
+		assertThat(catalog.list(0, 10, FileCatalog.SortField.NAME, false).total()).isEqualTo(1);
+
+		catalog.put(new FileEntry("b.mp3", 1, "hash-b", now, now, null));
+		catalog.updateStatus("hash-a", JobStatus.DONE);
+		catalog.remove("hash-b");
+		catalog.put(new FileEntry("c.mp3", 1, "hash-c", now, now, null));
+
+		assertThat(catalog.list(0, 10, FileCatalog.SortField.NAME, false).items())
+				.extracting(FileEntry::filename, FileEntry::status)
+				.containsExactly(tuple("a.mp3", JobStatus.DONE),
+						tuple("c.mp3", null));
+	}
+
+	@Test
+	void reloadsSavedEntriesWithFinishedStatusesOnly() {
+		Instant modified = Instant.parse("2025-01-01T00:00:00Z");
+		loadCatalog();
+		catalog.put(new FileEntry("done.mp3", 10, "hash-done", modified, modified, JobStatus.DONE));
+		catalog.put(new FileEntry("running.mp3", 10, "hash-running", modified, modified, JobStatus.RUNNING));
+		catalog.shutdown();
+
+		loadCatalog();
+
+		assertThat(catalog.get("hash-done")).get().extracting(FileEntry::status).isEqualTo(JobStatus.DONE);
+		// A job that was running did not survive the restart
+		assertThat(catalog.get("hash-running")).get().extracting(FileEntry::status).isNull();
+	}
+}
@@ -0,0 +1,174 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.exceptions.InvalidAudioException;
+import com.project.demo.exceptions.StorageFileNotFoundException;
+import com.project.demo.model.FileEntry;
+import com.project.demo.model.StoredFile;
+import com.project.demo.properties.AudioProperties;
+import com.project.demo.properties.StorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileSystemStorageServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private Path uploads;
+	private StorageProperties properties;
+	private FileCatalog catalog;
+	private FileSystemStorageService storageService;
+
+	@BeforeEach
+	void createProperties() {
+		uploads = directory.resolve("uploads");
+		properties = new StorageProperties();
+		properties.setLocation(uploads.toString());
+		properties.setCatalogFile(directory.resolve("file-catalog.json").toString());
+		restart();
+	}
+
+	private void restart() {
+		ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+		catalog = new FileCatalog(properties, objectMapper);
+		catalog.load();
+		storageService = new FileSystemStorageService(properties, new AudioProperties(), catalog, objectMapper);
+	}
+
+	private StoredFile store(String name, String content) {
+		return storageService.store(new MockMultipartFile("file", name, "audio/mpeg",
+				content.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	void storesUnderTheContentHash() throws IOException {
+		StoredFile stored = store("talk.mp3", "abc");
+
+		assertThat(stored.hash()).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+		assertThat(stored.path()).isEqualTo(uploads.resolve("objects/ba").resolve(stored.hash()));
+		assertThat(Files.readString(stored.path())).isEqualTo("abc");
+		assertThat(storageService.describe(stored.hash()).filename()).isEqualTo("talk.mp3");
+		try (Stream<Path> temporary = Files.list(uploads.resolve("tmp"))) {
+			assertThat(temporary).isEmpty();
+		}
+	}
+
+	@Test
+	void keepsSameNamedUploadsApartAndDeduplicatesContent() {
+		StoredFile first = store("talk.mp3", "first");
+		StoredFile second = store("talk.mp3", "second");
+		StoredFile again = store("copy.mp3", "first");
+
+		assertThat(second.hash()).isNotEqualTo(first.hash());
+		assertThat(again.path()).isEqualTo(first.path());
+		assertThat(catalog.size()).isEqualTo(2);
+		assertThat(storageService.describe(first.hash()).filename()).isEqualTo("talk.mp3");
+	}
+
+	@Test
+	void checksAudioWhileStoringIt() throws IOException {
+		StoredFile stored = storageService.storeAudio(new MockMultipartFile("file", "talk.mp3", "audio/mpeg",
+				Mp3FrameScannerTests.frames(100)));
+		assertThat(stored.audio().frames()).isEqualTo(100);
+
+		assertThatThrownBy(() -> storageService.storeAudio(new MockMultipartFile("file", "notes.mp3", "audio/mpeg",
+				"not audio".getBytes(StandardCharsets.UTF_8))))
+				.isInstanceOf(InvalidAudioException.class);
+		assertThat(catalog.hashes()).containsExactly(stored.hash());
+		try (Stream<Path> temporary = Files.list(uploads.resolve("tmp"))) {
+			assertThat(temporary).isEmpty();
+		}
+	}
+
+	@Test
+	void recoversNamesWithoutTheSavedCatalogue() throws IOException {
+		StoredFile stored = store("talk.mp3", "abc");
+		Instant uploadedAt = storageService.describe(stored.hash()).uploadedAt();
+		Files.deleteIfExists(directory.resolve("file-catalog.json"));
+
+		restart();
+		assertThat(catalog.size()).isZero();
+		storageService.recover();
+
+		assertThat(storageService.describe(stored.hash()))
+				.extracting(FileEntry::filename, FileEntry::size, FileEntry::uploadedAt)
+				.containsExactly("talk.mp3", 3L, uploadedAt);
+	}
+
+	@Test
+	void removesLeftoversAndForgetsMissingFiles() throws IOException {
+		StoredFile kept = store("kept.mp3", "kept");
+		StoredFile lost = store("lost.mp3", "lost");
+		catalog.shutdown();
+		Files.delete(lost.path());
+		FileTime past = FileTime.from(Instant.now().minusSeconds(60));
+		Path part = Files.writeString(uploads.resolve("tmp/upload-1.part"), "half");
+		Files.setLastModifiedTime(part, past);
+		Files.setLastModifiedTime(lost.path().resolveSibling(lost.hash() + ".json"), past);
+
+		restart();
+		storageService.recover();
+
+		assertThat(catalog.hashes()).containsExactly(kept.hash());
+		assertThat(part).doesNotExist();
+		assertThat(lost.path().resolveSibling(lost.hash() + ".json")).doesNotExist();
+	}
+
+	@Test
+	void catalogsObjectsCopiedInOrDeletedWhileRunning() throws Exception {
+		storageService.init();
+		try {
+			StoredFile stored = store("talk.mp3", "abc");
+			// Into a shard that does not exist yet, it is watched once it appears
+			String hash = "ff" + "0".repeat(62);
+			Path shard = Files.createDirectories(uploads.resolve("objects/ff"));
+			Files.writeString(shard.resolve(hash), "copied by hand");
+			awaitCatalogued(hash, true);
+			assertThat(storageService.describe(hash).filename()).isEqualTo(hash);
+
+			Files.writeString(shard.resolve(hash + ".json"), "{\"filename\":\"notes.mp3\",\"uploadedAt\":1700000000.0}");
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (!storageService.describe(hash).filename().equals("notes.mp3") && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertThat(storageService.describe(hash).filename()).isEqualTo("notes.mp3");
+
+			Files.delete(stored.path());
+			awaitCatalogued(stored.hash(), false);
+			assertThat(catalog.hashes()).containsExactly(hash);
+		} finally {
+			storageService.shutdown();
+		}
+	}
+
+	private void awaitCatalogued(String hash, boolean present) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (catalog.get(hash).isPresent() != present && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(catalog.get(hash).isPresent()).isEqualTo(present);
+	}
+
+	@Test
+	void rejectsAnythingButAHash() {
+		assertThatThrownBy(() -> storageService.load("../file-catalog.json"))
+				.isInstanceOf(StorageFileNotFoundException.class);
+		assertThatThrownBy(() -> storageService.describe("0".repeat(64)))
+				.isInstanceOf(StorageFileNotFoundException.class);
+	}
+}
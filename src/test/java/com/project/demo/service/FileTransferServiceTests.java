@@ -0,0 +1,149 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileTransferServiceTests {
+
+	private static final String HASH = "abc123";
+
+	@TempDir
+	Path directory;
+
+	private final FileTransferService service = new FileTransferService();
+	private Path file;
+
+	@BeforeEach
+	void createFile() throws IOException {
+		file = Files.writeString(directory.resolve("recording.mp3"), "0123456789");
+	}
+
+	private MockHttpServletResponse send(MockHttpServletRequest request) throws IOException {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		service.send(file, HASH, "recording.mp3", request, response);
+		return response;
+	}
+
+	private static MockHttpServletRequest get() {
+		return new MockHttpServletRequest("GET", "/files/recording.mp3");
+	}
+
+	@Test
+	void sendsWholeFileWithValidators() throws IOException {
+		MockHttpServletResponse response = send(get());
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsString()).isEqualTo("0123456789");
+		assertThat(response.getHeader("ETag")).isEqualTo("\"abc123\"");
+		assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+		assertThat(response.getContentType()).isEqualTo("audio/mpeg");
+		assertThat(response.getHeader("Last-Modified")).isNotNull();
+	}
+
+	@Test
+	void sendsSingleRange() throws IOException {
+		MockHttpServletRequest request = get();
+		request.addHeader("Range", "bytes=2-4");
+
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 2-4/10");
+		assertThat(response.getContentAsString()).isEqualTo("234");
+	}
+
+	@Test
+	void sendsSuffixRange() throws IOException {
+		MockHttpServletRequest request = get();
+		request.addHeader("Range", "bytes=-3");
+
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 7-9/10");
+		assertThat(response.getContentAsString()).isEqualTo("789");
+	}
+
+	@Test
+	void sendsMultipleRangesAsMultipart() throws IOException {
+		MockHttpServletRequest request = get();
+		request.addHeader("Range", "bytes=0-1,8-");
+
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getContentType()).startsWith("multipart/byteranges; boundary=");
+		String body = response.getContentAsString(StandardCharsets.US_ASCII);
+		assertThat(body).contains("Content-Range: bytes 0-1/10\r\n\r\n01\r\n");
+		assertThat(body).contains("Content-Range: bytes 8-9/10\r\n\r\n89\r\n");
+		assertThat(response.getContentLengthLong()).isEqualTo(body.length());
+	}
+
+	@Test
+	void rejectsUnsatisfiableRange() throws IOException {
+		MockHttpServletRequest request = get();
+		request.addHeader("Range", "bytes=20-30");
+
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(416);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */10");
+	}
+
+	@Test
+	void answersNotModifiedForMatchingEtag() throws IOException {
+		MockHttpServletRequest request = get();
+		request.addHeader("If-None-Match", "\"other\", W/\"abc123\"");
+
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(304);
+		assertThat(response.getContentAsByteArray()).isEmpty();
+	}
+
+	@Test
+	void answersNotModifiedSinceLastModified() throws IOException {
+		MockHttpServletRequest request = get();
+		request.addHeader("If-Modified-Since", Files.getLastModifiedTime(file).toMillis() + 1000);
+
+		assertThat(send(request).getStatus()).isEqualTo(304);
+	}
+
+	@Test
+	void ignoresRangeWhenIfRangeIsStale() throws IOException {
+		MockHttpServletRequest request = get();
+		request.addHeader("Range", "bytes=2-4");
+		request.addHeader("If-Range", "\"outdated\"");
+
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsString()).isEqualTo("0123456789");
+	}
+
+	@Test
+	void handsLargeBodiesToSendfile() throws IOException {
+		file = Files.write(directory.resolve("large.mp3"), new byte[100_000]);
+		MockHttpServletRequest request = get();
+		request.setAttribute(FileTransferService.SENDFILE_SUPPORT, Boolean.TRUE);
+		request.addHeader("Range", "bytes=1000-");
+
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getContentAsByteArray()).isEmpty();
+		assertThat(request.getAttribute(FileTransferService.SENDFILE_FILENAME)).isEqualTo(file.toAbsolutePath().toString());
+		assertThat(request.getAttribute(FileTransferService.SENDFILE_START)).isEqualTo(1000L);
+		assertThat(request.getAttribute(FileTransferService.SENDFILE_END)).isEqualTo(100_000L);
+		assertThat(response.getContentLengthLong()).isEqualTo(99_000L);
+	}
+}
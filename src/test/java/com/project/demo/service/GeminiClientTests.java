@@ -0,0 +1,251 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.exceptions.GeminiException;
+import com.project.demo.exceptions.GeminiUnavailableException;
+import com.project.demo.properties.GeminiProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeminiClientTests {
+
+	private static final String ANSWER = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"short summary\"}]}}]}";
+
+	private HttpServer server;
+	private final AtomicInteger requests = new AtomicInteger();
+	// Responses handed out in order, the last one repeats
+	private final ConcurrentLinkedQueue<StubResponse> script = new ConcurrentLinkedQueue<>();
+	private volatile StubResponse lastResponse;
+	private GeminiProperties properties;
+
+	private record StubResponse(int status, String body, String retryAfter, long delayMillis) {
+	}
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/", this::handle);
+		server.start();
+
+		properties = new GeminiProperties();
+		properties.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+		properties.setHttp2(false);
+		properties.setInitialBackoff(Duration.ofMillis(10));
+		properties.setMaxBackoff(Duration.ofMillis(50));
+		properties.setRequestTimeout(Duration.ofSeconds(2));
+		properties.setDeadline(Duration.ofSeconds(5));
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		StubResponse response = script.poll();
+		if (response == null) {
+			response = lastResponse;
+		} else {
+			lastResponse = response;
+		}
+		try {
+			Thread.sleep(response.delayMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (response.retryAfter() != null) {
+			exchange.getResponseHeaders().add("Retry-After", response.retryAfter());
+		}
+		byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(response.status(), body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		} catch (IOException ignored) {
+			// client gave up on a slow response
+		}
+	}
+
+	private void respond(int status, String body) {
+		respond(status, body, null, 0);
+	}
+
+	private void respond(int status, String body, String retryAfter, long delayMillis) {
+		script.add(new StubResponse(status, body, retryAfter, delayMillis));
+	}
+
+	private GeminiClient client() {
+		return new GeminiClient(properties, new ObjectMapper(), "test-key", "gemini-2.0-flash");
+	}
+
+	@Test
+	void extractsTextFromCandidate() {
+		respond(200, ANSWER);
+
+		assertThat(client().generateContent("transcript", null)).isEqualTo("short summary");
+		assertThat(requests.get()).isEqualTo(1);
+	}
+
+	@Test
+	void retriesUnavailableUntilSuccess() {
+		respond(503, "{}");
+		respond(429, "{}", "0", 0);
+		respond(200, ANSWER);
+
+		assertThat(client().generateContent("transcript", "gemini-1.5-flash")).isEqualTo("short summary");
+		assertThat(requests.get()).isEqualTo(3);
+	}
+
+	@Test
+	void honoursRetryAfter() {
+		respond(429, "{}", "1", 0);
+		respond(200, ANSWER);
+
+		long start = System.nanoTime();
+		assertThat(client().generateContent("transcript", null)).isEqualTo("short summary");
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(900));
+	}
+
+	@Test
+	void doesNotRetryClientErrors() {
+		respond(400, "{\"error\":\"bad request\"}");
+
+		assertThatThrownBy(() -> client().generateContent("transcript", null))
+				.isInstanceOf(GeminiException.class)
+				.hasMessageContaining("400");
+		assertThat(requests.get()).isEqualTo(1);
+	}
+
+	@Test
+	void givesUpWhenDeadlineExpires() {
+		properties.setRequestTimeout(Duration.ofMillis(200));
+		properties.setDeadline(Duration.ofMillis(500));
+		respond(200, ANSWER, null, 2000);
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> client().generateContent("transcript", null)).isInstanceOf(GeminiException.class);
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+	}
+
+	@Test
+	void opensCircuitAfterRepeatedFailures() {
+		properties.setMaxAttempts(1);
+		properties.setCircuitFailureThreshold(2);
+		properties.setCircuitOpenDuration(Duration.ofMinutes(1));
+		respond(500, "{}");
+		GeminiClient client = client();
+
+		assertThatThrownBy(() -> client.generateContent("a", null)).isNotInstanceOf(GeminiUnavailableException.class);
+		assertThatThrownBy(() -> client.generateContent("b", null)).isNotInstanceOf(GeminiUnavailableException.class);
+		assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+		assertThatThrownBy(() -> client.generateContent("c", null)).isInstanceOf(GeminiUnavailableException.class);
+		assertThat(requests.get()).isEqualTo(2);
+	}
+
+	@Test
+	void closesCircuitAfterSuccessfulProbe() throws InterruptedException {
+		properties.setMaxAttempts(1);
+		properties.setCircuitFailureThreshold(1);
+		properties.setCircuitOpenDuration(Duration.ofMillis(100));
+		respond(500, "{}");
+		respond(200, ANSWER);
+		GeminiClient client = client();
+
+		assertThatThrownBy(() -> client.generateContent("a", null)).isInstanceOf(GeminiException.class);
+		Thread.sleep(150);
+
+		assertThat(client.generateContent("b", null)).isEqualTo("short summary");
+		assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+	}
+
+	@Test
+	void bulkheadRejectsCallsBeyondLimit() throws Exception {
+		properties.setMaxConcurrentCalls(1);
+		properties.setBulkheadWait(Duration.ofMillis(50));
+		respond(200, ANSWER, null, 500);
+		GeminiClient client = client();
+
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture<String> slowCall = CompletableFuture.supplyAsync(() -> {
+			started.countDown();
+			return client.generateContent("slow", null);
+		});
+		started.await();
+		while (client.getCallsInFlight() == 0) {
+			Thread.onSpinWait();
+		}
+
+		assertThatThrownBy(() -> client.generateContent("rejected", null))
+				.isInstanceOf(GeminiUnavailableException.class);
+		assertThat(slowCall.get(5, TimeUnit.SECONDS)).isEqualTo("short summary");
+	}
+
+	@Test
+	void streamsTokensInOrder() {
+		String chunk = "data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"%s\"}]}}]}\r\n\r\n";
+		respond(200, chunk.formatted("short ") + chunk.formatted("summary"));
+		List<String> tokens = new ArrayList<>();
+
+		String answer = client().streamGenerateContent("transcript", null, tokens::add, new CancellationToken());
+
+		assertThat(tokens).containsExactly("short ", "summary");
+		assertThat(answer).isEqualTo("short summary");
+	}
+
+	@Test
+	void cancelledStreamStopsReading() {
+		CancellationToken cancellation = new CancellationToken();
+		cancellation.cancel("user left");
+
+		assertThatThrownBy(() -> client().streamGenerateContent("transcript", null, token -> { }, cancellation))
+				.isInstanceOf(CancellationException.class);
+		assertThat(requests.get()).isZero();
+	}
+
+	@Test
+	void cancellingAbortsACallWaitingForItsAnswer() {
+		respond(200, ANSWER, null, 3000);
+		CancellationToken cancellation = new CancellationToken();
+		GeminiClient client = client();
+		CompletableFuture.runAsync(() -> {
+			while (requests.get() == 0) {
+				Thread.onSpinWait();
+			}
+			cancellation.cancel("Deadline exceeded");
+		});
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> client.generateContent("transcript", null, cancellation))
+				.isInstanceOf(CancellationException.class)
+				.hasMessage("Deadline exceeded");
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(2000));
+		// Not retried and not held against the API
+		assertThat(requests.get()).isEqualTo(1);
+		assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+		assertThat(client.getCallsInFlight()).isZero();
+	}
+}
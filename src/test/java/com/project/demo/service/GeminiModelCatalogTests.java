@@ -0,0 +1,138 @@
+package com.project.demo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.exceptions.GeminiException;
+import com.project.demo.exceptions.GeminiUnavailableException;
+import com.project.demo.model.GeminiModel;
+import com.project.demo.properties.GeminiProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeminiModelCatalogTests {
+
+	private static final List<GeminiModel> FIRST = List.of(new GeminiModel("gemini-1.5-pro", "model", "google"));
+	private static final List<GeminiModel> SECOND = List.of(new GeminiModel("gemini-2.0-flash", "model", "google"));
+
+	private final GeminiProperties properties = new GeminiProperties();
+	private final AtomicInteger calls = new AtomicInteger();
+	private volatile Supplier<List<GeminiModel>> upstream = () -> FIRST;
+	private final GeminiClient client = new GeminiClient(properties, new ObjectMapper(), "key", "gemini-2.0-flash") {
+		@Override
+		public List<GeminiModel> listModels() {
+			calls.incrementAndGet();
+			return upstream.get();
+		}
+	};
+	private final GeminiModelCatalog catalog = new GeminiModelCatalog(client, properties);
+
+	@AfterEach
+	void shutdown() {
+		catalog.shutdown();
+	}
+
+	private static Supplier<List<GeminiModel>> blockingUntil(CountDownLatch release, List<GeminiModel> models) {
+		return () -> {
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return models;
+		};
+	}
+
+	private static Supplier<List<GeminiModel>> failing() {
+		return () -> {
+			throw new GeminiException("Gemini API returned 500", 500);
+		};
+	}
+
+	@Test
+	void callersOfAnEmptyCatalogShareOneRequest() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		upstream = blockingUntil(release, FIRST);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<GeminiModel>>> results = List.of(executor.submit(catalog::getModels),
+					executor.submit(catalog::getModels), executor.submit(catalog::getModels),
+					executor.submit(catalog::getModels));
+			Thread.sleep(100);
+			release.countDown();
+
+			for (Future<List<GeminiModel>> result : results) {
+				assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(FIRST);
+			}
+			assertThat(calls).hasValue(1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void servesTheStaleListWhileOneRefreshRuns() throws Exception {
+		properties.setModelsTtl(Duration.ofMillis(200));
+		assertThat(catalog.getModels()).isEqualTo(FIRST);
+		CountDownLatch release = new CountDownLatch(1);
+		upstream = blockingUntil(release, SECOND);
+		Thread.sleep(250);
+
+		assertThat(catalog.getModels()).isEqualTo(FIRST);
+		assertThat(catalog.getModels()).isEqualTo(FIRST);
+		release.countDown();
+
+		// Fresh again once the refresh is done, no further request
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!catalog.getModels().equals(SECOND) && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertThat(catalog.getModels()).isEqualTo(SECOND);
+		assertThat(calls).hasValue(2);
+	}
+
+	@Test
+	void anEmptyCatalogFailsFastWhileTheApiIsBackingOff() throws Exception {
+		properties.setModelsFailureBackoff(Duration.ofMillis(300));
+		upstream = failing();
+
+		assertThatThrownBy(catalog::getModels)
+				.isInstanceOf(GeminiUnavailableException.class)
+				.hasMessageContaining("Gemini API returned 500");
+		assertThatThrownBy(catalog::getModels)
+				.isInstanceOf(GeminiUnavailableException.class)
+				.hasMessageContaining("the last attempt failed");
+		assertThat(calls).hasValue(1);
+		assertThat(catalog.getRetryAfter()).isEqualTo(Duration.ofSeconds(1));
+
+		upstream = () -> FIRST;
+		Thread.sleep(350);
+		assertThat(catalog.getModels()).isEqualTo(FIRST);
+		assertThat(calls).hasValue(2);
+	}
+
+	@Test
+	void keepsTheLastGoodListWhenTheApiFails() throws Exception {
+		properties.setModelsTtl(Duration.ZERO);
+		properties.setModelsStaleWhileRevalidate(Duration.ZERO);
+		assertThat(catalog.getModels()).isEqualTo(FIRST);
+		upstream = failing();
+		Thread.sleep(5);
+
+		assertThat(catalog.getModels()).isEqualTo(FIRST);
+		// Backing off, no new request
+		assertThat(catalog.getModels()).isEqualTo(FIRST);
+		assertThat(calls).hasValue(2);
+	}
+}
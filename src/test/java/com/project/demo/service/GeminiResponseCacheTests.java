@@ -0,0 +1,143 @@
+package com.project.demo.service;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.project.demo.exceptions.GeminiException;
+import com.project.demo.properties.GeminiCacheProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeminiResponseCacheTests {
+
+	@TempDir
+	Path directory;
+
+	private GeminiResponseCache cache(DataSize maxSize, String spillLocation) {
+		GeminiCacheProperties properties = new GeminiCacheProperties();
+		properties.setMaxSize(maxSize);
+		properties.setSpillLocation(spillLocation);
+		GeminiResponseCache cache = new GeminiResponseCache(properties);
+		cache.init();
+		return cache;
+	}
+
+	@Test
+	void identicalRequestsInFlightShareOneCall() throws Exception {
+		GeminiResponseCache cache = cache(DataSize.ofMegabytes(1), "");
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch called = new CountDownLatch(1);
+		CountDownLatch answer = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<String> first = executor.submit(() -> cache.get("k", new CancellationToken(), () -> {
+				calls.incrementAndGet();
+				called.countDown();
+				await(answer);
+				return "summary";
+			}));
+			assertThat(called.await(5, TimeUnit.SECONDS)).isTrue();
+			Future<String> second = executor.submit(() -> cache.get("k", new CancellationToken(), () -> {
+				calls.incrementAndGet();
+				return "other";
+			}));
+			while (cache.getCoalesced() == 0) {
+				Thread.sleep(5);
+			}
+			answer.countDown();
+
+			assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("summary");
+			assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("summary");
+			assertThat(calls).hasValue(1);
+			assertThat(cache.get("k", new CancellationToken(), () -> "other")).isEqualTo("summary");
+			assertThat(cache.getHits()).isEqualTo(1);
+			assertThat(cache.getMisses()).isEqualTo(1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void doesNotCacheFailures() {
+		GeminiResponseCache cache = cache(DataSize.ofMegabytes(1), "");
+
+		assertThatThrownBy(() -> cache.get("k", new CancellationToken(), () -> {
+			throw new GeminiException("quota exceeded");
+		})).isInstanceOf(GeminiException.class);
+
+		assertThat(cache.get("k", new CancellationToken(), () -> "summary")).isEqualTo("summary");
+		assertThat(cache.getMisses()).isEqualTo(2);
+	}
+
+	@Test
+	void keepsAnswersAskedForOftenThroughAScanOfOneOffPrompts() {
+		GeminiResponseCache cache = cache(DataSize.ofKilobytes(64), "");
+		String answer = "x".repeat(1000);
+		for (int i = 0; i < 5; i++) {
+			cache.get("hot", new CancellationToken(), () -> answer);
+		}
+		for (int i = 0; i < 500; i++) {
+			cache.get("scan-" + i, new CancellationToken(), () -> answer);
+		}
+
+		assertThat(cache.getEvictions()).isPositive();
+		assertThat(cache.getMemoryBytes()).isLessThanOrEqualTo(DataSize.ofKilobytes(64).toBytes());
+		assertThat(cache.get("hot", new CancellationToken(), () -> "loaded again")).isEqualTo(answer);
+	}
+
+	@Test
+	void readsEvictedAnswersBackFromDisk() {
+		GeminiResponseCache cache = cache(DataSize.ofKilobytes(16), directory.toString());
+		String answer = "y".repeat(1000);
+		for (int i = 0; i < 50; i++) {
+			int n = i;
+			cache.get("k" + n, new CancellationToken(), () -> answer + n);
+		}
+		assertThat(cache.getSpilledBytes()).isPositive();
+
+		for (int i = 0; i < 50; i++) {
+			assertThat(cache.get("k" + i, new CancellationToken(), () -> "loaded again")).isEqualTo(answer + i);
+		}
+		assertThat(cache.getMisses()).isEqualTo(50);
+
+		GeminiResponseCache restarted = cache(DataSize.ofKilobytes(16), directory.toString());
+		assertThat(restarted.getSpilledBytes()).isEqualTo(cache.getSpilledBytes());
+		for (int i = 0; i < 50; i++) {
+			String cached = restarted.get("k" + i, new CancellationToken(), () -> "loaded again");
+			assertThat(cached).isIn(answer + i, "loaded again");
+		}
+		assertThat(restarted.getHits()).isPositive();
+	}
+
+	@Test
+	void keysIgnoreWhitespaceButNotModelOrConfig() {
+		ObjectNode config = new ObjectMapper().createObjectNode().put("temperature", 0.2);
+		ObjectNode otherConfig = new ObjectMapper().createObjectNode().put("temperature", 0.9);
+		String key = GeminiResponseCache.key("gemini-2.0-flash", config, "Summarize:\n  the  meeting ");
+
+		assertThat(GeminiResponseCache.key("gemini-2.0-flash", config, "Summarize: the meeting")).isEqualTo(key);
+		assertThat(GeminiResponseCache.key("gemini-1.5-pro", config, "Summarize: the meeting")).isNotEqualTo(key);
+		assertThat(GeminiResponseCache.key("gemini-2.0-flash", otherConfig, "Summarize: the meeting"))
+				.isNotEqualTo(key);
+		assertThat(GeminiResponseCache.key("gemini-2.0-flash", config, "Summarize: the meetings")).isNotEqualTo(key);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.model.HistoryEntry;
+import com.project.demo.model.HistoryPage;
+import com.project.demo.properties.HistoryProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistoryStoreTests {
+
+	private static final String FIRST = "a".repeat(64);
+	private static final String SECOND = "b".repeat(64);
+
+	@TempDir
+	Path directory;
+
+	private HistoryStore store;
+
+	@BeforeEach
+	void open() {
+		restart();
+	}
+
+	@AfterEach
+	void close() {
+		store.shutdown();
+	}
+
+	private void restart() {
+		if (store != null) {
+			store.shutdown();
+		}
+		HistoryProperties properties = new HistoryProperties();
+		properties.setLocation(directory.toString());
+		store = new HistoryStore(properties, new ObjectMapper().findAndRegisterModules());
+		store.init();
+	}
+
+	private static HistoryEntry entry(String fileHash, String transcription, boolean fallback) {
+		return new HistoryEntry(-1, fileHash, "talk.mp3", "python", null, transcription, List.of(), "summary",
+				Map.of("rouge1_f", 0.5), false, fallback, 60.0, Map.of("transcription", 1.5), Instant.now());
+	}
+
+	@Test
+	void pagesNewestFirstAndFindsResultsByUpload() {
+		for (int i = 0; i < 5; i++) {
+			store.append(entry(i % 2 == 0 ? FIRST : SECOND, "text " + i, false));
+		}
+
+		HistoryPage page = store.list(null, 1, 2);
+		assertThat(page.total()).isEqualTo(5);
+		assertThat(page.items()).extracting(HistoryEntry::id).containsExactly(2L, 1L);
+		assertThat(page.items()).extracting(HistoryEntry::transcription).containsOnlyNulls();
+		assertThat(store.list(null, 2, 2).items()).extracting(HistoryEntry::id).containsExactly(0L);
+		assertThat(store.list(SECOND, 0, 10).items()).extracting(HistoryEntry::id).containsExactly(3L, 1L);
+		assertThat(store.list("c".repeat(64), 0, 10).total()).isZero();
+		assertThat(store.get(4)).get().extracting(HistoryEntry::transcription).isEqualTo("text 4");
+	}
+
+	@Test
+	void reusesOnlyResultsThatDidNotFallBack() {
+		store.append(entry(FIRST, "kept", false));
+		store.append(entry(FIRST, "fallback", true));
+
+		assertThat(store.findReusable(FIRST, "python", null)).get()
+				.extracting(HistoryEntry::transcription).isEqualTo("kept");
+		assertThat(store.findReusable(FIRST, "gemini", "gemini-2.0-flash")).isEmpty();
+	}
+
+	@Test
+	void keepsResultsOverARestartAndIndexesWhatTheIndexMissed() throws IOException {
+		store.append(entry(FIRST, "one", false));
+		store.append(entry(SECOND, "two", false));
+		store.append(entry(FIRST, "three", false));
+		store.shutdown();
+		try (FileChannel index = FileChannel.open(directory.resolve("results.idx"), StandardOpenOption.WRITE)) {
+			index.truncate(index.size() - 50);
+		}
+
+		restart();
+
+		assertThat(store.size()).isEqualTo(3);
+		assertThat(store.list(FIRST, 0, 10).items()).extracting(HistoryEntry::summary).hasSize(2);
+		assertThat(store.get(2)).get().extracting(HistoryEntry::transcription).isEqualTo("three");
+		assertThat(store.append(entry(SECOND, "four", false)).id()).isEqualTo(3);
+	}
+
+	@Test
+	void cutsATornRecordOffTheLog() throws IOException {
+		store.append(entry(FIRST, "one", false));
+		store.append(entry(SECOND, "two", false));
+		store.shutdown();
+		Path log = directory.resolve("results.log");
+		long intact = Files.size(log);
+		restart();
+		store.append(entry(FIRST, "three", false));
+		store.shutdown();
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+			channel.truncate(Files.size(log) - 10);
+		}
+
+		restart();
+
+		assertThat(store.size()).isEqualTo(2);
+		assertThat(Files.size(log)).isEqualTo(intact);
+		assertThat(store.list(FIRST, 0, 10).total()).isEqualTo(1);
+		assertThat(store.append(entry(FIRST, "again", false)).id()).isEqualTo(2);
+	}
+}
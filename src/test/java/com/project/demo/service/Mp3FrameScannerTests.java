@@ -0,0 +1,122 @@
+package com.project.demo.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+
+import com.project.demo.exceptions.InvalidAudioException;
+import com.project.demo.model.AudioInfo;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Mp3FrameScannerTests {
+
+	// MPEG 1 layer III, 128 kbit/s, 44.1 kHz, no padding: 417 bytes and 1152 samples a frame
+	private static final byte[] HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+	private static final int FRAME_LENGTH = 417;
+
+	/**
+	 * Silent frames, the payload is zeros so it never looks like a header.
+	 */
+	static byte[] frames(int count) {
+		byte[] stream = new byte[count * FRAME_LENGTH];
+		for (int i = 0; i < count; i++) {
+			System.arraycopy(HEADER, 0, stream, i * FRAME_LENGTH, HEADER.length);
+		}
+		return stream;
+	}
+
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			out.writeBytes(part);
+		}
+		return out.toByteArray();
+	}
+
+	private static Mp3FrameScanner feed(Mp3FrameScanner scanner, byte[] stream, int pieceSize) {
+		for (int offset = 0; offset < stream.length; offset += pieceSize) {
+			scanner.update(stream, offset, Math.min(pieceSize, stream.length - offset));
+		}
+		return scanner;
+	}
+
+	@Test
+	void readsDurationAndBitrateInAnyPieceSize() {
+		// An ID3v2 tag of 100 bytes whose content would pass for a header, and an ID3v1 tag at the end
+		byte[] tagBody = new byte[100];
+		Arrays.fill(tagBody, (byte) 0xFF);
+		byte[] id3v2 = concat(new byte[] {'I', 'D', '3', 4, 0, 0, 0, 0, 0, 100}, tagBody);
+		byte[] id3v1 = concat("TAG".getBytes(StandardCharsets.US_ASCII), new byte[125]);
+		byte[] stream = concat(id3v2, frames(1000), id3v1);
+
+		for (int pieceSize : new int[] {1, 3, 7, FRAME_LENGTH, 64 * 1024}) {
+			AudioInfo audio = feed(new Mp3FrameScanner(null, null), stream, pieceSize).finish();
+
+			assertThat(audio.frames()).as("piece size %d", pieceSize).isEqualTo(1000);
+			assertThat(audio.sampleRate()).isEqualTo(44100);
+			assertThat(audio.duration()).isEqualTo(Duration.ofNanos(1000 * 1152 * 1_000_000_000L / 44100));
+			assertThat(audio.bitrate()).isEqualTo(128);
+		}
+	}
+
+	@Test
+	void findsTheStreamAgainAfterDamage() {
+		byte[] damage = new byte[50];
+		Arrays.fill(damage, (byte) 'x');
+
+		AudioInfo audio = feed(new Mp3FrameScanner(null, null), concat(frames(100), damage, frames(100)), 4096)
+				.finish();
+
+		assertThat(audio.frames()).isEqualTo(200);
+	}
+
+	@Test
+	void rejectsTextBeforeTheWholeUploadIsRead() {
+		byte[] text = "Not an MP3 at all. ".repeat(10_000).getBytes(StandardCharsets.US_ASCII);
+		Mp3FrameScanner scanner = new Mp3FrameScanner(null, null);
+
+		assertThatThrownBy(() -> feed(scanner, text, 8192))
+				.isInstanceOf(InvalidAudioException.class)
+				.hasMessageContaining("No MP3 audio found");
+		assertThatThrownBy(() -> feed(new Mp3FrameScanner(null, null), "abc".getBytes(StandardCharsets.US_ASCII), 3)
+				.finish())
+				.isInstanceOf(InvalidAudioException.class);
+	}
+
+	@Test
+	void rejectsAStreamThatIsMostlyNotAudio() {
+		byte[] junk = new byte[10_000];
+		Arrays.fill(junk, (byte) 'x');
+		Mp3FrameScanner scanner = feed(new Mp3FrameScanner(null, null), concat(frames(10), junk), 4096);
+
+		assertThatThrownBy(scanner::finish)
+				.isInstanceOf(InvalidAudioException.class)
+				.hasMessageContaining("is not audio");
+	}
+
+	@Test
+	void stopsAtTheMaximumDuration() {
+		Mp3FrameScanner scanner = new Mp3FrameScanner(Duration.ofSeconds(10), null);
+
+		assertThatThrownBy(() -> feed(scanner, frames(1000), 4096))
+				.isInstanceOf(InvalidAudioException.class)
+				.hasMessageContaining("longer than");
+	}
+
+	@Test
+	void cutsOnTheFirstFrameAfterEveryInterval() {
+		Mp3FrameScanner scanner = feed(new Mp3FrameScanner(null, Duration.ofSeconds(10)), frames(1000), 1000);
+		scanner.finish();
+
+		// 10 s are 441000 samples, frame 383 is the first to start at or after them
+		assertThat(scanner.getCuts())
+				.extracting(Mp3FrameScanner.Cut::offset)
+				.containsExactly(383L * FRAME_LENGTH, 766L * FRAME_LENGTH);
+		assertThat(scanner.getCuts().get(0).start())
+				.isEqualTo(Duration.ofNanos(383 * 1152 * 1_000_000_000L / 44100));
+	}
+}
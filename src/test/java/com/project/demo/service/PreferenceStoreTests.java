@@ -0,0 +1,88 @@
+package com.project.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.project.demo.model.UserPreference;
+import com.project.demo.properties.PreferenceProperties;
+import jakarta.servlet.http.HttpSessionEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PreferenceStoreTests {
+
+	private static final UserPreference GEMINI = new UserPreference("gemini", "gemini-2.0-flash");
+
+	private static PreferenceStore store(int maxSessions) {
+		PreferenceProperties properties = new PreferenceProperties();
+		properties.setMaxSessions(maxSessions);
+		return new PreferenceStore(properties);
+	}
+
+	@Test
+	void forgetsPreferencesWithTheirSession() {
+		PreferenceStore store = store(100);
+		MockHttpSession session = new MockHttpSession();
+		store.put(session.getId(), GEMINI);
+		assertThat(store.get(session.getId())).contains(GEMINI);
+
+		store.sessionDestroyed(new HttpSessionEvent(session));
+
+		assertThat(store.get(session.getId())).isEmpty();
+	}
+
+	@Test
+	void followsAChangedSessionId() {
+		PreferenceStore store = store(100);
+		MockHttpSession session = new MockHttpSession();
+		store.put("old-id", GEMINI);
+
+		store.sessionIdChanged(new HttpSessionEvent(session), "old-id");
+
+		assertThat(store.get("old-id")).isEmpty();
+		assertThat(store.get(session.getId())).contains(GEMINI);
+	}
+
+	@Test
+	void staysWithinItsCapacity() {
+		PreferenceStore store = store(64);
+		for (int i = 0; i < 10_000; i++) {
+			store.put("session-" + i, GEMINI);
+		}
+
+		assertThat(store.size()).isLessThanOrEqualTo(64);
+		assertThat(store.get("session-9999")).contains(GEMINI);
+	}
+
+	@Test
+	void handlesConcurrentSessions() throws Exception {
+		PreferenceStore store = store(100_000);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> writers = new ArrayList<>();
+		try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+			for (int thread = 0; thread < 8; thread++) {
+				int offset = thread * 1000;
+				writers.add(executor.submit(() -> {
+					start.await();
+					for (int i = offset; i < offset + 1000; i++) {
+						store.put("session-" + i, GEMINI);
+						store.get("session-" + (i / 2));
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> writer : writers) {
+				writer.get();
+			}
+		}
+
+		assertThat(store.size()).isEqualTo(8000);
+	}
+}
@@ -0,0 +1,169 @@
+package com.project.demo.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.project.demo.exceptions.WorkerException;
+import com.project.demo.properties.RetentionProperties;
+import com.project.demo.properties.WorkerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PythonWorkerPoolTests {
+
+	/**
+	 * Answers pings with a pong and every other job with its own pid, so tests can tell workers apart.
+	 * With "hang" it never answers a job.
+	 */
+	private static final String FAKE_WORKER = """
+			import java.io.BufferedReader;
+			import java.io.InputStreamReader;
+
+			public class FakeWorker {
+				static void send(String json) {
+					System.out.println(json.replace('\\'', '"'));
+					System.out.flush();
+				}
+
+				public static void main(String[] args) throws Exception {
+					send("{'event':'ready'}");
+					BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+					String line;
+					while ((line = in.readLine()) != null) {
+						// The id is the last field of every request
+						String id = line.substring(line.lastIndexOf(':') + 2, line.length() - 2);
+						if (line.contains("'ping'".replace('\\'', '"'))) {
+							send("{'id':'" + id + "','event':'pong'}");
+						} else if (args.length > 0 && args[0].equals("hang")) {
+							Thread.sleep(60_000);
+						} else {
+							send("{'id':'" + id + "','event':'result','pid':" + ProcessHandle.current().pid() + "}");
+						}
+					}
+				}
+			}
+			""";
+
+	@TempDir
+	Path directory;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private PythonWorkerPool pool;
+
+	@AfterEach
+	void stopPool() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	private WorkerProperties properties(String... args) throws Exception {
+		Path source = directory.resolve("FakeWorker.java");
+		Files.writeString(source, FAKE_WORKER);
+		String java = ProcessHandle.current().info().command().orElse("java");
+		List<String> command = new ArrayList<>(List.of(java, source.toString()));
+		command.addAll(List.of(args));
+		WorkerProperties properties = new WorkerProperties();
+		properties.setCommand(command);
+		properties.setPoolSize(1);
+		properties.setStartupTimeout(Duration.ofSeconds(60));
+		return properties;
+	}
+
+	private PythonWorkerPool pool(WorkerProperties properties) {
+		RetentionProperties retentionProperties = new RetentionProperties();
+		retentionProperties.setPythonCacheLocation(directory.resolve("cache").toString());
+		pool = new PythonWorkerPool(properties, objectMapper, new PipelineMetrics(new SimpleMeterRegistry()),
+				retentionProperties);
+		return pool;
+	}
+
+	private ObjectNode job() {
+		return objectMapper.createObjectNode().put("type", "transcribe");
+	}
+
+	private long pidOfNextJob() {
+		return pool.execute(job()).get("pid").asLong();
+	}
+
+	@Test
+	void reusesAWarmWorkerAndRecyclesItAfterItsQuota() throws Exception {
+		WorkerProperties properties = properties();
+		properties.setMaxJobsPerWorker(2);
+		pool(properties);
+
+		long first = pidOfNextJob();
+		assertThat(pool.getIdleCount()).isEqualTo(1);
+		assertThat(pidOfNextJob()).isEqualTo(first);
+		// The second job used up the quota, the worker was stopped instead of put back
+		assertThat(pool.getLiveCount()).isZero();
+		assertThat(pidOfNextJob()).isNotEqualTo(first);
+		assertThat(pool.getLiveCount()).isEqualTo(1);
+	}
+
+	@Test
+	void borrowingTimesOutWhileEverySlotIsTakenAndReleaseMakesTheWorkerIdle() throws Exception {
+		WorkerProperties properties = properties();
+		properties.setBorrowTimeout(Duration.ofMillis(200));
+		pool(properties);
+
+		PythonWorker worker = pool.borrow();
+		assertThat(pool.getBusyCount()).isEqualTo(1);
+		assertThatThrownBy(pool::borrow)
+				.isInstanceOf(WorkerException.class)
+				.hasMessageStartingWith("No Python worker became available");
+
+		pool.release(worker, true);
+		assertThat(pool.getBusyCount()).isZero();
+		assertThat(pool.getIdleCount()).isEqualTo(1);
+		PythonWorker again = pool.borrow();
+		assertThat(again).isSameAs(worker);
+		pool.release(again, true);
+	}
+
+	@Test
+	void healthCheckReplacesADeadIdleWorkerAndKeepsTheWarmMinimum() throws Exception {
+		WorkerProperties properties = properties();
+		properties.setPoolSize(2);
+		properties.setMinIdle(1);
+		pool(properties);
+
+		pool.checkHealth();
+		assertThat(pool.getIdleCount()).isEqualTo(1);
+		PythonWorker worker = pool.borrow();
+		pool.release(worker, true);
+		worker.destroy();
+
+		pool.checkHealth();
+		assertThat(pool.getIdleCount()).isEqualTo(1);
+		assertThat(pool.getLiveCount()).isEqualTo(1);
+		PythonWorker replacement = pool.borrow();
+		assertThat(replacement.pid()).isNotEqualTo(worker.pid());
+		assertThat(replacement.isAlive()).isTrue();
+		pool.release(replacement, true);
+	}
+
+	@Test
+	void stopsAWorkerThatDoesNotAnswerInTime() throws Exception {
+		WorkerProperties properties = properties("hang");
+		properties.setCallTimeout(Duration.ofMillis(500));
+		pool(properties);
+
+		// Without a cancellation token only the call timeout ends this job
+		assertThatThrownBy(() -> pool.execute(job()))
+				.isInstanceOf(WorkerException.class)
+				.hasMessageContaining("did not answer within PT0.5S");
+		assertThat(pool.getLiveCount()).isZero();
+		assertThat(pool.getBusyCount()).isZero();
+	}
+}
@@ -0,0 +1,184 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.project.demo.exceptions.WorkerException;
+import com.project.demo.properties.RetentionProperties;
+import com.project.demo.properties.WorkerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PythonWorkerTests {
+
+	/**
+	 * Stands in for main.py: floods stderr while "loading models", then answers every job with two
+	 * segments and a result. JSON is written with single quotes to keep the source readable.
+	 */
+	private static final String FAKE_WORKER = """
+			import java.io.BufferedReader;
+			import java.io.InputStreamReader;
+			import java.nio.file.Files;
+			import java.nio.file.Path;
+
+			public class FakeWorker {
+				static void send(String json) {
+					System.out.println(json.replace('\\'', '"'));
+					System.out.flush();
+				}
+
+				public static void main(String[] args) throws Exception {
+					// Far more than a pipe buffer, the process blocks unless stderr is drained
+					for (int i = 0; i < 20000; i++) {
+						System.err.println("loading model, step " + i);
+					}
+					send("{'event':'ready','timings':{'load_models':0.5}}");
+					BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+					String line;
+					while ((line = in.readLine()) != null) {
+						// The id is the last field of every request
+						String id = line.substring(line.lastIndexOf(':') + 2, line.length() - 2);
+						if (args.length > 0 && args[0].equals("crash")) {
+							System.err.println("CUDA out of memory");
+							System.exit(3);
+						}
+						if (args.length > 0 && args[0].equals("hang")) {
+							// Starts writing a cache entry the way main.py does, then never answers
+							Files.writeString(Path.of(args[1], "abc.pkl." + ProcessHandle.current().pid() + ".tmp"), "partial");
+							Thread.sleep(60_000);
+						}
+						send("{'id':'stale','event':'segment','start':0,'end':1,'text':' old'}");
+						send("{'id':'" + id + "','event':'segment','start':0.0,'end':2.5,'text':' Hello'}");
+						send("{'id':'" + id + "','event':'segment','start':2.5,'end':4.0,'text':' world'}");
+						send("{'id':'" + id + "','event':'result','transcription':' Hello world'}");
+					}
+				}
+			}
+			""";
+
+	@TempDir
+	Path directory;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private PythonWorker worker;
+
+	@AfterEach
+	void stopWorker() {
+		if (worker != null) {
+			worker.destroy();
+		}
+	}
+
+	private List<String> command(String... args) throws Exception {
+		Path source = directory.resolve("FakeWorker.java");
+		Files.writeString(source, FAKE_WORKER);
+		String java = ProcessHandle.current().info().command().orElse("java");
+		List<String> command = new ArrayList<>(List.of(java, source.toString()));
+		command.addAll(List.of(args));
+		return command;
+	}
+
+	private PythonWorker start(String... args) throws Exception {
+		worker = PythonWorker.start(command(args), Duration.ofSeconds(60), objectMapper);
+		return worker;
+	}
+
+	private ObjectNode transcribeRequest() {
+		ObjectNode request = objectMapper.createObjectNode();
+		request.put("type", "transcribe");
+		request.put("path", "talk.mp3");
+		return request;
+	}
+
+	@Test
+	void startsDespiteAFloodOfStderr() throws Exception {
+		start();
+
+		assertThat(worker.getStartupTimings().get("load_models").asDouble()).isEqualTo(0.5);
+	}
+
+	@Test
+	void handsSegmentsOfTheJobToTheListenerBeforeTheResult() throws Exception {
+		start();
+		List<String> segments = new CopyOnWriteArrayList<>();
+
+		JsonNode result = worker.call(transcribeRequest(), segment -> segments.add(segment.get("text").asText()),
+				null);
+
+		assertThat(segments).containsExactly(" Hello", " world");
+		assertThat(result.get("transcription").asText()).isEqualTo(" Hello world");
+		// Without a listener the segments are skipped
+		assertThat(worker.call(transcribeRequest()).get("event").asText()).isEqualTo("result");
+		assertThat(worker.getJobsHandled()).isEqualTo(2);
+	}
+
+	@Test
+	void reportsTheExitCodeAndLastStderrLineWhenTheProcessDies() throws Exception {
+		start("crash");
+
+		assertThatThrownBy(() -> worker.call(transcribeRequest()))
+				.isInstanceOf(WorkerException.class)
+				.hasMessageContaining("exited with code 3")
+				.hasMessageEndingWith("CUDA out of memory");
+		assertThat(worker.isAlive()).isFalse();
+	}
+
+	@Test
+	void cancellingAJobKillsTheWorkerAndRemovesItsPartialCacheEntry() throws Exception {
+		Path cache = Files.createDirectories(directory.resolve("cache"));
+		WorkerProperties properties = new WorkerProperties();
+		properties.setCommand(command("hang", cache.toString()));
+		properties.setPoolSize(1);
+		properties.setStartupTimeout(Duration.ofSeconds(60));
+		RetentionProperties retentionProperties = new RetentionProperties();
+		retentionProperties.setPythonCacheLocation(cache.toString());
+		PythonWorkerPool pool = new PythonWorkerPool(properties, objectMapper,
+				new PipelineMetrics(new SimpleMeterRegistry()), retentionProperties);
+		Path audio = Files.writeString(directory.resolve("talk.mp3"), "audio");
+		CancellationToken cancellation = new CancellationToken();
+		CompletableFuture.runAsync(() -> {
+			// Waits until the worker has the job, it writes the partial entry first
+			while (!hasPartialEntry(cache)) {
+				Thread.onSpinWait();
+			}
+			cancellation.cancel("Cancelled by the user");
+		});
+
+		try {
+			assertThatThrownBy(() -> pool.transcribe(audio.toString(), null, false, null, cancellation))
+					.isInstanceOf(CancellationException.class)
+					.hasMessage("Cancelled by the user");
+			assertThat(hasPartialEntry(cache)).isFalse();
+			// The killed worker was not put back, its slot is free for a fresh one
+			assertThat(pool.getLiveCount()).isZero();
+			assertThat(pool.getBusyCount()).isZero();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static boolean hasPartialEntry(Path cache) {
+		try (Stream<Path> files = Files.list(cache)) {
+			return files.anyMatch(file -> file.getFileName().toString().endsWith(".tmp"));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.project.demo.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.model.TranscriptionResult;
+import com.project.demo.properties.ResultCacheProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultCacheTests {
+
+	@TempDir
+	Path directory;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private ResultCache cache(DataSize maxSize) {
+		ResultCacheProperties properties = new ResultCacheProperties();
+		properties.setLocation(directory.toString());
+		properties.setMaxSize(maxSize);
+		ResultCache cache = new ResultCache(properties, objectMapper);
+		cache.init();
+		return cache;
+	}
+
+	private static TranscriptionResult result(String transcription) {
+		return new TranscriptionResult(transcription, "summary", Map.of("rouge1", 0.5), false, null);
+	}
+
+	private long bytesOnDisk() throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.mapToLong(file -> file.toFile().length()).sum();
+		}
+	}
+
+	@Test
+	void keysTellSummarizersAndGeminiModelsApart() {
+		String python = ResultCache.key("abc", "python", null);
+
+		assertThat(ResultCache.key("abc", "python", "gemini-2.0-flash")).isEqualTo(python);
+		assertThat(ResultCache.key("abc", "gemini", null)).isEqualTo("abc.gemini-default");
+		assertThat(ResultCache.key("abc", "gemini", "gemini-2.0-flash")).isEqualTo("abc.gemini-Z2VtaW5pLTIuMC1mbGFzaA");
+		// Model ids end up in file names, without ever mapping two of them to the same one
+		assertThat(ResultCache.key("abc", "gemini", "../models/x")).isEqualTo("abc.gemini-Li4vbW9kZWxzL3g");
+		assertThat(ResultCache.key("abc", "gemini", "models/gemini-x"))
+				.isNotEqualTo(ResultCache.key("abc", "gemini", "models_gemini-x"));
+		assertThat(ResultCache.key("abd", "python", null)).isNotEqualTo(python);
+	}
+
+	@Test
+	void keepsResultsOfDifferentKeysApart() {
+		ResultCache cache = cache(DataSize.ofMegabytes(1));
+		cache.put(ResultCache.key("abc", "python", null), result("from bart"));
+		cache.put(ResultCache.key("abc", "gemini", "gemini-2.0-flash"), result("from gemini"));
+
+		assertThat(cache.get(ResultCache.key("abc", "python", null))).map(TranscriptionResult::transcription)
+				.contains("from bart");
+		assertThat(cache.get(ResultCache.key("abc", "gemini", "gemini-2.0-flash")))
+				.map(TranscriptionResult::transcription).contains("from gemini");
+		assertThat(cache.get(ResultCache.key("abc", "gemini", "gemini-1.5-pro"))).isEmpty();
+		assertThat(cache.getHits()).isEqualTo(2);
+		assertThat(cache.getMisses()).isEqualTo(1);
+	}
+
+	@Test
+	void countsTheBytesOnDiskAcrossReplacementsAndRemovals() throws Exception {
+		ResultCache cache = cache(DataSize.ofMegabytes(1));
+		cache.put("a.python", result("short"));
+		cache.put("b.python", result("x".repeat(500)));
+		assertThat(cache.getTotalBytes()).isEqualTo(bytesOnDisk());
+
+		cache.put("a.python", result("y".repeat(2000)));
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.getTotalBytes()).isEqualTo(bytesOnDisk());
+
+		cache.remove("b.python");
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.getTotalBytes()).isEqualTo(bytesOnDisk());
+
+		// A restart reads the sizes back from the files
+		assertThat(cache(DataSize.ofMegabytes(1)).getTotalBytes()).isEqualTo(bytesOnDisk());
+	}
+
+	@Test
+	void evictsTheLeastRecentlyReadResultsAboveTheLimit() throws Exception {
+		ResultCache cache = cache(DataSize.ofBytes(3000));
+		String text = "z".repeat(800);
+		cache.put("a.python", result(text));
+		cache.put("b.python", result(text));
+		cache.put("c.python", result(text));
+		// Reading "a" makes "b" the least recently used
+		assertThat(cache.get("a.python")).isPresent();
+
+		cache.put("d.python", result(text));
+
+		assertThat(cache.getEvictions()).isEqualTo(1);
+		assertThat(cache.get("b.python")).isEmpty();
+		assertThat(cache.get("a.python")).isPresent();
+		assertThat(Files.exists(directory.resolve("b.python.json"))).isFalse();
+		assertThat(cache.getTotalBytes()).isLessThanOrEqualTo(3000).isEqualTo(bytesOnDisk());
+	}
+
+	@Test
+	void skipsResultsLargerThanTheWholeCache() throws Exception {
+		ResultCache cache = cache(DataSize.ofBytes(500));
+		cache.put("small.python", result("short"));
+
+		cache.put("large.python", result("x".repeat(1000)));
+
+		assertThat(cache.get("large.python")).isEmpty();
+		assertThat(cache.get("small.python")).isPresent();
+		assertThat(cache.getEvictions()).isZero();
+	}
+
+	@Test
+	void dropsAnEntryThatCanNotBeRead() throws Exception {
+		ResultCache cache = cache(DataSize.ofMegabytes(1));
+		cache.put("a.python", result("text"));
+		Files.writeString(directory.resolve("a.python.json"), "{ not json");
+
+		assertThat(cache.get("a.python")).isEmpty();
+		assertThat(cache.size()).isZero();
+		assertThat(cache.getTotalBytes()).isZero();
+		assertThat(Files.exists(directory.resolve("a.python.json"))).isFalse();
+	}
+	@Test
+	void leavesNoTemporaryFileWhenAWriteFails() throws Exception {
+		ResultCache cache = cache(DataSize.ofMegabytes(1));
+		// A directory with content in the way makes the move fail
+		Files.createDirectories(directory.resolve("a.python.json").resolve("in-the-way"));
+
+		cache.put("a.python", result("text"));
+
+		assertThat(cache.size()).isZero();
+		try (Stream<Path> files = Files.list(directory)) {
+			assertThat(files).extracting(file -> file.getFileName().toString()).containsExactly("a.python.json");
+		}
+	}
+
+	@Test
+	void removesTemporaryFilesLeftByAnEarlierRun() throws Exception {
+		cache(DataSize.ofMegabytes(1)).put("a.python", result("text"));
+		Files.writeString(directory.resolve("b.python1234.tmp"), "{ half written");
+
+		ResultCache cache = cache(DataSize.ofMegabytes(1));
+
+		assertThat(Files.exists(directory.resolve("b.python1234.tmp"))).isFalse();
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.getTotalBytes()).isEqualTo(bytesOnDisk());
+	}
+}
@@ -0,0 +1,185 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.model.StoredFile;
+import com.project.demo.properties.AudioProperties;
+import com.project.demo.properties.RetentionProperties;
+import com.project.demo.properties.StorageProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetentionServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private Path pythonCache;
+	private RetentionProperties properties;
+	private FileCatalog catalog;
+	private FileSystemStorageService storageService;
+	private RetentionService retention;
+
+	@BeforeEach
+	void createServices() throws IOException {
+		StorageProperties storageProperties = new StorageProperties();
+		storageProperties.setLocation(directory.resolve("uploads").toString());
+		storageProperties.setCatalogFile(directory.resolve("file-catalog.json").toString());
+		ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+		catalog = new FileCatalog(storageProperties, objectMapper);
+		storageService = new FileSystemStorageService(storageProperties, new AudioProperties(), catalog, objectMapper);
+
+		pythonCache = Files.createDirectories(directory.resolve(".cache"));
+		properties = new RetentionProperties();
+		properties.setMinIdle(Duration.ZERO);
+		properties.setPythonCacheLocation(pythonCache.toString());
+	}
+
+	@AfterEach
+	void stopRetention() {
+		if (retention != null) {
+			retention.shutdown();
+		}
+	}
+
+	private RetentionService startRetention() {
+		retention = new RetentionService(properties, storageService, catalog);
+		return retention;
+	}
+
+	private StoredFile store(String name, int size) {
+		byte[] content = new byte[size];
+		content[0] = (byte) name.hashCode();
+		return storageService.store(new MockMultipartFile("file", name, "audio/mpeg", content));
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedUploadsAboveTheQuota() throws InterruptedException {
+		properties.setUploadsMaxSize(DataSize.ofBytes(250));
+		StoredFile oldest = store("oldest.mp3", 100);
+		StoredFile pinned = store("pinned.mp3", 100);
+		StoredFile used = store("used.mp3", 100);
+		StoredFile newest = store("newest.mp3", 100);
+		catalog.pin(pinned.hash());
+		Thread.sleep(5);
+		storageService.touch(used.hash());
+
+		startRetention().sweep();
+
+		// 400 bytes down to at most 225: the oldest unpinned upload goes first, then the next least recently used
+		assertThat(catalog.hashes()).containsExactlyInAnyOrder(pinned.hash(), used.hash());
+		assertThat(oldest.path()).doesNotExist();
+		assertThat(newest.path()).doesNotExist();
+		assertThat(retention.getEvictions(RetentionService.Area.UPLOADS, RetentionService.Reason.QUOTA)).isEqualTo(2);
+		assertThat(retention.getEvictedBytes(RetentionService.Area.UPLOADS)).isEqualTo(200);
+	}
+
+	@Test
+	void removesAtMostOneBatchOfTheOldestUploadsPerRun() throws InterruptedException {
+		properties.setBatchSize(2);
+		properties.setUploadsMaxSize(DataSize.ofBytes(250));
+		StoredFile[] uploads = new StoredFile[5];
+		for (int i = 0; i < uploads.length; i++) {
+			uploads[i] = store("upload-" + i + ".mp3", 100);
+			Thread.sleep(2);
+		}
+		catalog.pin(uploads[0].hash());
+		startRetention();
+
+		retention.sweep();
+		assertThat(catalog.hashes()).containsExactlyInAnyOrder(uploads[0].hash(), uploads[3].hash(), uploads[4].hash());
+		retention.sweep();
+		assertThat(catalog.hashes()).containsExactlyInAnyOrder(uploads[0].hash(), uploads[4].hash());
+
+
+		// Only the pinned upload is left above a smaller quota, nothing more is removed
+		properties.setUploadsMaxSize(DataSize.ofBytes(50));
+		retention.sweep();
+		retention.sweep();
+		assertThat(catalog.hashes()).containsExactly(uploads[0].hash());
+		assertThat(retention.getEvictions(RetentionService.Area.UPLOADS, RetentionService.Reason.QUOTA)).isEqualTo(4);
+	}
+
+	@Test
+	void keepsRecentlyUsedUploadsEvenAboveTheQuota() {
+		properties.setUploadsMaxSize(DataSize.ofBytes(50));
+		properties.setMinIdle(Duration.ofMinutes(10));
+		StoredFile upload = store("fresh.mp3", 100);
+
+		startRetention().sweep();
+
+		assertThat(upload.path()).exists();
+	}
+
+	@Test
+	void removesExpiredUploadsOneBatchAtATime() throws InterruptedException {
+		properties.setBatchSize(2);
+		properties.setUploadsMaxAge(Duration.ofMillis(1));
+		for (int i = 0; i < 5; i++) {
+			store("old-" + i + ".mp3", 10);
+		}
+		// Every upload has to be past the maximum age, the last one may be younger than a millisecond
+		Thread.sleep(10);
+		startRetention();
+
+		retention.sweep();
+		assertThat(catalog.size()).isEqualTo(3);
+		retention.sweep();
+		retention.sweep();
+		assertThat(catalog.size()).isZero();
+		assertThat(retention.getEvictions(RetentionService.Area.UPLOADS, RetentionService.Reason.AGE)).isEqualTo(5);
+	}
+
+	@Test
+	void scansThePythonCacheIncrementally() throws IOException {
+		properties.setBatchSize(2);
+		properties.setPythonCacheMaxAge(Duration.ZERO);
+		properties.setPythonCacheMaxSize(DataSize.ofBytes(1000));
+		Instant old = Instant.now().minus(Duration.ofDays(2));
+		for (int i = 0; i < 4; i++) {
+			Path entry = Files.write(pythonCache.resolve("hash-" + i + ".pkl"), new byte[300]);
+			Files.setLastModifiedTime(entry, FileTime.from(old.plusSeconds(i)));
+		}
+		Files.write(pythonCache.resolve("hash-new.pkl"), new byte[300]);
+		startRetention();
+
+		retention.sweep();
+		assertThat(retention.getPythonCacheBytes()).isEqualTo(600);
+		retention.sweep();
+		retention.sweep();
+
+		// Whichever order the directory lists them in, the two oldest are the ones over the quota
+		assertThat(retention.getPythonCacheBytes()).isEqualTo(900);
+		assertThat(pythonCache.resolve("hash-0.pkl")).doesNotExist();
+		assertThat(pythonCache.resolve("hash-1.pkl")).doesNotExist();
+		assertThat(pythonCache.resolve("hash-new.pkl")).exists();
+	}
+
+	@Test
+	void removesExpiredPythonCacheEntries() throws IOException {
+		properties.setPythonCacheMaxAge(Duration.ofDays(1));
+		Path expired = Files.write(pythonCache.resolve("expired.pkl"), new byte[10]);
+		Files.setLastModifiedTime(expired, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+		Path pinned = Files.write(pythonCache.resolve("pinned.pkl"), new byte[10]);
+		Files.setLastModifiedTime(pinned, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+		catalog.pin("pinned");
+
+		startRetention().sweep();
+
+		assertThat(expired).doesNotExist();
+		assertThat(pinned).exists();
+		assertThat(retention.getEvictions(RetentionService.Area.PYTHON_CACHE, RetentionService.Reason.AGE)).isEqualTo(1);
+	}
+}
@@ -0,0 +1,128 @@
+package com.project.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import com.project.demo.model.RougeScores;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class RougeScorerTests {
+
+	private final RougeScorer scorer = new RougeScorer();
+
+	// Straightforward String-based implementation the scorer has to agree with
+	private static List<String> words(String text) {
+		return Arrays.stream(text.toLowerCase(Locale.ROOT)
+						.replaceAll("[^\\p{L}\\p{Nd}\\s]", "")
+						.split("\\s+"))
+				.filter(word -> !word.isEmpty())
+				.toList();
+	}
+
+	private static List<String> ngrams(List<String> words, int n) {
+		List<String> ngrams = new ArrayList<>();
+		for (int i = 0; i + n <= words.size(); i++) {
+			ngrams.add(String.join(" ", words.subList(i, i + n)));
+		}
+		return ngrams;
+	}
+
+	private static RougeScores.Score referenceRougeN(List<String> reference, List<String> candidate, int n) {
+		List<String> referenceNgrams = ngrams(reference, n);
+		List<String> candidateNgrams = ngrams(candidate, n);
+		Map<String, Integer> counts = new HashMap<>();
+		referenceNgrams.forEach(ngram -> counts.merge(ngram, 1, Integer::sum));
+		int matches = 0;
+		for (String ngram : candidateNgrams) {
+			Integer left = counts.get(ngram);
+			if (left != null && left > 0) {
+				counts.put(ngram, left - 1);
+				matches++;
+			}
+		}
+		return RougeScores.Score.of(matches, candidateNgrams.size(), referenceNgrams.size());
+	}
+
+	private static RougeScores.Score referenceRougeL(List<String> reference, List<String> candidate) {
+		int[][] table = new int[reference.size() + 1][candidate.size() + 1];
+		for (int i = 1; i <= reference.size(); i++) {
+			for (int j = 1; j <= candidate.size(); j++) {
+				table[i][j] = reference.get(i - 1).equals(candidate.get(j - 1))
+						? table[i - 1][j - 1] + 1
+						: Math.max(table[i - 1][j], table[i][j - 1]);
+			}
+		}
+		return RougeScores.Score.of(table[reference.size()][candidate.size()], candidate.size(), reference.size());
+	}
+
+	private void assertMatchesReference(String reference, String candidate) {
+		List<String> referenceWords = words(reference);
+		List<String> candidateWords = words(candidate);
+
+		RougeScores scores = scorer.score(reference, candidate);
+
+		assertThat(scores.rouge1()).isEqualTo(referenceRougeN(referenceWords, candidateWords, 1));
+		assertThat(scores.rouge2()).isEqualTo(referenceRougeN(referenceWords, candidateWords, 2));
+		assertThat(scores.rougeL()).isEqualTo(referenceRougeL(referenceWords, candidateWords));
+	}
+
+	@Test
+	void countsRepeatedWordsOnlyAsOftenAsTheyOccur() {
+		RougeScores scores = scorer.score("the cat sat on the mat", "the the the cat");
+
+		// "the" occurs twice in the reference, so two of the three in the summary match
+		assertThat(scores.rouge1().precision()).isEqualTo(75.0);
+		assertThat(scores.rouge1().recall()).isEqualTo(50.0);
+		assertThat(scores.rouge2().precision()).isCloseTo(100.0 / 3, offset(1e-9));
+	}
+
+	@Test
+	void ignoresCasePunctuationAndSpacing() {
+		assertMatchesReference("Don't STOP,  me now!\nI'm having\tsuch a good time.", "dont stop me... I'm having fun");
+		assertMatchesReference("Zażółć gęślą jaźń 2024.", "zażółć jaźń, 2024");
+	}
+
+	@Test
+	void handlesEmptyTexts() {
+		assertMatchesReference("", "summary");
+		assertMatchesReference("some text", "");
+		assertMatchesReference("word", "word");
+		assertThat(scorer.score("", "").toMetrics()).containsEntry("fScore", 0.0).containsEntry("rougeLFScore", 0.0);
+	}
+
+	@Test
+	void agreesWithReferenceOnRandomTexts() {
+		String[] vocabulary = {"the", "model", "Whisper", "summary", "audio", "a", "of", "speech", "text", "is,", "Długi", "2"};
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			assertMatchesReference(randomText(random, vocabulary, random.nextInt(300)),
+					randomText(random, vocabulary, random.nextInt(40)));
+		}
+	}
+
+	@Test
+	void preparedReferenceScoresSeveralCandidates() {
+		String transcript = "whisper turns speech into text and bart turns text into a summary";
+		RougeScorer.Reference reference = scorer.prepare(transcript);
+
+		for (String candidate : List.of("speech into text", "text into a summary", "unrelated words")) {
+			assertThat(reference.score(candidate)).isEqualTo(scorer.score(transcript, candidate));
+		}
+	}
+
+	private static String randomText(Random random, String[] vocabulary, int length) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			text.append(vocabulary[random.nextInt(vocabulary.length)]).append(random.nextInt(5) == 0 ? "\n" : " ");
+		}
+		return text.toString();
+	}
+}
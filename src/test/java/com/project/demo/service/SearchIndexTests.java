@@ -0,0 +1,131 @@
+package com.project.demo.service;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.model.HistoryEntry;
+import com.project.demo.model.SearchHit;
+import com.project.demo.model.SearchResults;
+import com.project.demo.model.TranscriptSegment;
+import com.project.demo.properties.HistoryProperties;
+import com.project.demo.properties.SearchProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchIndexTests {
+
+	@TempDir
+	Path directory;
+
+	private HistoryStore history;
+	private SearchIndex index;
+
+	@BeforeEach
+	void open() {
+		restart();
+	}
+
+	@AfterEach
+	void close() {
+		index.shutdown();
+		history.shutdown();
+	}
+
+	/**
+	 * Opens the history and the index again, without writing what the index holds in memory.
+	 */
+	private void restart() {
+		if (history != null) {
+			history.shutdown();
+		}
+		HistoryProperties historyProperties = new HistoryProperties();
+		historyProperties.setLocation(directory.resolve("history").toString());
+		history = new HistoryStore(historyProperties, new ObjectMapper().findAndRegisterModules());
+		history.init();
+		SearchProperties searchProperties = new SearchProperties();
+		searchProperties.setLocation(directory.resolve("search").toString());
+		index = new SearchIndex(searchProperties, history);
+		index.init();
+	}
+
+	private HistoryEntry append(char hash, String... segments) {
+		List<TranscriptSegment> timed = new ArrayList<>();
+		for (int i = 0; i < segments.length; i++) {
+			timed.add(new TranscriptSegment(i * 10, i * 10 + 10, segments[i]));
+		}
+		return history.append(new HistoryEntry(-1, String.valueOf(hash).repeat(64), hash + ".mp3", "python", null,
+				String.join(" ", segments), timed, "summary", Map.of(), false, false, null, Map.of(), Instant.now()));
+	}
+
+	@Test
+	void ranksByBm25AndPointsAtTheSegments() {
+		append('a', "The budget for next year.", "We also talked about the office.");
+		append('b', "Budget, budget and budget again.", "Nothing else.");
+		append('c', "Lunch plans only.");
+
+		SearchResults results = index.search("Budget office", 10);
+
+		assertThat(results.matches()).isEqualTo(2);
+		assertThat(results.hits()).extracting(SearchHit::fileName).containsExactly("a.mp3", "b.mp3");
+		assertThat(results.hits().get(0).snippets())
+				.containsExactly(new SearchHit.Snippet(0.0, 10.0, "The budget for next year."),
+						new SearchHit.Snippet(10.0, 20.0, "We also talked about the office."));
+		assertThat(index.search("budget", 1).hits()).extracting(SearchHit::fileName).containsExactly("b.mp3");
+		assertThat(index.search("holiday", 10).hits()).isEmpty();
+	}
+
+	@Test
+	void indexesAnUploadOnce() {
+		append('a', "Quarterly numbers.");
+		append('a', "Quarterly numbers.");
+
+		assertThat(index.size()).isEqualTo(1);
+		assertThat(index.search("quarterly", 10).hits()).hasSize(1);
+	}
+
+	@Test
+	void mergesTheFileWithTranscriptionsAddedSince() {
+		append('a', "Zebra crossing near the station.");
+		append('b', "Apple harvest.");
+		index.flush();
+		append('c', "Zebra and apple and mango.");
+		index.flush();
+		append('d', "Mango season.");
+
+		index.shutdown();
+		restart();
+
+		assertThat(index.size()).isEqualTo(4);
+		assertThat(index.search("zebra", 10).hits()).extracting(SearchHit::fileName)
+				.containsExactlyInAnyOrder("a.mp3", "c.mp3");
+		assertThat(index.search("mango", 10).hits()).extracting(SearchHit::fileName)
+				.containsExactlyInAnyOrder("c.mp3", "d.mp3");
+		assertThat(index.search("apple", 10).matches()).isEqualTo(2);
+	}
+
+	@Test
+	void catchesUpWithTheHistoryAfterACrash() {
+		append('a', "Written to the file.");
+		index.flush();
+		append('b', "Only in memory when the process died.");
+
+		restart();
+
+		assertThat(index.size()).isEqualTo(2);
+		assertThat(index.search("died", 10).hits()).extracting(SearchHit::fileName).containsExactly("b.mp3");
+	}
+
+	@Test
+	void splitsOnAnythingButLettersAndDigits() {
+		assertThat(SearchIndex.tokens("Zażółć gęślą-jaźń, 2024 r."))
+				.containsExactly("zażółć", "gęślą", "jaźń", "2024", "r");
+	}
+}
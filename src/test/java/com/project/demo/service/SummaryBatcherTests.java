@@ -0,0 +1,76 @@
+package com.project.demo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.properties.RetentionProperties;
+import com.project.demo.properties.SummarizerProperties;
+import com.project.demo.properties.WorkerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SummaryBatcherTests {
+
+	private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+	private final SummarizerProperties properties = new SummarizerProperties();
+	private final PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+	private final PythonWorkerPool pool = new PythonWorkerPool(new WorkerProperties(), new ObjectMapper(), metrics,
+			new RetentionProperties()) {
+		@Override
+		public List<String> summarize(List<String> texts, CancellationToken cancellation) {
+			calls.add(texts);
+			return texts.stream().map(text -> "summary of " + text).toList();
+		}
+	};
+	private final SummaryBatcher batcher = new SummaryBatcher(pool, properties, metrics);
+
+	@AfterEach
+	void shutdown() {
+		batcher.shutdown();
+	}
+
+	@Test
+	void sendsAFullBatchAtOnce() {
+		properties.setBatchMaxSize(4);
+		properties.setBatchMaxDelay(Duration.ofMinutes(1));
+
+		List<CompletableFuture<String>> summaries = IntStream.range(0, 4)
+				.mapToObj(i -> CompletableFuture.supplyAsync(() -> batcher.summarize("text " + i, new CancellationToken())))
+				.toList();
+
+		assertThat(summaries).extracting(CompletableFuture::join)
+				.containsExactly("summary of text 0", "summary of text 1", "summary of text 2", "summary of text 3");
+		assertThat(calls).hasSize(1);
+		assertThat(calls.get(0)).containsExactlyInAnyOrder("text 0", "text 1", "text 2", "text 3");
+	}
+
+	@Test
+	void sendsWhatCameInOnceTheDelayIsOver() {
+		properties.setBatchMaxDelay(Duration.ofMillis(10));
+
+		assertThat(batcher.summarize("alone", new CancellationToken())).isEqualTo("summary of alone");
+		assertThat(calls).containsExactly(List.of("alone"));
+	}
+
+	@Test
+	void leavesACancelledRequestOutOfTheBatch() {
+		properties.setBatchMaxDelay(Duration.ofMillis(200));
+		CancellationToken cancellation = new CancellationToken();
+		CompletableFuture<String> cancelled = CompletableFuture.supplyAsync(
+				() -> batcher.summarize("cancelled", cancellation));
+		cancellation.cancel("Cancelled by the user");
+
+		assertThat(batcher.summarize("kept", new CancellationToken())).isEqualTo("summary of kept");
+		assertThatThrownBy(cancelled::join).hasCauseInstanceOf(CancellationException.class);
+		assertThat(calls).containsExactly(List.of("kept"));
+	}
+}
@@ -0,0 +1,153 @@
+package com.project.demo.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.demo.model.JobStatus;
+import com.project.demo.model.StoredFile;
+import com.project.demo.model.TranscriptionJob;
+import com.project.demo.model.TranscriptionResult;
+import com.project.demo.properties.JobProperties;
+import com.project.demo.properties.StorageProperties;
+import com.project.demo.properties.WorkerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TranscriptionJobServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private final PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+	private final List<String> processed = new CopyOnWriteArrayList<>();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private TranscriptionScheduler scheduler;
+	private TranscriptionJobService service;
+
+	/**
+	 * Holds every job until the test releases it, a file named "broken.mp3" fails.
+	 */
+	private final TranscriptionPipeline pipeline = new TranscriptionPipeline(null, null, null, null, null, null, null,
+			null, metrics) {
+		@Override
+		public TranscriptionResult process(TranscriptionJob job, BiConsumer<String, Object> events)
+				throws IOException {
+			processed.add(job.getFileName());
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (job.getFileName().equals("broken.mp3")) {
+				throw new IOException("Unreadable audio");
+			}
+			return new TranscriptionResult("text of " + job.getFileName(), "summary", Map.of(), false, null);
+		}
+	};
+
+	@BeforeEach
+	void startService() {
+		JobProperties properties = new JobProperties();
+		properties.setMaxParallel(1);
+		StorageProperties storageProperties = new StorageProperties();
+		storageProperties.setCatalogFile(directory.resolve("catalog.json").toString());
+		scheduler = new TranscriptionScheduler(properties, new WorkerProperties(), metrics);
+		service = new TranscriptionJobService(pipeline, properties, metrics,
+				new FileCatalog(storageProperties, new ObjectMapper()), scheduler);
+	}
+
+	@AfterEach
+	void stopService() {
+		release.countDown();
+		service.shutdown();
+		scheduler.shutdown();
+	}
+
+	private TranscriptionJob submit(String filename) {
+		StoredFile file = new StoredFile(filename, directory.resolve(filename), "hash-" + filename, 16_000);
+		return service.submit(file, "session", "python", null);
+	}
+
+	private static TranscriptionJob await(TranscriptionJob job) throws Exception {
+		return job.getCompletion().get(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void runsASubmittedJobAndKeepsItsResult() throws Exception {
+		TranscriptionJob job = submit("talk.mp3");
+		assertThat(service.getJob(job.getId())).containsSame(job);
+
+		release.countDown();
+
+		assertThat(await(job).getStatus()).isEqualTo(JobStatus.DONE);
+		assertThat(job.getResult().transcription()).isEqualTo("text of talk.mp3");
+		assertThat(service.countJobs(JobStatus.DONE)).isEqualTo(1);
+	}
+
+	@Test
+	void reportsTheErrorOfAFailedJob() throws Exception {
+		TranscriptionJob job = submit("broken.mp3");
+
+		release.countDown();
+
+		assertThat(await(job).getStatus()).isEqualTo(JobStatus.FAILED);
+		assertThat(job.getError()).isEqualTo("Unreadable audio");
+	}
+
+	@Test
+	void cancellingAQueuedJobTakesItOutWithoutRunningIt() throws Exception {
+		TranscriptionJob running = submit("first.mp3");
+		TranscriptionJob queued = submit("second.mp3");
+		assertThat(queued.getStatus()).isEqualTo(JobStatus.QUEUED);
+
+		assertThat(service.cancel(queued)).isTrue();
+
+		assertThat(await(queued).getStatus()).isEqualTo(JobStatus.CANCELLED);
+		assertThat(scheduler.getQueued()).isZero();
+		release.countDown();
+		await(running);
+		assertThat(service.cancel(queued)).isFalse();
+		assertThat(processed).containsExactly("first.mp3");
+	}
+
+	@Test
+	void dropsTheProgressStreamsOfAJobOnceItIsFinished() throws Exception {
+		TranscriptionJob job = submit("talk.mp3");
+		service.subscribe(job);
+		service.subscribe(job);
+		assertThat(service.countSubscribedJobs()).isEqualTo(1);
+
+		release.countDown();
+		await(job);
+
+		// The job is marked finished just before its streams are completed
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (service.countSubscribedJobs() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(service.countSubscribedJobs()).isZero();
+	}
+
+	@Test
+	void subscribingToAFinishedJobRegistersNothing() throws Exception {
+		TranscriptionJob job = submit("talk.mp3");
+		release.countDown();
+		await(job);
+
+		service.subscribe(job);
+
+		assertThat(service.countSubscribedJobs()).isZero();
+	}
+}
@@ -0,0 +1,164 @@
+package com.project.demo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.project.demo.exceptions.QueueFullException;
+import com.project.demo.properties.JobProperties;
+import com.project.demo.properties.WorkerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TranscriptionSchedulerTests {
+
+	private static final long MB = 1024 * 1024;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final List<String> started = new CopyOnWriteArrayList<>();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private TranscriptionScheduler scheduler;
+
+	@AfterEach
+	void stopScheduler() {
+		release.countDown();
+		scheduler.shutdown();
+	}
+
+	private TranscriptionScheduler scheduler(int maxParallel, int queueCapacity) {
+		JobProperties properties = new JobProperties();
+		properties.setMaxParallel(maxParallel);
+		properties.setQueueCapacity(queueCapacity);
+		scheduler = new TranscriptionScheduler(properties, new WorkerProperties(), new PipelineMetrics(registry));
+		return scheduler;
+	}
+
+	private void submit(String session, String name, long cost) {
+		scheduler.submit(session, cost, () -> started.add(name));
+	}
+
+	/**
+	 * Takes the only slot until the test is done, everything submitted afterwards waits.
+	 */
+	private void occupySlot() {
+		scheduler.submit("other", MB, () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+
+	private void awaitStarted(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (started.size() < count && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(started).hasSize(count);
+	}
+
+	@Test
+	void runsSmallerUploadsFirst() throws InterruptedException {
+		scheduler(1, 10);
+		occupySlot();
+		submit("a", "large", 30 * MB);
+		submit("b", "small", 1 * MB);
+		submit("a", "medium", 10 * MB);
+		assertThat(scheduler.getQueued()).isEqualTo(3);
+
+		release.countDown();
+
+		awaitStarted(3);
+		assertThat(started).containsExactly("small", "medium", "large");
+	}
+
+	@Test
+	void sharesSlotsBetweenSessions() throws InterruptedException {
+		scheduler(1, 10);
+		occupySlot();
+		for (int i = 1; i <= 4; i++) {
+			submit("batch", "batch-" + i, MB);
+		}
+		submit("single", "single", MB);
+
+		release.countDown();
+
+		awaitStarted(5);
+		assertThat(started).containsExactly("batch-1", "single", "batch-2", "batch-3", "batch-4");
+	}
+
+	@Test
+	void runsALongUploadWhileAnotherSessionKeepsSubmittingShortOnes() throws InterruptedException {
+		scheduler(1, 10);
+		occupySlot();
+		submit("long", "long", 30 * MB);
+		AtomicInteger shortJobs = new AtomicInteger();
+		Runnable[] shortJob = new Runnable[1];
+		shortJob[0] = () -> {
+			started.add("short");
+			// The next one is queued before this one frees the slot, there is always a short job waiting
+			if (shortJobs.incrementAndGet() < 100) {
+				scheduler.submit("short", MB, shortJob[0]);
+			}
+		};
+		scheduler.submit("short", MB, shortJob[0]);
+
+		release.countDown();
+
+		awaitStarted(101);
+		// Its tag is 30 MB past the clock when it was queued, about 30 short jobs later the clock is there
+		assertThat(started.indexOf("long")).isBetween(25, 35);
+	}
+
+	@Test
+	void rejectsWhenTheQueueIsFull() {
+		scheduler(1, 2);
+		occupySlot();
+		submit("a", "first", MB);
+		submit("a", "second", MB);
+
+		assertThatThrownBy(() -> submit("b", "third", MB))
+				.isInstanceOf(QueueFullException.class)
+				.satisfies(e -> assertThat(((QueueFullException) e).getRetryAfter()).isGreaterThanOrEqualTo(Duration.ofSeconds(1)));
+		assertThatThrownBy(scheduler::checkCapacity).isInstanceOf(QueueFullException.class);
+		assertThat(registry.counter("transcription.queue.rejections").count()).isEqualTo(2);
+	}
+
+	@Test
+	void cancelledJobsLeaveTheQueueWithoutRunning() throws InterruptedException {
+		scheduler(1, 2);
+		occupySlot();
+		Runnable cancelled = () -> started.add("cancelled");
+		scheduler.submit("a", MB, cancelled);
+		submit("a", "kept", MB);
+
+		assertThat(scheduler.cancel(cancelled)).isTrue();
+		assertThat(scheduler.cancel(cancelled)).isFalse();
+		assertThat(scheduler.getQueued()).isEqualTo(1);
+		// The freed place can be taken again
+		submit("b", "later", MB);
+
+		release.countDown();
+
+		awaitStarted(2);
+		assertThat(started).containsExactlyInAnyOrder("kept", "later");
+	}
+
+	@Test
+	void recordsQueueWait() throws InterruptedException {
+		scheduler(2, 10);
+		submit("a", "first", MB);
+		submit("a", "second", MB);
+
+		awaitStarted(2);
+		assertThat(registry.timer("transcription.queue.wait").count()).isEqualTo(2);
+	}
+}